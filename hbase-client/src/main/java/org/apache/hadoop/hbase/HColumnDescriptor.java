@@ -124,6 +124,22 @@ public class HColumnDescriptor implements WritableComparable<HColumnDescriptor>
   public static final String ENCRYPTION = "ENCRYPTION";
   public static final String ENCRYPTION_KEY = "ENCRYPTION_KEY";
 
+  /**
+   * Settings of the parquet files written for this family. When a setting is
+   * not set on the family, the one of the table configuration or of the region
+   * server is used.
+   */
+  public static final String PARQUET_ROW_GROUP_SIZE = "PARQUET_ROW_GROUP_SIZE";
+  public static final String PARQUET_PAGE_SIZE = "PARQUET_PAGE_SIZE";
+  public static final String PARQUET_DICTIONARY_PAGE_SIZE = "PARQUET_DICTIONARY_PAGE_SIZE";
+  public static final String PARQUET_DICTIONARY = "PARQUET_DICTIONARY";
+  /**
+   * Whether the row groups are sized from the data being written and the pages
+   * encoded with a dictionary only for the columns with few distinct values.
+   * The row group size is then an upper bound.
+   */
+  public static final String PARQUET_ADAPTIVE_SIZING = "PARQUET_ADAPTIVE_SIZING";
+
   /**
    * Default compression type.
    */
@@ -261,6 +277,12 @@ public class HColumnDescriptor implements WritableComparable<HColumnDescriptor>
       }
       RESERVED_KEYWORDS.add(new ImmutableBytesWritable(Bytes.toBytes(ENCRYPTION)));
       RESERVED_KEYWORDS.add(new ImmutableBytesWritable(Bytes.toBytes(ENCRYPTION_KEY)));
+      RESERVED_KEYWORDS.add(new ImmutableBytesWritable(Bytes.toBytes(PARQUET_ROW_GROUP_SIZE)));
+      RESERVED_KEYWORDS.add(new ImmutableBytesWritable(Bytes.toBytes(PARQUET_PAGE_SIZE)));
+      RESERVED_KEYWORDS.add(new ImmutableBytesWritable(
+          Bytes.toBytes(PARQUET_DICTIONARY_PAGE_SIZE)));
+      RESERVED_KEYWORDS.add(new ImmutableBytesWritable(Bytes.toBytes(PARQUET_DICTIONARY)));
+      RESERVED_KEYWORDS.add(new ImmutableBytesWritable(Bytes.toBytes(PARQUET_ADAPTIVE_SIZING)));
   }
 
   private static final int UNINITIALIZED = -1;
@@ -1068,6 +1090,96 @@ public class HColumnDescriptor implements WritableComparable<HColumnDescriptor>
     return setValue(PREFETCH_BLOCKS_ON_OPEN, Boolean.toString(value));
   }
 
+  /**
+   * @return the size in bytes of the row groups of the parquet files of this
+   * family, 0 if not set
+   */
+  public int getParquetRowGroupSize() {
+    return getIntValue(PARQUET_ROW_GROUP_SIZE);
+  }
+
+  /**
+   * @param size the size in bytes of the row groups of the parquet files
+   * @return this (for chained invocation)
+   */
+  public HColumnDescriptor setParquetRowGroupSize(int size) {
+    return setValue(PARQUET_ROW_GROUP_SIZE, Integer.toString(size));
+  }
+
+  /**
+   * @return the size in bytes of the data pages of the parquet files of this
+   * family, 0 if not set
+   */
+  public int getParquetPageSize() {
+    return getIntValue(PARQUET_PAGE_SIZE);
+  }
+
+  /**
+   * @param size the size in bytes of the data pages of the parquet files
+   * @return this (for chained invocation)
+   */
+  public HColumnDescriptor setParquetPageSize(int size) {
+    return setValue(PARQUET_PAGE_SIZE, Integer.toString(size));
+  }
+
+  /**
+   * @return the maximum size in bytes of the dictionary pages of the parquet
+   * files of this family, 0 if not set
+   */
+  public int getParquetDictionaryPageSize() {
+    return getIntValue(PARQUET_DICTIONARY_PAGE_SIZE);
+  }
+
+  /**
+   * @param size the maximum size in bytes of the dictionary pages, a column
+   * whose dictionary grows bigger falls back to plain encoding
+   * @return this (for chained invocation)
+   */
+  public HColumnDescriptor setParquetDictionaryPageSize(int size) {
+    return setValue(PARQUET_DICTIONARY_PAGE_SIZE, Integer.toString(size));
+  }
+
+  /**
+   * @return whether dictionary encoding is enabled for the parquet files of
+   * this family, null if not set
+   */
+  public Boolean isParquetDictionary() {
+    String value = getValue(PARQUET_DICTIONARY);
+    return value == null ? null : Boolean.valueOf(value);
+  }
+
+  /**
+   * @param value true to enable dictionary encoding in the parquet files
+   * @return this (for chained invocation)
+   */
+  public HColumnDescriptor setParquetDictionary(boolean value) {
+    return setValue(PARQUET_DICTIONARY, Boolean.toString(value));
+  }
+
+  /**
+   * @return whether the parquet files of this family are sized adaptively,
+   * null if not set
+   * @see #PARQUET_ADAPTIVE_SIZING
+   */
+  public Boolean isParquetAdaptiveSizing() {
+    String value = getValue(PARQUET_ADAPTIVE_SIZING);
+    return value == null ? null : Boolean.valueOf(value);
+  }
+
+  /**
+   * @param value true to size the parquet files adaptively
+   * @return this (for chained invocation)
+   * @see #PARQUET_ADAPTIVE_SIZING
+   */
+  public HColumnDescriptor setParquetAdaptiveSizing(boolean value) {
+    return setValue(PARQUET_ADAPTIVE_SIZING, Boolean.toString(value));
+  }
+
+  private int getIntValue(String key) {
+    String value = getValue(key);
+    return value == null ? 0 : Integer.decode(value);
+  }
+
   /**
    * @see java.lang.Object#toString()
    */
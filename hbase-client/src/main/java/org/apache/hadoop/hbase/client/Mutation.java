@@ -608,8 +608,10 @@ public abstract class Mutation extends OperationWithAttributes implements Row, C
      * assume that sfg is not null
      * @param gf
      * @return
+     * @deprecated the store writers write mutations directly, this copies every value
+     * into a String and does not keep the cell timestamps
      */
-
+    @Deprecated
     public Group asGroup(GroupFactory gf){
 
         Group group = gf.newGroup().append(ROW_KEY, Bytes.toString(row));
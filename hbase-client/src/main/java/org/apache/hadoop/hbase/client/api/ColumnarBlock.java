@@ -0,0 +1,409 @@
+package org.apache.hadoop.hbase.client.api;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * rows of a parquet scan response encoded by column
+ *
+ * the server packs the rows of a response in one block, shipped as the value of
+ * a single cell, instead of one cell per value repeating the row, family and
+ * qualifier. the rowkeys are prefix compressed and each column is a presence
+ * bitmap followed by its values.
+ *
+ * decoding does not copy the values, the {@link Result} of a row is only built
+ * when asked for.
+ */
+public class ColumnarBlock {
+
+    /** family and qualifier of the cell carrying a block */
+    public static final byte[] FAMILY = Bytes.toBytes("_columnar_");
+    public static final byte[] QUALIFIER = Bytes.toBytes("block");
+
+    private final byte[] buf;
+    private final int rowCount;
+    private final byte[][] families;
+    private final byte[][] qualifiers;
+    private final byte[][] rows;
+    private final long[] timestamps;
+
+    // offset of the value of a row in buf per column, -1 if the row has no value
+    private final int[][] valueOffsets;
+    private final int[][] valueLengths;
+
+    // columns in family, qualifier order, the order of the cells of a result
+    private final Integer[] sortedColumns;
+
+
+    private ColumnarBlock(byte[] buf, int offset, int length) throws IOException {
+        this.buf = buf;
+        int end = offset + length;
+        int pos = offset;
+        rowCount = (int) Bytes.readVLong(buf, pos);
+        pos += WritableUtils.decodeVIntSize(buf[pos]);
+        int columnCount = (int) Bytes.readVLong(buf, pos);
+        pos += WritableUtils.decodeVIntSize(buf[pos]);
+
+        families = new byte[columnCount][];
+        qualifiers = new byte[columnCount][];
+        for(int c = 0; c < columnCount; ++c){
+            int len = (int) Bytes.readVLong(buf, pos);
+            pos += WritableUtils.decodeVIntSize(buf[pos]);
+            families[c] = Arrays.copyOfRange(buf, pos, pos + len);
+            pos += len;
+            len = (int) Bytes.readVLong(buf, pos);
+            pos += WritableUtils.decodeVIntSize(buf[pos]);
+            qualifiers[c] = Arrays.copyOfRange(buf, pos, pos + len);
+            pos += len;
+        }
+
+        rows = new byte[rowCount][];
+        byte[] previous = HConstants.EMPTY_BYTE_ARRAY;
+        for(int r = 0; r < rowCount; ++r){
+            int prefix = (int) Bytes.readVLong(buf, pos);
+            pos += WritableUtils.decodeVIntSize(buf[pos]);
+            int suffix = (int) Bytes.readVLong(buf, pos);
+            pos += WritableUtils.decodeVIntSize(buf[pos]);
+            byte[] row = new byte[prefix + suffix];
+            System.arraycopy(previous, 0, row, 0, prefix);
+            System.arraycopy(buf, pos, row, prefix, suffix);
+            pos += suffix;
+            rows[r] = row;
+            previous = row;
+        }
+
+        timestamps = new long[rowCount];
+        long timestamp = 0;
+        for(int r = 0; r < rowCount; ++r){
+            timestamp += Bytes.readVLong(buf, pos);
+            pos += WritableUtils.decodeVIntSize(buf[pos]);
+            timestamps[r] = timestamp;
+        }
+
+        int bitmapLength = (rowCount + 7) / 8;
+        valueOffsets = new int[columnCount][];
+        valueLengths = new int[columnCount][];
+        for(int c = 0; c < columnCount; ++c){
+            int bitmap = pos;
+            pos += bitmapLength;
+            valueOffsets[c] = new int[rowCount];
+            valueLengths[c] = new int[rowCount];
+            for(int r = 0; r < rowCount; ++r){
+                if((buf[bitmap + (r >>> 3)] & (1 << (r & 7))) == 0){
+                    valueOffsets[c][r] = -1;
+                    continue;
+                }
+                int len = (int) Bytes.readVLong(buf, pos);
+                pos += WritableUtils.decodeVIntSize(buf[pos]);
+                valueOffsets[c][r] = pos;
+                valueLengths[c][r] = len;
+                pos += len;
+            }
+        }
+        if(pos > end){
+            throw new IOException("columnar block of " + length + " bytes is truncated");
+        }
+
+        sortedColumns = new Integer[columnCount];
+        for(int c = 0; c < columnCount; ++c){
+            sortedColumns[c] = c;
+        }
+        Arrays.sort(sortedColumns, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer c1, Integer c2) {
+                int cmp = Bytes.compareTo(families[c1], families[c2]);
+                return cmp != 0 ? cmp : Bytes.compareTo(qualifiers[c1], qualifiers[c2]);
+            }
+        });
+    }
+
+    /**
+     * decode a block written by {@link Builder#build()}
+     */
+    public static ColumnarBlock decode(byte[] buf, int offset, int length) throws IOException {
+        return new ColumnarBlock(buf, offset, length);
+    }
+
+    /**
+     * @return whether the result carries a block instead of the cells of a row
+     */
+    public static boolean isBlock(Result result){
+        Cell[] cells = result.rawCells();
+        return cells != null && cells.length == 1
+                && CellUtil.matchingColumn(cells[0], FAMILY, QUALIFIER);
+    }
+
+    /**
+     * decode the block carried by a result, see {@link #isBlock(Result)}
+     */
+    public static ColumnarBlock fromResult(Result result) throws IOException {
+        Cell cell = result.rawCells()[0];
+        return decode(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+    }
+
+    public int getRowCount(){
+        return rowCount;
+    }
+
+    public int getColumnCount(){
+        return families.length;
+    }
+
+    public byte[] getFamily(int column){
+        return families[column];
+    }
+
+    public byte[] getQualifier(int column){
+        return qualifiers[column];
+    }
+
+    public byte[] getRow(int row){
+        return rows[row];
+    }
+
+    public long getTimestamp(int row){
+        return timestamps[row];
+    }
+
+    public boolean isNull(int row, int column){
+        return valueOffsets[column][row] < 0;
+    }
+
+    /**
+     * @return array holding the values, see {@link #getValueOffset(int, int)}
+     */
+    public byte[] getValueArray(){
+        return buf;
+    }
+
+    public int getValueOffset(int row, int column){
+        return valueOffsets[column][row];
+    }
+
+    public int getValueLength(int row, int column){
+        return valueLengths[column][row];
+    }
+
+    /**
+     * @return copy of a value, null if the row has no value in the column
+     */
+    public byte[] getValue(int row, int column){
+        int offset = valueOffsets[column][row];
+        if(offset < 0) return null;
+        return Arrays.copyOfRange(buf, offset, offset + valueLengths[column][row]);
+    }
+
+    /**
+     * @return the cells of a row, as the server would have sent them
+     */
+    public Result getResult(int row){
+        List<Cell> cells = new ArrayList<>(sortedColumns.length);
+        byte[] rowKey = rows[row];
+        for(int c : sortedColumns){
+            int offset = valueOffsets[c][row];
+            if(offset < 0) continue;
+            cells.add(new KeyValue(rowKey, 0, rowKey.length,
+                    families[c], 0, families[c].length,
+                    qualifiers[c], 0, qualifiers[c].length,
+                    timestamps[row], KeyValue.Type.Put,
+                    buf, offset, valueLengths[c][row]));
+        }
+        return Result.create(cells);
+    }
+
+
+    /**
+     * encode rows in a block, the rows must be added in order
+     */
+    public static class Builder {
+
+        // family and qualifier -> column
+        private final TreeMap<byte[], Integer> columnIndex = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        private final List<ColumnBuffer> columns = new ArrayList<>();
+
+        private final DataOutputBuffer rowKeys = new DataOutputBuffer();
+        private final DataOutputBuffer timestamps = new DataOutputBuffer();
+        private byte[] lastRow = null;
+        private long lastTimestamp = 0;
+        private int rowCount = 0;
+        private long size = 0;
+
+        // column of the previous cell, the cells of the rows usually come in the same order
+        private int hint = -1;
+
+        /**
+         * @return index of the column, added if the block does not have it yet
+         */
+        public int addColumn(byte[] family, byte[] qualifier){
+            byte[] key = Bytes.add(Bytes.vintToBytes(family.length), family, qualifier);
+            Integer column = columnIndex.get(key);
+            if(column == null){
+                column = columns.size();
+                columns.add(new ColumnBuffer(family, qualifier));
+                columnIndex.put(key, column);
+                size += family.length + qualifier.length;
+            }
+            return column;
+        }
+
+        private int getColumn(Cell cell){
+            int next = hint + 1;
+            if(next < columns.size() && columns.get(next).matches(cell)){
+                return hint = next;
+            }
+            if(hint >= 0 && columns.get(hint).matches(cell)){
+                return hint;
+            }
+            return hint = addColumn(CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell));
+        }
+
+        /**
+         * start a row, its values are then given with {@link #setValue}
+         */
+        public void startRow(byte[] row, int offset, int length, long timestamp){
+            try {
+                int prefix = 0;
+                if(lastRow != null){
+                    int max = Math.min(lastRow.length, length);
+                    while (prefix < max && lastRow[prefix] == row[offset + prefix]){
+                        prefix++;
+                    }
+                }
+                WritableUtils.writeVInt(rowKeys, prefix);
+                WritableUtils.writeVInt(rowKeys, length - prefix);
+                rowKeys.write(row, offset + prefix, length - prefix);
+                WritableUtils.writeVLong(timestamps, timestamp - lastTimestamp);
+            }catch (IOException ioe){
+                // writes to a memory buffer
+                throw new IllegalStateException(ioe);
+            }
+            lastRow = Arrays.copyOfRange(row, offset, offset + length);
+            lastTimestamp = timestamp;
+            rowCount++;
+            hint = -1;
+            size += length + 2;
+        }
+
+        /**
+         * set the value of the current row in a column, a column set twice keeps its first value
+         */
+        public void setValue(int column, byte[] value, int offset, int length){
+            columns.get(column).add(rowCount - 1, value, offset, length);
+            size += length + 1;
+        }
+
+        /**
+         * add the cells of a row, all of the same row
+         */
+        public void add(List<Cell> cells){
+            if(cells.isEmpty()) return;
+            Cell first = cells.get(0);
+            long timestamp = HConstants.OLDEST_TIMESTAMP;
+            for(Cell cell : cells){
+                timestamp = Math.max(timestamp, cell.getTimestamp());
+            }
+            startRow(first.getRowArray(), first.getRowOffset(), first.getRowLength(), timestamp);
+            for(Cell cell : cells){
+                setValue(getColumn(cell), cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+            }
+        }
+
+        public int getRowCount(){
+            return rowCount;
+        }
+
+        /**
+         * @return estimated size in bytes of the encoded block
+         */
+        public long getSize(){
+            return size;
+        }
+
+        /**
+         * @return the last row added, null if there is none
+         */
+        public byte[] getLastRow(){
+            return lastRow;
+        }
+
+        public byte[] build(){
+            try {
+                DataOutputBuffer out = new DataOutputBuffer((int) Math.min(Integer.MAX_VALUE, size + 64));
+                WritableUtils.writeVInt(out, rowCount);
+                WritableUtils.writeVInt(out, columns.size());
+                for(ColumnBuffer column : columns){
+                    WritableUtils.writeVInt(out, column.family.length);
+                    out.write(column.family);
+                    WritableUtils.writeVInt(out, column.qualifier.length);
+                    out.write(column.qualifier);
+                }
+                out.write(rowKeys.getData(), 0, rowKeys.getLength());
+                out.write(timestamps.getData(), 0, timestamps.getLength());
+                byte[] bitmap = new byte[(rowCount + 7) / 8];
+                for(ColumnBuffer column : columns){
+                    Arrays.fill(bitmap, (byte) 0);
+                    for(int r = column.present.nextSetBit(0); r >= 0; r = column.present.nextSetBit(r + 1)){
+                        bitmap[r >>> 3] |= 1 << (r & 7);
+                    }
+                    out.write(bitmap);
+                    out.write(column.values.getData(), 0, column.values.getLength());
+                }
+                return Arrays.copyOf(out.getData(), out.getLength());
+            }catch (IOException ioe){
+                throw new IllegalStateException(ioe);
+            }
+        }
+
+        /**
+         * @return a cell carrying the block, on the last row so that a scanner
+         * reopened after it resumes past the rows of the block
+         */
+        public Cell toCell(){
+            return new KeyValue(lastRow, FAMILY, QUALIFIER, build());
+        }
+
+        /**
+         * values of a column
+         */
+        private static class ColumnBuffer {
+            private final byte[] family;
+            private final byte[] qualifier;
+            private final BitSet present = new BitSet();
+            private final DataOutputBuffer values = new DataOutputBuffer();
+
+            ColumnBuffer(byte[] family, byte[] qualifier){
+                this.family = family;
+                this.qualifier = qualifier;
+            }
+
+            boolean matches(Cell cell){
+                return CellUtil.matchingColumn(cell, family, qualifier);
+            }
+
+            void add(int row, byte[] value, int offset, int length){
+                if(present.get(row)) return;
+                present.set(row);
+                try {
+                    WritableUtils.writeVInt(values, length);
+                    values.write(value, offset, length);
+                }catch (IOException ioe){
+                    throw new IllegalStateException(ioe);
+                }
+            }
+        }
+    }
+}
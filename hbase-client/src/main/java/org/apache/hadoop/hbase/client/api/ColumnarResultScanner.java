@@ -0,0 +1,132 @@
+package org.apache.hadoop.hbase.client.api;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * scanner over the {@link ColumnarBlock}s of a columnar parquet scan
+ *
+ * the rows are read either one by one as results, built from the block when
+ * asked for, or a block at a time.
+ * the results which are not blocks are passed through, so the scanner also reads
+ * the responses of servers which do not encode them by column.
+ */
+public class ColumnarResultScanner implements ResultScanner {
+
+    private final ResultScanner scanner;
+
+    private ColumnarBlock block = null;
+    private int next = 0;
+
+    public ColumnarResultScanner(ResultScanner scanner){
+        this.scanner = scanner;
+    }
+
+    @Override
+    public Result next() throws IOException {
+        while (true){
+            if(block != null && next < block.getRowCount()){
+                return block.getResult(next++);
+            }
+            block = null;
+            Result result = scanner.next();
+            if(result == null || !ColumnarBlock.isBlock(result)){
+                return result;
+            }
+            block = ColumnarBlock.fromResult(result);
+            next = 0;
+        }
+    }
+
+    /**
+     * @return the next block, null when the scan is done
+     * @throws IllegalStateException if the rows of the current block are not all read
+     */
+    public ColumnarBlock nextBlock() throws IOException {
+        if(block != null && next < block.getRowCount()){
+            throw new IllegalStateException((block.getRowCount() - next) + " rows of the block are not read");
+        }
+        block = null;
+        Result result = scanner.next();
+        if(result == null){
+            return null;
+        }
+        if(ColumnarBlock.isBlock(result)){
+            return ColumnarBlock.fromResult(result);
+        }
+        //a row sent by cells, as a block of one row
+        ColumnarBlock.Builder builder = new ColumnarBlock.Builder();
+        builder.add(result.listCells());
+        byte[] encoded = builder.build();
+        return ColumnarBlock.decode(encoded, 0, encoded.length);
+    }
+
+    @Override
+    public Result[] next(int nbRows) throws IOException {
+        List<Result> results = new ArrayList<>(nbRows);
+        for(int i = 0; i < nbRows; ++i){
+            Result result = next();
+            if(result == null) break;
+            results.add(result);
+        }
+        return results.toArray(new Result[results.size()]);
+    }
+
+    @Override
+    public void close() {
+        scanner.close();
+    }
+
+    @Override
+    public Iterator<Result> iterator() {
+        return new Iterator<Result>() {
+            // The next RowResult, possibly pre-read
+            Result next = null;
+
+            // return true if there is another item pending, false if there isn't.
+            // this method is where the actual advancing takes place, but you need
+            // to call next() to consume it. hasNext() will only advance if there
+            // isn't a pending next().
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = ColumnarResultScanner.this.next();
+                        return next != null;
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return true;
+            }
+
+            // get the pending next item and advance the iterator. returns null if
+            // there is no next item.
+            @Override
+            public Result next() {
+                // since hasNext() does the real advancing, we call this to determine
+                // if there is a next before proceeding.
+                if (!hasNext()) {
+                    return null;
+                }
+
+                // if we get to here, then hasNext() has given us an item to return.
+                // we want to return the item and then null out the next pointer, so
+                // we use a temporary variable.
+                Result temp = next;
+                next = null;
+                return temp;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -4,6 +4,11 @@ import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.SkipFilter;
+import org.apache.hadoop.hbase.filter.WhileMatchFilter;
+import org.apache.hadoop.hbase.util.Bytes;
 
 
 /**
@@ -49,6 +54,69 @@ public class Matcher {
     }
 
 
+    /**
+     * receive the rows of each response in a {@link ColumnarBlock} rather than a
+     * result per row, read them with a {@link ColumnarResultScanner}
+     * @param columnar
+     * @return
+     */
+    public Matcher setColumnar(boolean columnar){
+        if(columnar){
+            scan.setAttribute(HConstants.SCAN_COLUMNAR, Bytes.toBytes(true));
+        }else {
+            scan.setAttribute(HConstants.SCAN_COLUMNAR, null);
+        }
+        return this;
+    }
+
+    public boolean isColumnar(){
+        byte[] columnar = scan.getAttribute(HConstants.SCAN_COLUMNAR);
+        return columnar != null && Bytes.toBoolean(columnar);
+    }
+
+    /**
+     * let the servers scan ranges of each region on several threads,
+     * the rows still come in order. The ranges are scanned apart, so a filter keeping
+     * state across rows can not be scanned in parallel, see {@link #isCrossRowFilter(Filter)}
+     * @param parallel
+     * @return
+     * @throws IllegalArgumentException if the filter of the scan keeps state across rows
+     */
+    public Matcher setParallel(boolean parallel){
+        if(parallel){
+            if(isCrossRowFilter(scan.getFilter())){
+                throw new IllegalArgumentException("can not scan in parallel with the filter "
+                        + scan.getFilter() + ", it keeps state across rows");
+            }
+            scan.setAttribute(HConstants.SCAN_PARALLEL, Bytes.toBytes(true));
+        }else {
+            scan.setAttribute(HConstants.SCAN_PARALLEL, null);
+        }
+        return this;
+    }
+
+    /**
+     * @param filter may be null
+     * @return true if the filter, or one it wraps, keeps state across rows,
+     * like a {@link PageFilter} or a {@link WhileMatchFilter}
+     */
+    public static boolean isCrossRowFilter(Filter filter){
+        if(filter instanceof PageFilter || filter instanceof WhileMatchFilter){
+            return true;
+        }
+        if(filter instanceof SkipFilter){
+            return isCrossRowFilter(((SkipFilter) filter).getFilter());
+        }
+        if(filter instanceof FilterList){
+            for(Filter f : ((FilterList) filter).getFilters()){
+                if(isCrossRowFilter(f)){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public Scan getScan(){
         return scan;
     }
@@ -1,78 +1,275 @@
 package org.apache.hadoop.hbase.client.api;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Threads;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by wangxiaoyi on 15/6/30.
+ *
+ * client of the parquet tables
+ *
+ * the client holds one connection for its lifetime and must be closed.
+ * puts go through a {@link BufferedMutator} per table, which groups them by
+ * region server, and the async api sends batches on a pool with a bounded
+ * number of batches in flight. the failure of a buffered put is thrown by
+ * the next put, flush or close of its table.
  */
-public class PBaseClient {
+public class PBaseClient implements Closeable {
 
     private static final Log LOG = LogFactory.getLog(PBaseClient.class);
     private static final String PUT_KEY = "type";//for server to identify the parquet put
     private static final byte[] PUT_VALUE = "parquet".getBytes();
 
+    /** bytes of puts buffered per table before they are sent, the client write buffer if not set */
+    public static final String WRITE_BUFFER_SIZE_KEY = "hbase.pbase.client.write.buffer";
 
-    private Configuration conf;
+    /** batches of the async api sent at the same time, more batches wait for one to complete */
+    public static final String MAX_INFLIGHT_BATCHES_KEY = "hbase.pbase.client.max.inflight.batches";
+    public static final int DEFAULT_MAX_INFLIGHT_BATCHES = 16;
+
+
+    private final Configuration conf;
+    private final int maxInflightBatches;
+    private final Semaphore inflightBatches;
+
+    private volatile Connection connection = null;
+    private final ConcurrentMap<TableName, BufferedMutator> mutators = new ConcurrentHashMap<>();
+    private ExecutorService pool = null;
 
     public PBaseClient(Configuration conf) {
         this.conf = conf;
+        this.maxInflightBatches = Math.max(1, conf.getInt(MAX_INFLIGHT_BATCHES_KEY, DEFAULT_MAX_INFLIGHT_BATCHES));
+        this.inflightBatches = new Semaphore(maxInflightBatches);
     }
 
     /**
-     * put a record
-     * @param put
-     * @param tableName
+     * client on a connection already open, closed with the client
      */
-    public void put(Put put, TableName tableName) {
-        try (Connection connection = ConnectionFactory.createConnection(conf)) {
-            try (Table table = connection.getTable(tableName)) {
-                    put.setAttribute(PUT_KEY, PUT_VALUE);
-                    table.put(put);
+    @VisibleForTesting
+    PBaseClient(Configuration conf, Connection connection) {
+        this(conf);
+        this.connection = connection;
+    }
+
+    /**
+     * @return the connection shared by the calls of this client
+     */
+    private Connection getConnection() throws IOException {
+        if(connection == null){
+            synchronized (this){
+                if(connection == null){
+                    connection = ConnectionFactory.createConnection(conf);
+                }
+            }
+        }
+        return connection;
+    }
+
+    private BufferedMutator getMutator(TableName tableName) throws IOException {
+        BufferedMutator mutator = mutators.get(tableName);
+        if(mutator == null){
+            synchronized (mutators){
+                mutator = mutators.get(tableName);
+                if(mutator == null){
+                    BufferedMutatorParams params = new BufferedMutatorParams(tableName)
+                            .listener(new BufferedMutator.ExceptionListener() {
+                                @Override
+                                public void onException(RetriesExhaustedWithDetailsException e,
+                                                        BufferedMutator mutator)
+                                        throws RetriesExhaustedWithDetailsException {
+                                    for(int i = 0; i < e.getNumExceptions(); ++i){
+                                        LOG.error("failed to put " + Bytes.toStringBinary(e.getRow(i).getRow())
+                                                + " to " + mutator.getName() + ": " + e.getCause(i));
+                                    }
+                                    //surface the failure to the caller of mutate, flush or close
+                                    throw e;
+                                }
+                            });
+                    long writeBufferSize = conf.getLong(WRITE_BUFFER_SIZE_KEY, -1);
+                    if(writeBufferSize > 0){
+                        params.writeBufferSize(writeBufferSize);
+                    }
+                    mutator = getConnection().getBufferedMutator(params);
+                    mutators.put(tableName, mutator);
+                }
             }
-        }catch (IOException ioe){
-            LOG.error(ioe.getMessage());
         }
+        return mutator;
+    }
+
+    private synchronized ExecutorService getPool(){
+        if(pool == null){
+            pool = Executors.newFixedThreadPool(maxInflightBatches, Threads.newDaemonThreadFactory("pbase-client"));
+        }
+        return pool;
+    }
+
+    /**
+     * mark the puts for the server to write them to the parquet stores
+     */
+    private static void tag(List<Put> puts){
+        for(Put put : puts){
+            put.setAttribute(PUT_KEY, PUT_VALUE);
+        }
+    }
+
+    /**
+     * put a record, the record is buffered and sent with the next records of the table,
+     * when the write buffer is full, on {@link #flush(TableName)} or on {@link #close()}
+     * @param put
+     * @param tableName
+     * @throws IOException if the buffered records failed to be written when the buffer was full
+     */
+    public void put(Put put, TableName tableName) throws IOException {
+        put.setAttribute(PUT_KEY, PUT_VALUE);
+        getMutator(tableName).mutate(put);
+    }
+
+    /**
+     * bath put for better performance, the puts are sent by region server and
+     * the call returns once they are written
+     * @param puts
+     * @param tableName
+     * @throws IOException with the puts which failed to be written
+     */
+    public void batchPut(List<Put> puts, TableName tableName) throws IOException {
+        tag(puts);
+        BufferedMutator mutator = getMutator(tableName);
+        mutator.mutate(puts);
+        mutator.flush();
     }
 
     /**
-     * bath put for better performance
+     * send a batch of puts without waiting for them to be written,
+     * blocks while the max number of batches are in flight
      * @param puts
      * @param tableName
+     * @return future done once the puts are written, failed with the errors of the batch
      */
-    public void batchPut(List<Put> puts, TableName tableName){
-        try (Connection connection = ConnectionFactory.createConnection(conf)) {
-            try (Table table = connection.getTable(tableName)) {
-                for(Put put : puts) {
-                    put.setAttribute(PUT_KEY, PUT_VALUE);
-                    table.put(put);
+    public Future<Void> batchPutAsync(final List<Put> puts, final TableName tableName) throws IOException {
+        tag(puts);
+        final Connection connection = getConnection();
+        try {
+            inflightBatches.acquire();
+        }catch (InterruptedException ie){
+            throw new InterruptedIOException("interrupted while waiting for a batch to complete");
+        }
+        try {
+            return getPool().submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try (Table table = connection.getTable(tableName)) {
+                        table.batch(puts, new Object[puts.size()]);
+                        return null;
+                    }finally {
+                        inflightBatches.release();
+                    }
                 }
-            }
-        }catch (IOException ioe){
-            LOG.error(ioe.getMessage());
+            });
+        }catch (RuntimeException re){
+            inflightBatches.release();
+            throw re;
         }
     }
 
+    /**
+     * send the puts buffered for a table and wait for them to be written
+     * @param tableName
+     * @throws IOException with the puts which failed to be written
+     */
+    public void flush(TableName tableName) throws IOException {
+        BufferedMutator mutator = mutators.get(tableName);
+        if(mutator != null){
+            mutator.flush();
+        }
+    }
+
+
+    /**
+     * read a row, the server looks it up with the rowkey bloom filter and index
+     * of the parquet files
+     * @param get
+     * @param tableName
+     * @return the row, empty if it does not exist
+     * @throws IOException if the row failed to be read
+     */
+    public Result get(Get get, TableName tableName) throws IOException {
+        get.setAttribute(PUT_KEY, PUT_VALUE);
+        try (Table table = getConnection().getTable(tableName)) {
+            return table.get(get);
+        }
+    }
 
     /**
      * scan the database
      * @param matcher
-     * @return
+     * @return a {@link ColumnarResultScanner} if the matcher is columnar
+     * @throws IOException if the scanner failed to be opened
      */
-    public ResultScanner scan(Matcher matcher) {
-        try (Connection connection = ConnectionFactory.createConnection(conf)) {
-            try (Table table = connection.getTable(matcher.getTableName())) {
-                return table.getScanner(matcher.getScan());
+    public ResultScanner scan(Matcher matcher) throws IOException {
+        try (Table table = getConnection().getTable(matcher.getTableName())) {
+            ResultScanner scanner = table.getScanner(matcher.getScan());
+            return matcher.isColumnar() ? new ColumnarResultScanner(scanner) : scanner;
+        }
+    }
+
+    /**
+     * send the buffered puts, wait for the batches in flight and release the connection
+     * @throws IOException if the buffered puts failed to be written, once everything is released
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        synchronized (mutators){
+            for(BufferedMutator mutator : mutators.values()){
+                try {
+                    mutator.close();
+                }catch (IOException ioe){
+                    if(failure == null){
+                        failure = ioe;
+                    }
+                }
             }
-        } catch (IOException e) {
-            LOG.error(e.getMessage());
+            mutators.clear();
+        }
+        synchronized (this){
+            if(pool != null){
+                pool.shutdown();
+                try {
+                    while (!pool.awaitTermination(60, TimeUnit.SECONDS)){
+                        LOG.info("waiting for the batches in flight");
+                    }
+                }catch (InterruptedException ie){
+                    throw new InterruptedIOException("interrupted while waiting for the batches in flight");
+                }
+                pool = null;
+            }
+            if(connection != null){
+                connection.close();
+                connection = null;
+            }
+        }
+        if(failure != null){
+            throw failure;
         }
-        return null;
     }
 }
@@ -0,0 +1,65 @@
+package org.apache.hadoop.hbase.client.api;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * test the encoding of scan responses by column
+ */
+public class TestColumnarBlock {
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+
+    private static List<Cell> row(int i, boolean withAge){
+        byte[] row = Bytes.toBytes(String.format("%07d", i));
+        List<Cell> cells = new ArrayList<>();
+        if(withAge){
+            cells.add(new KeyValue(row, FAMILY, Bytes.toBytes("age"), 100l + i, Bytes.toBytes(i)));
+        }
+        cells.add(new KeyValue(row, FAMILY, Bytes.toBytes("name"), 100l + i, Bytes.toBytes("name" + i)));
+        return cells;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException{
+        ColumnarBlock.Builder builder = new ColumnarBlock.Builder();
+        for(int i = 0; i < 20; ++i){
+            builder.add(row(i, i % 3 != 0));
+        }
+        Assert.assertEquals(20, builder.getRowCount());
+        Result carrier = Result.create(new Cell[]{builder.toCell()});
+        Assert.assertTrue(ColumnarBlock.isBlock(carrier));
+        Assert.assertEquals("the block is on its last row", String.format("%07d", 19), Bytes.toString(carrier.getRow()));
+
+        ColumnarBlock block = ColumnarBlock.fromResult(carrier);
+        Assert.assertEquals(20, block.getRowCount());
+        Assert.assertEquals(2, block.getColumnCount());
+        for(int i = 0; i < 20; ++i){
+            Result result = block.getResult(i);
+            List<Cell> expected = row(i, i % 3 != 0);
+            Assert.assertEquals(expected.size(), result.size());
+            for(int c = 0; c < expected.size(); ++c){
+                Cell cell = result.rawCells()[c];
+                Assert.assertTrue(CellUtil.matchingRow(expected.get(c), cell));
+                Assert.assertTrue(CellUtil.matchingColumn(expected.get(c), cell));
+                Assert.assertTrue(CellUtil.matchingValue(expected.get(c), cell));
+                Assert.assertEquals(100l + i, cell.getTimestamp());
+            }
+        }
+    }
+
+    @Test
+    public void testPlainResultsPassThrough() throws IOException{
+        Result plain = Result.create(row(1, true));
+        Assert.assertFalse(ColumnarBlock.isBlock(plain));
+    }
+}
@@ -0,0 +1,47 @@
+package org.apache.hadoop.hbase.client.api;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.filter.SkipFilter;
+import org.apache.hadoop.hbase.filter.WhileMatchFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * test the parallel scans built by the matcher
+ */
+public class TestMatcher {
+
+    @Test
+    public void testCrossRowFilter(){
+        Filter prefix = new PrefixFilter(Bytes.toBytes("row"));
+        Assert.assertFalse(Matcher.isCrossRowFilter(null));
+        Assert.assertFalse(Matcher.isCrossRowFilter(prefix));
+        Assert.assertFalse(Matcher.isCrossRowFilter(new SkipFilter(prefix)));
+        Assert.assertTrue(Matcher.isCrossRowFilter(new PageFilter(10)));
+        Assert.assertTrue(Matcher.isCrossRowFilter(new WhileMatchFilter(prefix)));
+        Assert.assertTrue(Matcher.isCrossRowFilter(new FilterList(prefix,
+                new FilterList(FilterList.Operator.MUST_PASS_ONE, new PageFilter(10)))));
+    }
+
+    @Test
+    public void testSetParallel(){
+        Matcher matcher = new Matcher("test", null);
+        matcher.getScan().setFilter(new PrefixFilter(Bytes.toBytes("row")));
+        matcher.setParallel(true);
+        Assert.assertNotNull(matcher.getScan().getAttribute(HConstants.SCAN_PARALLEL));
+
+        matcher = new Matcher("test", null);
+        matcher.getScan().setFilter(new PageFilter(10));
+        try {
+            matcher.setParallel(true);
+            Assert.fail("the ranges of a parallel scan would each return a page");
+        }catch (IllegalArgumentException e){
+            Assert.assertNull(matcher.getScan().getAttribute(HConstants.SCAN_PARALLEL));
+        }
+    }
+}
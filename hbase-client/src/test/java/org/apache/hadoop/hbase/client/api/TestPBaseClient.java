@@ -31,7 +31,7 @@ public class TestPBaseClient {
 
 
     @Test
-    public void testPut(){
+    public void testPut() throws IOException{
 
         List<Put> puts = new LinkedList<>();
         for(int i = 1; i < 50; i++) {
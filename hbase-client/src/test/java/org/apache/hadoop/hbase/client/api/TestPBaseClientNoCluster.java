@@ -0,0 +1,160 @@
+package org.apache.hadoop.hbase.client.api;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Row;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * test the client of the parquet tables on a mocked connection
+ */
+public class TestPBaseClientNoCluster {
+
+    private static final TableName TABLE = TableName.valueOf("people");
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+
+    private Connection connection;
+    private BufferedMutator mutator;
+    private Table table;
+    private PBaseClient client;
+
+    @Before
+    public void setUp() throws IOException{
+        Configuration conf = HBaseConfiguration.create();
+        conf.setInt(PBaseClient.MAX_INFLIGHT_BATCHES_KEY, 2);
+        connection = Mockito.mock(Connection.class);
+        mutator = Mockito.mock(BufferedMutator.class);
+        table = Mockito.mock(Table.class);
+        Mockito.when(connection.getBufferedMutator(Mockito.any(BufferedMutatorParams.class))).thenReturn(mutator);
+        Mockito.when(connection.getTable(TABLE)).thenReturn(table);
+        client = new PBaseClient(conf, connection);
+    }
+
+    @After
+    public void tearDown() throws IOException{
+        client.close();
+        Mockito.verify(connection).close();
+    }
+
+    private static List<Put> puts(int first, int count){
+        List<Put> puts = new ArrayList<>();
+        for(int i = first; i < first + count; ++i){
+            Put put = new Put(Bytes.toBytes(String.format("%07d", i)));
+            put.addColumn(FAMILY, Bytes.toBytes("name"), Bytes.toBytes("name" + i));
+            puts.add(put);
+        }
+        return puts;
+    }
+
+    private static void assertTagged(List<Put> puts){
+        for(Put put : puts){
+            Assert.assertArrayEquals(Bytes.toBytes("parquet"), put.getAttribute("type"));
+        }
+    }
+
+    @Test
+    public void testBatchPut() throws IOException{
+        List<Put> puts = puts(0, 10);
+        client.batchPut(puts, TABLE);
+        assertTagged(puts);
+        Mockito.verify(mutator).mutate(puts);
+        Mockito.verify(mutator).flush();
+    }
+
+    @Test
+    public void testFailedBatchPutThrows() throws IOException{
+        Mockito.doThrow(new IOException("injected")).when(mutator).flush();
+        try {
+            client.batchPut(puts(0, 10), TABLE);
+            Assert.fail("a failed batch is not reported as written");
+        }catch (IOException ioe){
+            Assert.assertEquals("injected", ioe.getMessage());
+        }
+    }
+
+    @Test
+    public void testBatchPutAsync() throws Exception{
+        final AtomicInteger inflight = new AtomicInteger();
+        final AtomicInteger maxInflight = new AtomicInteger();
+        final AtomicInteger written = new AtomicInteger();
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                int current = inflight.incrementAndGet();
+                synchronized (maxInflight){
+                    maxInflight.set(Math.max(maxInflight.get(), current));
+                }
+                Thread.sleep(20);
+                List<?> puts = (List<?>) invocation.getArguments()[0];
+                if(Bytes.equals(((Put) puts.get(0)).getRow(), Bytes.toBytes(String.format("%07d", 50)))){
+                    inflight.decrementAndGet();
+                    throw new IOException("injected");
+                }
+                written.addAndGet(puts.size());
+                inflight.decrementAndGet();
+                return null;
+            }
+        }).when(table).batch(Mockito.anyListOf(Row.class), Mockito.any(Object[].class));
+
+        List<Future<Void>> futures = new ArrayList<>();
+        for(int batch = 0; batch < 8; ++batch){
+            List<Put> puts = puts(batch * 10, 10);
+            futures.add(client.batchPutAsync(puts, TABLE));
+            assertTagged(puts);
+        }
+        int failed = 0;
+        for(Future<Void> future : futures){
+            try {
+                future.get();
+            }catch (ExecutionException ee){
+                Assert.assertEquals("injected", ee.getCause().getMessage());
+                failed++;
+            }
+        }
+        Assert.assertEquals("the failure of a batch is the one of its future", 1, failed);
+        Assert.assertEquals(70, written.get());
+        Assert.assertTrue("at most 2 batches in flight, got " + maxInflight.get(), maxInflight.get() <= 2);
+        Mockito.verify(table, Mockito.times(8)).close();
+    }
+
+    @Test
+    public void testFailedReadsThrow() throws IOException{
+        Mockito.when(table.get(Mockito.any(Get.class))).thenThrow(new IOException("injected get"));
+        Mockito.when(table.getScanner(Mockito.any(Scan.class))).thenThrow(new IOException("injected scan"));
+        try {
+            client.get(new Get(Bytes.toBytes("row")), TABLE);
+            Assert.fail("a failed get is not an empty row");
+        }catch (IOException ioe){
+            Assert.assertEquals("injected get", ioe.getMessage());
+        }
+        try {
+            client.scan(new Matcher(TABLE.getNameAsString(), null));
+            Assert.fail("a failed scan is not a missing scanner");
+        }catch (IOException ioe){
+            Assert.assertEquals("injected scan", ioe.getMessage());
+        }
+        Mockito.verify(table, Mockito.times(2)).close();
+    }
+}
@@ -405,6 +405,12 @@ public final class HConstants {
   /** schema for scanner to scan the data in parquet */
   public static final String SCAN_TABLE_SCHEMA = "scan_table_schema";
 
+  /** set on a parquet scan for the server to send the rows of a response as a columnar block */
+  public static final String SCAN_COLUMNAR = "scan_columnar";
+
+  /** set on a parquet scan for the server to scan ranges of the region at the same time */
+  public static final String SCAN_PARALLEL = "scan_parallel";
+
   /** The RegionInfo qualifier as a string */
   public static final String REGIONINFO_QUALIFIER_STR = "regioninfo";
 
@@ -1137,6 +1143,18 @@ public final class HConstants {
   public static final String ROW_KEY = "rowkey";
   public static final String TIME_STAMP = "timestamp";
 
+  /** max sequence id of the edits in a parquet file */
+  public static final String MAX_SEQ_ID = "maxseqid";
+
+  /** rowkey bloom filter of a parquet file */
+  public static final String ROW_BLOOM = "rowbloom";
+
+  /** sparse rowkey index of a parquet file, the ordinal of every n-th row */
+  public static final String ROW_INDEX = "rowindex";
+
+  /** first and last rowkey of each row group of a parquet file */
+  public static final String ROW_GROUP_KEYS = "rowgroupkeys";
+
 
   private HConstants() {
     // Can't be instantiated with this ctor.
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.hadoop.hbase.metrics.BaseSource;
+
+/**
+ * Interface of the source that will export metrics about the parquet stores of the region server:
+ * their flushes, their files and the reads of the row groups and column chunks of the files.
+ */
+public interface MetricsPStoreSource extends BaseSource {
+
+  /**
+   * The name of the metrics
+   */
+  String METRICS_NAME = "Parquet";
+
+  /**
+   * The name of the metrics context that metrics will be under.
+   */
+  String METRICS_CONTEXT = "regionserver";
+
+  /**
+   * Description
+   */
+  String METRICS_DESCRIPTION = "Metrics about the parquet stores of HBase RegionServer";
+
+  /**
+   * The name of the metrics context that metrics will be under in jmx
+   */
+  String METRICS_JMX_CONTEXT = "RegionServer,sub=" + METRICS_NAME;
+
+  String FLUSH_TIME = "flushTime";
+  String FLUSH_TIME_DESC = "Time a flush of a parquet memstore to a file took.";
+  String FLUSH_SIZE = "flushSize";
+  String FLUSH_SIZE_DESC = "Size (in bytes) of the parquet files written by flushes.";
+  String FLUSHED_ROWS = "flushedRows";
+  String FLUSHED_ROWS_DESC = "Number of rows flushed to parquet files.";
+  String STORE_FILE_COUNT = "storeFileCount";
+  String STORE_FILE_COUNT_DESC =
+      "Number of parquet files of a store after its files changed.";
+  String MEMSTORE_SNAPSHOT_SIZE = "memStoreSnapshotSize";
+  String MEMSTORE_SNAPSHOT_SIZE_DESC = "Size (in bytes) of the parquet memstore snapshots.";
+  String MEMSTORE_SNAPSHOT_ROWS = "memStoreSnapshotRows";
+  String MEMSTORE_SNAPSHOT_ROWS_DESC = "Number of rows of the parquet memstore snapshots.";
+  String SCANNED_ROWS = "scannedRows";
+  String SCANNED_ROWS_DESC = "Number of rows returned by the scanners of the parquet stores.";
+  String ROW_GROUPS_READ = "rowGroupsRead";
+  String ROW_GROUPS_READ_DESC = "Number of row groups of parquet files read.";
+  String ROW_GROUPS_SKIPPED = "rowGroupsSkipped";
+  String ROW_GROUPS_SKIPPED_DESC =
+      "Number of row groups of parquet files skipped by their keys or statistics.";
+  String DECODE_TIME = "decodeTime";
+  String DECODE_TIME_DESC = "Time the rows of a row group took to decode.";
+  String BYTES_READ = "bytesRead";
+  String BYTES_READ_DESC = "Size (in bytes) of the column chunks read from parquet files.";
+  String FOOTER_CACHE_HIT = "footerCacheHitCount";
+  String FOOTER_CACHE_HIT_DESC = "Number of parquet footers found in the cache.";
+  String FOOTER_CACHE_MISS = "footerCacheMissCount";
+  String FOOTER_CACHE_MISS_DESC = "Number of parquet footers read from the files.";
+  String PREFETCH_HIT = "prefetchHitCount";
+  String PREFETCH_HIT_DESC = "Number of row groups read ahead before they were needed.";
+  String PREFETCH_MISS = "prefetchMissCount";
+  String PREFETCH_MISS_DESC = "Number of row groups a reader had to wait for or read itself.";
+
+  /**
+   * Add the time and size of a flush.
+   */
+  void updateFlush(long time, long size, long rows);
+
+  /**
+   * Add the number of parquet files of a store.
+   */
+  void updateStoreFileCount(int count);
+
+  /**
+   * Add the size and rows of a memstore snapshot.
+   */
+  void updateMemStoreSnapshot(long size, long rows);
+
+  /**
+   * Increment the number of rows returned by the scanners.
+   */
+  void incrementScannedRows(long rows);
+
+  void incrementRowGroupsRead(long count);
+
+  void incrementRowGroupsSkipped(long count);
+
+  /**
+   * Add the time it took to decode the rows of a row group.
+   */
+  void updateDecodeTime(long time);
+
+  /**
+   * Add the bytes of the column chunks read from the files.
+   */
+  void incrementBytesRead(long bytes);
+
+  void incrementFooterCache(long hits, long misses);
+
+  void incrementPrefetch(long hits, long misses);
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.metrics.BaseSourceImpl;
+import org.apache.hadoop.metrics2.MetricHistogram;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+
+/**
+ * Class that transitions metrics from MetricsPStore into the metrics subsystem.
+ *
+ * Implements BaseSource through BaseSourceImpl, following the pattern.
+ * @see org.apache.hadoop.hbase.regionserver.MetricsPStore
+ */
+@InterfaceAudience.Private
+public class MetricsPStoreSourceImpl extends BaseSourceImpl implements MetricsPStoreSource {
+
+  private final MetricHistogram flushTimeHisto;
+  private final MetricHistogram flushSizeHisto;
+  private final MutableCounterLong flushedRows;
+  private final MetricHistogram storeFileCountHisto;
+  private final MetricHistogram memStoreSnapshotSizeHisto;
+  private final MetricHistogram memStoreSnapshotRowsHisto;
+  private final MutableCounterLong scannedRows;
+  private final MutableCounterLong rowGroupsRead;
+  private final MutableCounterLong rowGroupsSkipped;
+  private final MetricHistogram decodeTimeHisto;
+  private final MutableCounterLong bytesRead;
+  private final MutableCounterLong footerCacheHit;
+  private final MutableCounterLong footerCacheMiss;
+  private final MutableCounterLong prefetchHit;
+  private final MutableCounterLong prefetchMiss;
+
+  public MetricsPStoreSourceImpl() {
+    this(METRICS_NAME, METRICS_DESCRIPTION, METRICS_CONTEXT, METRICS_JMX_CONTEXT);
+  }
+
+  public MetricsPStoreSourceImpl(String metricsName,
+                                 String metricsDescription,
+                                 String metricsContext,
+                                 String metricsJmxContext) {
+    super(metricsName, metricsDescription, metricsContext, metricsJmxContext);
+
+    //Create and store the metrics that will be used.
+    flushTimeHisto = this.getMetricsRegistry().newHistogram(FLUSH_TIME, FLUSH_TIME_DESC);
+    flushSizeHisto = this.getMetricsRegistry().newHistogram(FLUSH_SIZE, FLUSH_SIZE_DESC);
+    flushedRows = this.getMetricsRegistry().newCounter(FLUSHED_ROWS, FLUSHED_ROWS_DESC, 0L);
+    storeFileCountHisto =
+        this.getMetricsRegistry().newHistogram(STORE_FILE_COUNT, STORE_FILE_COUNT_DESC);
+    memStoreSnapshotSizeHisto = this.getMetricsRegistry()
+        .newHistogram(MEMSTORE_SNAPSHOT_SIZE, MEMSTORE_SNAPSHOT_SIZE_DESC);
+    memStoreSnapshotRowsHisto = this.getMetricsRegistry()
+        .newHistogram(MEMSTORE_SNAPSHOT_ROWS, MEMSTORE_SNAPSHOT_ROWS_DESC);
+    scannedRows = this.getMetricsRegistry().newCounter(SCANNED_ROWS, SCANNED_ROWS_DESC, 0L);
+    rowGroupsRead =
+        this.getMetricsRegistry().newCounter(ROW_GROUPS_READ, ROW_GROUPS_READ_DESC, 0L);
+    rowGroupsSkipped =
+        this.getMetricsRegistry().newCounter(ROW_GROUPS_SKIPPED, ROW_GROUPS_SKIPPED_DESC, 0L);
+    decodeTimeHisto = this.getMetricsRegistry().newHistogram(DECODE_TIME, DECODE_TIME_DESC);
+    bytesRead = this.getMetricsRegistry().newCounter(BYTES_READ, BYTES_READ_DESC, 0L);
+    footerCacheHit =
+        this.getMetricsRegistry().newCounter(FOOTER_CACHE_HIT, FOOTER_CACHE_HIT_DESC, 0L);
+    footerCacheMiss =
+        this.getMetricsRegistry().newCounter(FOOTER_CACHE_MISS, FOOTER_CACHE_MISS_DESC, 0L);
+    prefetchHit = this.getMetricsRegistry().newCounter(PREFETCH_HIT, PREFETCH_HIT_DESC, 0L);
+    prefetchMiss = this.getMetricsRegistry().newCounter(PREFETCH_MISS, PREFETCH_MISS_DESC, 0L);
+  }
+
+  @Override
+  public void updateFlush(long time, long size, long rows) {
+    flushTimeHisto.add(time);
+    flushSizeHisto.add(size);
+    flushedRows.incr(rows);
+  }
+
+  @Override
+  public void updateStoreFileCount(int count) {
+    storeFileCountHisto.add(count);
+  }
+
+  @Override
+  public void updateMemStoreSnapshot(long size, long rows) {
+    memStoreSnapshotSizeHisto.add(size);
+    memStoreSnapshotRowsHisto.add(rows);
+  }
+
+  @Override
+  public void incrementScannedRows(long rows) {
+    scannedRows.incr(rows);
+  }
+
+  @Override
+  public void incrementRowGroupsRead(long count) {
+    rowGroupsRead.incr(count);
+  }
+
+  @Override
+  public void incrementRowGroupsSkipped(long count) {
+    rowGroupsSkipped.incr(count);
+  }
+
+  @Override
+  public void updateDecodeTime(long time) {
+    decodeTimeHisto.add(time);
+  }
+
+  @Override
+  public void incrementBytesRead(long bytes) {
+    bytesRead.incr(bytes);
+  }
+
+  @Override
+  public void incrementFooterCache(long hits, long misses) {
+    footerCacheHit.incr(hits);
+    footerCacheMiss.incr(misses);
+  }
+
+  @Override
+  public void incrementPrefetch(long hits, long misses) {
+    prefetchHit.incr(hits);
+    prefetchMiss.incr(misses);
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package parquet.filter2.compat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import parquet.column.statistics.Statistics;
+import parquet.hadoop.metadata.BlockMetaData;
+import parquet.hadoop.metadata.ColumnChunkMetaData;
+import parquet.hadoop.metadata.ColumnPath;
+import parquet.io.api.Binary;
+
+import static parquet.Preconditions.checkNotNull;
+
+/**
+ * Drops the row groups of a file whose records are sorted by a binary key column
+ * and which can not contain any key in [startKey, stopKey).
+ * <p/>
+ * Binary statistics are ordered with a signed byte comparison, so the min/max of a
+ * row group are not reliable bounds for an unsigned (lexicographic) key range.
+ * They are however real values of their row group: since the file is sorted, every
+ * key of a row group sorts after any value of the previous row group and before any
+ * value of the next one. Those neighbour values are used as the bounds instead.
+ * <p/>
+ * Row groups without statistics on the key column are never dropped.
+ */
+public class SortedKeyRowGroupFilter {
+
+    /**
+     * @param blocks    row groups of the file, in file order
+     * @param keyColumn name of the sorted key column
+     * @param startKey  inclusive start key, null or empty for no lower bound
+     * @param stopKey   exclusive stop key, null or empty for no upper bound
+     * @return the row groups which may contain keys in the range
+     */
+    public static List<BlockMetaData> filterRowGroups(List<BlockMetaData> blocks, String keyColumn,
+                                                      byte[] startKey, byte[] stopKey) {
+        checkNotNull(blocks, "blocks");
+        checkNotNull(keyColumn, "keyColumn");
+        boolean hasStart = startKey != null && startKey.length > 0;
+        boolean hasStop = stopKey != null && stopKey.length > 0;
+        if (!hasStart && !hasStop) {
+            return blocks;
+        }
+
+        ColumnPath keyPath = ColumnPath.get(keyColumn);
+        List<BlockMetaData> filteredBlocks = new ArrayList<BlockMetaData>(blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            if (hasStop && i > 0) {
+                // every key of this group is greater than any value of the previous group
+                byte[] lower = largestValue(blocks.get(i - 1), keyPath);
+                if (lower != null && compare(lower, stopKey) >= 0) {
+                    break;// the following groups are beyond the stop key as well
+                }
+            }
+            if (hasStart && i < blocks.size() - 1) {
+                // every key of this group is smaller than any value of the next group
+                byte[] upper = smallestValue(blocks.get(i + 1), keyPath);
+                if (upper != null && compare(upper, startKey) <= 0) {
+                    continue;
+                }
+            }
+            filteredBlocks.add(blocks.get(i));
+        }
+        return filteredBlocks;
+    }
+
+    /**
+     * @param blocks    row groups of the file, in file order
+     * @param keyColumn name of the sorted key column
+     * @param key       the key to look for
+     * @return index of the first row group which may contain key or a greater key,
+     * every row group before it only holds smaller keys
+     */
+    public static int findRowGroup(List<BlockMetaData> blocks, String keyColumn, byte[] key) {
+        checkNotNull(blocks, "blocks");
+        checkNotNull(keyColumn, "keyColumn");
+        if (key == null || key.length == 0) {
+            return 0;
+        }
+        ColumnPath keyPath = ColumnPath.get(keyColumn);
+        for (int i = 0; i < blocks.size() - 1; i++) {
+            byte[] upper = smallestValue(blocks.get(i + 1), keyPath);
+            if (upper == null || compare(upper, key) > 0) {
+                return i;
+            }
+        }
+        return Math.max(0, blocks.size() - 1);
+    }
+
+    /**
+     * @param blocks    row groups of the file, in file order
+     * @param keyColumn name of the sorted key column
+     * @return a key of each row group but the first, in order, every key of the previous
+     * row groups is smaller. Row groups without statistics on the key column have none.
+     */
+    public static List<byte[]> getRowGroupBoundaries(List<BlockMetaData> blocks, String keyColumn) {
+        checkNotNull(blocks, "blocks");
+        checkNotNull(keyColumn, "keyColumn");
+        ColumnPath keyPath = ColumnPath.get(keyColumn);
+        List<byte[]> boundaries = new ArrayList<byte[]>(Math.max(0, blocks.size() - 1));
+        for (int i = 1; i < blocks.size(); i++) {
+            byte[] lower = smallestValue(blocks.get(i), keyPath);
+            if (lower != null) {
+                boundaries.add(lower);
+            }
+        }
+        return boundaries;
+    }
+
+    private static byte[] smallestValue(BlockMetaData block, ColumnPath keyPath) {
+        byte[][] values = statisticValues(block, keyPath);
+        if (values == null) return null;
+        return compare(values[0], values[1]) <= 0 ? values[0] : values[1];
+    }
+
+    private static byte[] largestValue(BlockMetaData block, ColumnPath keyPath) {
+        byte[][] values = statisticValues(block, keyPath);
+        if (values == null) return null;
+        return compare(values[0], values[1]) >= 0 ? values[0] : values[1];
+    }
+
+    /**
+     * @return min and max of the key column chunk, null if not available
+     */
+    private static byte[][] statisticValues(BlockMetaData block, ColumnPath keyPath) {
+        for (ColumnChunkMetaData column : block.getColumns()) {
+            if (keyPath.equals(column.getPath())) {
+                Statistics stats = column.getStatistics();
+                if (stats == null || stats.isEmpty()
+                        || !(stats.genericGetMin() instanceof Binary)
+                        || stats.getNumNulls() == column.getValueCount()) {
+                    return null;
+                }
+                return new byte[][]{
+                        ((Binary) stats.genericGetMin()).getBytes(),
+                        ((Binary) stats.genericGetMax()).getBytes()};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * unsigned lexicographic comparison, the order of the keys in the file
+     */
+    static int compare(byte[] left, byte[] right) {
+        int length = Math.min(left.length, right.length);
+        for (int i = 0; i < length; i++) {
+            int a = left[i] & 0xff;
+            int b = right[i] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return left.length - right.length;
+    }
+
+    private SortedKeyRowGroupFilter() {
+    }
+}
@@ -0,0 +1,338 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package parquet.hadoop;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import parquet.column.ColumnDescriptor;
+import parquet.io.api.Binary;
+import parquet.schema.MessageType;
+import parquet.schema.PrimitiveType.PrimitiveTypeName;
+
+/**
+ * A batch of rows of a flat parquet schema decoded column by column.
+ * <p/>
+ * Each column is held in a {@link ColumnVector} of primitive arrays; binary values are
+ * slices of one shared byte array per column. The vectors are reused from one batch to
+ * the next, so a batch is only valid until the next call to the reader that filled it.
+ * <p/>
+ * Only the rows in [{@link #getFrom()}, {@link #getTo()}) are visible to the consumer.
+ */
+public class ColumnBatch {
+
+    private final MessageType schema;
+    private final List<ColumnDescriptor> columns;
+    private final ColumnVector[] vectors;
+
+    private int rowCount = 0;
+    private int from = 0;
+    private int to = 0;
+
+    public ColumnBatch(MessageType schema, int capacity) {
+        this.schema = schema;
+        this.columns = schema.getColumns();
+        this.vectors = new ColumnVector[columns.size()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = new ColumnVector(columns.get(i), capacity);
+        }
+    }
+
+    public MessageType getSchema() {
+        return schema;
+    }
+
+    public List<ColumnDescriptor> getColumns() {
+        return columns;
+    }
+
+    public int getColumnCount() {
+        return vectors.length;
+    }
+
+    public ColumnVector getVector(int column) {
+        return vectors[column];
+    }
+
+    /**
+     * @return the vector of the top level field, null if the batch does not hold it
+     */
+    public ColumnVector getVector(String field) {
+        for (int i = 0; i < vectors.length; i++) {
+            String[] path = columns.get(i).getPath();
+            if (path.length == 1 && path[0].equals(field)) {
+                return vectors[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return number of decoded rows, visible or not
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return first visible row
+     */
+    public int getFrom() {
+        return from;
+    }
+
+    /**
+     * @return the row after the last visible one
+     */
+    public int getTo() {
+        return to;
+    }
+
+    /**
+     * @return number of visible rows
+     */
+    public int size() {
+        return to - from;
+    }
+
+    public boolean isEmpty() {
+        return to <= from;
+    }
+
+    /**
+     * restricts the visible rows of the batch
+     */
+    public void setRange(int from, int to) {
+        if (from < 0 || to > rowCount || from > to) {
+            throw new IllegalArgumentException("invalid range [" + from + ", " + to + ") of " + rowCount + " rows");
+        }
+        this.from = from;
+        this.to = to;
+    }
+
+    void reset(int rowCount) {
+        this.rowCount = rowCount;
+        this.from = 0;
+        this.to = rowCount;
+        for (ColumnVector vector : vectors) {
+            vector.reset(rowCount);
+        }
+    }
+
+    /**
+     * keeps the first rows only, once the rows not selected have been dropped
+     */
+    void truncate(int rowCount) {
+        if (rowCount > this.rowCount) {
+            throw new IllegalArgumentException("can not truncate " + this.rowCount + " rows to " + rowCount);
+        }
+        this.rowCount = rowCount;
+        this.from = 0;
+        this.to = rowCount;
+    }
+
+    /**
+     * values of one column, indexed by row
+     */
+    public static class ColumnVector {
+
+        private final ColumnDescriptor descriptor;
+        private final PrimitiveTypeName type;
+
+        private boolean[] nulls;
+        private boolean[] booleans;
+        private int[] ints;
+        private long[] longs;
+        private float[] floats;
+        private double[] doubles;
+
+        // binary values are [offsets[i], offsets[i] + lengths[i]) of bytes
+        private byte[] bytes;
+        private int[] offsets;
+        private int[] lengths;
+        private int bytesUsed;
+
+        ColumnVector(ColumnDescriptor descriptor, int capacity) {
+            this.descriptor = descriptor;
+            this.type = descriptor.getType();
+            this.nulls = new boolean[capacity];
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            switch (type) {
+                case BOOLEAN:
+                    booleans = new boolean[capacity];
+                    break;
+                case INT32:
+                    ints = new int[capacity];
+                    break;
+                case INT64:
+                    longs = new long[capacity];
+                    break;
+                case FLOAT:
+                    floats = new float[capacity];
+                    break;
+                case DOUBLE:
+                    doubles = new double[capacity];
+                    break;
+                default:
+                    offsets = new int[capacity];
+                    lengths = new int[capacity];
+                    if (bytes == null) {
+                        bytes = new byte[capacity * 16];
+                    }
+                    break;
+            }
+        }
+
+        void reset(int rowCount) {
+            if (nulls.length < rowCount) {
+                nulls = new boolean[rowCount];
+                allocate(rowCount);
+            } else {
+                Arrays.fill(nulls, 0, rowCount, false);
+            }
+            bytesUsed = 0;
+        }
+
+        public ColumnDescriptor getDescriptor() {
+            return descriptor;
+        }
+
+        public PrimitiveTypeName getType() {
+            return type;
+        }
+
+        public boolean isNull(int row) {
+            return nulls[row];
+        }
+
+        public boolean getBoolean(int row) {
+            return booleans[row];
+        }
+
+        public int getInt(int row) {
+            return ints[row];
+        }
+
+        public long getLong(int row) {
+            return longs[row];
+        }
+
+        public float getFloat(int row) {
+            return floats[row];
+        }
+
+        public double getDouble(int row) {
+            return doubles[row];
+        }
+
+        /**
+         * @return backing array of the binary values, see {@link #getOffset(int)} and {@link #getLength(int)}
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public int getOffset(int row) {
+            return offsets[row];
+        }
+
+        public int getLength(int row) {
+            return lengths[row];
+        }
+
+        /**
+         * @return a copy of the binary value of the row
+         */
+        public byte[] getBinary(int row) {
+            return Arrays.copyOfRange(bytes, offsets[row], offsets[row] + lengths[row]);
+        }
+
+        void setNull(int row) {
+            nulls[row] = true;
+            if (lengths != null) {
+                offsets[row] = bytesUsed;
+                lengths[row] = 0;
+            }
+        }
+
+        void setBoolean(int row, boolean value) {
+            booleans[row] = value;
+        }
+
+        void setInt(int row, int value) {
+            ints[row] = value;
+        }
+
+        void setLong(int row, long value) {
+            longs[row] = value;
+        }
+
+        void setFloat(int row, float value) {
+            floats[row] = value;
+        }
+
+        void setDouble(int row, double value) {
+            doubles[row] = value;
+        }
+
+        /**
+         * move the value of a row to a previous row, the binary value is not copied
+         */
+        void moveRow(int from, int to) {
+            nulls[to] = nulls[from];
+            switch (type) {
+                case BOOLEAN:
+                    booleans[to] = booleans[from];
+                    break;
+                case INT32:
+                    ints[to] = ints[from];
+                    break;
+                case INT64:
+                    longs[to] = longs[from];
+                    break;
+                case FLOAT:
+                    floats[to] = floats[from];
+                    break;
+                case DOUBLE:
+                    doubles[to] = doubles[from];
+                    break;
+                default:
+                    offsets[to] = offsets[from];
+                    lengths[to] = lengths[from];
+                    break;
+            }
+        }
+
+        void setBinary(int row, Binary value) {
+            ByteBuffer buffer = value.toByteBuffer();
+            int length = buffer.remaining();
+            if (bytesUsed + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, bytesUsed + length));
+            }
+            buffer.get(bytes, bytesUsed, length);
+            offsets[row] = bytesUsed;
+            lengths[row] = length;
+            bytesUsed += length;
+        }
+    }
+}
@@ -0,0 +1,516 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package parquet.hadoop;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import parquet.column.ColumnDescriptor;
+import parquet.column.ColumnReader;
+import parquet.column.impl.ColumnReadStoreImpl;
+import parquet.column.page.PageReadStore;
+import parquet.filter2.compat.SortedKeyRowGroupFilter;
+import parquet.filter2.predicate.FilterPredicate;
+import parquet.filter2.recordlevel.IncrementallyUpdatedFilterPredicate;
+import parquet.filter2.recordlevel.IncrementallyUpdatedFilterPredicate.ValueInspector;
+import parquet.filter2.recordlevel.IncrementallyUpdatedFilterPredicateBuilder;
+import parquet.filter2.recordlevel.IncrementallyUpdatedFilterPredicateEvaluator;
+import parquet.filter2.recordlevel.IncrementallyUpdatedFilterPredicateResetter;
+import parquet.hadoop.metadata.BlockMetaData;
+import parquet.hadoop.metadata.ColumnPath;
+import parquet.io.ParquetDecodingException;
+import parquet.io.api.Binary;
+import parquet.io.api.Converter;
+import parquet.io.api.GroupConverter;
+import parquet.io.api.PrimitiveConverter;
+import parquet.schema.MessageType;
+
+/**
+ * Reads the row groups of a parquet file with a flat schema into {@link ColumnBatch}es.
+ * <p/>
+ * Values are decoded column by column straight from the pages of the row group,
+ * without assembling a record per row. A batch never spans two row groups.
+ * <p/>
+ * Two batches are used in turn, so a returned batch stays valid until the second
+ * following call to {@link #nextBatch()}; a consumer may look one batch ahead.
+ * <p/>
+ * With a filter, the columns of the predicate are decoded first and the values of the
+ * rows not matching it are skipped in the other columns instead of being decoded.
+ */
+public class ColumnBatchReader implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ColumnBatchReader.class);
+
+    private final MessageType requestedSchema;
+    private final List<ColumnDescriptor> columns;
+    private final ParquetFileReader fileReader;
+    private final List<BlockMetaData> blocks;
+    private final GroupConverter converter;
+    private final ColumnBatch[] batches;
+    private final int batchSize;
+    private int current = 0;
+    // index of the next row group to read
+    private int nextBlock = 0;
+
+    private ColumnReader[] columnReaders;
+    private long rowsLeftInGroup = 0;
+
+    // predicate on the rows, null to return all of them
+    private IncrementallyUpdatedFilterPredicate predicate;
+    // inspectors of the predicate by column, null for the columns the predicate does not use
+    private List<ValueInspector>[] inspectors;
+    // inspectors of the columns of the predicate which are not read, always null
+    private final List<ValueInspector> missingInspectors = new ArrayList<ValueInspector>();
+    private boolean[] selected;
+    private long total = 0;
+    private long read = 0;
+    // time spent decoding the current row group, reported when it is done
+    private long decodeNanos = 0;
+
+    /**
+     * @param conf            configuration
+     * @param file            the parquet file
+     * @param requestedSchema the flat projection to read
+     * @param blocks          the row groups to read
+     * @param batchSize       max rows per batch
+     */
+    public ColumnBatchReader(Configuration conf, Path file, MessageType requestedSchema,
+                             List<BlockMetaData> blocks, int batchSize) throws IOException {
+        this(conf, file, requestedSchema, blocks, batchSize, null);
+    }
+
+    /**
+     * @param conf            configuration
+     * @param file            the parquet file
+     * @param requestedSchema the flat projection to read
+     * @param blocks          the row groups to read
+     * @param batchSize       max rows per batch
+     * @param chunkCache      where the column chunks are looked up before reading them from the file, may be null
+     */
+    public ColumnBatchReader(Configuration conf, Path file, MessageType requestedSchema,
+                             List<BlockMetaData> blocks, int batchSize, ColumnChunkCache chunkCache) throws IOException {
+        this.requestedSchema = requestedSchema;
+        this.columns = requestedSchema.getColumns();
+        for (ColumnDescriptor column : columns) {
+            if (column.getPath().length != 1 || column.getMaxRepetitionLevel() != 0) {
+                throw new ParquetDecodingException("column batches only support flat schemas, found "
+                        + column + " in " + file);
+            }
+        }
+        this.batchSize = batchSize;
+        this.batches = new ColumnBatch[]{
+                new ColumnBatch(requestedSchema, batchSize), new ColumnBatch(requestedSchema, batchSize)};
+        this.converter = new SkippingGroupConverter(columns.size());
+        this.fileReader = new ParquetFileReader(conf, file, blocks, columns, chunkCache);
+        this.blocks = blocks;
+        for (BlockMetaData block : blocks) {
+            total += block.getRowCount();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("ColumnBatchReader initialized will read a total of " + total + " records from " + file);
+        }
+    }
+
+    public MessageType getRequestedSchema() {
+        return requestedSchema;
+    }
+
+    /**
+     * read the next row groups in the background while the current one is decoded
+     *
+     * @param prefetcher null to read the row groups when they are needed
+     */
+    public void setPrefetcher(RowGroupPrefetcher prefetcher) {
+        fileReader.setPrefetcher(prefetcher);
+    }
+
+    /**
+     * report the row groups, column chunks and decode time of the reads
+     *
+     * @param readMetrics null to report nothing
+     */
+    public void setReadMetrics(ParquetReadMetrics readMetrics) {
+        fileReader.setReadMetrics(readMetrics);
+    }
+
+    /**
+     * only return the rows matching a predicate, the columns of the predicate are
+     * decoded first and only the matching rows of the other columns
+     *
+     * @param filterPredicate predicate without not, as given by
+     *                        {@link parquet.filter2.compat.FilterCompat#get(FilterPredicate)}, null for all the rows
+     */
+    @SuppressWarnings("unchecked")
+    public void setFilter(FilterPredicate filterPredicate) {
+        missingInspectors.clear();
+        if (filterPredicate == null) {
+            predicate = null;
+            inspectors = null;
+            return;
+        }
+        IncrementallyUpdatedFilterPredicateBuilder builder = new IncrementallyUpdatedFilterPredicateBuilder();
+        predicate = builder.build(filterPredicate);
+        inspectors = new List[columns.size()];
+        for (Map.Entry<ColumnPath, List<ValueInspector>> entry : builder.getValueInspectorsByColumn().entrySet()) {
+            int column = indexOf(entry.getKey());
+            if (column < 0) {
+                missingInspectors.addAll(entry.getValue());
+            } else {
+                inspectors[column] = entry.getValue();
+            }
+        }
+        selected = new boolean[batchSize];
+    }
+
+    private int indexOf(ColumnPath path) {
+        for (int c = 0; c < columns.size(); c++) {
+            if (ColumnPath.get(columns.get(c).getPath()).equals(path)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return number of rows left to read
+     */
+    public long getTotalCountLeft() {
+        return total - read;
+    }
+
+    /**
+     * @return total number of rows of the row groups to read
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * decode the next rows of the current row group
+     *
+     * @return the batch, reused by the following calls, or null if there are no more rows
+     */
+    public ColumnBatch nextBatch() throws IOException {
+        if (rowsLeftInGroup == 0 && !nextRowGroup()) {
+            return null;
+        }
+        current ^= 1;
+        ColumnBatch batch = batches[current];
+        boolean timed = fileReader.getReadMetrics() != null;
+        if (predicate != null) {
+            while (true) {
+                long decodeStart = timed ? System.nanoTime() : 0;
+                int matching = readMatching(batch);
+                if (timed) {
+                    decodeNanos += System.nanoTime() - decodeStart;
+                }
+                if (matching > 0) {
+                    break;
+                }
+                if (rowsLeftInGroup == 0 && !nextRowGroup()) {
+                    return null;
+                }
+            }
+            return batch;
+        }
+        long decodeStart = timed ? System.nanoTime() : 0;
+        int rows = (int) Math.min(batchSize, rowsLeftInGroup);
+        batch.reset(rows);
+        for (int c = 0; c < columnReaders.length; c++) {
+            readColumn(columnReaders[c], batch.getVector(c), rows);
+        }
+        rowsLeftInGroup -= rows;
+        read += rows;
+        if (timed) {
+            decodeNanos += System.nanoTime() - decodeStart;
+        }
+        return batch;
+    }
+
+    private void reportDecodeTime() {
+        ParquetReadMetrics readMetrics = fileReader.getReadMetrics();
+        if (readMetrics != null && decodeNanos > 0) {
+            readMetrics.decodeTime(decodeNanos / 1000000);
+            decodeNanos = 0;
+        }
+    }
+
+    /**
+     * decode the columns of the predicate for the next rows of the current row group,
+     * then the rows matching the predicate from the other columns
+     *
+     * @return number of rows matching, the rows of the batch
+     */
+    private int readMatching(ColumnBatch batch) {
+        int rows = (int) Math.min(batchSize, rowsLeftInGroup);
+        batch.reset(rows);
+        for (int c = 0; c < columnReaders.length; c++) {
+            if (inspectors[c] != null) {
+                readColumn(columnReaders[c], batch.getVector(c), rows);
+            }
+        }
+        int matching = 0;
+        for (int row = 0; row < rows; row++) {
+            IncrementallyUpdatedFilterPredicateResetter.reset(predicate);
+            for (int c = 0; c < inspectors.length; c++) {
+                if (inspectors[c] != null) {
+                    update(inspectors[c], batch.getVector(c), row);
+                }
+            }
+            for (ValueInspector inspector : missingInspectors) {
+                inspector.updateNull();
+            }
+            selected[row] = IncrementallyUpdatedFilterPredicateEvaluator.evaluate(predicate);
+            if (selected[row]) {
+                if (matching != row) {
+                    for (int c = 0; c < inspectors.length; c++) {
+                        if (inspectors[c] != null) {
+                            batch.getVector(c).moveRow(row, matching);
+                        }
+                    }
+                }
+                matching++;
+            }
+        }
+        for (int c = 0; c < columnReaders.length; c++) {
+            if (inspectors[c] == null) {
+                readSelectedRows(columnReaders[c], batch.getVector(c), rows, matching);
+            }
+        }
+        batch.truncate(matching);
+        rowsLeftInGroup -= rows;
+        read += rows;
+        return matching;
+    }
+
+    private boolean nextRowGroup() throws IOException {
+        reportDecodeTime();
+        PageReadStore pages = fileReader.readNextRowGroup();
+        if (pages == null) {
+            return false;
+        }
+        ColumnReadStoreImpl store = new ColumnReadStoreImpl(pages, converter, requestedSchema);
+        columnReaders = new ColumnReader[columns.size()];
+        for (int c = 0; c < columns.size(); c++) {
+            columnReaders[c] = store.getColumnReader(columns.get(c));
+        }
+        rowsLeftInGroup = pages.getRowCount();
+        ++nextBlock;
+        return true;
+    }
+
+    /**
+     * skip the row groups which only hold keys smaller than key without reading them,
+     * the rows left in the current row group are dropped if it is skipped as well.
+     * The file must be sorted by the key column.
+     *
+     * @param keyColumn name of the sorted key column
+     * @param key       the key to skip to
+     * @return whether rows were skipped
+     */
+    public boolean skipTo(String keyColumn, byte[] key) {
+        int blockIndex = SortedKeyRowGroupFilter.findRowGroup(blocks, keyColumn, key);
+        if (blockIndex < nextBlock || (blockIndex == nextBlock && rowsLeftInGroup == 0)) {
+            return false;
+        }
+        read += rowsLeftInGroup;
+        rowsLeftInGroup = 0;
+        for (; nextBlock < blockIndex; nextBlock++) {
+            fileReader.skipNextRowGroup();
+            read += blocks.get(nextBlock).getRowCount();
+        }
+        return true;
+    }
+
+    /**
+     * skip rows without decoding their values, the row groups skipped as a whole are not read
+     *
+     * @param rows number of rows to skip
+     * @return the number of rows skipped, less than rows at the end of the file
+     */
+    public long skipRows(long rows) throws IOException {
+        long skipped = 0;
+        while (skipped < rows) {
+            if (rowsLeftInGroup == 0) {
+                if (nextBlock < blocks.size() && blocks.get(nextBlock).getRowCount() <= rows - skipped) {
+                    long groupRows = blocks.get(nextBlock).getRowCount();
+                    fileReader.skipNextRowGroup();
+                    ++nextBlock;
+                    read += groupRows;
+                    skipped += groupRows;
+                    continue;
+                }
+                if (!nextRowGroup()) {
+                    break;
+                }
+            }
+            long n = Math.min(rows - skipped, rowsLeftInGroup);
+            for (ColumnReader reader : columnReaders) {
+                int maxDefinitionLevel = reader.getDescriptor().getMaxDefinitionLevel();
+                for (long row = 0; row < n; row++) {
+                    // a null has no value to skip
+                    if (reader.getCurrentDefinitionLevel() == maxDefinitionLevel) {
+                        reader.skip();
+                    }
+                    reader.consume();
+                }
+            }
+            rowsLeftInGroup -= n;
+            read += n;
+            skipped += n;
+        }
+        return skipped;
+    }
+
+    private static void readColumn(ColumnReader reader, ColumnBatch.ColumnVector vector, int rows) {
+        int maxDefinitionLevel = vector.getDescriptor().getMaxDefinitionLevel();
+        for (int row = 0; row < rows; row++) {
+            if (reader.getCurrentDefinitionLevel() < maxDefinitionLevel) {
+                vector.setNull(row);
+            } else {
+                readValue(reader, vector, row);
+            }
+            reader.consume();
+        }
+    }
+
+    /**
+     * decode the selected rows into the first rows of the vector, the values of the others are skipped
+     */
+    private void readSelectedRows(ColumnReader reader, ColumnBatch.ColumnVector vector, int rows, int matching) {
+        int maxDefinitionLevel = vector.getDescriptor().getMaxDefinitionLevel();
+        int to = 0;
+        for (int row = 0; row < rows; row++) {
+            boolean isNull = reader.getCurrentDefinitionLevel() < maxDefinitionLevel;
+            if (!selected[row]) {
+                if (!isNull) {
+                    reader.skip();
+                }
+            } else if (isNull) {
+                vector.setNull(to++);
+            } else {
+                readValue(reader, vector, to++);
+            }
+            reader.consume();
+        }
+        if (to != matching) {
+            throw new ParquetDecodingException("read " + to + " values of " + vector.getDescriptor()
+                    + " for " + matching + " rows");
+        }
+    }
+
+    private static void readValue(ColumnReader reader, ColumnBatch.ColumnVector vector, int row) {
+        switch (vector.getType()) {
+            case BOOLEAN:
+                vector.setBoolean(row, reader.getBoolean());
+                break;
+            case INT32:
+                vector.setInt(row, reader.getInteger());
+                break;
+            case INT64:
+                vector.setLong(row, reader.getLong());
+                break;
+            case FLOAT:
+                vector.setFloat(row, reader.getFloat());
+                break;
+            case DOUBLE:
+                vector.setDouble(row, reader.getDouble());
+                break;
+            default:
+                vector.setBinary(row, reader.getBinary());
+                break;
+        }
+    }
+
+    /**
+     * give the value of a row to the inspectors of its column
+     */
+    private static void update(List<ValueInspector> inspectors, ColumnBatch.ColumnVector vector, int row) {
+        for (ValueInspector inspector : inspectors) {
+            if (vector.isNull(row)) {
+                inspector.updateNull();
+                continue;
+            }
+            switch (vector.getType()) {
+                case BOOLEAN:
+                    inspector.update(vector.getBoolean(row));
+                    break;
+                case INT32:
+                    inspector.update(vector.getInt(row));
+                    break;
+                case INT64:
+                    inspector.update(vector.getLong(row));
+                    break;
+                case FLOAT:
+                    inspector.update(vector.getFloat(row));
+                    break;
+                case DOUBLE:
+                    inspector.update(vector.getDouble(row));
+                    break;
+                default:
+                    inspector.update(Binary.fromByteArray(vector.getBytes(), vector.getOffset(row), vector.getLength(row)));
+                    break;
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        reportDecodeTime();
+        fileReader.close();
+    }
+
+    /**
+     * the column readers only need a converter to walk the schema, values are
+     * pulled from the readers directly
+     */
+    private static class SkippingGroupConverter extends GroupConverter {
+
+        private final PrimitiveConverter primitiveConverter = new PrimitiveConverter() {
+        };
+        private final int fieldCount;
+
+        private SkippingGroupConverter(int fieldCount) {
+            this.fieldCount = fieldCount;
+        }
+
+        @Override
+        public Converter getConverter(int fieldIndex) {
+            if (fieldIndex >= fieldCount) {
+                throw new ParquetDecodingException("no field " + fieldIndex + " in a flat schema of " + fieldCount);
+            }
+            return primitiveConverter;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+}
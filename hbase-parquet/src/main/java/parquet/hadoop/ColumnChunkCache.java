@@ -0,0 +1,54 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package parquet.hadoop;
+
+import org.apache.hadoop.fs.Path;
+
+import parquet.hadoop.metadata.ColumnPath;
+
+/**
+ * A cache of the raw (still compressed) column chunks of parquet files.
+ * <p/>
+ * A column chunk is identified by its file, its column and its starting offset in the
+ * file, which is unique to a column of a row group. Implementations must be thread safe.
+ */
+public interface ColumnChunkCache {
+
+    /**
+     * @param file   the parquet file
+     * @param column the column of the chunk
+     * @param offset starting position of the chunk in the file
+     * @return the bytes of the chunk, null if not cached
+     */
+    byte[] getChunk(Path file, ColumnPath column, long offset);
+
+    /**
+     * @return whether the chunks read from the files are to be cached, readers do not
+     * copy the chunks for {@link #cacheChunk} otherwise
+     */
+    boolean isCacheOnRead();
+
+    /**
+     * @param file   the parquet file
+     * @param column the column of the chunk
+     * @param offset starting position of the chunk in the file
+     * @param chunk  the bytes of the chunk, not modified after this call
+     */
+    void cacheChunk(Path file, ColumnPath column, long offset, byte[] chunk);
+}
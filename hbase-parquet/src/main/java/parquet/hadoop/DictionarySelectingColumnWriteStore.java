@@ -0,0 +1,85 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package parquet.hadoop;
+
+import java.util.Set;
+
+import parquet.column.ColumnDescriptor;
+import parquet.column.ColumnWriteStore;
+import parquet.column.ColumnWriter;
+import parquet.hadoop.metadata.ColumnPath;
+
+import static parquet.Preconditions.checkNotNull;
+
+/**
+ * Writes the columns of a set with dictionary encoding and the others with plain encoding.
+ * <p/>
+ * The two stores share the page store of the row group. Each column is only ever given to
+ * one of them, so this only works with stores which create their column writers on demand
+ * (writer version 1.0).
+ */
+class DictionarySelectingColumnWriteStore implements ColumnWriteStore {
+
+    private final ColumnWriteStore dictionaryStore;
+    private final ColumnWriteStore plainStore;
+    private final Set<ColumnPath> dictionaryColumns;
+
+    DictionarySelectingColumnWriteStore(ColumnWriteStore dictionaryStore, ColumnWriteStore plainStore,
+                                        Set<ColumnPath> dictionaryColumns) {
+        this.dictionaryStore = checkNotNull(dictionaryStore, "dictionaryStore");
+        this.plainStore = checkNotNull(plainStore, "plainStore");
+        this.dictionaryColumns = checkNotNull(dictionaryColumns, "dictionaryColumns");
+    }
+
+    @Override
+    public ColumnWriter getColumnWriter(ColumnDescriptor path) {
+        if (dictionaryColumns.contains(ColumnPath.get(path.getPath()))) {
+            return dictionaryStore.getColumnWriter(path);
+        }
+        return plainStore.getColumnWriter(path);
+    }
+
+    @Override
+    public void flush() {
+        dictionaryStore.flush();
+        plainStore.flush();
+    }
+
+    @Override
+    public void endRecord() {
+        dictionaryStore.endRecord();
+        plainStore.endRecord();
+    }
+
+    @Override
+    public long getAllocatedSize() {
+        return dictionaryStore.getAllocatedSize() + plainStore.getAllocatedSize();
+    }
+
+    @Override
+    public long getBufferedSize() {
+        return dictionaryStore.getBufferedSize() + plainStore.getBufferedSize();
+    }
+
+    @Override
+    public String memUsageString() {
+        return "dictionary columns: " + dictionaryStore.memUsageString()
+                + "\nplain columns: " + plainStore.memUsageString();
+    }
+}
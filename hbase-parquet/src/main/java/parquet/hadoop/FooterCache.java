@@ -0,0 +1,166 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package parquet.hadoop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+import parquet.Log;
+import parquet.hadoop.ParquetInputFormat.FileStatusWrapper;
+import parquet.hadoop.ParquetInputFormat.FootersCacheValue;
+
+/**
+ * A bounded LRU cache of the footers of parquet files, shared by the readers of a process.
+ * <p/>
+ * Entries are keyed by the path of the file and are only served while the modification
+ * time of the file is not newer than the one the footer was read at, so a rewritten file
+ * is never read with a stale footer.
+ */
+public class FooterCache {
+    private static final Log LOG = Log.getLog(FooterCache.class);
+
+    /**
+     * max number of files whose footers are cached, 0 to disable the shared cache
+     */
+    public static final String FOOTER_CACHE_SIZE = "parquet.footer.cache.size";
+    public static final int DEFAULT_FOOTER_CACHE_SIZE = 1024;
+
+    private static FooterCache instance;
+
+    private final LruCache<FileStatusWrapper, FootersCacheValue> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public FooterCache(int maxSize) {
+        this.cache = new LruCache<FileStatusWrapper, FootersCacheValue>(maxSize);
+    }
+
+    /**
+     * @param conf holds {@link #FOOTER_CACHE_SIZE}, read when the cache is first created
+     * @return the cache shared in the process, null if disabled
+     */
+    public static synchronized FooterCache getInstance(Configuration conf) {
+        if (instance == null) {
+            int maxSize = conf.getInt(FOOTER_CACHE_SIZE, DEFAULT_FOOTER_CACHE_SIZE);
+            if (maxSize <= 0) {
+                return null;
+            }
+            instance = new FooterCache(maxSize);
+        }
+        return instance;
+    }
+
+    /**
+     * the footers of the files, read from the file system only for the files missing in the cache
+     *
+     * @param conf     to connect to the file system
+     * @param statuses the files to read, their modification time decides whether a cached footer is current
+     * @return the footers in the order of statuses
+     * @throws IOException
+     */
+    public List<Footer> getFooters(Configuration conf, List<FileStatus> statuses) throws IOException {
+        return getFooters(conf, statuses, null);
+    }
+
+    /**
+     * @param readMetrics where the hits and misses of the lookup are reported, may be null
+     * @see #getFooters(Configuration, List)
+     */
+    public List<Footer> getFooters(Configuration conf, List<FileStatus> statuses,
+                                   ParquetReadMetrics readMetrics) throws IOException {
+        Footer[] footers = new Footer[statuses.size()];
+        List<FileStatus> missingStatuses = new ArrayList<FileStatus>();
+        Map<Path, Integer> missingIndexes = new HashMap<Path, Integer>();
+        synchronized (cache) {
+            for (int i = 0; i < statuses.size(); i++) {
+                FootersCacheValue cacheEntry = cache.getCurrentValue(new FileStatusWrapper(statuses.get(i)));
+                if (cacheEntry != null) {
+                    footers[i] = cacheEntry.getFooter();
+                } else {
+                    missingStatuses.add(statuses.get(i));
+                    missingIndexes.put(statuses.get(i).getPath(), i);
+                }
+            }
+        }
+        hitCount.addAndGet(statuses.size() - missingStatuses.size());
+        missCount.addAndGet(missingStatuses.size());
+        if (readMetrics != null) {
+            readMetrics.footerCache(statuses.size() - missingStatuses.size(), missingStatuses.size());
+        }
+
+        if (!missingStatuses.isEmpty()) {
+            if (Log.DEBUG) LOG.debug("reading " + missingStatuses.size() + " footers missing in the cache");
+            List<Footer> newFooters = ParquetFileReader.readAllFootersInParallelUsingSummaryFiles(conf, missingStatuses, false);
+            synchronized (cache) {
+                for (Footer newFooter : newFooters) {
+                    Integer index = missingIndexes.get(newFooter.getFile());
+                    if (index == null) {
+                        continue;
+                    }
+                    // keep the status listed before the read, in case the file was modified meanwhile
+                    FileStatusWrapper status = new FileStatusWrapper(statuses.get(index));
+                    cache.put(status, new FootersCacheValue(status, newFooter));
+                    footers[index] = newFooter;
+                }
+            }
+        }
+
+        List<Footer> result = new ArrayList<Footer>(footers.length);
+        for (Footer footer : footers) {
+            if (footer != null) {
+                result.add(footer);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * drop the footer of a file which was removed
+     */
+    public void evict(Path file) {
+        // file statuses are equal by path
+        FileStatusWrapper key = new FileStatusWrapper(new FileStatus(0, false, 0, 0, 0, file));
+        synchronized (cache) {
+            cache.remove(key);
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
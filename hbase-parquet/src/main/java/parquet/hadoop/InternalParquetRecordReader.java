@@ -80,6 +80,7 @@ class InternalParquetRecordReader<T> {
     private long current = 0;
     private int currentBlock = -1;
     private ParquetFileReader reader;
+    private List<BlockMetaData> blocks;
     private parquet.io.RecordReader<T> recordReader;
     private boolean strictTypeChecking;
 
@@ -91,6 +92,11 @@ class InternalParquetRecordReader<T> {
 
     private Path file;
 
+    private RowGroupPrefetcher prefetcher;
+    private ParquetReadMetrics readMetrics;
+    // time spent decoding the rows of the current row group, reported when it is done
+    private long decodeNanos;
+
     /**
      * @param readSupport Object which helps reads files of the given type, e.g. Thrift, Avro.
      * @param filter      for filtering individual records
@@ -120,6 +126,7 @@ class InternalParquetRecordReader<T> {
     private void checkRead() throws IOException {
         if (current == totalCountLoadedSoFar) {
             if (current != 0) {
+                reportDecodeTime();
                 totalTimeSpentProcessingRecords += (System.currentTimeMillis() - startedAssemblingCurrentBlockAt);
                 if (PRINT_LOG_INFO) {
                     LOG.info("Assembled and processed " + totalCountLoadedSoFar + " records from " + columnCount + " columns in " + totalTimeSpentProcessingRecords + " ms: " + ((float) totalCountLoadedSoFar / totalTimeSpentProcessingRecords) + " rec/ms, " + ((float) totalCountLoadedSoFar * columnCount / totalTimeSpentProcessingRecords) + " cell/ms");
@@ -152,7 +159,15 @@ class InternalParquetRecordReader<T> {
         }
     }
 
+    private void reportDecodeTime() {
+        if (readMetrics != null && decodeNanos > 0) {
+            readMetrics.decodeTime(decodeNanos / 1000000);
+            decodeNanos = 0;
+        }
+    }
+
     public void close() throws IOException {
+        reportDecodeTime();
         if (reader != null) {
             reader.close();
         }
@@ -175,6 +190,17 @@ class InternalParquetRecordReader<T> {
                            Map<String, String> fileMetadata,
                            Path file, List<BlockMetaData> blocks, Configuration configuration)
             throws IOException {
+        initialize(fileSchema, fileMetadata, file, blocks, configuration, null);
+    }
+
+    /**
+     * @param chunkCache where the column chunks are looked up before reading them from the file, may be null
+     */
+    public void initialize(MessageType fileSchema,
+                           Map<String, String> fileMetadata,
+                           Path file, List<BlockMetaData> blocks, Configuration configuration,
+                           ColumnChunkCache chunkCache)
+            throws IOException {
         // initialize a ReadContext for this file
         ReadSupport.ReadContext readContext = readSupport.init(new InitContext(
                 configuration, toSetMultiMap(fileMetadata), fileSchema));
@@ -186,7 +212,10 @@ class InternalParquetRecordReader<T> {
                 configuration, fileMetadata, fileSchema, readContext);
         this.strictTypeChecking = configuration.getBoolean(STRICT_TYPE_CHECKING, true);
         List<ColumnDescriptor> columns = requestedSchema.getColumns();
-        reader = new ParquetFileReader(configuration, file, blocks, columns);
+        reader = new ParquetFileReader(configuration, file, blocks, columns, chunkCache);
+        reader.setPrefetcher(prefetcher);
+        reader.setReadMetrics(readMetrics);
+        this.blocks = blocks;
         for (BlockMetaData block : blocks) {
             total += block.getRowCount();
         }
@@ -219,7 +248,11 @@ class InternalParquetRecordReader<T> {
 
             try {
                 checkRead();
+                long decodeStart = readMetrics == null ? 0 : System.nanoTime();
                 currentValue = recordReader.read();
+                if (readMetrics != null) {
+                    decodeNanos += System.nanoTime() - decodeStart;
+                }
                 current++;
                 if (recordReader.shouldSkipCurrentRecord()) {
                     // this record is being filtered via the filter2 package
@@ -245,6 +278,59 @@ class InternalParquetRecordReader<T> {
     }
 
 
+    /**
+     * skip the row groups before the given one without reading them,
+     * the rows left in the current row group are dropped
+     *
+     * @param blockIndex index of the row group in the row groups of this reader
+     * @return false if that row group is already being read
+     */
+    public boolean skipToBlock(int blockIndex) throws IOException {
+        if (blockIndex <= currentBlock || blockIndex > blocks.size()) {
+            return false;
+        }
+        if (blockIndex == currentBlock + 1 && current == totalCountLoadedSoFar) {
+            // the row group is the next one to be read anyway
+            return false;
+        }
+        reportDecodeTime();
+        long skipped = 0;
+        for (int i = currentBlock + 1; i < blockIndex; i++) {
+            reader.skipNextRowGroup();
+            skipped += blocks.get(i).getRowCount();
+        }
+        totalCountLoadedSoFar += skipped;
+        current = totalCountLoadedSoFar;
+        currentBlock = blockIndex - 1;
+        recordReader = null;
+        return true;
+    }
+
+    /**
+     * read the next row groups in the background, must be set before {@link #initialize}
+     *
+     * @param prefetcher null to read the row groups when they are needed
+     */
+    public void setPrefetcher(RowGroupPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
+    /**
+     * report the reads, must be set before {@link #initialize}
+     *
+     * @param readMetrics null to report nothing
+     */
+    public void setReadMetrics(ParquetReadMetrics readMetrics) {
+        this.readMetrics = readMetrics;
+    }
+
+    /**
+     * @return the row groups of this reader
+     */
+    public List<BlockMetaData> getBlocks() {
+        return blocks;
+    }
+
     private static <K, V> Map<K, Set<V>> toSetMultiMap(Map<K, V> map) {
         Map<K, Set<V>> setMultiMap = new HashMap<K, Set<V>>();
         for (Map.Entry<K, V> entry : map.entrySet()) {
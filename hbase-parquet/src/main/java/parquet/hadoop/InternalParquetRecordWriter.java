@@ -27,6 +27,7 @@ import static parquet.Preconditions.checkNotNull;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import parquet.Ints;
 import parquet.Log;
@@ -38,6 +39,7 @@ import parquet.column.impl.ColumnWriteStoreV2;
 import parquet.hadoop.CodecFactory.BytesCompressor;
 import parquet.hadoop.api.WriteSupport;
 import parquet.hadoop.api.WriteSupport.FinalizedWriteContext;
+import parquet.hadoop.metadata.ColumnPath;
 import parquet.io.ColumnIOFactory;
 import parquet.io.MessageColumnIO;
 import parquet.schema.MessageType;
@@ -58,6 +60,8 @@ class InternalParquetRecordWriter<T> {
     private final BytesCompressor compressor;
     private final boolean validating;
     private final ParquetProperties parquetProperties;
+    private final ParquetProperties plainProperties;
+    private final Set<ColumnPath> dictionaryColumns;
 
     private long recordCount = 0;
     private long recordCountForNextMemCheck = MINIMUM_RECORD_COUNT_FOR_CHECK;
@@ -86,6 +90,33 @@ class InternalParquetRecordWriter<T> {
             boolean enableDictionary,
             boolean validating,
             WriterVersion writerVersion) {
+        this(parquetFileWriter, writeSupport, schema, extraMetaData, rowGroupSize, pageSize, compressor,
+                dictionaryPageSize, enableDictionary, null, validating, writerVersion);
+    }
+
+    /**
+     * @param parquetFileWriter the file to write to
+     * @param writeSupport      the class to convert incoming records
+     * @param schema            the schema of the records
+     * @param extraMetaData     extra meta data to write in the footer of the file
+     * @param rowGroupSize      the size of a block in the file (this will be approximate)
+     * @param compressor        the codec used to compress
+     * @param dictionaryColumns when the dictionary is enabled, the only columns to encode with it,
+     *                          null for all the columns. Ignored by writer version 2.0
+     */
+    public InternalParquetRecordWriter(
+            ParquetFileWriter parquetFileWriter,
+            WriteSupport<T> writeSupport,
+            MessageType schema,
+            Map<String, String> extraMetaData,
+            long rowGroupSize,
+            int pageSize,
+            BytesCompressor compressor,
+            int dictionaryPageSize,
+            boolean enableDictionary,
+            Set<ColumnPath> dictionaryColumns,
+            boolean validating,
+            WriterVersion writerVersion) {
         this.parquetFileWriter = parquetFileWriter;
         this.writeSupport = checkNotNull(writeSupport, "writeSupport");
         this.schema = schema;
@@ -96,6 +127,13 @@ class InternalParquetRecordWriter<T> {
         this.compressor = compressor;
         this.validating = validating;
         this.parquetProperties = new ParquetProperties(dictionaryPageSize, writerVersion, enableDictionary);
+        if (enableDictionary && dictionaryColumns != null && writerVersion == WriterVersion.PARQUET_1_0) {
+            this.plainProperties = new ParquetProperties(dictionaryPageSize, writerVersion, false);
+            this.dictionaryColumns = dictionaryColumns;
+        } else {
+            this.plainProperties = null;
+            this.dictionaryColumns = null;
+        }
         initStore();
     }
 
@@ -105,6 +143,12 @@ class InternalParquetRecordWriter<T> {
                 schema,
                 pageStore,
                 pageSize);
+        if (dictionaryColumns != null) {
+            columnStore = new DictionarySelectingColumnWriteStore(
+                    columnStore,
+                    plainProperties.newColumnWriteStore(schema, pageStore, pageSize),
+                    dictionaryColumns);
+        }
         MessageColumnIO columnIO = new ColumnIOFactory(validating).getColumnIO(schema);
         writeSupport.prepareForWrite(columnIO.getRecordWriter(columnStore));
     }
@@ -117,6 +161,14 @@ class InternalParquetRecordWriter<T> {
         parquetFileWriter.end(finalMetadata);
     }
 
+    /**
+     * @return the bytes written to the file, the footer included once closed, and the bytes
+     * of the row group buffered in memory
+     */
+    public long getDataSize() throws IOException {
+        return parquetFileWriter.getPos() + (columnStore == null ? 0 : columnStore.getBufferedSize());
+    }
+
     public void write(T value) throws IOException, InterruptedException {
         writeSupport.write(value);
         ++recordCount;
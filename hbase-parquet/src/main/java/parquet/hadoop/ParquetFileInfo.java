@@ -80,4 +80,8 @@ public class ParquetFileInfo {
         return this.fileSchema;
     }
 
+    public List<Footer> getFooters(){
+        return this.footers;
+    }
+
 }
@@ -37,6 +37,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -46,6 +47,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -453,6 +455,12 @@ public class ParquetFileReader implements Closeable {
     private final List<BlockMetaData> blocks;
     private final FSDataInputStream f;
     private final Path filePath;
+    private final ColumnChunkCache chunkCache;
+    private RowGroupPrefetcher prefetcher;
+    private ParquetReadMetrics readMetrics;
+    // reads of the row groups following the current one, in file order
+    private final LinkedList<Future<PageReadStore>> prefetched = new LinkedList<Future<PageReadStore>>();
+    private boolean closed = false;
     private int currentBlock = 0;
     private final Map<ColumnPath, ColumnDescriptor> paths = new HashMap<ColumnPath, ColumnDescriptor>();
 
@@ -464,7 +472,20 @@ public class ParquetFileReader implements Closeable {
      * @throws IOException if the file can not be opened
      */
     public ParquetFileReader(Configuration configuration, Path filePath, List<BlockMetaData> blocks, List<ColumnDescriptor> columns) throws IOException {
+        this(configuration, filePath, blocks, columns, null);
+    }
+
+    /**
+     * @param filePath              the Parquet file (will be opened for read in this constructor)
+     * @param blocks         the blocks to read
+     * @param columns         the columns to read (their path)
+     * @param chunkCache     where column chunks are looked up before reading them from the file, may be null
+     * @throws IOException if the file can not be opened
+     */
+    public ParquetFileReader(Configuration configuration, Path filePath, List<BlockMetaData> blocks,
+                             List<ColumnDescriptor> columns, ColumnChunkCache chunkCache) throws IOException {
         this.filePath = filePath;
+        this.chunkCache = chunkCache;
         FileSystem fs = filePath.getFileSystem(configuration);
         this.f = fs.open(filePath);
         this.blocks = blocks;
@@ -484,7 +505,102 @@ public class ParquetFileReader implements Closeable {
         if (currentBlock == blocks.size()) {
             return null;
         }
-        BlockMetaData block = blocks.get(currentBlock);
+        PageReadStore pages;
+        if (prefetcher == null) {
+            pages = readRowGroup(blocks.get(currentBlock));
+        } else {
+            pages = takePrefetched();
+            prefetch();
+        }
+        ++currentBlock;
+        if (readMetrics != null) {
+            readMetrics.rowGroupsRead(1);
+        }
+        return pages;
+    }
+
+    /**
+     * read the row groups following the current one in the background
+     *
+     * @param prefetcher executor and number of row groups to read ahead, null to read synchronously
+     */
+    public void setPrefetcher(RowGroupPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
+    /**
+     * @param readMetrics where the row groups and column chunks read are reported, may be null
+     */
+    public void setReadMetrics(ParquetReadMetrics readMetrics) {
+        this.readMetrics = readMetrics;
+    }
+
+    /**
+     * @return where the reads are reported, null if they are not
+     */
+    public ParquetReadMetrics getReadMetrics() {
+        return readMetrics;
+    }
+
+    /**
+     * @return the current row group, waiting for its read if it is in flight
+     */
+    private PageReadStore takePrefetched() throws IOException {
+        Future<PageReadStore> future = prefetched.poll();
+        if (future == null) {
+            prefetcher.recordMiss();
+            if (readMetrics != null) {
+                readMetrics.prefetch(false);
+            }
+            return readRowGroup(blocks.get(currentBlock));
+        }
+        boolean hit = future.isDone();
+        if (hit) {
+            prefetcher.recordHit();
+        } else {
+            prefetcher.recordMiss();
+        }
+        if (readMetrics != null) {
+            readMetrics.prefetch(hit);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new IOException("interrupted while reading row group " + currentBlock + " of " + filePath, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("could not read row group " + currentBlock + " of " + filePath, e.getCause());
+        }
+    }
+
+    /**
+     * schedule the reads of the row groups after the current one, up to the prefetch depth
+     */
+    private void prefetch() {
+        int next = currentBlock + 1 + prefetched.size();
+        while (prefetched.size() < prefetcher.getDepth() && next < blocks.size()) {
+            final BlockMetaData block = blocks.get(next++);
+            try {
+                prefetched.add(prefetcher.getExecutor().submit(new Callable<PageReadStore>() {
+                    @Override
+                    public PageReadStore call() throws Exception {
+                        return readRowGroup(block);
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                // the executor is full, the following row groups are read when needed
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reads all the columns requested from a row group.
+     * Reads are serialized on the stream, they may come from the prefetch threads.
+     */
+    private PageReadStore readRowGroup(BlockMetaData block) throws IOException {
         if (block.getRowCount() == 0) {
             throw new RuntimeException("Illegal row group of 0 rows");
         }
@@ -492,12 +608,21 @@ public class ParquetFileReader implements Closeable {
         // prepare the list of consecutive chunks to read them in one scan
         List<ConsecutiveChunkList> allChunks = new ArrayList<ConsecutiveChunkList>();
         ConsecutiveChunkList currentChunks = null;
+        List<Chunk> cachedChunks = new ArrayList<Chunk>();
         for (ColumnChunkMetaData mc : block.getColumns()) {
             ColumnPath pathKey = mc.getPath();
             BenchmarkCounter.incrementTotalBytes(mc.getTotalSize());
             ColumnDescriptor columnDescriptor = paths.get(pathKey);
             if (columnDescriptor != null) {
                 long startingPos = mc.getStartingPos();
+                if (chunkCache != null) {
+                    byte[] cached = chunkCache.getChunk(filePath, pathKey, startingPos);
+                    if (cached != null) {
+                        ChunkDescriptor descriptor = new ChunkDescriptor(columnDescriptor, mc, startingPos, cached.length);
+                        cachedChunks.add(new Chunk(descriptor, cached, 0));
+                        continue;
+                    }
+                }
                 // first chunk or not consecutive => new list
                 if (currentChunks == null || currentChunks.endPos() != startingPos) {
                     currentChunks = new ConsecutiveChunkList(startingPos);
@@ -507,19 +632,53 @@ public class ParquetFileReader implements Closeable {
             }
         }
         // actually read all the chunks
-        for (ConsecutiveChunkList consecutiveChunks : allChunks) {
-            final List<Chunk> chunks = consecutiveChunks.readAll(f);
-            for (Chunk chunk : chunks) {
+        synchronized (f) {
+            if (closed) {
+                throw new IOException("reader of " + filePath + " is closed");
+            }
+            for (Chunk chunk : cachedChunks) {
                 columnChunkPageReadStore.addColumn(chunk.descriptor.col, chunk.readAllPages());
             }
+            for (ConsecutiveChunkList consecutiveChunks : allChunks) {
+                final List<Chunk> chunks = consecutiveChunks.readAll(f);
+                for (Chunk chunk : chunks) {
+                    columnChunkPageReadStore.addColumn(chunk.descriptor.col, chunk.readAllPages());
+                }
+            }
         }
-        ++currentBlock;
         return columnChunkPageReadStore;
     }
 
 
+    /**
+     * move past the next row group without reading it
+     *
+     * @return false if there is no row group left
+     */
+    public boolean skipNextRowGroup() {
+        if (currentBlock == blocks.size()) {
+            return false;
+        }
+        Future<PageReadStore> future = prefetched.poll();
+        if (future != null) {
+            future.cancel(false);
+        }
+        ++currentBlock;
+        if (readMetrics != null) {
+            readMetrics.rowGroupsSkipped(1);
+        }
+        return true;
+    }
+
     public void close() throws IOException {
-        f.close();
+        for (Future<PageReadStore> future : prefetched) {
+            future.cancel(false);
+        }
+        prefetched.clear();
+        synchronized (f) {
+            closed = true;
+            f.close();
+        }
         this.codecFactory.release();
     }
 
@@ -772,8 +931,16 @@ public class ParquetFileReader implements Closeable {
             // report in a counter the data we just scanned
             BenchmarkCounter.incrementBytesRead(length);
             int currentChunkOffset = 0;
+            boolean cacheOnRead = chunkCache != null && chunkCache.isCacheOnRead();
             for (int i = 0; i < chunks.size(); i++) {
                 ChunkDescriptor descriptor = chunks.get(i);
+                if (readMetrics != null) {
+                    readMetrics.columnChunkRead(descriptor.metadata.getPath(), descriptor.size);
+                }
+                if (cacheOnRead) {
+                    chunkCache.cacheChunk(filePath, descriptor.metadata.getPath(), descriptor.fileOffset,
+                            Arrays.copyOfRange(chunksBytes, currentChunkOffset, currentChunkOffset + descriptor.size));
+                }
                 if (i < chunks.size() - 1) {
                     result.add(new Chunk(descriptor, chunksBytes, currentChunkOffset));
                 } else {
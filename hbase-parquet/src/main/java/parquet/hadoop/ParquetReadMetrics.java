@@ -0,0 +1,62 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package parquet.hadoop;
+
+import parquet.hadoop.metadata.ColumnPath;
+
+/**
+ * Receives the metrics of the reads of parquet files: the row groups read and skipped, the
+ * bytes of the column chunks read, the decode time and the hits of the caches.
+ * <p/>
+ * Readers report to it while they read, implementations must be thread safe and cheap.
+ */
+public interface ParquetReadMetrics {
+
+    /**
+     * @param count row groups read from the files or the cache
+     */
+    void rowGroupsRead(int count);
+
+    /**
+     * @param count row groups skipped by their keys or statistics without being read
+     */
+    void rowGroupsSkipped(int count);
+
+    /**
+     * @param column the column of the chunk
+     * @param bytes  size of the chunk read from the file
+     */
+    void columnChunkRead(ColumnPath column, long bytes);
+
+    /**
+     * @param millis time spent decoding the rows of a row group
+     */
+    void decodeTime(long millis);
+
+    /**
+     * @param hits   footers found in the {@link FooterCache}
+     * @param misses footers read from the files
+     */
+    void footerCache(int hits, int misses);
+
+    /**
+     * @param hit whether the row group was read ahead by the {@link RowGroupPrefetcher}
+     */
+    void prefetch(boolean hit);
+}
@@ -35,6 +35,7 @@ import parquet.filter.UnboundRecordFilter;
 import parquet.filter2.compat.FilterCompat;
 import parquet.filter2.compat.FilterCompat.Filter;
 import parquet.filter2.compat.RowGroupFilter;
+import parquet.filter2.compat.SortedKeyRowGroupFilter;
 import parquet.hadoop.api.ReadSupport;
 import parquet.hadoop.metadata.BlockMetaData;
 import parquet.hadoop.util.HiddenFileFilter;
@@ -50,6 +51,10 @@ public class ParquetReader<T> implements Closeable {
     private final Configuration conf;
     private final Iterator<Footer> footersIterator;
     private final Filter filter;
+    private final KeyRange keyRange;
+    private final ColumnChunkCache chunkCache;
+    private final RowGroupPrefetcher prefetcher;
+    private final ParquetReadMetrics readMetrics;
 
     private ParquetFileInfo fileInfo;
 
@@ -60,14 +65,25 @@ public class ParquetReader<T> implements Closeable {
     private ParquetReader(Configuration conf,
                           Path file,
                           ReadSupport<T> readSupport,
-                          Filter filter) throws IOException {
+                          Filter filter,
+                          KeyRange keyRange,
+                          FooterCache footerCache,
+                          ColumnChunkCache chunkCache,
+                          RowGroupPrefetcher prefetcher,
+                          ParquetReadMetrics readMetrics) throws IOException {
         this.readSupport = readSupport;
+        this.chunkCache = chunkCache;
+        this.prefetcher = prefetcher;
+        this.readMetrics = readMetrics;
         this.filter = checkNotNull(filter, "filter");
+        this.keyRange = keyRange;
         this.conf = conf;
 
         FileSystem fs = file.getFileSystem(conf);
         List<FileStatus> statuses = Arrays.asList(fs.listStatus(file, HiddenFileFilter.INSTANCE));
-        List<Footer> footers = ParquetFileReader.readAllFootersInParallelUsingSummaryFiles(conf, statuses, false);
+        List<Footer> footers = footerCache == null
+                ? ParquetFileReader.readAllFootersInParallelUsingSummaryFiles(conf, statuses, false)
+                : footerCache.getFooters(conf, statuses, readMetrics);
         this.footersIterator = footers.iterator();
 
         fileInfo = new ParquetFileInfo(file);
@@ -106,19 +122,49 @@ public class ParquetReader<T> implements Closeable {
 
             List<BlockMetaData> filteredBlocks = RowGroupFilter.filterRowGroups(
                     filter, blocks, fileSchema);
+            if (keyRange != null) {
+                filteredBlocks = SortedKeyRowGroupFilter.filterRowGroups(
+                        filteredBlocks, keyRange.keyColumn, keyRange.startKey, keyRange.stopKey);
+            }
+
+            if (readMetrics != null && filteredBlocks.size() < blocks.size()) {
+                readMetrics.rowGroupsSkipped(blocks.size() - filteredBlocks.size());
+            }
 
             fileInfo.setBlockMetaDatas(blocks);
             fileInfo.setFileSchema(fileSchema);
             fileInfo.setFilteredBlocks(filteredBlocks);
 
             reader = new InternalParquetRecordReader<T>(readSupport, filter);
+            reader.setPrefetcher(prefetcher);
+            reader.setReadMetrics(readMetrics);
             reader.initialize(fileSchema,
                     footer.getParquetMetadata().getFileMetaData().getKeyValueMetaData(),
-                    footer.getFile(), filteredBlocks, conf);
+                    footer.getFile(), filteredBlocks, conf, chunkCache);
         }
     }
 
 
+    /**
+     * skip the row groups of the current file which only hold keys smaller than key,
+     * the file must be sorted by the key column
+     *
+     * @param keyColumn name of the sorted key column
+     * @param key       the key to skip to
+     * @return whether row groups were skipped
+     * @throws IOException
+     */
+    public boolean skipTo(String keyColumn, byte[] key) throws IOException {
+        if (reader == null) {
+            initReader();
+            if (reader == null) {
+                return false;
+            }
+        }
+        int blockIndex = SortedKeyRowGroupFilter.findRowGroup(reader.getBlocks(), keyColumn, key);
+        return reader.skipToBlock(blockIndex);
+    }
+
     public void close() throws IOException {
         if (reader != null) {
             reader.close();
@@ -163,6 +209,11 @@ public class ParquetReader<T> implements Closeable {
         private final Path file;
         private Configuration conf;
         private Filter filter;
+        private KeyRange keyRange;
+        private FooterCache footerCache;
+        private ColumnChunkCache chunkCache;
+        private RowGroupPrefetcher prefetcher;
+        private ParquetReadMetrics readMetrics;
 
         private Builder(ReadSupport<T> readSupport, Path path) {
             this.readSupport = checkNotNull(readSupport, "readSupport");
@@ -180,8 +231,69 @@ public class ParquetReader<T> implements Closeable {
             return this;
         }
 
+        /**
+         * skip the row groups outside [startKey, stopKey) of a file sorted by keyColumn
+         * @see SortedKeyRowGroupFilter
+         */
+        public Builder<T> withKeyRange(String keyColumn, byte[] startKey, byte[] stopKey) {
+            this.keyRange = new KeyRange(checkNotNull(keyColumn, "keyColumn"), startKey, stopKey);
+            return this;
+        }
+
+        /**
+         * take the footers from the cache instead of reading them from the files
+         * @see FooterCache
+         */
+        public Builder<T> withFooterCache(FooterCache footerCache) {
+            this.footerCache = footerCache;
+            return this;
+        }
+
+        /**
+         * look up the column chunks in the cache before reading them from the files
+         * @see ColumnChunkCache
+         */
+        public Builder<T> withChunkCache(ColumnChunkCache chunkCache) {
+            this.chunkCache = chunkCache;
+            return this;
+        }
+
+        /**
+         * read the next row groups in the background while the current one is consumed
+         * @see RowGroupPrefetcher
+         */
+        public Builder<T> withPrefetcher(RowGroupPrefetcher prefetcher) {
+            this.prefetcher = prefetcher;
+            return this;
+        }
+
+        /**
+         * report the row groups, column chunks and footers read
+         * @see ParquetReadMetrics
+         */
+        public Builder<T> withReadMetrics(ParquetReadMetrics readMetrics) {
+            this.readMetrics = readMetrics;
+            return this;
+        }
+
         public ParquetReader<T> build() throws IOException {
-            return new ParquetReader<T>(conf, file, readSupport, filter);
+            return new ParquetReader<T>(conf, file, readSupport, filter, keyRange, footerCache, chunkCache,
+                    prefetcher, readMetrics);
+        }
+    }
+
+    /**
+     * key range of the records to read in a sorted file
+     */
+    private static class KeyRange {
+        private final String keyColumn;
+        private final byte[] startKey;
+        private final byte[] stopKey;
+
+        private KeyRange(String keyColumn, byte[] startKey, byte[] stopKey) {
+            this.keyColumn = keyColumn;
+            this.startKey = startKey;
+            this.stopKey = stopKey;
         }
     }
 
@@ -20,6 +20,7 @@ package parquet.hadoop;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Set;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
@@ -27,6 +28,7 @@ import org.apache.hadoop.fs.Path;
 import parquet.column.ParquetProperties;
 import parquet.column.ParquetProperties.WriterVersion;
 import parquet.hadoop.api.WriteSupport;
+import parquet.hadoop.metadata.ColumnPath;
 import parquet.hadoop.metadata.CompressionCodecName;
 import parquet.schema.MessageType;
 
@@ -205,6 +207,41 @@ public class ParquetWriter<T> implements Closeable {
             boolean validating,
             WriterVersion writerVersion,
             Configuration conf) throws IOException {
+        this(file, mode, writeSupport, compressionCodecName, blockSize, pageSize, dictionaryPageSize,
+                enableDictionary, null, validating, writerVersion, conf);
+    }
+
+    /**
+     * Create a new ParquetWriter.
+     *
+     * @param file                 the file to create
+     * @param mode                 file creation mode
+     * @param writeSupport         the implementation to write a record to a RecordConsumer
+     * @param compressionCodecName the compression codec to use
+     * @param blockSize            the block size threshold
+     * @param pageSize             the page size threshold
+     * @param dictionaryPageSize   the page size threshold for the dictionary pages
+     * @param enableDictionary     to turn dictionary encoding on
+     * @param dictionaryColumns    when the dictionary is on, the only columns to encode with it,
+     *                             null for all the columns. Only used by writer version 1.0
+     * @param validating           to turn on validation using the schema
+     * @param writerVersion        version of parquetWriter from {@link ParquetProperties.WriterVersion}
+     * @param conf                 Hadoop configuration to use while accessing the filesystem
+     * @throws IOException
+     */
+    public ParquetWriter(
+            Path file,
+            ParquetFileWriter.Mode mode,
+            WriteSupport<T> writeSupport,
+            CompressionCodecName compressionCodecName,
+            int blockSize,
+            int pageSize,
+            int dictionaryPageSize,
+            boolean enableDictionary,
+            Set<ColumnPath> dictionaryColumns,
+            boolean validating,
+            WriterVersion writerVersion,
+            Configuration conf) throws IOException {
 
         WriteSupport.WriteContext writeContext = writeSupport.init(conf);
         MessageType schema = writeContext.getSchema();
@@ -225,6 +262,7 @@ public class ParquetWriter<T> implements Closeable {
                 compressor,
                 dictionaryPageSize,
                 enableDictionary,
+                dictionaryColumns,
                 validating,
                 writerVersion);
     }
@@ -262,6 +300,13 @@ public class ParquetWriter<T> implements Closeable {
         }
     }
 
+    /**
+     * @return the size of the file once closed, without having to look it up in the file system
+     */
+    public long getDataSize() throws IOException {
+        return writer.getDataSize();
+    }
+
     public void close() throws IOException {
         try {
             writer.close();
@@ -0,0 +1,94 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package parquet.hadoop;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static parquet.Preconditions.checkArgument;
+import static parquet.Preconditions.checkNotNull;
+
+/**
+ * Reads the next row groups of a file in the background while the current one is consumed.
+ * <p/>
+ * A prefetcher is shared by the readers of a process, each reader keeps up to {@link #getDepth()}
+ * row groups in flight on the executor. A row group which was fully read when the reader needed
+ * it counts as a hit, a row group the reader had to wait for or read itself counts as a miss.
+ */
+public class RowGroupPrefetcher {
+
+    private final ExecutorService executor;
+    private final int depth;
+
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+
+    /**
+     * @param executor runs the reads, should be bounded; rejected reads are done by the reader itself
+     * @param depth    number of row groups read ahead of the current one
+     */
+    public RowGroupPrefetcher(ExecutorService executor, int depth) {
+        this(executor, depth, new AtomicLong(), new AtomicLong());
+    }
+
+    private RowGroupPrefetcher(ExecutorService executor, int depth, AtomicLong hitCount, AtomicLong missCount) {
+        checkArgument(depth > 0, "depth must be positive");
+        this.executor = checkNotNull(executor, "executor");
+        this.depth = depth;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+    }
+
+    /**
+     * @return a prefetcher on the same executor, sharing the hit/miss counts, which reads depth row groups ahead
+     */
+    public RowGroupPrefetcher withDepth(int depth) {
+        return depth == this.depth ? this : new RowGroupPrefetcher(executor, depth, hitCount, missCount);
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    void recordHit() {
+        hitCount.incrementAndGet();
+    }
+
+    void recordMiss() {
+        missCount.incrementAndGet();
+    }
+
+    /**
+     * @return row groups which were read when the reader needed them
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return row groups the reader waited for
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
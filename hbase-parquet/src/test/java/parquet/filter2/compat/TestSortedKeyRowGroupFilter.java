@@ -0,0 +1,128 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package parquet.filter2.compat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import parquet.column.Encoding;
+import parquet.column.statistics.BinaryStatistics;
+import parquet.hadoop.metadata.BlockMetaData;
+import parquet.hadoop.metadata.ColumnChunkMetaData;
+import parquet.hadoop.metadata.ColumnPath;
+import parquet.hadoop.metadata.CompressionCodecName;
+import parquet.io.api.Binary;
+import parquet.schema.PrimitiveType.PrimitiveTypeName;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestSortedKeyRowGroupFilter {
+
+    private static BlockMetaData makeBlock(String min, String max, long valueCount) {
+        BinaryStatistics stats = new BinaryStatistics();
+        stats.setMinMax(Binary.fromString(min), Binary.fromString(max));
+        BlockMetaData blockMetaData = new BlockMetaData();
+        ColumnChunkMetaData column = ColumnChunkMetaData.get(ColumnPath.get("rowkey"),
+                PrimitiveTypeName.BINARY,
+                CompressionCodecName.SNAPPY,
+                new HashSet<Encoding>(Arrays.asList(Encoding.PLAIN)),
+                stats,
+                100l, 100l, valueCount, 100l, 100l);
+        blockMetaData.addColumn(column);
+        blockMetaData.setTotalByteSize(200l);
+        blockMetaData.setRowCount(valueCount);
+        return blockMetaData;
+    }
+
+    @Test
+    public void testFilterRowGroups() {
+        List<BlockMetaData> blocks = new ArrayList<BlockMetaData>();
+        BlockMetaData b1 = makeBlock("row000", "row099", 100);
+        BlockMetaData b2 = makeBlock("row100", "row199", 100);
+        BlockMetaData b3 = makeBlock("row200", "row299", 100);
+        BlockMetaData b4 = makeBlock("row300", "row399", 100);
+        blocks.addAll(Arrays.asList(b1, b2, b3, b4));
+
+        List<BlockMetaData> filtered = SortedKeyRowGroupFilter.filterRowGroups(blocks, "rowkey", null, null);
+        assertEquals(Arrays.asList(b1, b2, b3, b4), filtered);
+
+        filtered = SortedKeyRowGroupFilter.filterRowGroups(blocks, "rowkey", "row150".getBytes(), null);
+        assertEquals(Arrays.asList(b2, b3, b4), filtered);
+
+        filtered = SortedKeyRowGroupFilter.filterRowGroups(blocks, "rowkey", "row200".getBytes(), null);
+        assertEquals(Arrays.asList(b3, b4), filtered);
+
+        filtered = SortedKeyRowGroupFilter.filterRowGroups(blocks, "rowkey", null, "row150".getBytes());
+        assertEquals(Arrays.asList(b1, b2), filtered);
+
+        filtered = SortedKeyRowGroupFilter.filterRowGroups(blocks, "rowkey", "row150".getBytes(), "row250".getBytes());
+        assertEquals(Arrays.asList(b2, b3), filtered);
+
+        // the last group may still hold keys after its neighbours
+        filtered = SortedKeyRowGroupFilter.filterRowGroups(blocks, "rowkey", "row999".getBytes(), null);
+        assertEquals(Arrays.asList(b4), filtered);
+    }
+
+    @Test
+    public void testFindRowGroup() {
+        List<BlockMetaData> blocks = Arrays.asList(
+                makeBlock("row000", "row099", 100),
+                makeBlock("row100", "row199", 100),
+                makeBlock("row200", "row299", 100));
+
+        assertEquals(0, SortedKeyRowGroupFilter.findRowGroup(blocks, "rowkey", null));
+        assertEquals(0, SortedKeyRowGroupFilter.findRowGroup(blocks, "rowkey", "row050".getBytes()));
+        assertEquals(1, SortedKeyRowGroupFilter.findRowGroup(blocks, "rowkey", "row100".getBytes()));
+        assertEquals(1, SortedKeyRowGroupFilter.findRowGroup(blocks, "rowkey", "row150".getBytes()));
+        assertEquals(2, SortedKeyRowGroupFilter.findRowGroup(blocks, "rowkey", "row999".getBytes()));
+        assertEquals(0, SortedKeyRowGroupFilter.findRowGroup(new ArrayList<BlockMetaData>(), "rowkey",
+                "row150".getBytes()));
+    }
+
+    @Test
+    public void testRowGroupBoundaries() {
+        List<BlockMetaData> blocks = Arrays.asList(
+                makeBlock("row000", "row099", 100),
+                makeBlock("row100", "row199", 100),
+                makeBlock("row200", "row299", 100));
+
+        List<byte[]> boundaries = SortedKeyRowGroupFilter.getRowGroupBoundaries(blocks, "rowkey");
+        assertEquals(2, boundaries.size());
+        assertEquals("row100", new String(boundaries.get(0)));
+        assertEquals("row200", new String(boundaries.get(1)));
+        assertEquals(0, SortedKeyRowGroupFilter.getRowGroupBoundaries(blocks.subList(0, 1), "rowkey").size());
+    }
+
+    @Test
+    public void testUnsignedOrder() {
+        // keys above 0x7f sort after ascii keys in the file, their signed statistics do not
+        List<BlockMetaData> blocks = new ArrayList<BlockMetaData>();
+        BlockMetaData b1 = makeBlock("a", "a\u0001", 10);
+        BlockMetaData b2 = makeBlock("b", "c", 10);
+        blocks.addAll(Arrays.asList(b1, b2));
+
+        List<BlockMetaData> filtered = SortedKeyRowGroupFilter.filterRowGroups(blocks, "rowkey",
+                new byte[]{'a', (byte) 0xff}, null);
+        assertEquals(Arrays.asList(b1, b2), filtered);
+    }
+}
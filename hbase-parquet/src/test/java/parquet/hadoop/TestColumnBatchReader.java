@@ -0,0 +1,335 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package parquet.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static parquet.column.ParquetProperties.WriterVersion.PARQUET_1_0;
+import static parquet.filter2.predicate.FilterApi.and;
+import static parquet.filter2.predicate.FilterApi.binaryColumn;
+import static parquet.filter2.predicate.FilterApi.gtEq;
+import static parquet.filter2.predicate.FilterApi.intColumn;
+import static parquet.filter2.predicate.FilterApi.lt;
+import static parquet.filter2.predicate.FilterApi.notEq;
+import static parquet.filter2.predicate.FilterApi.or;
+import static parquet.format.converter.ParquetMetadataConverter.NO_FILTER;
+import static parquet.hadoop.ParquetFileReader.readFooter;
+import static parquet.hadoop.TestUtils.enforceEmptyDir;
+import static parquet.hadoop.metadata.CompressionCodecName.UNCOMPRESSED;
+import static parquet.schema.MessageTypeParser.parseMessageType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import parquet.example.data.Group;
+import parquet.example.data.simple.SimpleGroupFactory;
+import parquet.filter2.predicate.FilterPredicate;
+import parquet.hadoop.example.GroupWriteSupport;
+import parquet.hadoop.metadata.ColumnPath;
+import parquet.hadoop.metadata.ParquetMetadata;
+import parquet.schema.MessageType;
+
+public class TestColumnBatchReader {
+
+    private static final int ROWS = 1000;
+
+    private static Path writeFile(Configuration conf) throws Exception {
+        Path root = new Path("target/tests/TestColumnBatchReader/");
+        enforceEmptyDir(conf, root);
+        MessageType schema = parseMessageType(
+                "message test { "
+                        + "required binary rowkey; "
+                        + "required int32 int32_field; "
+                        + "required int64 int64_field; "
+                        + "required double double_field; "
+                        + "optional binary optional_field; "
+                        + "} ");
+        GroupWriteSupport.setSchema(schema, conf);
+        SimpleGroupFactory f = new SimpleGroupFactory(schema);
+        Path file = new Path(root, "batches");
+        // small row groups so that batches are cut at row group boundaries
+        ParquetWriter<Group> writer = new ParquetWriter<Group>(
+                file,
+                new GroupWriteSupport(null),
+                UNCOMPRESSED, 1024, 1024, 512, true, false, PARQUET_1_0, conf);
+        for (int i = 0; i < ROWS; i++) {
+            Group group = f.newGroup()
+                    .append("rowkey", String.format("%10d", i))
+                    .append("int32_field", i)
+                    .append("int64_field", (long) i * 2)
+                    .append("double_field", i / 2.0d);
+            if (i % 3 == 0) {
+                group.append("optional_field", "v" + i);
+            }
+            writer.write(group);
+        }
+        writer.close();
+        return file;
+    }
+
+    @Test
+    public void testReadBatches() throws Exception {
+        Configuration conf = new Configuration();
+        Path file = writeFile(conf);
+        final int rows = ROWS;
+
+        ParquetMetadata footer = readFooter(conf, file, NO_FILTER);
+        assertTrue(footer.getBlocks().size() > 1);
+
+        MessageType projection = parseMessageType(
+                "message test { "
+                        + "required binary rowkey; "
+                        + "required int64 int64_field; "
+                        + "optional binary optional_field; "
+                        + "} ");
+        ColumnBatchReader reader = new ColumnBatchReader(conf, file, projection, footer.getBlocks(), 64);
+        assertEquals(rows, reader.getTotal());
+        int row = 0;
+        ColumnBatch batch;
+        while ((batch = reader.nextBatch()) != null) {
+            assertTrue(batch.size() <= 64);
+            ColumnBatch.ColumnVector rowKeys = batch.getVector("rowkey");
+            ColumnBatch.ColumnVector longs = batch.getVector("int64_field");
+            ColumnBatch.ColumnVector optionals = batch.getVector("optional_field");
+            assertNull(batch.getVector("int32_field"));
+            for (int r = batch.getFrom(); r < batch.getTo(); r++, row++) {
+                assertEquals(String.format("%10d", row), new String(rowKeys.getBinary(r), "UTF-8"));
+                assertEquals((long) row * 2, longs.getLong(r));
+                if (row % 3 == 0) {
+                    assertEquals("v" + row, new String(optionals.getBinary(r), "UTF-8"));
+                } else {
+                    assertTrue(optionals.isNull(r));
+                }
+            }
+        }
+        assertEquals(rows, row);
+        assertEquals(0, reader.getTotalCountLeft());
+        reader.close();
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        Configuration conf = new Configuration();
+        Path file = writeFile(conf);
+        ParquetMetadata footer = readFooter(conf, file, NO_FILTER);
+        MessageType projection = parseMessageType(
+                "message test { "
+                        + "required binary rowkey; "
+                        + "required int32 int32_field; "
+                        + "required int64 int64_field; "
+                        + "optional binary optional_field; "
+                        + "} ");
+
+        // the matching rows are spread over the first and the last row groups
+        FilterPredicate predicate = and(
+                or(lt(intColumn("int32_field"), 100), gtEq(intColumn("int32_field"), 900)),
+                notEq(binaryColumn("optional_field"), null));
+        ColumnBatchReader reader = new ColumnBatchReader(conf, file, projection, footer.getBlocks(), 64);
+        reader.setFilter(predicate);
+        int expected = 0;
+        ColumnBatch batch;
+        while ((batch = reader.nextBatch()) != null) {
+            assertTrue(!batch.isEmpty());
+            ColumnBatch.ColumnVector rowKeys = batch.getVector("rowkey");
+            ColumnBatch.ColumnVector ints = batch.getVector("int32_field");
+            ColumnBatch.ColumnVector longs = batch.getVector("int64_field");
+            ColumnBatch.ColumnVector optionals = batch.getVector("optional_field");
+            for (int r = batch.getFrom(); r < batch.getTo(); r++) {
+                if (expected >= 100 && expected < 900) {
+                    expected = 900;
+                }
+                assertEquals(expected, ints.getInt(r));
+                assertEquals(String.format("%10d", expected), new String(rowKeys.getBinary(r), "UTF-8"));
+                assertEquals((long) expected * 2, longs.getLong(r));
+                assertEquals("v" + expected, new String(optionals.getBinary(r), "UTF-8"));
+                expected += 3;
+            }
+        }
+        assertEquals(1002, expected);
+        assertEquals(0, reader.getTotalCountLeft());
+        reader.close();
+    }
+
+    @Test
+    public void testSkipTo() throws Exception {
+        Configuration conf = new Configuration();
+        Path file = writeFile(conf);
+        ParquetMetadata footer = readFooter(conf, file, NO_FILTER);
+        MessageType projection = parseMessageType("message test { required binary rowkey; } ");
+
+        ColumnBatchReader reader = new ColumnBatchReader(conf, file, projection, footer.getBlocks(), 64);
+        byte[] key = String.format("%10d", 700).getBytes("UTF-8");
+        assertTrue(reader.skipTo("rowkey", key));
+        ColumnBatch batch = reader.nextBatch();
+        int first = Integer.parseInt(new String(batch.getVector("rowkey").getBinary(batch.getFrom()), "UTF-8").trim());
+        assertTrue(first > 0 && first <= 700);
+        assertEquals(ROWS - first, reader.getTotalCountLeft() + batch.size());
+        // already in the right row group
+        assertTrue(!reader.skipTo("rowkey", key));
+        reader.close();
+    }
+
+    @Test
+    public void testSkipRowsWithNulls() throws Exception {
+        Configuration conf = new Configuration();
+        Path file = writeFile(conf);
+        ParquetMetadata footer = readFooter(conf, file, NO_FILTER);
+        assertTrue(footer.getBlocks().get(0).getRowCount() > 7);
+        MessageType projection = parseMessageType(
+                "message test { required binary rowkey; optional binary optional_field; } ");
+
+        ColumnBatchReader reader = new ColumnBatchReader(conf, file, projection, footer.getBlocks(), 64);
+        // rows 1, 2 and 4 have no optional value, the skip stays in the first row group
+        assertEquals(5, reader.skipRows(5));
+        ColumnBatch batch = reader.nextBatch();
+        ColumnBatch.ColumnVector rowKeys = batch.getVector("rowkey");
+        ColumnBatch.ColumnVector optionals = batch.getVector("optional_field");
+        int r = batch.getFrom();
+        assertEquals(String.format("%10d", 5), new String(rowKeys.getBinary(r), "UTF-8"));
+        assertTrue(optionals.isNull(r));
+        assertEquals(String.format("%10d", 6), new String(rowKeys.getBinary(r + 1), "UTF-8"));
+        assertEquals("v6", new String(optionals.getBinary(r + 1), "UTF-8"));
+        assertEquals(ROWS - 5, reader.getTotalCountLeft() + batch.size());
+        reader.close();
+    }
+
+    @Test
+    public void testChunkCache() throws Exception {
+        Configuration conf = new Configuration();
+        Path file = writeFile(conf);
+        ParquetMetadata footer = readFooter(conf, file, NO_FILTER);
+        MessageType projection = parseMessageType(
+                "message test { required binary rowkey; required int32 int32_field; } ");
+
+        final Map<Long, byte[]> chunks = new HashMap<Long, byte[]>();
+        final AtomicInteger hits = new AtomicInteger();
+        ColumnChunkCache cache = new ColumnChunkCache() {
+            @Override
+            public byte[] getChunk(Path file, ColumnPath column, long offset) {
+                byte[] chunk = chunks.get(offset);
+                if (chunk != null) {
+                    hits.incrementAndGet();
+                }
+                return chunk;
+            }
+
+            @Override
+            public boolean isCacheOnRead() {
+                return true;
+            }
+
+            @Override
+            public void cacheChunk(Path file, ColumnPath column, long offset, byte[] chunk) {
+                chunks.put(offset, chunk);
+            }
+        };
+
+        for (int pass = 0; pass < 2; pass++) {
+            ColumnBatchReader reader = new ColumnBatchReader(conf, file, projection, footer.getBlocks(), 64, cache);
+            int row = 0;
+            ColumnBatch batch;
+            while ((batch = reader.nextBatch()) != null) {
+                ColumnBatch.ColumnVector ints = batch.getVector("int32_field");
+                for (int r = batch.getFrom(); r < batch.getTo(); r++, row++) {
+                    assertEquals(row, ints.getInt(r));
+                }
+            }
+            assertEquals(ROWS, row);
+            reader.close();
+        }
+        // two columns per row group, all read from the cache the second time
+        assertEquals(footer.getBlocks().size() * 2, chunks.size());
+        assertEquals(chunks.size(), hits.get());
+    }
+
+    @Test
+    public void testChunkCacheNotOnRead() throws Exception {
+        Configuration conf = new Configuration();
+        Path file = writeFile(conf);
+        ParquetMetadata footer = readFooter(conf, file, NO_FILTER);
+        MessageType projection = parseMessageType("message test { required int32 int32_field; } ");
+
+        final AtomicInteger cached = new AtomicInteger();
+        ColumnChunkCache cache = new ColumnChunkCache() {
+            @Override
+            public byte[] getChunk(Path file, ColumnPath column, long offset) {
+                return null;
+            }
+
+            @Override
+            public boolean isCacheOnRead() {
+                return false;
+            }
+
+            @Override
+            public void cacheChunk(Path file, ColumnPath column, long offset, byte[] chunk) {
+                cached.incrementAndGet();
+            }
+        };
+
+        ColumnBatchReader reader = new ColumnBatchReader(conf, file, projection, footer.getBlocks(), 64, cache);
+        int rows = 0;
+        ColumnBatch batch;
+        while ((batch = reader.nextBatch()) != null) {
+            rows += batch.getTo() - batch.getFrom();
+        }
+        reader.close();
+        assertEquals(ROWS, rows);
+        // the chunks are not copied for a cache which does not keep them
+        assertEquals(0, cached.get());
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        Configuration conf = new Configuration();
+        Path file = writeFile(conf);
+        ParquetMetadata footer = readFooter(conf, file, NO_FILTER);
+        MessageType projection = parseMessageType("message test { required int32 int32_field; } ");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            RowGroupPrefetcher prefetcher = new RowGroupPrefetcher(executor, 2);
+            ColumnBatchReader reader = new ColumnBatchReader(conf, file, projection, footer.getBlocks(), 64);
+            reader.setPrefetcher(prefetcher);
+            int row = 0;
+            ColumnBatch batch;
+            while ((batch = reader.nextBatch()) != null) {
+                ColumnBatch.ColumnVector ints = batch.getVector("int32_field");
+                for (int r = batch.getFrom(); r < batch.getTo(); r++, row++) {
+                    assertEquals(row, ints.getInt(r));
+                }
+            }
+            assertEquals(ROWS, row);
+            reader.close();
+            // the first row group is never read ahead
+            assertTrue(prefetcher.getMissCount() >= 1);
+            assertEquals(footer.getBlocks().size(), prefetcher.getHitCount() + prefetcher.getMissCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
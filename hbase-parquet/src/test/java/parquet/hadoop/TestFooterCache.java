@@ -0,0 +1,86 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package parquet.hadoop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static parquet.column.ParquetProperties.WriterVersion.PARQUET_1_0;
+import static parquet.hadoop.TestUtils.enforceEmptyDir;
+import static parquet.hadoop.metadata.CompressionCodecName.UNCOMPRESSED;
+import static parquet.schema.MessageTypeParser.parseMessageType;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import parquet.example.data.Group;
+import parquet.example.data.simple.SimpleGroupFactory;
+import parquet.hadoop.example.GroupWriteSupport;
+import parquet.schema.MessageType;
+
+public class TestFooterCache {
+
+    private static void writeFile(Configuration conf, Path file, int rows) throws Exception {
+        MessageType schema = parseMessageType("message test { required binary rowkey; } ");
+        GroupWriteSupport.setSchema(schema, conf);
+        SimpleGroupFactory f = new SimpleGroupFactory(schema);
+        ParquetWriter<Group> writer = new ParquetWriter<Group>(
+                file,
+                new GroupWriteSupport(null),
+                UNCOMPRESSED, 1024, 1024, 512, true, false, PARQUET_1_0, conf);
+        for (int i = 0; i < rows; i++) {
+            writer.write(f.newGroup().append("rowkey", String.format("%10d", i)));
+        }
+        writer.close();
+    }
+
+    @Test
+    public void testCachedByModificationTime() throws Exception {
+        Configuration conf = new Configuration();
+        Path root = new Path("target/tests/TestFooterCache/");
+        enforceEmptyDir(conf, root);
+        Path file = new Path(root, "footers");
+        writeFile(conf, file, 10);
+        FileSystem fs = file.getFileSystem(conf);
+
+        FooterCache cache = new FooterCache(2);
+        List<FileStatus> statuses = Arrays.asList(fs.getFileStatus(file));
+        Footer first = cache.getFooters(conf, statuses).get(0);
+        Footer second = cache.getFooters(conf, statuses).get(0);
+        assertSame(first.getParquetMetadata(), second.getParquetMetadata());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // a rewritten file is read again
+        fs.delete(file, false);
+        writeFile(conf, file, 20);
+        fs.setTimes(file, statuses.get(0).getModificationTime() + 1000, -1);
+        Footer rewritten = cache.getFooters(conf, Arrays.asList(fs.getFileStatus(file))).get(0);
+        assertEquals(20, rewritten.getParquetMetadata().getBlocks().get(0).getRowCount());
+        assertEquals(2, cache.getMissCount());
+
+        cache.evict(fs.makeQualified(file));
+        assertEquals(0, cache.size());
+    }
+}
@@ -20,6 +20,7 @@ package parquet.hadoop;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static parquet.column.Encoding.DELTA_BYTE_ARRAY;
 import static parquet.column.Encoding.PLAIN;
@@ -33,6 +34,7 @@ import static parquet.hadoop.TestUtils.enforceEmptyDir;
 import static parquet.hadoop.metadata.CompressionCodecName.UNCOMPRESSED;
 import static parquet.schema.MessageTypeParser.parseMessageType;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -49,6 +51,7 @@ import parquet.hadoop.example.GroupReadSupport;
 import parquet.hadoop.example.GroupWriteSupport;
 import parquet.hadoop.metadata.BlockMetaData;
 import parquet.hadoop.metadata.ColumnChunkMetaData;
+import parquet.hadoop.metadata.ColumnPath;
 import parquet.hadoop.metadata.ParquetMetadata;
 import parquet.io.api.Binary;
 import parquet.schema.MessageType;
@@ -126,4 +129,53 @@ public class TestParquetWriter {
             }
         }
     }
+
+    @Test
+    public void testDictionaryColumns() throws Exception {
+        Configuration conf = new Configuration();
+        Path root = new Path("target/tests/TestParquetWriter/");
+        enforceEmptyDir(conf, root);
+        MessageType schema = parseMessageType(
+                "message test { "
+                        + "required binary dictionary_field; "
+                        + "required binary plain_field; "
+                        + "} ");
+        GroupWriteSupport.setSchema(schema, conf);
+        SimpleGroupFactory f = new SimpleGroupFactory(schema);
+        Path file = new Path(root, "dictionary_columns");
+        ParquetWriter<Group> writer = new ParquetWriter<Group>(
+                file, ParquetFileWriter.Mode.CREATE,
+                new GroupWriteSupport(null),
+                UNCOMPRESSED, 1024, 1024, 512, true,
+                Collections.singleton(ColumnPath.get("dictionary_field")),
+                false, PARQUET_1_0, conf);
+        for (int i = 0; i < 1000; i++) {
+            // both columns would fit in a dictionary
+            writer.write(f.newGroup()
+                    .append("dictionary_field", "test" + (i % 10))
+                    .append("plain_field", "test" + (i % 10)));
+        }
+        writer.close();
+
+        ParquetReader<Group> reader = ParquetReader.builder(new GroupReadSupport(), file).withConf(conf).build();
+        for (int i = 0; i < 1000; i++) {
+            Group group = reader.read();
+            assertEquals("test" + (i % 10), group.getBinary("dictionary_field", 0).toStringUsingUTF8());
+            assertEquals("test" + (i % 10), group.getBinary("plain_field", 0).toStringUsingUTF8());
+        }
+        reader.close();
+
+        ParquetMetadata footer = readFooter(conf, file, NO_FILTER);
+        assertTrue(footer.getBlocks().size() > 1);
+        for (BlockMetaData blockMetaData : footer.getBlocks()) {
+            for (ColumnChunkMetaData column : blockMetaData.getColumns()) {
+                boolean dictionary = column.getEncodings().contains(PLAIN_DICTIONARY);
+                if (column.getPath().toDotString().equals("dictionary_field")) {
+                    assertTrue(column.getEncodings().toString(), dictionary);
+                } else {
+                    assertFalse(column.getEncodings().toString(), dictionary);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,248 @@
+package org.apache.hadoop.hbase.coprocessor;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import com.google.protobuf.RpcCallback;
+import com.google.protobuf.RpcController;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CoprocessorEnvironment;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.protobuf.ResponseConverter;
+import org.apache.hadoop.hbase.protobuf.generated.AggregateProtos.AggregateRequest;
+import org.apache.hadoop.hbase.protobuf.generated.AggregateProtos.AggregateResponse;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.PRegionScanner;
+import org.apache.hadoop.hbase.regionserver.RowGroupStatistics;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * {@link AggregateImplementation} for the tables stored in parquet files, used the same
+ * way with the {@link org.apache.hadoop.hbase.client.coprocessor.AggregationClient}.
+ *
+ * The row count, min and max are taken from the statistics in the footer of the row groups
+ * which are whole in the range of the scan and hold the only version of their rows. The rows
+ * of the other row groups, of the memstore and the rows of scans with a filter are read with
+ * a parallel scan of the region. The other aggregations and the tables not stored in parquet
+ * are left to {@link AggregateImplementation}.
+ */
+public class ParquetAggregateImplementation<T, S, P extends Message, Q extends Message, R extends Message>
+        extends AggregateImplementation<T, S, P, Q, R> {
+
+    private static final Log LOG = LogFactory.getLog(ParquetAggregateImplementation.class);
+
+    private RegionCoprocessorEnvironment env;
+
+    @Override
+    public void start(CoprocessorEnvironment env) throws IOException {
+        super.start(env);
+        this.env = (RegionCoprocessorEnvironment) env;
+    }
+
+    private boolean isParquet(Scan scan){
+        return scan.getAttribute(HConstants.SCHEMA) != null
+                || env.getRegion().getTableDesc().getValue(HConstants.SCHEMA) != null;
+    }
+
+    @Override
+    public void getRowNum(RpcController controller, AggregateRequest request,
+                          RpcCallback<AggregateResponse> done) {
+        AggregateResponse response = null;
+        long[] counter = new long[1];
+        try {
+            Scan scan = ProtobufUtil.toScan(request.getScan());
+            if(!isParquet(scan)){
+                super.getRowNum(controller, request, done);
+                return;
+            }
+            final byte[] qualifier = getQualifier(scan);
+            final long[] count = counter;
+            aggregate(scan, qualifier, new Aggregation() {
+                @Override
+                boolean accepts(RowGroupStatistics group) {
+                    return qualifier == null || group.getValueCount() >= 0;
+                }
+
+                @Override
+                void addRowGroup(RowGroupStatistics group) {
+                    count[0] += qualifier == null ? group.getRowCount() : group.getValueCount();
+                }
+
+                @Override
+                void addRow(List<Cell> row) {
+                    count[0]++;
+                }
+            });
+            ByteBuffer bb = ByteBuffer.allocate(8).putLong(counter[0]);
+            bb.rewind();
+            response = AggregateResponse.newBuilder().addFirstPart(
+                    ByteString.copyFrom(bb)).build();
+        } catch (IOException e) {
+            ResponseConverter.setControllerException(controller, e);
+        }
+        LOG.info("Row counter from this region is "
+                + env.getRegion().getRegionNameAsString() + ": " + counter[0]);
+        done.run(response);
+    }
+
+    @Override
+    public void getMax(RpcController controller, AggregateRequest request,
+                       RpcCallback<AggregateResponse> done) {
+        getMinMax(controller, request, done, true);
+    }
+
+    @Override
+    public void getMin(RpcController controller, AggregateRequest request,
+                       RpcCallback<AggregateResponse> done) {
+        getMinMax(controller, request, done, false);
+    }
+
+    private void getMinMax(RpcController controller, AggregateRequest request,
+                           RpcCallback<AggregateResponse> done, final boolean max) {
+        AggregateResponse response = null;
+        final Object[] result = new Object[1];
+        try {
+            Scan scan = ProtobufUtil.toScan(request.getScan());
+            if(!isParquet(scan)){
+                if(max) super.getMax(controller, request, done);
+                else super.getMin(controller, request, done);
+                return;
+            }
+            final ColumnInterpreter<T, S, P, Q, R> ci = constructColumnInterpreterFromRequest(request);
+            final byte[] family = scan.getFamilies()[0];
+            final byte[] qualifier = getQualifier(scan);
+            aggregate(scan, qualifier, new Aggregation() {
+                @Override
+                boolean accepts(RowGroupStatistics group) {
+                    //the max of a family is the max of all its columns
+                    return qualifier != null && group.hasMinMax();
+                }
+
+                @Override
+                void addRowGroup(RowGroupStatistics group) throws IOException {
+                    byte[] value = max ? group.getMax() : group.getMin();
+                    if(value != null){
+                        add(ci.getValue(family, qualifier, new KeyValue(group.getFirstKey(), family, qualifier, value)));
+                    }
+                }
+
+                @Override
+                void addRow(List<Cell> row) throws IOException {
+                    for(Cell cell : row){
+                        add(ci.getValue(family, qualifier, cell));
+                    }
+                }
+
+                @SuppressWarnings("unchecked")
+                private void add(T value){
+                    T curr = (T) result[0];
+                    if(curr == null || (value != null && (max ? ci.compare(value, curr) > 0 : ci.compare(value, curr) < 0))){
+                        result[0] = value;
+                    }
+                }
+            });
+            if (result[0] != null) {
+                @SuppressWarnings("unchecked")
+                T value = (T) result[0];
+                response = AggregateResponse.newBuilder().addFirstPart(
+                        ci.getProtoForCellType(value).toByteString()).build();
+            }
+        } catch (IOException e) {
+            ResponseConverter.setControllerException(controller, e);
+        }
+        LOG.info((max ? "Maximum" : "Minimum") + " from this region is "
+                + env.getRegion().getRegionNameAsString() + ": " + result[0]);
+        done.run(response);
+    }
+
+    private static byte[] getQualifier(Scan scan){
+        if(!scan.hasFamilies()){
+            return null;
+        }
+        NavigableSet<byte[]> qualifiers = scan.getFamilyMap().get(scan.getFamilies()[0]);
+        return qualifiers == null || qualifiers.isEmpty() ? null : qualifiers.first();
+    }
+
+    /**
+     * aggregate the row groups answered by their statistics and the rows read in between
+     */
+    private void aggregate(Scan scan, byte[] qualifier, Aggregation aggregation) throws IOException {
+        HRegion region = env.getRegion();
+        List<RowGroupStatistics> groups = Collections.emptyList();
+        HStore store = null;
+        if(scan.getFilter() == null && scan.hasFamilies() && scan.getFamilies().length == 1){
+            byte[] family = scan.getFamilies()[0];
+            store = (HStore) region.getStore(family);
+            if(store != null){
+                String column = qualifier == null ? null : Bytes.toString(family) + ":" + Bytes.toString(qualifier);
+                groups = store.getRowGroupStatistics(scan.getStartRow(), scan.getStopRow(), column);
+            }
+        }
+
+        byte[] cursor = scan.getStartRow();
+        int fromStatistics = 0;
+        for(RowGroupStatistics group : groups){
+            if(!aggregation.accepts(group)) continue;
+            if(Bytes.compareTo(cursor, group.getFirstKey()) < 0 && store.mayContainRows(cursor, group.getFirstKey())){
+                scanRange(scan, cursor, group.getFirstKey(), aggregation);
+            }
+            aggregation.addRowGroup(group);
+            fromStatistics++;
+            cursor = Bytes.add(group.getLastKey(), new byte[]{0});
+        }
+        byte[] stopRow = scan.getStopRow();
+        boolean hasStopRow = stopRow != null && stopRow.length > 0;
+        if(!hasStopRow || Bytes.compareTo(cursor, stopRow) < 0){
+            if(fromStatistics == 0 || store.mayContainRows(cursor, stopRow)){
+                scanRange(scan, cursor, stopRow, aggregation);
+            }
+        }
+        if(LOG.isDebugEnabled()){
+            LOG.debug(fromStatistics + " row groups of " + region.getRegionNameAsString()
+                    + " aggregated from their statistics");
+        }
+    }
+
+    private void scanRange(Scan scan, byte[] startRow, byte[] stopRow, Aggregation aggregation) throws IOException {
+        Scan range = new Scan(scan);
+        range.setStartRow(startRow);
+        range.setStopRow(stopRow == null ? HConstants.EMPTY_END_ROW : stopRow);
+        PRegionScanner scanner = env.getRegion().getParallelPScanner(range, false);
+        try {
+            while (scanner.hasNext()){
+                List<Cell> row = scanner.nextRaw();
+                if(!row.isEmpty()){
+                    aggregation.addRow(row);
+                }
+            }
+        }finally {
+            scanner.close();
+        }
+    }
+
+    /**
+     * an aggregation of row groups and rows
+     */
+    private static abstract class Aggregation {
+
+        /**
+         * @return whether the statistics of the row group answer the aggregation
+         */
+        abstract boolean accepts(RowGroupStatistics group);
+
+        abstract void addRowGroup(RowGroupStatistics group) throws IOException;
+
+        abstract void addRow(List<Cell> row) throws IOException;
+    }
+}
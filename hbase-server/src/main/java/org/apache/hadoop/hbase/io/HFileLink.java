@@ -64,19 +64,22 @@ public class HFileLink extends FileLink {
    * Table name is ([a-zA-Z_0-9][a-zA-Z_0-9.-]*), so '=' is an invalid character for the table name.
    * Region name is ([a-f0-9]+), so '-' is an invalid character for the region name.
    * HFile is ([0-9a-f]+(?:_SeqId_[0-9]+_)?) covering the plain hfiles (uuid)
-   * and the bulk loaded (_SeqId_[0-9]+_) hfiles.
+   * and the bulk loaded (_SeqId_[0-9]+_) hfiles, with a .parquet suffix for the
+   * parquet store files.
    */
   public static final String LINK_NAME_REGEX =
-    String.format("(?:(?:%s=)?)%s=%s-%s",
+    String.format("(?:(?:%s=)?)%s=%s-(?:%s|%s)",
       TableName.VALID_NAMESPACE_REGEX, TableName.VALID_TABLE_QUALIFIER_REGEX,
-      HRegionInfo.ENCODED_REGION_NAME_REGEX, StoreFileInfo.HFILE_NAME_REGEX);
+      HRegionInfo.ENCODED_REGION_NAME_REGEX, StoreFileInfo.PFILE_NAME_REGEX,
+      StoreFileInfo.HFILE_NAME_REGEX);
 
   /** Define the HFile Link name parser in the form of: table=region-hfile */
   //made package private for testing
   static final Pattern LINK_NAME_PATTERN =
-    Pattern.compile(String.format("^(?:(%s)(?:\\=))?(%s)=(%s)-(%s)$",
+    Pattern.compile(String.format("^(?:(%s)(?:\\=))?(%s)=(%s)-(%s|%s)$",
       TableName.VALID_NAMESPACE_REGEX, TableName.VALID_TABLE_QUALIFIER_REGEX,
-      HRegionInfo.ENCODED_REGION_NAME_REGEX, StoreFileInfo.HFILE_NAME_REGEX));
+      HRegionInfo.ENCODED_REGION_NAME_REGEX, StoreFileInfo.PFILE_NAME_REGEX,
+      StoreFileInfo.HFILE_NAME_REGEX));
 
   /**
    * The pattern should be used for hfile and reference links
@@ -0,0 +1,186 @@
+package org.apache.hadoop.hbase.io.pfile;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.api.ColumnarBlock;
+import org.apache.hadoop.hbase.util.Bytes;
+import parquet.column.ColumnDescriptor;
+import parquet.hadoop.ColumnBatch;
+import parquet.schema.MessageType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * map the rows of a {@link ColumnBatch} to cells
+ *
+ * columns named "family:qualifier" become cells, the rowkey and timestamp
+ * columns give the row and timestamp of the cells
+ */
+public class BatchRowMapper {
+
+    private final MessageType schema;
+
+    private final int rowKeyColumn;
+    private final int timestampColumn;
+
+    // family and qualifier per column, null for columns which are not cells
+    private final byte[][] families;
+    private final byte[][] qualifiers;
+
+    // block the rows were last appended to, with the block column of each column
+    private ColumnarBlock.Builder block = null;
+    private int[] blockColumns = null;
+
+
+    public BatchRowMapper(MessageType schema){
+        this.schema = schema;
+        List<ColumnDescriptor> columns = schema.getColumns();
+        families = new byte[columns.size()][];
+        qualifiers = new byte[columns.size()][];
+        int rowKey = -1, timestamp = -1;
+        for(int i = 0; i < columns.size(); ++i){
+            String name = columns.get(i).getPath()[0];
+            if(name.equals(HConstants.ROW_KEY)){
+                rowKey = i;
+            }else if(name.equals(HConstants.TIME_STAMP)){
+                timestamp = i;
+            }else {
+                String [] names = name.split(":");
+                if(names.length == 2){
+                    families[i] = Bytes.toBytes(names[0]);
+                    qualifiers[i] = Bytes.toBytes(names[1]);
+                }
+            }
+        }
+        if(rowKey < 0){
+            throw new IllegalArgumentException("no " + HConstants.ROW_KEY + " column in " + schema);
+        }
+        this.rowKeyColumn = rowKey;
+        this.timestampColumn = timestamp;
+    }
+
+    /**
+     * @return whether the mapper was built for the schema of the batch
+     */
+    public boolean accept(ColumnBatch batch){
+        return batch.getSchema() == schema || batch.getSchema().equals(schema);
+    }
+
+    public MessageType getSchema(){
+        return schema;
+    }
+
+    /**
+     * @return the rowkey vector of the batch
+     */
+    public ColumnBatch.ColumnVector getRowKeys(ColumnBatch batch){
+        return batch.getVector(rowKeyColumn);
+    }
+
+    /**
+     * compare the rowkey of a row in the batch with the given key, without copy
+     */
+    public int compareRow(ColumnBatch batch, int row, byte[] key){
+        ColumnBatch.ColumnVector rowKeys = batch.getVector(rowKeyColumn);
+        return Bytes.compareTo(rowKeys.getBytes(), rowKeys.getOffset(row), rowKeys.getLength(row),
+                key, 0, key.length);
+    }
+
+    /**
+     * @return first row in [from, to) whose rowkey is not less than key, to if there is none
+     */
+    public int searchRow(ColumnBatch batch, int from, int to, byte[] key){
+        int low = from, high = to;
+        while (low < high){
+            int mid = (low + high) >>> 1;
+            if(compareRow(batch, mid, key) < 0){
+                low = mid + 1;
+            }else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public byte[] getRow(ColumnBatch batch, int row){
+        return batch.getVector(rowKeyColumn).getBinary(row);
+    }
+
+    /**
+     * @return the cells of a row of the batch
+     */
+    public List<Cell> toCells(ColumnBatch batch, int row){
+        List<Cell> cells = new ArrayList<>(families.length);
+        byte[] rowKey = getRow(batch, row);
+        long timestamp = HConstants.LATEST_TIMESTAMP;
+        if(timestampColumn >= 0 && !batch.getVector(timestampColumn).isNull(row)){
+            timestamp = batch.getVector(timestampColumn).getLong(row);
+        }
+        for(int i = 0; i < families.length; ++i){
+            if(families[i] == null) continue;
+            ColumnBatch.ColumnVector vector = batch.getVector(i);
+            if(vector.isNull(row)) continue;
+            cells.add(new KeyValue(rowKey, families[i], qualifiers[i], timestamp, toBytes(vector, row)));
+        }
+        return cells;
+    }
+
+    /**
+     * add a row of the batch to a columnar block, the binary values are copied
+     * straight from the vectors
+     */
+    public void appendRow(ColumnarBlock.Builder block, ColumnBatch batch, int row){
+        if(this.block != block){
+            this.block = block;
+            blockColumns = new int[families.length];
+            for(int i = 0; i < families.length; ++i){
+                blockColumns[i] = families[i] == null ? -1 : block.addColumn(families[i], qualifiers[i]);
+            }
+        }
+        ColumnBatch.ColumnVector rowKeys = batch.getVector(rowKeyColumn);
+        long timestamp = HConstants.LATEST_TIMESTAMP;
+        if(timestampColumn >= 0 && !batch.getVector(timestampColumn).isNull(row)){
+            timestamp = batch.getVector(timestampColumn).getLong(row);
+        }
+        block.startRow(rowKeys.getBytes(), rowKeys.getOffset(row), rowKeys.getLength(row), timestamp);
+        for(int i = 0; i < families.length; ++i){
+            if(families[i] == null) continue;
+            ColumnBatch.ColumnVector vector = batch.getVector(i);
+            if(vector.isNull(row)) continue;
+            switch (vector.getType()){
+                case BOOLEAN:
+                case INT32:
+                case INT64:
+                case FLOAT:
+                case DOUBLE:
+                    byte[] value = toBytes(vector, row);
+                    block.setValue(blockColumns[i], value, 0, value.length);
+                    break;
+                default:
+                    block.setValue(blockColumns[i], vector.getBytes(), vector.getOffset(row), vector.getLength(row));
+            }
+        }
+    }
+
+    /**
+     * @return value of a row in the vector as bytes
+     */
+    public static byte[] toBytes(ColumnBatch.ColumnVector vector, int row){
+        switch (vector.getType()){
+            case BOOLEAN:
+                return Bytes.toBytes(vector.getBoolean(row));
+            case INT32:
+                return Bytes.toBytes(vector.getInt(row));
+            case INT64:
+                return Bytes.toBytes(vector.getLong(row));
+            case FLOAT:
+                return Bytes.toBytes(vector.getFloat(row));
+            case DOUBLE:
+                return Bytes.toBytes(vector.getDouble(row));
+            default:
+                return vector.getBinary(row);
+        }
+    }
+}
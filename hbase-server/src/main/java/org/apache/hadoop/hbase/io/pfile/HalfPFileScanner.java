@@ -0,0 +1,162 @@
+package org.apache.hadoop.hbase.io.pfile;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.regionserver.BatchRecordScanner;
+import org.apache.hadoop.hbase.regionserver.InternalRecordScanner;
+import org.apache.hadoop.hbase.regionserver.RecordScannerComparator;
+import org.apache.hadoop.hbase.util.ByteRange;
+import org.apache.hadoop.hbase.util.Bytes;
+import parquet.hadoop.ColumnBatch;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * scanner of a half of a parquet file of the parent region of a split, read through a split
+ * reference of a daughter like the hfiles are read by {@link org.apache.hadoop.hbase.io.HalfStoreFileReader}.
+ *
+ * the top half holds the rows from the split row, the bottom half the rows before it,
+ * the rows of the other half are never returned. the rows of each half are counted from
+ * the row index of the file, or taken as half of the file when it has none.
+ */
+public class HalfPFileScanner implements InternalRecordScanner, BatchRecordScanner {
+
+    private final InternalRecordScanner scanner;
+    private final byte[] splitRow;
+    private final boolean top;
+    // rows of the file before the split row, at least and at most
+    private final long minRowsBefore;
+    private final long maxRowsBefore;
+
+    /**
+     * @param scanner scanner of the whole file
+     * @param splitRow the split row of the reference
+     * @param top whether the scanner reads the top half
+     */
+    public HalfPFileScanner(InternalRecordScanner scanner, byte[] splitRow, boolean top){
+        this(scanner, splitRow, top, null);
+    }
+
+    /**
+     * @param scanner scanner of the whole file
+     * @param splitRow the split row of the reference
+     * @param top whether the scanner reads the top half
+     * @param rowIndex row index of the file, null if it has none
+     */
+    public HalfPFileScanner(InternalRecordScanner scanner, byte[] splitRow, boolean top,
+                            PFileRowIndex rowIndex){
+        this.scanner = scanner;
+        this.splitRow = splitRow;
+        this.top = top;
+        long total = scanner.getRecordCount();
+        if(rowIndex != null){
+            long next = rowIndex.getNextRowOrdinal(splitRow);
+            this.minRowsBefore = Math.max(0, rowIndex.getRowOrdinal(splitRow));
+            this.maxRowsBefore = next < 0 ? total : next;
+        }else {
+            this.minRowsBefore = total / 2;
+            this.maxRowsBefore = total / 2;
+        }
+        if(top){
+            scanner.seek(splitRow);
+        }
+    }
+
+    @Override
+    public ByteRange peekRowKey() {
+        ByteRange rowKey = scanner.peekRowKey();
+        if(rowKey == null || (!top && RecordScannerComparator.compareRows(rowKey, splitRow) >= 0)){
+            return null;
+        }
+        return rowKey;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return peekRowKey() != null;
+    }
+
+    @Override
+    public List<Cell> peek() {
+        return hasNext() ? scanner.peek() : new LinkedList<Cell>();
+    }
+
+    @Override
+    public List<Cell> next() {
+        return hasNext() ? scanner.next() : new LinkedList<Cell>();
+    }
+
+    /**
+     * the rows before the split row are skipped by a top half
+     */
+    @Override
+    public void seek(byte[] rowkey) {
+        if(top && (rowkey == null || Bytes.compareTo(rowkey, splitRow) < 0)){
+            rowkey = splitRow;
+        }
+        if(rowkey != null){
+            scanner.seek(rowkey);
+        }
+    }
+
+    /**
+     * a batch of a bottom half stops at the split row
+     */
+    @Override
+    public ColumnBatch nextBatch(int maxRows, byte[] stopRow) throws IOException {
+        if(!(scanner instanceof BatchRecordScanner) || !hasNext()){
+            return null;
+        }
+        if(!top && (stopRow == null || Bytes.compareTo(stopRow, splitRow) > 0)){
+            stopRow = splitRow;
+        }
+        return ((BatchRecordScanner) scanner).nextBatch(maxRows, stopRow);
+    }
+
+    /**
+     * @return start key of the half, the split row for a top half
+     */
+    @Override
+    public byte[] getStartKey() {
+        byte[] startKey = scanner.getStartKey();
+        if(top && (startKey == null || Bytes.compareTo(startKey, splitRow) < 0)){
+            return splitRow;
+        }
+        return startKey;
+    }
+
+    /**
+     * @return end key of the whole file, the last row of a bottom half is not known
+     */
+    @Override
+    public byte[] getEndKey() {
+        return scanner.getEndKey();
+    }
+
+    /**
+     * @return records' count of the half, known up to the interval of the row index
+     */
+    @Override
+    public long getRecordCount() {
+        return top ? scanner.getRecordCount() - minRowsBefore : minRowsBefore;
+    }
+
+    /**
+     * @return max result count left in the half, a bottom half stops at the split row
+     */
+    @Override
+    public long getMaxResultsCount() {
+        long left = scanner.getMaxResultsCount();
+        if(top){
+            return left;
+        }
+        long read = scanner.getRecordCount() - left;
+        return Math.max(0, Math.min(left, maxRowsBefore - read));
+    }
+
+    @Override
+    public void close() throws IOException {
+        scanner.close();
+    }
+}
@@ -0,0 +1,306 @@
+package org.apache.hadoop.hbase.io.pfile;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.exceptions.FailedSanityCheckException;
+import org.apache.hadoop.hbase.util.Bytes;
+import parquet.hadoop.api.WriteSupport;
+import parquet.io.api.Binary;
+import parquet.io.api.RecordConsumer;
+import parquet.schema.MessageType;
+import parquet.schema.PrimitiveType.PrimitiveTypeName;
+import parquet.schema.Type;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * write a {@link Mutation} as a parquet record, without an intermediate group
+ *
+ * the rowkey and the binary values are written as slices of the cell arrays,
+ * numeric columns are decoded with {@link Bytes} according to the schema.
+ * the values are referenced until the row group is flushed, so the cells of a
+ * mutation must not be modified while the writer is open.
+ *
+ * the first and last rows written are recorded as the start and end key of
+ * the file unless they are given in the metadata, along with the rowkey bloom
+ * filter and index of the file, see {@link PFileRowIndex}.
+ */
+public class MutationWriteSupport extends WriteSupport<Mutation> {
+
+    private final MessageType schema;
+    private Map<String, String> metaData;
+
+    private final int rowKeyField;
+    private final int timestampField;
+    private final PrimitiveTypeName[] types;
+    private final String[] names;
+
+    // family -> qualifiers of the family sorted in bytes order, with their field index
+    private final TreeMap<byte[], byte[][]> qualifiers = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    private final TreeMap<byte[], int[]> fields = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+
+    // cell of each field in the row being written, reused between rows
+    private final Cell[] row;
+
+    private RecordConsumer recordConsumer;
+
+    private byte[] firstRow = null;
+    private byte[] lastRow = null;
+
+    private PFileRowIndex.Writer rowIndex = null;
+
+
+    public MutationWriteSupport(MessageType schema, Map<String, String> metas){
+        this.schema = schema;
+        this.metaData = metas == null ? new HashMap<String, String>() : metas;
+
+        List<Type> schemaFields = schema.getFields();
+        types = new PrimitiveTypeName[schemaFields.size()];
+        names = new String[schemaFields.size()];
+        row = new Cell[schemaFields.size()];
+        int rowKey = -1, timestamp = -1;
+        Map<String, TreeMap<byte[], Integer>> families = new HashMap<>();
+        for(int i = 0; i < schemaFields.size(); ++i){
+            Type field = schemaFields.get(i);
+            if(!field.isPrimitive()){
+                throw new IllegalArgumentException("nested field " + field.getName() + " in " + schema);
+            }
+            types[i] = field.asPrimitiveType().getPrimitiveTypeName();
+            names[i] = field.getName();
+            if(names[i].equals(HConstants.ROW_KEY)){
+                rowKey = i;
+            }else if(names[i].equals(HConstants.TIME_STAMP)){
+                timestamp = i;
+            }else {
+                String [] column = names[i].split(":");
+                if(column.length == 2){
+                    TreeMap<byte[], Integer> family = families.get(column[0]);
+                    if(family == null){
+                        family = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+                        families.put(column[0], family);
+                    }
+                    family.put(Bytes.toBytes(column[1]), i);
+                }
+            }
+        }
+        if(rowKey < 0){
+            throw new IllegalArgumentException("no " + HConstants.ROW_KEY + " field in " + schema);
+        }
+        this.rowKeyField = rowKey;
+        this.timestampField = timestamp;
+
+        for(Map.Entry<String, TreeMap<byte[], Integer>> family : families.entrySet()){
+            byte[][] familyQualifiers = family.getValue().keySet().toArray(new byte[0][]);
+            int[] familyFields = new int[familyQualifiers.length];
+            int j = 0;
+            for(Integer field : family.getValue().values()){
+                familyFields[j++] = field;
+            }
+            qualifiers.put(Bytes.toBytes(family.getKey()), familyQualifiers);
+            fields.put(Bytes.toBytes(family.getKey()), familyFields);
+        }
+    }
+
+    public void addMeta(Map<String, String> metas){
+        this.metaData = metas;
+    }
+
+    public MessageType getSchema(){
+        return schema;
+    }
+
+    @Override
+    public WriteContext init(Configuration configuration) {
+        rowIndex = new PFileRowIndex.Writer(configuration);
+        return new WriteContext(schema, metaData);
+    }
+
+    @Override
+    public void prepareForWrite(RecordConsumer recordConsumer) {
+        //called again for each new row group
+        if(rowIndex != null){
+            rowIndex.endRowGroup();
+        }
+        this.recordConsumer = recordConsumer;
+    }
+
+    @Override
+    public FinalizedWriteContext finalizeWrite() {
+        Map<String, String> extraMetaData = new HashMap<>();
+        if(firstRow != null && !metaData.containsKey(HConstants.START_KEY)){
+            extraMetaData.put(HConstants.START_KEY, Bytes.toString(firstRow));
+        }
+        if(lastRow != null && !metaData.containsKey(HConstants.END_KEY)){
+            extraMetaData.put(HConstants.END_KEY, Bytes.toString(lastRow));
+        }
+        if(rowIndex != null){
+            extraMetaData.putAll(rowIndex.toMetaData());
+        }
+        return new FinalizedWriteContext(extraMetaData);
+    }
+
+    @Override
+    public void write(Mutation mutation) {
+        try {
+            long timestamp = collect(mutation);
+            byte[] rowKey = mutation.getRow();
+            recordConsumer.startMessage();
+            for(int i = 0; i < row.length; ++i){
+                if(i == rowKeyField){
+                    recordConsumer.startField(names[i], i);
+                    recordConsumer.addBinary(Binary.fromByteArray(rowKey, 0, rowKey.length));
+                    recordConsumer.endField(names[i], i);
+                }else if(i == timestampField){
+                    recordConsumer.startField(names[i], i);
+                    recordConsumer.addLong(timestamp);
+                    recordConsumer.endField(names[i], i);
+                }else if(row[i] != null){
+                    recordConsumer.startField(names[i], i);
+                    writeValue(i, row[i]);
+                    recordConsumer.endField(names[i], i);
+                }
+            }
+            recordConsumer.endMessage();
+            rowIndex.add(rowKey, 0, rowKey.length);
+            if(firstRow == null){
+                firstRow = rowKey;
+            }
+            lastRow = rowKey;
+        }finally {
+            Arrays.fill(row, null);
+        }
+    }
+
+    /**
+     * put the cells of the mutation in their field, the values are checked
+     * before anything is written so that a bad value does not leave a partial record
+     * @return timestamp of the record, the newest timestamp of its cells
+     */
+    private long collect(Mutation mutation){
+        long timestamp = HConstants.OLDEST_TIMESTAMP;
+        for(Map.Entry<byte[], List<Cell>> family : mutation.getFamilyCellMap().entrySet()){
+            byte[][] familyQualifiers = qualifiers.get(family.getKey());
+            if(familyQualifiers == null) continue;
+            int[] familyFields = fields.get(family.getKey());
+            for(Cell cell : family.getValue()){
+                int pos = search(familyQualifiers, cell);
+                if(pos < 0) continue;
+                int field = familyFields[pos];
+                int expected = fixedLength(types[field]);
+                if(expected >= 0 && cell.getValueLength() != expected){
+                    throw new IllegalArgumentException("value of " + names[field] + " has "
+                            + cell.getValueLength() + " bytes, " + types[field] + " needs " + expected);
+                }
+                // a column set twice in a mutation keeps its newest value
+                if(row[field] == null || row[field].getTimestamp() <= cell.getTimestamp()){
+                    row[field] = cell;
+                }
+                timestamp = Math.max(timestamp, cell.getTimestamp());
+            }
+        }
+        if(timestamp == HConstants.OLDEST_TIMESTAMP || timestamp == HConstants.LATEST_TIMESTAMP){
+            timestamp = System.currentTimeMillis();
+        }
+        return timestamp;
+    }
+
+    /**
+     * check a mutation before it is accepted by the memstore, a value {@link #write(Mutation)}
+     * rejects would otherwise fail every flush of the store
+     * @throws FailedSanityCheckException if a cell is not a column of the schema or the size of
+     *                                    its value does not fit the type of the column
+     */
+    public void check(Mutation mutation) throws FailedSanityCheckException{
+        for(Map.Entry<byte[], List<Cell>> family : mutation.getFamilyCellMap().entrySet()){
+            byte[][] familyQualifiers = qualifiers.get(family.getKey());
+            int[] familyFields = fields.get(family.getKey());
+            for(Cell cell : family.getValue()){
+                int pos = familyQualifiers == null ? -1 : search(familyQualifiers, cell);
+                if(pos < 0){
+                    throw new FailedSanityCheckException("column " + Bytes.toStringBinary(family.getKey())
+                            + ":" + Bytes.toStringBinary(cell.getQualifierArray(), cell.getQualifierOffset(),
+                            cell.getQualifierLength()) + " of row " + Bytes.toStringBinary(mutation.getRow())
+                            + " is not in the schema " + schema);
+                }
+                int field = familyFields[pos];
+                int expected = fixedLength(types[field]);
+                if(expected >= 0 && cell.getValueLength() != expected){
+                    throw new FailedSanityCheckException("value of " + names[field] + " of row "
+                            + Bytes.toStringBinary(mutation.getRow()) + " has " + cell.getValueLength()
+                            + " bytes, " + types[field] + " needs " + expected);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return index of the qualifier of the cell, -1 if it is not in the schema
+     */
+    private static int search(byte[][] familyQualifiers, Cell cell){
+        int low = 0, high = familyQualifiers.length - 1;
+        while (low <= high){
+            int mid = (low + high) >>> 1;
+            int cmp = Bytes.compareTo(familyQualifiers[mid], 0, familyQualifiers[mid].length,
+                    cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength());
+            if(cmp < 0){
+                low = mid + 1;
+            }else if(cmp > 0){
+                high = mid - 1;
+            }else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private void writeValue(int field, Cell cell){
+        byte[] array = cell.getValueArray();
+        int offset = cell.getValueOffset();
+        int length = cell.getValueLength();
+        switch (types[field]){
+            case BOOLEAN:
+                recordConsumer.addBoolean(array[offset] != 0);
+                break;
+            case INT32:
+                recordConsumer.addInteger(Bytes.toInt(array, offset, length));
+                break;
+            case INT64:
+                recordConsumer.addLong(Bytes.toLong(array, offset, length));
+                break;
+            case FLOAT:
+                recordConsumer.addFloat(Bytes.toFloat(array, offset));
+                break;
+            case DOUBLE:
+                recordConsumer.addDouble(Bytes.toDouble(array, offset));
+                break;
+            default:
+                recordConsumer.addBinary(Binary.fromByteArray(array, offset, length));
+        }
+    }
+
+    /**
+     * @return size of the encoded values of a type, -1 for variable length values
+     */
+    private static int fixedLength(PrimitiveTypeName type){
+        switch (type){
+            case BOOLEAN:
+                return 1;
+            case INT32:
+                return Bytes.SIZEOF_INT;
+            case INT64:
+                return Bytes.SIZEOF_LONG;
+            case FLOAT:
+                return Bytes.SIZEOF_FLOAT;
+            case DOUBLE:
+                return Bytes.SIZEOF_DOUBLE;
+            default:
+                return -1;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Mutation;
 import parquet.example.data.Group;
 
 import java.io.IOException;
@@ -49,10 +50,20 @@ public class PFile {
 
         public void append(Group group);
 
+        /**
+         * append a row without converting it to a {@link Group}
+         */
+        public void append(Mutation m);
+
         /**
          * close the writer
          */
         public void close() throws IOException;
+
+        /**
+         * @return bytes written so far, the length of the file once closed
+         */
+        public long getDataSize() throws IOException;
     }
 
     /**
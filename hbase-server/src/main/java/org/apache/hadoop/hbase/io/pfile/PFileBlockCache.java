@@ -0,0 +1,68 @@
+package org.apache.hadoop.hbase.io.pfile;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.io.hfile.BlockCache;
+import org.apache.hadoop.hbase.io.hfile.BlockCacheKey;
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import parquet.hadoop.ColumnChunkCache;
+import parquet.hadoop.metadata.ColumnPath;
+
+/**
+ * keeps the column chunks of parquet store files in the block cache of the region server
+ *
+ * chunks are keyed like hfile blocks by file name and offset, the starting offset of a
+ * chunk is unique to its column and row group, so the blocks of a file can be evicted
+ * with {@link BlockCache#evictBlocksByHfileName(String)}
+ */
+public class PFileBlockCache implements ColumnChunkCache {
+
+    private final CacheConfig cacheConf;
+
+    public PFileBlockCache(CacheConfig cacheConf){
+        this.cacheConf = cacheConf;
+    }
+
+    /**
+     * @return a chunk cache on the block cache of cacheConf, null if the block cache is disabled
+     */
+    public static PFileBlockCache create(CacheConfig cacheConf){
+        if(cacheConf == null || !cacheConf.isBlockCacheEnabled()){
+            return null;
+        }
+        return new PFileBlockCache(cacheConf);
+    }
+
+    @Override
+    public byte[] getChunk(Path file, ColumnPath column, long offset) {
+        boolean cacheOnRead = cacheConf.shouldCacheBlockOnRead(BlockType.DATA.getCategory());
+        Cacheable block = cacheConf.getBlockCache()
+                .getBlock(new BlockCacheKey(file.getName(), offset), cacheOnRead, false, true);
+        if(block instanceof PFileChunkBlock){
+            return ((PFileChunkBlock) block).getChunk();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isCacheOnRead() {
+        return cacheConf.shouldCacheBlockOnRead(BlockType.DATA.getCategory());
+    }
+
+    @Override
+    public void cacheChunk(Path file, ColumnPath column, long offset, byte[] chunk) {
+        if(!isCacheOnRead()){
+            return;
+        }
+        cacheConf.getBlockCache().cacheBlock(new BlockCacheKey(file.getName(), offset),
+                new PFileChunkBlock(chunk), cacheConf.isInMemory(), cacheConf.isCacheDataInL1());
+    }
+
+    /**
+     * drop the chunks of a file which was removed
+     */
+    public void evictFile(Path file){
+        cacheConf.getBlockCache().evictBlocksByHfileName(file.getName());
+    }
+}
@@ -0,0 +1,84 @@
+package org.apache.hadoop.hbase.io.pfile;
+
+import org.apache.hadoop.hbase.io.hfile.BlockType;
+import org.apache.hadoop.hbase.io.hfile.Cacheable;
+import org.apache.hadoop.hbase.io.hfile.CacheableDeserializer;
+import org.apache.hadoop.hbase.io.hfile.CacheableDeserializerIdManager;
+import org.apache.hadoop.hbase.util.ClassSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * a column chunk of a parquet file held in the block cache,
+ * cached as a data block so it gets the same priorities as the hfile data blocks
+ */
+public class PFileChunkBlock implements Cacheable {
+
+    private static final long OVERHEAD = ClassSize.align(ClassSize.OBJECT + ClassSize.REFERENCE);
+
+    private static final CacheableDeserializer<Cacheable> chunkDeserializer =
+            new CacheableDeserializer<Cacheable>() {
+                @Override
+                public Cacheable deserialize(ByteBuffer b) throws IOException {
+                    byte[] chunk = new byte[b.remaining()];
+                    b.get(chunk);
+                    return new PFileChunkBlock(chunk);
+                }
+
+                @Override
+                public Cacheable deserialize(ByteBuffer b, boolean reuse) throws IOException {
+                    //chunks are handed to the parquet readers as arrays, always copy
+                    return deserialize(b);
+                }
+
+                @Override
+                public int getDeserialiserIdentifier() {
+                    return deserializerIdentifier;
+                }
+            };
+
+    private static final int deserializerIdentifier;
+    static {
+        deserializerIdentifier = CacheableDeserializerIdManager.registerDeserializer(chunkDeserializer);
+    }
+
+    private final byte[] chunk;
+
+    public PFileChunkBlock(byte[] chunk){
+        this.chunk = chunk;
+    }
+
+    /**
+     * @return bytes of the column chunk, must not be modified
+     */
+    public byte[] getChunk(){
+        return chunk;
+    }
+
+    @Override
+    public int getSerializedLength() {
+        return chunk.length;
+    }
+
+    @Override
+    public void serialize(ByteBuffer destination) {
+        destination.put(chunk);
+        destination.rewind();
+    }
+
+    @Override
+    public CacheableDeserializer<Cacheable> getDeserializer() {
+        return chunkDeserializer;
+    }
+
+    @Override
+    public BlockType getBlockType() {
+        return BlockType.DATA;
+    }
+
+    @Override
+    public long heapSize() {
+        return OVERHEAD + ClassSize.align(ClassSize.ARRAY + chunk.length);
+    }
+}
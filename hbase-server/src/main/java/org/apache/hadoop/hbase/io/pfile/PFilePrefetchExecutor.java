@@ -0,0 +1,72 @@
+package org.apache.hadoop.hbase.io.pfile;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import parquet.hadoop.RowGroupPrefetcher;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * executor shared among all parquet store files to read row groups ahead of the scanners
+ *
+ * read ahead is off unless {@link #PREFETCH_ROW_GROUPS_KEY} is set, globally or in the
+ * configuration of a table or family
+ */
+public class PFilePrefetchExecutor {
+
+    /**
+     * number of row groups read ahead of the current one by a parquet scanner, 0 to disable
+     */
+    public static final String PREFETCH_ROW_GROUPS_KEY = "hbase.parquet.prefetch.rowgroups";
+    public static final int DEFAULT_PREFETCH_ROW_GROUPS = 0;
+
+    /** Executor pool and its work queue are bounded, rejected reads are done by the scanners */
+    private static final RowGroupPrefetcher prefetcher;
+    static {
+        Configuration conf = HBaseConfiguration.create();
+        int prefetchThreads = conf.getInt("hbase.parquet.thread.prefetch", 4);
+        int queueSize = conf.getInt("hbase.parquet.prefetch.queue.size", 64);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(prefetchThreads, prefetchThreads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueSize),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r);
+                        t.setName("parquet-prefetch-" + System.currentTimeMillis());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        prefetcher = new RowGroupPrefetcher(pool, 1);
+    }
+
+    /**
+     * @param conf configuration of the store
+     * @return the prefetcher to read row groups ahead with, null if read ahead is disabled
+     */
+    public static RowGroupPrefetcher getPrefetcher(Configuration conf){
+        int depth = conf.getInt(PREFETCH_ROW_GROUPS_KEY, DEFAULT_PREFETCH_ROW_GROUPS);
+        if(depth <= 0){
+            return null;
+        }
+        return prefetcher.withDepth(depth);
+    }
+
+    /**
+     * @return row groups which were read ahead when a scanner needed them
+     */
+    public static long getHitCount(){
+        return prefetcher.getHitCount();
+    }
+
+    /**
+     * @return row groups a scanner with read ahead had to wait for
+     */
+    public static long getMissCount(){
+        return prefetcher.getMissCount();
+    }
+}
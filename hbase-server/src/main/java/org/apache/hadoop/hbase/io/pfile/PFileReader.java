@@ -8,31 +8,48 @@ import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.regionserver.BatchRecordScanner;
 import org.apache.hadoop.hbase.regionserver.InternalRecordScanner;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.RecordScanner;
 import org.apache.hadoop.hbase.regionserver.RowScanner;
+import org.apache.hadoop.hbase.util.ByteRange;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.SimpleMutableByteRange;
 import parquet.column.ColumnDescriptor;
 import parquet.column.ParquetProperties;
 import parquet.example.data.Group;
 import parquet.example.data.simple.SimpleGroupFactory;
+import parquet.filter2.compat.FilterCompat;
+import parquet.filter2.compat.RowGroupFilter;
+import parquet.filter2.compat.SortedKeyRowGroupFilter;
+import parquet.filter2.predicate.FilterPredicate;
+import parquet.hadoop.ColumnBatch;
+import parquet.hadoop.ColumnBatchReader;
+import parquet.hadoop.ColumnChunkCache;
+import parquet.hadoop.Footer;
+import parquet.hadoop.FooterCache;
 import parquet.hadoop.ParquetFileInfo;
+import parquet.hadoop.ParquetReadMetrics;
 import parquet.hadoop.ParquetReader;
 import parquet.hadoop.ParquetWriter;
 import parquet.hadoop.api.ReadSupport;
 import parquet.hadoop.example.GroupReadSupport;
 import parquet.hadoop.example.GroupWriteSupport;
+import parquet.hadoop.metadata.BlockMetaData;
 import parquet.hadoop.metadata.CompressionCodecName;
 import parquet.hadoop.metadata.FileMetaData;
 import parquet.io.api.Binary;
 import parquet.schema.GroupType;
 import parquet.schema.MessageType;
 import parquet.schema.MessageTypeParser;
+import parquet.schema.PrimitiveType;
 import parquet.schema.Type;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -51,6 +68,12 @@ public class PFileReader implements PFile.Reader{
 
     private static final String ROW_KEY = "rowkey";
 
+    /**
+     * rows decoded at a time by the column batch scanner, 0 to read the file row by row
+     */
+    public static final String SCAN_BATCH_SIZE_KEY = "hbase.parquet.scan.batch.size";
+    public static final int DEFAULT_SCAN_BATCH_SIZE = 0;
+
 
 
     private Path path = null;
@@ -58,6 +81,15 @@ public class PFileReader implements PFile.Reader{
     private MessageType schema = null;
     private ParquetReader<Group> reader = null;
 
+    private byte[] startRow = null;
+    private byte[] stopRow = null;
+
+    private ColumnChunkCache chunkCache = null;
+
+    private FilterCompat.Filter filter = FilterCompat.NOOP;
+
+    private ParquetReadMetrics readMetrics = null;
+
 
     /**
      * @param fileToRead
@@ -65,8 +97,71 @@ public class PFileReader implements PFile.Reader{
      * @param schema
      */
     public PFileReader(Path fileToRead, Configuration conf, MessageType schema)throws IOException{
+        this(fileToRead, conf, schema, null, null);
+    }
+
+    /**
+     * reader which skips the row groups out of [startRow, stopRow)
+     * @param fileToRead
+     * @param conf
+     * @param schema
+     * @param startRow inclusive, null or empty to read from the first row
+     * @param stopRow exclusive, null or empty to read to the last row
+     */
+    public PFileReader(Path fileToRead, Configuration conf, MessageType schema,
+                       byte[] startRow, byte[] stopRow)throws IOException{
+        this(fileToRead, conf, schema, startRow, stopRow, null);
+    }
+
+    /**
+     * reader which skips the row groups out of [startRow, stopRow)
+     * and keeps the column chunks it reads in the block cache
+     * @param fileToRead
+     * @param conf
+     * @param schema
+     * @param startRow inclusive, null or empty to read from the first row
+     * @param stopRow exclusive, null or empty to read to the last row
+     * @param cacheConf block cache of the store, null to always read from the file
+     */
+    public PFileReader(Path fileToRead, Configuration conf, MessageType schema,
+                       byte[] startRow, byte[] stopRow, CacheConfig cacheConf)throws IOException{
+        this(fileToRead, conf, schema, startRow, stopRow, cacheConf, null);
+    }
+
+    /**
+     * reader which skips the row groups out of [startRow, stopRow) or not matching the predicate,
+     * and the rows not matching the predicate
+     * @param fileToRead
+     * @param conf
+     * @param schema
+     * @param startRow inclusive, null or empty to read from the first row
+     * @param stopRow exclusive, null or empty to read to the last row
+     * @param cacheConf block cache of the store, null to always read from the file
+     * @param predicate on the columns of schema, null to read all the rows
+     */
+    public PFileReader(Path fileToRead, Configuration conf, MessageType schema,
+                       byte[] startRow, byte[] stopRow, CacheConfig cacheConf,
+                       FilterPredicate predicate)throws IOException{
+        this(fileToRead, conf, schema, startRow, stopRow, cacheConf, predicate, null);
+    }
+
+    /**
+     * reader which reports what it reads to the metrics of the region server
+     * @param readMetrics where the row groups, chunks and footers read are reported, null for
+     *                    the readers out of a region server such as the ones of mapreduce jobs
+     */
+    public PFileReader(Path fileToRead, Configuration conf, MessageType schema,
+                       byte[] startRow, byte[] stopRow, CacheConfig cacheConf,
+                       FilterPredicate predicate, ParquetReadMetrics readMetrics)throws IOException{
 
         this.path = fileToRead;
+        this.readMetrics = readMetrics;
+        if(predicate != null){
+            this.filter = FilterCompat.get(predicate);
+        }
+        this.chunkCache = PFileBlockCache.create(cacheConf);
+        this.startRow = startRow;
+        this.stopRow = stopRow;
         this.conf = conf;
         this.schema = schema;
         if(schema != null) {
@@ -80,10 +175,19 @@ public class PFileReader implements PFile.Reader{
     }
 
     public void initReader()throws IOException{
-        reader = ParquetReader
+        ParquetReader.Builder<Group> builder = ParquetReader
                     .builder(new GroupReadSupport(),path)
                     .withConf(conf)
-                    .build();
+                    .withFilter(filter)
+                    .withFooterCache(FooterCache.getInstance(conf))
+                    .withChunkCache(chunkCache)
+                    .withPrefetcher(PFilePrefetchExecutor.getPrefetcher(conf))
+                    .withReadMetrics(readMetrics);
+        if(startRow != null || stopRow != null){
+            //rows are sorted in the file, so whole row groups can be skipped
+            builder.withKeyRange(HConstants.ROW_KEY, startRow, stopRow);
+        }
+        reader = builder.build();
     }
 
     /**
@@ -100,6 +204,21 @@ public class PFileReader implements PFile.Reader{
         return group;
     }
 
+    /**
+     * skip the row groups which only hold rows before rowkey, without reading them
+     * @param rowkey
+     * @return whether rows were skipped, the next row read is then the first one
+     * of the row group which may hold rowkey
+     */
+    public boolean skipToRow(byte[] rowkey) {
+        try {
+            return reader.skipTo(HConstants.ROW_KEY, rowkey);
+        }catch (IOException ioe){
+            LOG.error(ioe);
+            return false;
+        }
+    }
+
     /**
      * read value from parquet as cell
      *
@@ -139,6 +258,14 @@ public class PFileReader implements PFile.Reader{
         return reader.getFileInfo();
     }
 
+    /**
+     * @return the row index of the file, null if it has none
+     * @throws IOException if the index is invalid
+     */
+    public PFileRowIndex getRowIndex() throws IOException{
+        return PFileRowIndex.read(getFileInfo().getFileMetaData().getKeyValueMetaData());
+    }
+
 
     /**
      * get parquet scanner
@@ -148,6 +275,32 @@ public class PFileReader implements PFile.Reader{
         return new PFileScanner(this);
     }
 
+    /**
+     * get parquet scanner which decodes the file in column batches
+     * @param batchSize max rows decoded at a time
+     * @return {@link org.apache.hadoop.hbase.io.pfile.PFileReader.PFileBatchScanner}
+     */
+    public PFileBatchScanner getBatchScanner(int batchSize) throws IOException{
+        return new PFileBatchScanner(this, batchSize);
+    }
+
+    /**
+     * the columns to read in batches: the projection plus rowkey and timestamp
+     * @param fileSchema
+     * @return
+     */
+    MessageType getBatchSchema(MessageType fileSchema){
+        if(schema == null) return fileSchema;
+        List<Type> fields = new ArrayList<>(schema.getFields());
+        if(!schema.containsField(HConstants.ROW_KEY) && fileSchema.containsField(HConstants.ROW_KEY)){
+            fields.add(0, fileSchema.getType(HConstants.ROW_KEY));
+        }
+        if(!schema.containsField(HConstants.TIME_STAMP) && fileSchema.containsField(HConstants.TIME_STAMP)){
+            fields.add(fileSchema.getType(HConstants.TIME_STAMP));
+        }
+        return new MessageType(schema.getName(), fields);
+    }
+
     /**
      * @return start key of the parquet file
      */
@@ -203,8 +356,8 @@ public class PFileReader implements PFile.Reader{
                 if(! t.getName().equals(HConstants.ROW_KEY) && ! t.getName().equals(HConstants.TIME_STAMP)){
                     String name = t.getName();
                     String [] names = name.split(":");
-                    if(names.length == 2) {
-                        byte[] value = group.getBinary(name, 0).getBytes();
+                    if(names.length == 2 && group.getFieldRepetitionCount(name) > 0) {
+                        byte[] value = toBytes(group, name, t.asPrimitiveType().getPrimitiveTypeName());
                         Cell cell = new KeyValue(rowKey, names[0].getBytes(), names[1].getBytes(), timestamp, value);
                         cells.add(cell);
                     }
@@ -216,6 +369,27 @@ public class PFileReader implements PFile.Reader{
 
 
 
+    /**
+     * @return value of a field as bytes, numeric values are encoded with {@link Bytes}
+     */
+    private static byte[] toBytes(Group group, String name, PrimitiveType.PrimitiveTypeName type){
+        switch (type){
+            case BOOLEAN:
+                return Bytes.toBytes(group.getBoolean(name, 0));
+            case INT32:
+                return Bytes.toBytes(group.getInteger(name, 0));
+            case INT64:
+                return Bytes.toBytes(group.getLong(name, 0));
+            case FLOAT:
+                return Bytes.toBytes(group.getFloat(name, 0));
+            case DOUBLE:
+                return Bytes.toBytes(group.getDouble(name, 0));
+            default:
+                return group.getBinary(name, 0).getBytes();
+        }
+    }
+
+
     /**
      * scanner for a parquet file
      */
@@ -224,6 +398,10 @@ public class PFileReader implements PFile.Reader{
         private Group curr = null;
         private Group next = null;
 
+        // rowkey of the current row, read once per row
+        private Group rowKeyOf = null;
+        private final ByteRange rowKey = new SimpleMutableByteRange();
+
         PFileReader reader = null;
 
         public PFileScanner(PFileReader reader){
@@ -239,6 +417,12 @@ public class PFileReader implements PFile.Reader{
         public void seek(byte[] rowkey) {
             boolean seekEd = false;
             if(rowkey != null) {
+                if(curr != null && Bytes.compareTo(curr.getBinary(ROW_KEY, 0).getBytes(), rowkey) < 0
+                        && reader.skipToRow(rowkey)){
+                    //jumped over the row groups before the row, the buffered rows are behind it
+                    curr = reader.readGroup();
+                    next = curr == null ? null : reader.readGroup();
+                }
                 while (curr != null) {
                     byte[] key = curr.getBinary(ROW_KEY, 0).getBytes();
                     if (Bytes.compareTo(key, rowkey) >= 0) {
@@ -333,6 +517,16 @@ public class PFileReader implements PFile.Reader{
             return groupToCells(group);
         }
 
+        @Override
+        public ByteRange peekRowKey() {
+            if(curr == null) return null;
+            if(rowKeyOf != curr){
+                rowKey.set(curr.getBinary(ROW_KEY, 0).getBytes());
+                rowKeyOf = curr;
+            }
+            return rowKey;
+        }
+
         /**
          * Closes this stream and releases any system resources associated
          * with it. If the stream is already closed then invoking this
@@ -351,4 +545,229 @@ public class PFileReader implements PFile.Reader{
 
 
 
+
+    /**
+     * scanner for a parquet file which decodes the rows column by column in batches,
+     * rows are only turned into cells when asked for one by one. with a predicate, only
+     * the columns of the predicate are decoded for the rows not matching it
+     */
+    public class PFileBatchScanner implements InternalRecordScanner, BatchRecordScanner{
+
+        private PFileReader reader = null;
+        private ColumnBatchReader batchReader = null;
+        private BatchRowMapper mapper = null;
+
+        private ColumnBatch batch = null;
+        private int pos = 0;
+        // slice of the rowkey at pos in the batch
+        private final ByteRange rowKey = new SimpleMutableByteRange();
+
+        // the row groups to read, and the ordinal in the file of their first row
+        private List<BlockMetaData> blocks;
+        private long[] blockOrdinals;
+
+        public PFileBatchScanner(PFileReader reader, int batchSize) throws IOException{
+            this.reader = reader;
+            List<Footer> footers = reader.getFileInfo().getFooters();
+            List<BlockMetaData> fileBlocks = new ArrayList<>();
+            MessageType fileSchema = null;
+            for(Footer footer : footers){
+                fileBlocks.addAll(footer.getParquetMetadata().getBlocks());
+                fileSchema = footer.getParquetMetadata().getFileMetaData().getSchema();
+            }
+            if(fileSchema == null){
+                throw new IOException("no footer found in " + reader.path);
+            }
+            List<BlockMetaData> blocks = fileBlocks;
+            if(reader.startRow != null || reader.stopRow != null){
+                blocks = SortedKeyRowGroupFilter.filterRowGroups(blocks, HConstants.ROW_KEY,
+                        reader.startRow, reader.stopRow);
+            }
+            blocks = RowGroupFilter.filterRowGroups(reader.filter, blocks, fileSchema);
+            if(reader.readMetrics != null && blocks.size() < fileBlocks.size()){
+                reader.readMetrics.rowGroupsSkipped(fileBlocks.size() - blocks.size());
+            }
+            this.blocks = blocks;
+            this.blockOrdinals = new long[blocks.size()];
+            long ordinal = 0;
+            int b = 0;
+            for(BlockMetaData block : fileBlocks){
+                if(b < blocks.size() && blocks.get(b) == block){
+                    blockOrdinals[b++] = ordinal;
+                }
+                ordinal += block.getRowCount();
+            }
+            MessageType batchSchema = reader.getBatchSchema(fileSchema);
+            this.mapper = new BatchRowMapper(batchSchema);
+            this.batchReader = new ColumnBatchReader(reader.conf, reader.path, batchSchema, blocks, batchSize,
+                    reader.chunkCache);
+            this.batchReader.setPrefetcher(PFilePrefetchExecutor.getPrefetcher(reader.conf));
+            this.batchReader.setReadMetrics(reader.readMetrics);
+            if(reader.filter instanceof FilterCompat.FilterPredicateCompat){
+                //the rows not matching are dropped before the other columns are decoded
+                this.batchReader.setFilter(((FilterCompat.FilterPredicateCompat) reader.filter).getFilterPredicate());
+            }
+        }
+
+        /**
+         * make sure the current batch has a row at pos
+         * @return false if the file is exhausted
+         */
+        private boolean load(){
+            while (batch == null || pos >= batch.getRowCount()){
+                try {
+                    batch = batchReader.nextBatch();
+                }catch (IOException ioe){
+                    LOG.error(ioe);
+                    batch = null;
+                }
+                pos = 0;
+                if(batch == null) return false;
+            }
+            return true;
+        }
+
+        /**
+         * seek the query row
+         *
+         * @param rowkey
+         */
+        @Override
+        public void seek(byte[] rowkey) {
+            if(rowkey == null) return;
+            if(batchReader.skipTo(HConstants.ROW_KEY, rowkey)){
+                //the current batch is in a skipped row group
+                batch = null;
+                pos = 0;
+            }
+            while (load()){
+                int rowCount = batch.getRowCount();
+                pos = mapper.searchRow(batch, pos, rowCount, rowkey);
+                if(pos < rowCount) return;
+            }
+        }
+
+        /**
+         * skip to a row of the file given by its ordinal, see {@link PFileRowIndex}, without
+         * decoding the rows before it. only done before the first row is read
+         * @param rowOrdinal ordinal of the row in the whole file
+         * @throws IOException if the rows could not be skipped
+         */
+        public void skipToOrdinal(long rowOrdinal) throws IOException{
+            if(batch != null || batchReader.getTotalCountLeft() != batchReader.getTotal()){
+                return;
+            }
+            long rows = 0;
+            for(int b = 0; b < blocks.size(); ++b){
+                long start = blockOrdinals[b];
+                long count = blocks.get(b).getRowCount();
+                if(rowOrdinal < start){
+                    //the row is in a row group which is not read
+                    break;
+                }
+                if(rowOrdinal < start + count){
+                    rows += rowOrdinal - start;
+                    break;
+                }
+                rows += count;
+            }
+            if(rows > 0){
+                batchReader.skipRows(rows);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return load();
+        }
+
+        /**
+         * don't iterate just
+         *
+         * @return first element of the scanner
+         */
+        @Override
+        public List<Cell> peek() {
+            if(!load()) return new LinkedList<>();
+            return mapper.toCells(batch, pos);
+        }
+
+        @Override
+        public ByteRange peekRowKey() {
+            if(!load()) return null;
+            ColumnBatch.ColumnVector rowKeys = mapper.getRowKeys(batch);
+            return rowKey.set(rowKeys.getBytes(), rowKeys.getOffset(pos), rowKeys.getLength(pos));
+        }
+
+        /**
+         * return the record
+         */
+        @Override
+        public List<Cell> next() {
+            if(!load()) return new LinkedList<>();
+            return mapper.toCells(batch, pos ++);
+        }
+
+        /**
+         * @param maxRows max rows to return
+         * @param stopRow exclusive row to stop at, null for no limit
+         * @return the next rows of the current batch
+         */
+        @Override
+        public ColumnBatch nextBatch(int maxRows, byte[] stopRow) {
+            if(!load()) return null;
+            int end = Math.min(batch.getRowCount(), pos + maxRows);
+            if(stopRow != null){
+                end = mapper.searchRow(batch, pos, end, stopRow);
+            }
+            batch.setRange(pos, end);
+            pos = end;
+            return batch;
+        }
+
+        public BatchRowMapper getMapper(){
+            return mapper;
+        }
+
+        public byte[] getStartKey(){
+            return reader.getStartKey();
+        }
+
+        public byte[] getEndKey(){
+            return reader.getEndKey();
+        }
+
+        /**
+         * @return total records' count of this scanner
+         */
+        @Override
+        public long getRecordCount() {
+            return batchReader.getTotal();
+        }
+
+        /**
+         * @return max result count left of this scanner
+         */
+        @Override
+        public long getMaxResultsCount() {
+            int left = batch == null ? 0 : batch.getRowCount() - pos;
+            return batchReader.getTotalCountLeft() + left;
+        }
+
+        /**
+         * Closes this stream and releases any system resources associated
+         * with it. If the stream is already closed then invoking this
+         * method has no effect.
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        @Override
+        public void close() throws IOException {
+            batch = null;
+            batchReader.close();
+            reader.close();
+        }
+    }
+
+
 }
@@ -0,0 +1,343 @@
+package org.apache.hadoop.hbase.io.pfile;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.util.Base64;
+import org.apache.hadoop.hbase.util.BloomFilterFactory;
+import org.apache.hadoop.hbase.util.ByteBloomFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Hash;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * rowkey bloom filter and sparse rowkey index of a parquet file, kept in the
+ * key value metadata of the footer
+ *
+ * the rows of a file are sorted, so like the compound bloom filter of the hfiles
+ * the bloom filter is made of chunks of a fixed size, each one for a range of rows
+ * starting at its first key. the index holds the key and the ordinal in the file of
+ * every n-th row, a row is then found by decoding at most n rows.
+ *
+ * the first and last key of each row group are kept as well, the statistics of the
+ * rowkey column are compared as signed bytes and do not bound the rows of a group.
+ */
+public class PFileRowIndex {
+
+    /** rows between two entries of the index */
+    public static final String INDEX_INTERVAL_KEY = "hbase.parquet.row.index.interval";
+    public static final int DEFAULT_INDEX_INTERVAL = 1024;
+
+    // first key of each bloom chunk, and the chunk
+    private final byte[][] chunkKeys;
+    private final ByteBloomFilter[] chunks;
+    private final ByteBuffer[] chunkBits;
+
+    // key and ordinal of the indexed rows
+    private final byte[][] indexKeys;
+    private final long[] indexOrdinals;
+
+    // first and last key of each row group, empty if the file was written without them
+    private final byte[][] rowGroupFirstKeys;
+    private final byte[][] rowGroupLastKeys;
+
+    private PFileRowIndex(byte[][] chunkKeys, ByteBloomFilter[] chunks, ByteBuffer[] chunkBits,
+                          byte[][] indexKeys, long[] indexOrdinals,
+                          byte[][] rowGroupFirstKeys, byte[][] rowGroupLastKeys){
+        this.chunkKeys = chunkKeys;
+        this.chunks = chunks;
+        this.chunkBits = chunkBits;
+        this.indexKeys = indexKeys;
+        this.indexOrdinals = indexOrdinals;
+        this.rowGroupFirstKeys = rowGroupFirstKeys;
+        this.rowGroupLastKeys = rowGroupLastKeys;
+    }
+
+    /**
+     * read the index from the metadata of a file
+     * @param meta key value metadata of the footer
+     * @return the index, null if the file has none
+     */
+    public static PFileRowIndex read(Map<String, String> meta) throws IOException{
+        String index = meta.get(HConstants.ROW_INDEX);
+        if(index == null){
+            return null;
+        }
+        DataInputBuffer in = new DataInputBuffer();
+        byte[] indexBytes = Base64.decode(index);
+        in.reset(indexBytes, indexBytes.length);
+        int count = WritableUtils.readVInt(in);
+        byte[][] indexKeys = new byte[count][];
+        long[] indexOrdinals = new long[count];
+        for(int i = 0; i < count; ++i){
+            indexKeys[i] = Bytes.readByteArray(in);
+            indexOrdinals[i] = WritableUtils.readVLong(in);
+        }
+
+        byte[][] chunkKeys = new byte[0][];
+        ByteBloomFilter[] chunks = new ByteBloomFilter[0];
+        ByteBuffer[] chunkBits = new ByteBuffer[0];
+        String bloom = meta.get(HConstants.ROW_BLOOM);
+        if(bloom != null){
+            byte[] bloomBytes = Base64.decode(bloom);
+            in.reset(bloomBytes, bloomBytes.length);
+            int chunkCount = WritableUtils.readVInt(in);
+            chunkKeys = new byte[chunkCount][];
+            chunks = new ByteBloomFilter[chunkCount];
+            chunkBits = new ByteBuffer[chunkCount];
+            for(int i = 0; i < chunkCount; ++i){
+                chunkKeys[i] = Bytes.readByteArray(in);
+                int version = in.readInt();
+                if(version != ByteBloomFilter.VERSION){
+                    throw new IOException("unknown bloom filter version " + version);
+                }
+                chunks[i] = new ByteBloomFilter(in);
+                byte[] bits = new byte[(int) chunks[i].getByteSize()];
+                in.readFully(bits);
+                chunkBits[i] = ByteBuffer.wrap(bits);
+            }
+        }
+
+        byte[][] rowGroupFirstKeys = new byte[0][];
+        byte[][] rowGroupLastKeys = new byte[0][];
+        String groups = meta.get(HConstants.ROW_GROUP_KEYS);
+        if(groups != null){
+            byte[] groupBytes = Base64.decode(groups);
+            in.reset(groupBytes, groupBytes.length);
+            int groupCount = WritableUtils.readVInt(in);
+            rowGroupFirstKeys = new byte[groupCount][];
+            rowGroupLastKeys = new byte[groupCount][];
+            for(int i = 0; i < groupCount; ++i){
+                rowGroupFirstKeys[i] = Bytes.readByteArray(in);
+                rowGroupLastKeys[i] = Bytes.readByteArray(in);
+            }
+        }
+        return new PFileRowIndex(chunkKeys, chunks, chunkBits, indexKeys, indexOrdinals,
+                rowGroupFirstKeys, rowGroupLastKeys);
+    }
+
+    /**
+     * @return whether the file has a bloom filter
+     */
+    public boolean hasBloomFilter(){
+        return chunks.length > 0;
+    }
+
+    /**
+     * @param row
+     * @return false if the row is not in the file, true if it may be
+     */
+    public boolean mightContain(byte[] row){
+        if(chunks.length == 0){
+            return true;
+        }
+        int chunk = floor(chunkKeys, row);
+        if(chunk < 0){
+            return false;
+        }
+        return chunks[chunk].contains(row, 0, row.length, chunkBits[chunk]);
+    }
+
+    /**
+     * @param row
+     * @return ordinal in the file of the last indexed row not greater than row,
+     * the row is not before it, -1 if the row is before the first row of the file
+     */
+    public long getRowOrdinal(byte[] row){
+        int entry = floor(indexKeys, row);
+        return entry < 0 ? -1 : indexOrdinals[entry];
+    }
+
+    /**
+     * @param row
+     * @return ordinal in the file of the first indexed row greater than row, the rows
+     * before row are before it, -1 if no indexed row is greater than row
+     */
+    public long getNextRowOrdinal(byte[] row){
+        int entry = floor(indexKeys, row) + 1;
+        return entry < indexKeys.length ? indexOrdinals[entry] : -1;
+    }
+
+    /**
+     * @return number of row groups whose first and last keys are known, 0 if none are
+     */
+    public int getRowGroupCount(){
+        return rowGroupFirstKeys.length;
+    }
+
+    /**
+     * @param group index of the row group in the file
+     * @return the first key of the row group
+     */
+    public byte[] getRowGroupFirstKey(int group){
+        return rowGroupFirstKeys[group];
+    }
+
+    /**
+     * @param group index of the row group in the file
+     * @return the last key of the row group
+     */
+    public byte[] getRowGroupLastKey(int group){
+        return rowGroupLastKeys[group];
+    }
+
+    /**
+     * @return index of the last key not greater than key, -1 if none
+     */
+    private static int floor(byte[][] keys, byte[] key){
+        int low = 0, high = keys.length - 1;
+        while (low <= high){
+            int mid = (low + high) >>> 1;
+            if(Bytes.compareTo(keys[mid], key) <= 0){
+                low = mid + 1;
+            }else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+
+    /**
+     * builds the index of a file from its rows, added in order
+     */
+    public static class Writer {
+
+        private final int interval;
+        private final boolean bloomEnabled;
+        private final float errorRate;
+        private final int maxFold;
+        private final int chunkSize;
+        private final int hashType;
+
+        private final DataOutputBuffer index = new DataOutputBuffer();
+        private int indexCount = 0;
+
+        private final DataOutputBuffer bloom = new DataOutputBuffer();
+        private int chunkCount = 0;
+        private ByteBloomFilter chunk = null;
+        private byte[] chunkKey = null;
+
+        private final DataOutputBuffer groups = new DataOutputBuffer();
+        private int groupCount = 0;
+        private long groupRows = 0;
+        private byte[] groupFirstKey = null;
+        // last row added, kept by reference until its row group ends
+        private byte[] lastRow = null;
+        private int lastOffset = 0;
+        private int lastLength = 0;
+
+        private long rows = 0;
+
+        public Writer(Configuration conf){
+            this.interval = Math.max(1, conf.getInt(INDEX_INTERVAL_KEY, DEFAULT_INDEX_INTERVAL));
+            this.bloomEnabled = BloomFilterFactory.isGeneralBloomEnabled(conf);
+            this.errorRate = BloomFilterFactory.getErrorRate(conf);
+            this.maxFold = BloomFilterFactory.getMaxFold(conf);
+            this.chunkSize = BloomFilterFactory.getBloomBlockSize(conf);
+            this.hashType = Hash.getHashType(conf);
+        }
+
+        /**
+         * add the next row of the file, rows are added in order and once,
+         * the row must not be modified until the next one is added
+         */
+        public void add(byte[] row, int offset, int length){
+            if(groupRows == 0){
+                groupFirstKey = Bytes.copy(row, offset, length);
+            }
+            ++groupRows;
+            lastRow = row;
+            lastOffset = offset;
+            lastLength = length;
+            try {
+                if(rows % interval == 0){
+                    Bytes.writeByteArray(index, row, offset, length);
+                    WritableUtils.writeVLong(index, rows);
+                    ++indexCount;
+                }
+                if(bloomEnabled){
+                    if(chunk != null && chunk.getKeyCount() >= chunk.getMaxKeys()){
+                        finishChunk();
+                    }
+                    if(chunk == null){
+                        chunk = ByteBloomFilter.createBySize(chunkSize, errorRate, hashType, maxFold);
+                        chunk.allocBloom();
+                        chunkKey = Bytes.copy(row, offset, length);
+                    }
+                    chunk.add(row, offset, length);
+                }
+            }catch (IOException ioe){
+                //writes to a memory buffer
+                throw new IllegalStateException(ioe);
+            }
+            ++rows;
+        }
+
+        /**
+         * end the row group of the rows added since the previous one, nothing if there are none
+         */
+        public void endRowGroup(){
+            if(groupRows == 0){
+                return;
+            }
+            try {
+                Bytes.writeByteArray(groups, groupFirstKey);
+                Bytes.writeByteArray(groups, lastRow, lastOffset, lastLength);
+            }catch (IOException ioe){
+                throw new IllegalStateException(ioe);
+            }
+            ++groupCount;
+            groupRows = 0;
+            groupFirstKey = null;
+            lastRow = null;
+        }
+
+        private void finishChunk() throws IOException{
+            chunk.compactBloom();
+            Bytes.writeByteArray(bloom, chunkKey);
+            chunk.getMetaWriter().write(bloom);
+            chunk.getDataWriter().write(bloom);
+            ++chunkCount;
+            chunk = null;
+            chunkKey = null;
+        }
+
+        /**
+         * @return the metadata to add to the footer, empty if no row was added
+         */
+        public Map<String, String> toMetaData(){
+            Map<String, String> meta = new HashMap<>();
+            if(rows == 0){
+                return meta;
+            }
+            endRowGroup();
+            try {
+                if(chunk != null){
+                    finishChunk();
+                }
+                if(chunkCount > 0){
+                    meta.put(HConstants.ROW_BLOOM, encode(chunkCount, bloom));
+                }
+                meta.put(HConstants.ROW_INDEX, encode(indexCount, index));
+                meta.put(HConstants.ROW_GROUP_KEYS, encode(groupCount, groups));
+            }catch (IOException ioe){
+                throw new IllegalStateException(ioe);
+            }
+            return meta;
+        }
+
+        private static String encode(int count, DataOutputBuffer entries) throws IOException{
+            DataOutputBuffer out = new DataOutputBuffer(entries.getLength() + 5);
+            WritableUtils.writeVInt(out, count);
+            out.write(entries.getData(), 0, entries.getLength());
+            return Base64.encodeBytes(out.getData(), 0, out.getLength(), Base64.DONT_BREAK_LINES);
+        }
+    }
+}
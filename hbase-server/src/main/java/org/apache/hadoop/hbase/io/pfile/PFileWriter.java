@@ -4,10 +4,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.client.Mutation;
 import parquet.column.ParquetProperties;
 import parquet.example.data.Group;
-import parquet.example.data.simple.SimpleGroupFactory;
+import parquet.hadoop.ParquetFileWriter;
 import parquet.hadoop.ParquetWriter;
+import parquet.hadoop.api.WriteSupport;
 import parquet.hadoop.example.GroupWriteSupport;
 import parquet.hadoop.metadata.CompressionCodecName;
 import parquet.schema.MessageType;
@@ -29,16 +31,26 @@ public class PFileWriter implements PFile.Writer{
     private MessageType schema = null;
 
 
-    private ParquetWriter<Group> parquetWriter = null;
-    private GroupWriteSupport gws = null;
-    private SimpleGroupFactory sfg = null;
+    // writes groups or mutations, depending on the write support
+    private ParquetWriter<Object> parquetWriter = null;
+    private WriteSupport<?> writeSupport = null;
+    private PFileWriterSettings settings = null;
     private Path file = null;
 
 
     public PFileWriter(Configuration conf, MessageType schema, GroupWriteSupport gws){
         this.conf = conf;
         this.schema = schema;
-        this.gws = gws;
+        this.writeSupport = gws;
+    }
+
+    /**
+     * writer of {@link Mutation}s, see {@link MutationWriteSupport}
+     */
+    public PFileWriter(Configuration conf, MessageType schema, MutationWriteSupport mws){
+        this.conf = conf;
+        this.schema = schema;
+        this.writeSupport = mws;
     }
 
 
@@ -55,34 +67,50 @@ public class PFileWriter implements PFile.Writer{
     }
 
     public PFileWriter addGWS(GroupWriteSupport gws){
-        this.gws = gws;
+        this.writeSupport = gws;
         return this;
     }
 
     public PFileWriter addMetaData(Map<String, String> metas){
-        if(this.gws == null){
-            this.gws = new GroupWriteSupport(metas);
+        if(this.writeSupport == null){
+            this.writeSupport = new GroupWriteSupport(metas);
+        }else if(this.writeSupport instanceof MutationWriteSupport){
+            ((MutationWriteSupport) this.writeSupport).addMeta(metas);
         }else {
-            this.gws.addMeta(metas);
+            ((GroupWriteSupport) this.writeSupport).addMeta(metas);
         }
         return this;
     }
 
+    /**
+     * sizes and encodings of the file, the settings of the configuration if not set
+     */
+    public PFileWriter addSettings(PFileWriterSettings settings){
+        this.settings = settings;
+        return this;
+    }
+
     public PFileWriter addPath(Path file){
         this.file = file;
         return this;
     }
 
+    @SuppressWarnings("unchecked")
     public PFileWriter build(){
+        if(settings == null){
+            settings = PFileWriterSettings.create(conf, null);
+        }
         try {
-            this.parquetWriter = new ParquetWriter<Group>(
+            this.parquetWriter = new ParquetWriter<Object>(
                     file,
-                    gws,
+                    ParquetFileWriter.Mode.CREATE,
+                    (WriteSupport<Object>) writeSupport,
                     CompressionCodecName.SNAPPY,
-                    1024,
-                    1024,
-                    512,
-                    true,
+                    settings.getRowGroupSize(),
+                    settings.getPageSize(),
+                    settings.getDictionaryPageSize(),
+                    settings.isDictionary(),
+                    settings.getDictionaryColumns(),
                     false,
                     ParquetProperties.WriterVersion.PARQUET_1_0,
                     conf);
@@ -100,6 +128,12 @@ public class PFileWriter implements PFile.Writer{
         this.parquetWriter.close();
     }
 
+    @Override
+    public long getDataSize() throws IOException {
+        return this.parquetWriter.getDataSize();
+    }
+
+    @Override
     public void append(Group group){
         try {
             parquetWriter.write(group);
@@ -109,6 +143,19 @@ public class PFileWriter implements PFile.Writer{
     }
 
 
+    /**
+     * append a row, the writer must have been built with a {@link MutationWriteSupport}
+     */
+    @Override
+    public void append(Mutation m){
+        try {
+            parquetWriter.write(m);
+        }catch (IOException ioe){
+            LOG.error(ioe.toString());
+        }
+    }
+
+
     public void append(List<Group> groups){
         try {
             for (Group group : groups) {
@@ -0,0 +1,237 @@
+package org.apache.hadoop.hbase.io.pfile;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.util.Bytes;
+import parquet.hadoop.metadata.ColumnPath;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * sizes and encodings of the parquet files written by a store
+ *
+ * a setting of the column family wins over the configuration, which holds the
+ * table configuration for a store, which wins over the region server settings.
+ *
+ * in adaptive mode the row group size is an upper bound, the row groups of a
+ * file are sized from the amount of data to write and the block size of the
+ * file system, and only the columns with few distinct values in a sample of the
+ * rows are encoded with a dictionary.
+ */
+public class PFileWriterSettings {
+
+    public static final String ROW_GROUP_SIZE_KEY = "hbase.parquet.rowgroup.size";
+    public static final int DEFAULT_ROW_GROUP_SIZE = 128 * 1024 * 1024;
+
+    public static final String PAGE_SIZE_KEY = "hbase.parquet.page.size";
+    public static final int DEFAULT_PAGE_SIZE = 1024 * 1024;
+
+    public static final String DICTIONARY_PAGE_SIZE_KEY = "hbase.parquet.dictionary.page.size";
+    public static final int DEFAULT_DICTIONARY_PAGE_SIZE = 1024 * 1024;
+
+    public static final String DICTIONARY_KEY = "hbase.parquet.dictionary";
+    public static final boolean DEFAULT_DICTIONARY = true;
+
+    public static final String ADAPTIVE_SIZING_KEY = "hbase.parquet.adaptive.sizing";
+    public static final boolean DEFAULT_ADAPTIVE_SIZING = true;
+
+    /** rows of a flush looked at to choose the dictionary columns and estimate the encoded size */
+    public static final String DICTIONARY_SAMPLE_ROWS_KEY = "hbase.parquet.dictionary.sample.rows";
+    public static final int DEFAULT_DICTIONARY_SAMPLE_ROWS = 1000;
+
+    /** a column is dictionary encoded when its distinct values are at most this ratio of its values */
+    public static final String DICTIONARY_MAX_RATIO_KEY = "hbase.parquet.dictionary.max.ratio";
+    public static final float DEFAULT_DICTIONARY_MAX_RATIO = 0.5f;
+
+    static final int MIN_ROW_GROUP_SIZE = 64 * 1024;
+    static final int MIN_PAGE_SIZE = 8 * 1024;
+
+    private int rowGroupSize;
+    private int pageSize;
+    private int dictionaryPageSize;
+    private boolean dictionary;
+    private final boolean adaptive;
+    private final int sampleRows;
+    private final float maxDictionaryRatio;
+
+    // columns encoded with a dictionary, null for all the columns
+    private Set<ColumnPath> dictionaryColumns = null;
+
+
+    private PFileWriterSettings(Configuration conf, HColumnDescriptor family){
+        rowGroupSize = conf.getInt(ROW_GROUP_SIZE_KEY, DEFAULT_ROW_GROUP_SIZE);
+        pageSize = conf.getInt(PAGE_SIZE_KEY, DEFAULT_PAGE_SIZE);
+        dictionaryPageSize = conf.getInt(DICTIONARY_PAGE_SIZE_KEY, DEFAULT_DICTIONARY_PAGE_SIZE);
+        dictionary = conf.getBoolean(DICTIONARY_KEY, DEFAULT_DICTIONARY);
+        boolean adaptiveSizing = conf.getBoolean(ADAPTIVE_SIZING_KEY, DEFAULT_ADAPTIVE_SIZING);
+        if(family != null){
+            if(family.getParquetRowGroupSize() > 0) rowGroupSize = family.getParquetRowGroupSize();
+            if(family.getParquetPageSize() > 0) pageSize = family.getParquetPageSize();
+            if(family.getParquetDictionaryPageSize() > 0) dictionaryPageSize = family.getParquetDictionaryPageSize();
+            if(family.isParquetDictionary() != null) dictionary = family.isParquetDictionary();
+            if(family.isParquetAdaptiveSizing() != null) adaptiveSizing = family.isParquetAdaptiveSizing();
+        }
+        this.adaptive = adaptiveSizing;
+        this.sampleRows = conf.getInt(DICTIONARY_SAMPLE_ROWS_KEY, DEFAULT_DICTIONARY_SAMPLE_ROWS);
+        this.maxDictionaryRatio = conf.getFloat(DICTIONARY_MAX_RATIO_KEY, DEFAULT_DICTIONARY_MAX_RATIO);
+    }
+
+    /**
+     * @param conf configuration of the store
+     * @param family descriptor of the family, null to only use the configuration
+     */
+    public static PFileWriterSettings create(Configuration conf, HColumnDescriptor family){
+        return new PFileWriterSettings(conf, family);
+    }
+
+    /**
+     * size the row groups and pages of a file, does nothing if not adaptive
+     *
+     * the data is split in row groups of even size, at most the row group size and
+     * the block size, so that a file does not end with a tiny row group and a row
+     * group does not span blocks.
+     * @param dataSize estimated size in bytes of the encoded data to write before compression,
+     *                 which is what the writer buffers and compares to the row group size,
+     *                 0 if not known
+     * @param blockSize block size of the file system, 0 if not known
+     * @return this
+     */
+    public PFileWriterSettings adapt(long dataSize, long blockSize){
+        if(!adaptive) return this;
+        long maxRowGroupSize = rowGroupSize;
+        if(blockSize > 0){
+            maxRowGroupSize = Math.min(maxRowGroupSize, blockSize);
+        }
+        long size = maxRowGroupSize;
+        if(dataSize > 0){
+            long rowGroups = (dataSize + maxRowGroupSize - 1) / maxRowGroupSize;
+            size = (dataSize + rowGroups - 1) / rowGroups;
+        }
+        rowGroupSize = (int) Math.max(MIN_ROW_GROUP_SIZE, Math.min(maxRowGroupSize, size));
+        pageSize = Math.max(MIN_PAGE_SIZE, Math.min(pageSize, rowGroupSize));
+        dictionaryPageSize = Math.max(MIN_PAGE_SIZE, Math.min(dictionaryPageSize, rowGroupSize));
+        return this;
+    }
+
+    /**
+     * choose the columns encoded with a dictionary from the first rows of a file,
+     * does nothing if not adaptive or the dictionary is disabled
+     *
+     * a column gets a dictionary when it has few distinct values and they fit in
+     * a dictionary page, the other columns are plain encoded.
+     * @param sample first rows to write, in order
+     * @return this
+     */
+    public PFileWriterSettings sampleDictionaryColumns(List<? extends Mutation> sample){
+        if(!adaptive || !dictionary || sample.isEmpty()) return this;
+        Map<String, ColumnSample> samples = new HashMap<>();
+        for(Mutation m : sample){
+            for(List<Cell> cells : m.getFamilyCellMap().values()){
+                for(Cell cell : cells){
+                    String column = Bytes.toString(cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength())
+                            + ":" + Bytes.toString(cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength());
+                    ColumnSample columnSample = samples.get(column);
+                    if(columnSample == null){
+                        columnSample = new ColumnSample();
+                        samples.put(column, columnSample);
+                    }
+                    columnSample.add(cell);
+                }
+            }
+        }
+
+        Set<ColumnPath> columns = new HashSet<>();
+        for(Map.Entry<String, ColumnSample> entry : samples.entrySet()){
+            ColumnSample columnSample = entry.getValue();
+            if(columnSample.distinctValues.size() <= maxDictionaryRatio * columnSample.count
+                    && columnSample.distinctSize <= dictionaryPageSize){
+                columns.add(ColumnPath.get(entry.getKey()));
+            }
+        }
+        dictionaryColumns = columns;
+        return this;
+    }
+
+    /**
+     * estimate the size of rows once encoded, before compression. plain binary values and
+     * the rowkey are prefixed by their length, the timestamp is a long
+     * @param sample first rows to write
+     * @param rows number of rows to write
+     * @return estimated size in bytes, 0 if the sample is empty
+     */
+    public static long estimateEncodedSize(List<? extends Mutation> sample, long rows){
+        if(sample.isEmpty()) return 0;
+        long size = 0;
+        for(Mutation m : sample){
+            size += Bytes.SIZEOF_INT + m.getRow().length + Bytes.SIZEOF_LONG;
+            for(List<Cell> cells : m.getFamilyCellMap().values()){
+                for(Cell cell : cells){
+                    size += Bytes.SIZEOF_INT + cell.getValueLength();
+                }
+            }
+        }
+        return size * rows / sample.size();
+    }
+
+    public int getSampleRows(){
+        return adaptive ? sampleRows : 0;
+    }
+
+    public int getRowGroupSize(){
+        return rowGroupSize;
+    }
+
+    public int getPageSize(){
+        return pageSize;
+    }
+
+    public int getDictionaryPageSize(){
+        return dictionaryPageSize;
+    }
+
+    public boolean isDictionary(){
+        return dictionary;
+    }
+
+    public boolean isAdaptive(){
+        return adaptive;
+    }
+
+    /**
+     * @return the columns encoded with a dictionary, null for all the columns
+     */
+    public Set<ColumnPath> getDictionaryColumns(){
+        return dictionaryColumns;
+    }
+
+    /**
+     * values of a column in the sample
+     */
+    private static class ColumnSample {
+        private final Set<ByteBuffer> distinctValues = new HashSet<>();
+        private int count = 0;
+        private long distinctSize = 0;
+
+        void add(Cell cell){
+            count++;
+            if(distinctValues.add(ByteBuffer.wrap(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()))){
+                distinctSize += cell.getValueLength();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "rowGroupSize=" + rowGroupSize + ", pageSize=" + pageSize
+                + ", dictionaryPageSize=" + dictionaryPageSize + ", dictionary=" + dictionary
+                + ", adaptive=" + adaptive
+                + (dictionaryColumns == null ? "" : ", dictionaryColumns=" + dictionaryColumns);
+    }
+}
@@ -0,0 +1,373 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.mapreduce;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.classification.InterfaceStability;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionServerCallable;
+import org.apache.hadoop.hbase.client.RpcRetryingCallerFactory;
+import org.apache.hadoop.hbase.io.pfile.MutationWriteSupport;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.io.pfile.PFileWriter;
+import org.apache.hadoop.hbase.io.pfile.PFileWriterSettings;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import parquet.hadoop.ParquetFileReader;
+import parquet.schema.MessageType;
+
+/**
+ * Tool to load the output of {@link PFileOutputFormat} into an existing parquet table.
+ * <p>
+ * The files of a region are loaded in one call, which the region server applies
+ * under the region write lock, so the rows of a region become visible in all of
+ * their families at once. A file spanning several regions, because a region was
+ * split after the job was configured, is first rewritten in one file per region.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class LoadIncrementalPFiles extends Configured implements Tool {
+  private static final Log LOG = LogFactory.getLog(LoadIncrementalPFiles.class);
+
+  public static final String NAME = "completeparquetbulkload";
+  private static final String ASSIGN_SEQ_IDS = "hbase.mapreduce.bulkload.assign.sequenceNumbers";
+  /** directory of the files split to fit the regions, under the loaded directory */
+  static final String TMP_DIR = "_tmp";
+
+  private boolean assignSeqIds;
+
+  private LoadIncrementalPFiles() {}
+
+  public LoadIncrementalPFiles(Configuration conf) {
+    super(HBaseConfiguration.create(conf));
+    initialize();
+  }
+
+  private void initialize() {
+    assignSeqIds = getConf().getBoolean(ASSIGN_SEQ_IDS, true);
+  }
+
+  private void usage() {
+    System.err.println("usage: " + NAME + " /path/to/pfileoutputformat-output tablename\n"
+        + "  Note: the target table must already exist in HBase\n");
+  }
+
+  /**
+   * Represents a parquet file waiting to be loaded.
+   */
+  static class LoadQueueItem {
+    final byte[] family;
+    final Path path;
+    final byte[] startKey;
+    final byte[] endKey;
+
+    LoadQueueItem(byte[] family, Path path, byte[] startKey, byte[] endKey) {
+      this.family = family;
+      this.path = path;
+      this.startKey = startKey;
+      this.endKey = endKey;
+    }
+
+    @Override
+    public String toString() {
+      return "family:" + Bytes.toString(family) + " path:" + path.toString();
+    }
+  }
+
+  /**
+   * Perform a bulk load of the given directory into the given table.
+   * @param pfofDir the directory that was provided as the output path
+   *   of a job using {@link PFileOutputFormat}
+   * @param table the table to load into
+   * @throws IOException if the load could not be completed, files already loaded stay loaded
+   */
+  public void doBulkLoad(Path pfofDir, final HTable table) throws IOException {
+    FileSystem fs = pfofDir.getFileSystem(getConf());
+    Deque<LoadQueueItem> queue = discoverLoadQueue(fs, pfofDir);
+    if (queue.isEmpty()) {
+      LOG.warn("Bulk load operation did not find any files to load in directory "
+          + pfofDir.toUri() + ". Does it contain files in subdirectories that correspond to"
+          + " column family names?");
+      return;
+    }
+
+    HConnection conn = table.getConnection();
+    try {
+      int count = 0;
+      while (!queue.isEmpty()) {
+        Pair<byte[][], byte[][]> startEndKeys = table.getStartEndKeys();
+        if (count != 0) {
+          LOG.info("Split occured while grouping parquet files, retry attempt " + count
+              + " with " + queue.size() + " files remaining to group or split");
+        }
+        int maxRetries = getConf().getInt("hbase.bulkload.retries.number", 10);
+        if (maxRetries != 0 && count >= maxRetries) {
+          throw new IOException("Retry attempted " + count +
+              " times without completing, bailing out");
+        }
+        count++;
+
+        // region start key -> files of the region
+        Map<byte[], List<LoadQueueItem>> regionGroups =
+            new TreeMap<byte[], List<LoadQueueItem>>(Bytes.BYTES_COMPARATOR);
+        while (!queue.isEmpty()) {
+          LoadQueueItem item = queue.remove();
+          for (LoadQueueItem part : groupOrSplit(fs, pfofDir, item, startEndKeys)) {
+            int idx = getRegionIndex(startEndKeys, part.startKey);
+            byte[] first = startEndKeys.getFirst()[idx];
+            List<LoadQueueItem> group = regionGroups.get(first);
+            if (group == null) {
+              group = new ArrayList<LoadQueueItem>();
+              regionGroups.put(first, group);
+            }
+            group.add(part);
+          }
+        }
+
+        for (Map.Entry<byte[], List<LoadQueueItem>> group : regionGroups.entrySet()) {
+          queue.addAll(tryAtomicRegionLoad(conn, table.getName(), group.getKey(),
+              group.getValue()));
+        }
+      }
+    } finally {
+      // the split files were moved into the regions, or the load failed and the files they
+      // were split from are still there
+      Path tmpDir = new Path(pfofDir, TMP_DIR);
+      if (fs.exists(tmpDir) && !fs.delete(tmpDir, true)) {
+        LOG.warn("Failed to delete the split files in " + tmpDir);
+      }
+    }
+  }
+
+  /**
+   * Walk the family directories of the given directory and read the key range of their files.
+   */
+  private Deque<LoadQueueItem> discoverLoadQueue(FileSystem fs, Path pfofDir) throws IOException {
+    Deque<LoadQueueItem> queue = new ArrayDeque<LoadQueueItem>();
+    FileStatus[] familyDirStatuses = fs.listStatus(pfofDir);
+    if (familyDirStatuses == null) {
+      throw new FileNotFoundException("No families found in " + pfofDir);
+    }
+    for (FileStatus stat : familyDirStatuses) {
+      if (!stat.isDirectory()) {
+        LOG.warn("Skipping non-directory " + stat.getPath());
+        continue;
+      }
+      Path familyDir = stat.getPath();
+      String familyName = familyDir.getName();
+      // Skip _logs, etc
+      if (familyName.startsWith("_")) continue;
+      byte[] family = Bytes.toBytes(familyName);
+      for (FileStatus fileStat : fs.listStatus(familyDir)) {
+        if (!fileStat.getPath().getName().endsWith(".parquet")) {
+          continue;
+        }
+        queue.add(createItem(family, fileStat.getPath()));
+      }
+    }
+    return queue;
+  }
+
+  private LoadQueueItem createItem(byte[] family, Path path) throws IOException {
+    Map<String, String> meta = ParquetFileReader.readFooter(getConf(), path)
+        .getFileMetaData().getKeyValueMetaData();
+    String startKey = meta.get(HConstants.START_KEY);
+    String endKey = meta.get(HConstants.END_KEY);
+    if (startKey == null || endKey == null) {
+      throw new IOException("No " + HConstants.START_KEY + " or " + HConstants.END_KEY
+          + " in the metadata of " + path);
+    }
+    return new LoadQueueItem(family, path, Bytes.toBytes(startKey), Bytes.toBytes(endKey));
+  }
+
+  /**
+   * @return index of the region containing the row
+   */
+  private static int getRegionIndex(Pair<byte[][], byte[][]> startEndKeys, byte[] row) {
+    int idx = Arrays.binarySearch(startEndKeys.getFirst(), row,
+        Bytes.BYTES_COMPARATOR);
+    if (idx < 0) {
+      // not on a region boundary, in the region before the insertion point
+      idx = -(idx + 1) - 1;
+    }
+    return idx;
+  }
+
+  private static boolean isInRegion(Pair<byte[][], byte[][]> startEndKeys, int idx, byte[] row) {
+    byte[] end = startEndKeys.getSecond()[idx];
+    return Bytes.equals(end, HConstants.EMPTY_END_ROW) || Bytes.compareTo(row, end) < 0;
+  }
+
+  /**
+   * @return the file if it fits in a region, else its rows rewritten in one file per region
+   */
+  protected List<LoadQueueItem> groupOrSplit(FileSystem fs, Path pfofDir, LoadQueueItem item,
+      Pair<byte[][], byte[][]> startEndKeys) throws IOException {
+    List<LoadQueueItem> parts = new ArrayList<LoadQueueItem>();
+    int idx = getRegionIndex(startEndKeys, item.startKey);
+    if (idx < 0) {
+      throw new IOException("The first region info for table does not have an empty start key");
+    }
+    if (isInRegion(startEndKeys, idx, item.endKey)) {
+      parts.add(item);
+      return parts;
+    }
+
+    LOG.info("parquet file at " + item.path + " no longer fits inside a single region."
+        + " Splitting...");
+    Path tmpDir = new Path(new Path(pfofDir, TMP_DIR), Bytes.toString(item.family));
+    MessageType schema = ParquetFileReader.readFooter(getConf(), item.path)
+        .getFileMetaData().getSchema();
+    PFileReader reader = new PFileReader(item.path, getConf(), schema);
+    PFileWriter writer = null;
+    try {
+      PFileReader.PFileScanner scanner = reader.getScanner();
+      while (scanner.hasNext()) {
+        List<Cell> cells = scanner.next();
+        if (cells.isEmpty()) continue;
+        byte[] row = CellUtil.cloneRow(cells.get(0));
+        if (writer == null || !isInRegion(startEndKeys, idx, row)) {
+          if (writer != null) {
+            writer.close();
+            parts.add(createItem(item.family, writer.getPath()));
+          }
+          idx = getRegionIndex(startEndKeys, row);
+          Path path = new Path(tmpDir, UUID.randomUUID().toString().replaceAll("-", "")
+              + ".parquet");
+          writer = new PFileWriter(getConf(), schema, new MutationWriteSupport(schema, null))
+              .addPath(path)
+              .addSettings(PFileWriterSettings.create(getConf(), null))
+              .build();
+        }
+        Put put = new Put(row);
+        for (Cell cell : cells) {
+          put.add(cell);
+        }
+        writer.append(put);
+      }
+      if (writer != null) {
+        writer.close();
+        parts.add(createItem(item.family, writer.getPath()));
+      }
+    } finally {
+      reader.close();
+    }
+    LOG.info("Split " + item.path + " into " + parts.size() + " files");
+    return parts;
+  }
+
+  /**
+   * Attempts to atomically load a group of parquet files into the region starting at
+   * <code>first</code>.
+   * @return the files to retry, empty if the load succeeded
+   */
+  protected List<LoadQueueItem> tryAtomicRegionLoad(final HConnection conn,
+      final TableName tableName, final byte[] first, List<LoadQueueItem> lqis)
+      throws IOException {
+    final List<Pair<byte[], String>> famPaths =
+        new ArrayList<Pair<byte[], String>>(lqis.size());
+    for (LoadQueueItem lqi : lqis) {
+      famPaths.add(Pair.newPair(lqi.family, lqi.path.toString()));
+    }
+
+    final RegionServerCallable<Boolean> svrCallable =
+        new RegionServerCallable<Boolean>(conn, tableName, first) {
+      @Override
+      public Boolean call(int callTimeout) throws Exception {
+        LOG.debug("Going to connect to server " + getLocation() + " for row "
+            + Bytes.toStringBinary(getRow()) + " with parquet file group " + famPaths);
+        byte[] regionName = getLocation().getRegionInfo().getRegionName();
+        return ProtobufUtil.bulkLoadHFile(getStub(), famPaths, regionName, assignSeqIds);
+      }
+    };
+
+    try {
+      List<LoadQueueItem> toRetry = new ArrayList<LoadQueueItem>();
+      boolean success = RpcRetryingCallerFactory.instantiate(getConf(),
+          null).<Boolean> newCaller()
+          .callWithRetries(svrCallable, Integer.MAX_VALUE);
+      if (!success) {
+        LOG.warn("Attempt to bulk load region containing "
+            + Bytes.toStringBinary(first) + " into table "
+            + tableName + " with files " + lqis
+            + " failed.  This is recoverable and they will be retried.");
+        toRetry.addAll(lqis);
+      }
+      return toRetry;
+    } catch (IOException e) {
+      LOG.error("Encountered unrecoverable error from region server, additional details: "
+          + svrCallable.getExceptionMessageAdditionalDetail(), e);
+      throw e;
+    }
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    if (args.length != 2) {
+      usage();
+      return -1;
+    }
+    setConf(HBaseConfiguration.create(getConf()));
+    initialize();
+
+    Path pfofDir = new Path(args[0]);
+    TableName tableName = TableName.valueOf(args[1]);
+    try (Connection connection = ConnectionFactory.createConnection(getConf());
+        HTable table = (HTable) connection.getTable(tableName);) {
+      doBulkLoad(pfofDir, table);
+    }
+    return 0;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Configuration conf = HBaseConfiguration.create();
+    int ret = ToolRunner.run(conf, new LoadIncrementalPFiles(), args);
+    System.exit(ret);
+  }
+}
@@ -0,0 +1,227 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.mapreduce;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.classification.InterfaceStability;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.io.pfile.MutationWriteSupport;
+import org.apache.hadoop.hbase.io.pfile.PFileWriter;
+import org.apache.hadoop.hbase.io.pfile.PFileWriterSettings;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import parquet.schema.MessageType;
+import parquet.schema.MessageTypeParser;
+
+/**
+ * Writes parquet store files. Passed Puts must arrive in row order.
+ * <p>
+ * One <code>.parquet</code> file is written per family under
+ * <code>outputdir/family/</code>, with the schema of the table and the first and
+ * last rows as its start and end keys. Puts of the same row are merged into one
+ * record. The output is loaded into the table by {@link LoadIncrementalPFiles}.
+ * <p>
+ * Using this class as part of a MapReduce job is best done
+ * using {@link #configureIncrementalLoad(Job, Table, RegionLocator)}.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class PFileOutputFormat extends FileOutputFormat<ImmutableBytesWritable, Put> {
+  static Log LOG = LogFactory.getLog(PFileOutputFormat.class);
+
+  /** parquet schema of the table, set by {@link #configureIncrementalLoad} */
+  static final String SCHEMA_CONF_KEY = "hbase.mapreduce.pfileoutputformat.schema";
+
+  @Override
+  public RecordWriter<ImmutableBytesWritable, Put> getRecordWriter(
+      final TaskAttemptContext context) throws IOException, InterruptedException {
+    final Path outputPath = FileOutputFormat.getOutputPath(context);
+    final Path outputdir = new FileOutputCommitter(outputPath, context).getWorkPath();
+    final Configuration conf = context.getConfiguration();
+    String schema = conf.get(SCHEMA_CONF_KEY);
+    if (schema == null) {
+      throw new IOException("No parquet schema in " + SCHEMA_CONF_KEY
+          + ", configure the job with configureIncrementalLoad");
+    }
+    return new PFileRecordWriter(conf, outputdir, MessageTypeParser.parseMessageType(schema));
+  }
+
+  /**
+   * Writes the cells of each family to their own file.
+   */
+  static class PFileRecordWriter extends RecordWriter<ImmutableBytesWritable, Put> {
+    private final Configuration conf;
+    private final FileSystem fs;
+    private final Path outputdir;
+    private final MessageType schema;
+    private final Map<byte[], FamilyWriter> writers =
+        new TreeMap<byte[], FamilyWriter>(Bytes.BYTES_COMPARATOR);
+    private byte[] previousRow = HConstants.EMPTY_BYTE_ARRAY;
+
+    PFileRecordWriter(Configuration conf, Path outputdir, MessageType schema)
+        throws IOException {
+      this.conf = conf;
+      this.fs = outputdir.getFileSystem(conf);
+      this.outputdir = outputdir;
+      this.schema = schema;
+    }
+
+    @Override
+    public void write(ImmutableBytesWritable row, Put put) throws IOException {
+      if (put == null) {
+        return;
+      }
+      byte[] rowKey = put.getRow();
+      if (Bytes.compareTo(previousRow, rowKey) > 0) {
+        throw new IOException("Added a row not in order: previous="
+            + Bytes.toStringBinary(previousRow) + " current=" + Bytes.toStringBinary(rowKey));
+      }
+      previousRow = rowKey;
+      for (Map.Entry<byte[], List<Cell>> family : put.getFamilyCellMap().entrySet()) {
+        FamilyWriter writer = writers.get(family.getKey());
+        if (writer == null) {
+          writer = new FamilyWriter(family.getKey());
+          writers.put(family.getKey(), writer);
+        }
+        writer.add(rowKey, family.getValue());
+      }
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException {
+      for (FamilyWriter writer : writers.values()) {
+        writer.close();
+      }
+      writers.clear();
+    }
+
+    /**
+     * Writer of one family, keeps the row being written until the next row.
+     */
+    private class FamilyWriter {
+      private final PFileWriter writer;
+      private Put pending = null;
+
+      FamilyWriter(byte[] family) throws IOException {
+        Path familydir = new Path(outputdir, Bytes.toString(family));
+        fs.mkdirs(familydir);
+        Path path = new Path(familydir, UUID.randomUUID().toString().replaceAll("-", "")
+            + ".parquet");
+        PFileWriterSettings settings = PFileWriterSettings.create(conf, null)
+            .adapt(0, fs.getDefaultBlockSize(familydir));
+        this.writer = new PFileWriter(conf, schema, new MutationWriteSupport(schema, null))
+            .addPath(path)
+            .addSettings(settings)
+            .build();
+        LOG.info("Writer=" + path + ", " + settings);
+      }
+
+      void add(byte[] row, List<Cell> cells) throws IOException {
+        if (pending != null && !Bytes.equals(pending.getRow(), row)) {
+          writer.append(pending);
+          pending = null;
+        }
+        if (pending == null) {
+          pending = new Put(row);
+        }
+        for (Cell cell : cells) {
+          pending.add(cell);
+        }
+      }
+
+      void close() throws IOException {
+        if (pending != null) {
+          writer.append(pending);
+          pending = null;
+        }
+        writer.close();
+      }
+    }
+  }
+
+  /**
+   * Configure a MapReduce Job to perform an incremental load into the given
+   * parquet table. This
+   * <ul>
+   *   <li>Inspects the table to configure a total order partitioner</li>
+   *   <li>Uploads the partitions file to the cluster and adds it to the DistributedCache</li>
+   *   <li>Sets the number of reduce tasks to match the current number of regions</li>
+   *   <li>Sets the output key/value class to match PFileOutputFormat's requirements</li>
+   *   <li>Sets the reducer up to merge the Puts of a row</li>
+   *   <li>Passes the parquet schema of the table to the tasks</li>
+   * </ul>
+   * The user should be sure to set the map output value class to Put before
+   * running this function.
+   */
+  public static void configureIncrementalLoad(Job job, Table table, RegionLocator regionLocator)
+      throws IOException {
+    Configuration conf = job.getConfiguration();
+
+    byte[] schema = table.getTableDescriptor().getValue(HConstants.SCHEMA.getBytes());
+    if (schema == null) {
+      throw new IOException("No parquet schema found for table " + table.getName());
+    }
+    conf.set(SCHEMA_CONF_KEY, Bytes.toString(schema));
+
+    job.setOutputKeyClass(ImmutableBytesWritable.class);
+    job.setOutputValueClass(Put.class);
+    job.setOutputFormatClass(PFileOutputFormat.class);
+    if (!Put.class.equals(job.getMapOutputValueClass())) {
+      LOG.warn("Unknown map output value type:" + job.getMapOutputValueClass());
+    }
+    job.setCombinerClass(PutCombiner.class);
+    job.setReducerClass(PutCombiner.class);
+
+    conf.setStrings("io.serializations", conf.get("io.serializations"),
+        MutationSerialization.class.getName(), ResultSerialization.class.getName());
+
+    // Use table's region boundaries for TOP split points.
+    LOG.info("Looking up current regions for table " + table.getName());
+    List<ImmutableBytesWritable> startKeys =
+        HFileOutputFormat2.getRegionStartKeys(regionLocator);
+    LOG.info("Configuring " + startKeys.size() + " reduce partitions " +
+        "to match current region count");
+    job.setNumReduceTasks(startKeys.size());
+    HFileOutputFormat2.configurePartitioner(job, startKeys);
+
+    TableMapReduceUtil.addDependencyJars(job);
+    TableMapReduceUtil.initCredentials(job);
+    LOG.info("Incremental parquet table " + table.getName() + " output configured.");
+  }
+}
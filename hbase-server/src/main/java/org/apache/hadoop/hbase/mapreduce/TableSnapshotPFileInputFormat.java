@@ -0,0 +1,730 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.mapreduce;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.classification.InterfaceStability;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.HFileLink;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.io.Reference;
+import org.apache.hadoop.hbase.io.pfile.HalfPFileScanner;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.protobuf.generated.HBaseProtos.SnapshotDescription;
+import org.apache.hadoop.hbase.protobuf.generated.SnapshotProtos.SnapshotRegionManifest;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.InternalRecordScanner;
+import org.apache.hadoop.hbase.regionserver.PStoreFile;
+import org.apache.hadoop.hbase.regionserver.StoreFileInfo;
+import org.apache.hadoop.hbase.snapshot.SnapshotDescriptionUtils;
+import org.apache.hadoop.hbase.snapshot.SnapshotManifest;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.FSUtils;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import parquet.example.data.Group;
+import parquet.filter2.compat.SortedKeyRowGroupFilter;
+import parquet.hadoop.ParquetFileReader;
+import parquet.hadoop.ParquetInputSplit;
+import parquet.hadoop.ParquetRecordReader;
+import parquet.hadoop.example.GroupReadSupport;
+import parquet.hadoop.metadata.BlockMetaData;
+import parquet.hadoop.metadata.ParquetMetadata;
+
+/**
+ * TableSnapshotPFileInputFormat allows a MapReduce job to run over the parquet files of a table
+ * snapshot. Like {@link TableSnapshotInputFormat} the job bypasses the HBase servers, but the
+ * snapshot is not restored: the parquet files are read in place through their links, from the
+ * table, the archive or the temporary directory, wherever they are when the job runs.
+ * <p>
+ * The row groups of the parquet files are the unit of work. A file whose rows overlap no other
+ * file of its region and family gets one split per row group in the range of the scan, read
+ * directly by a {@link ParquetRecordReader}. The files of a region whose rows overlap, from
+ * flushes which were not compacted yet, are merged row by row in a single split, the columns
+ * of the newest file win as in a compaction. The split references of a daughter region read
+ * the rows of their half only.
+ * <p>
+ * One {@link Result} is returned per row and parquet family. The start row, stop row, families
+ * and qualifiers of the scan are applied, its filter is not. The hfiles of the snapshot are not
+ * read, {@link TableSnapshotInputFormat} reads them.
+ * <pre>{@code
+ * Job job = new Job(conf);
+ * TableMapReduceUtil.initTableMapperJob(tableName, scan, MyTableMapper.class,
+ *     MyMapKeyOutput.class, MyMapOutputValueWritable.class, job);
+ * TableSnapshotPFileInputFormat.setInput(job, snapshotName);
+ * job.setInputFormatClass(TableSnapshotPFileInputFormat.class);
+ * }</pre>
+ * The snapshot should not be deleted while there are jobs reading from its files.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class TableSnapshotPFileInputFormat extends InputFormat<ImmutableBytesWritable, Result> {
+  private static final Log LOG = LogFactory.getLog(TableSnapshotPFileInputFormat.class);
+
+  private static final String SNAPSHOT_NAME_KEY =
+    "hbase.TableSnapshotPFileInputFormat.snapshot.name";
+
+  /**
+   * A parquet file of a split, named by its link so that it is found wherever it was moved.
+   */
+  static class SplitFile implements Writable {
+    // link to the file, family/table=region-file.parquet
+    private String link;
+    // offsets of the row groups to read, null to read all the row groups in the split's range
+    private long[] rowGroupOffsets;
+    private long seqId;
+    // split row of a reference, empty if the file is not a reference
+    private byte[] splitRow = HConstants.EMPTY_BYTE_ARRAY;
+    private boolean top;
+
+    // constructor for Writable
+    SplitFile() {}
+
+    SplitFile(String link, long[] rowGroupOffsets, long seqId, byte[] splitRow, boolean top) {
+      this.link = link;
+      this.rowGroupOffsets = rowGroupOffsets;
+      this.seqId = seqId;
+      this.splitRow = splitRow == null ? HConstants.EMPTY_BYTE_ARRAY : splitRow;
+      this.top = top;
+    }
+
+    boolean isReference() {
+      return splitRow.length > 0;
+    }
+
+    /** @return path of the file where it is now */
+    Path getAvailablePath(Configuration conf, FileSystem fs) throws IOException {
+      return new HFileLink(conf, new Path(link)).getAvailablePath(fs);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      out.writeUTF(link);
+      if (rowGroupOffsets == null) {
+        WritableUtils.writeVInt(out, -1);
+      } else {
+        WritableUtils.writeVInt(out, rowGroupOffsets.length);
+        for (long offset : rowGroupOffsets) {
+          WritableUtils.writeVLong(out, offset);
+        }
+      }
+      WritableUtils.writeVLong(out, seqId);
+      Bytes.writeByteArray(out, splitRow);
+      out.writeBoolean(top);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+      link = in.readUTF();
+      int offsets = WritableUtils.readVInt(in);
+      if (offsets < 0) {
+        rowGroupOffsets = null;
+      } else {
+        rowGroupOffsets = new long[offsets];
+        for (int i = 0; i < offsets; i++) {
+          rowGroupOffsets[i] = WritableUtils.readVLong(in);
+        }
+      }
+      seqId = WritableUtils.readVLong(in);
+      splitRow = Bytes.readByteArray(in);
+      top = in.readBoolean();
+    }
+  }
+
+  /**
+   * The row groups of one parquet file, or the overlapping parquet files of a region to merge.
+   */
+  public static class PFileSnapshotSplit extends InputSplit implements Writable {
+    private List<SplitFile> files = new ArrayList<SplitFile>();
+    private byte[] startRow = HConstants.EMPTY_START_ROW;
+    private byte[] stopRow = HConstants.EMPTY_END_ROW;
+    private long length;
+    private String[] locations = new String[0];
+
+    // constructor for mapreduce framework / Writable
+    public PFileSnapshotSplit() {}
+
+    PFileSnapshotSplit(List<SplitFile> files, byte[] startRow, byte[] stopRow, long length,
+        String[] locations) {
+      this.files = files;
+      this.startRow = startRow;
+      this.stopRow = stopRow;
+      this.length = length;
+      this.locations = locations;
+    }
+
+    /** @return whether the rows of several files are merged by the split */
+    boolean isMerged() {
+      return files.size() > 1;
+    }
+
+    @Override
+    public long getLength() {
+      return length;
+    }
+
+    @Override
+    public String[] getLocations() {
+      return locations;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      WritableUtils.writeVInt(out, files.size());
+      for (SplitFile file : files) {
+        file.write(out);
+      }
+      Bytes.writeByteArray(out, startRow);
+      Bytes.writeByteArray(out, stopRow);
+      WritableUtils.writeVLong(out, length);
+      WritableUtils.writeStringArray(out, locations);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+      int count = WritableUtils.readVInt(in);
+      files = new ArrayList<SplitFile>(count);
+      for (int i = 0; i < count; i++) {
+        SplitFile file = new SplitFile();
+        file.readFields(in);
+        files.add(file);
+      }
+      startRow = Bytes.readByteArray(in);
+      stopRow = Bytes.readByteArray(in);
+      length = WritableUtils.readVLong(in);
+      locations = WritableUtils.readStringArray(in);
+    }
+  }
+
+  /**
+   * A parquet file of a region of the snapshot, with its rows in the region, the scan
+   * and its half for a reference.
+   */
+  private static class RegionFile {
+    String link;
+    Path path;
+    ParquetMetadata footer;
+    long seqId;
+    byte[] splitRow;
+    boolean top;
+    // the rows of the file to read, [startRow, stopRow)
+    byte[] startRow;
+    byte[] stopRow;
+    // the first and last rows of the file in the range
+    byte[] firstRow;
+    byte[] lastRow;
+  }
+
+  @Override
+  public List<InputSplit> getSplits(JobContext job) throws IOException, InterruptedException {
+    Configuration conf = job.getConfiguration();
+    String snapshotName = conf.get(SNAPSHOT_NAME_KEY);
+    if (snapshotName == null) {
+      throw new IllegalArgumentException("Snapshot name must be provided");
+    }
+    Path rootDir = FSUtils.getRootDir(conf);
+    FileSystem fs = rootDir.getFileSystem(conf);
+
+    Path snapshotDir = SnapshotDescriptionUtils.getCompletedSnapshotDir(snapshotName, rootDir);
+    SnapshotDescription snapshotDesc = SnapshotDescriptionUtils.readSnapshotInfo(fs, snapshotDir);
+    SnapshotManifest manifest = SnapshotManifest.open(conf, fs, snapshotDir, snapshotDesc);
+    List<SnapshotRegionManifest> regionManifests = manifest.getRegionManifests();
+    if (regionManifests == null) {
+      throw new IllegalArgumentException("Snapshot seems empty");
+    }
+    TableName tableName = manifest.getTableDescriptor().getTableName();
+    Scan scan = getScan(conf);
+
+    List<InputSplit> splits = new ArrayList<InputSplit>();
+    for (SnapshotRegionManifest regionManifest : regionManifests) {
+      HRegionInfo hri = HRegionInfo.convert(regionManifest.getRegionInfo());
+      if (!CellUtil.overlappingKeys(scan.getStartRow(), scan.getStopRow(),
+          hri.getStartKey(), hri.getEndKey())) {
+        continue;
+      }
+      byte[] startRow = max(scan.getStartRow(), hri.getStartKey());
+      byte[] stopRow = minStop(scan.getStopRow(), hri.getEndKey());
+      for (SnapshotRegionManifest.FamilyFiles familyFiles : regionManifest.getFamilyFilesList()) {
+        byte[] family = familyFiles.getFamilyName().toByteArray();
+        if (scan.hasFamilies() && !scan.getFamilyMap().containsKey(family)) {
+          continue;
+        }
+        Path familyDir = new Path(HRegion.getRegionDir(snapshotDir, hri.getEncodedName()),
+          Bytes.toString(family));
+        List<RegionFile> files = new ArrayList<RegionFile>();
+        for (SnapshotRegionManifest.StoreFile storeFile : familyFiles.getStoreFilesList()) {
+          RegionFile file = openRegionFile(conf, fs, tableName, hri, familyDir, storeFile,
+            startRow, stopRow);
+          if (file != null) {
+            files.add(file);
+          }
+        }
+        addSplits(conf, fs, files, splits);
+      }
+    }
+    LOG.info(splits.size() + " splits of the parquet files of snapshot " + snapshotName);
+    return splits;
+  }
+
+  /**
+   * @return the parquet file of the store file in the range, null if the store file is not a
+   *   parquet file or has no row in the range
+   */
+  private static RegionFile openRegionFile(Configuration conf, FileSystem fs, TableName tableName,
+      HRegionInfo hri, Path familyDir, SnapshotRegionManifest.StoreFile storeFile,
+      byte[] startRow, byte[] stopRow) throws IOException {
+    String name = storeFile.getName();
+    String family = familyDir.getName();
+    RegionFile file = new RegionFile();
+    file.startRow = startRow;
+    file.stopRow = stopRow;
+    if (PStoreFile.isReference(name)) {
+      // a daughter region of a split, the half of the file of its parent is read
+      Reference reference = storeFile.hasReference()
+          ? Reference.convert(storeFile.getReference())
+          : Reference.read(fs, new Path(familyDir, name));
+      Path referred = PStoreFile.getReferredToFile(new Path(familyDir, name));
+      String parentRegion = referred.getParent().getParent().getName();
+      file.link = HFileLink.createPath(tableName, parentRegion, family, referred.getName())
+          .toString();
+      file.splitRow = PStoreFile.getSplitRow(reference);
+      file.top = Reference.isTopFileRegion(reference.getFileRegion());
+      if (file.top) {
+        file.startRow = max(startRow, file.splitRow);
+      } else {
+        file.stopRow = minStop(stopRow, file.splitRow);
+      }
+    } else if (StoreFileInfo.isPFile(name)
+        || (HFileLink.isHFileLink(name) && name.endsWith(".parquet"))) {
+      file.link = HFileLink.createPath(tableName, hri.getEncodedName(), family, name).toString();
+    } else {
+      return null;
+    }
+    if (!isEmptyStop(file.stopRow) && Bytes.compareTo(file.startRow, file.stopRow) >= 0) {
+      return null;
+    }
+
+    file.path = new HFileLink(conf, new Path(file.link)).getAvailablePath(fs);
+    file.footer = ParquetFileReader.readFooter(conf, fs.getFileStatus(file.path));
+    Map<String, String> meta = file.footer.getFileMetaData().getKeyValueMetaData();
+    file.seqId = getSequenceId(meta, file.path.getName());
+
+    String startKey = meta.get(HConstants.START_KEY);
+    String endKey = meta.get(HConstants.END_KEY);
+    file.firstRow = startKey == null ? file.startRow : max(Bytes.toBytes(startKey), file.startRow);
+    file.lastRow = endKey == null ? null : Bytes.toBytes(endKey);
+    if (file.lastRow != null && (Bytes.compareTo(file.lastRow, file.startRow) < 0
+        || !isEmptyStop(file.stopRow) && Bytes.compareTo(file.firstRow, file.stopRow) >= 0)) {
+      return null;
+    }
+    return file;
+  }
+
+  private static long getSequenceId(Map<String, String> meta, String name) {
+    String seqId = meta.get(HConstants.MAX_SEQ_ID);
+    if (seqId != null) {
+      try {
+        return Long.parseLong(seqId);
+      } catch (NumberFormatException nfe) {
+        LOG.warn("invalid " + HConstants.MAX_SEQ_ID + " " + seqId + " in " + name);
+      }
+    }
+    // bulk loaded files carry their seq id in the name, the others sort as the oldest
+    return Math.max(0, PStoreFile.getSequenceIdFromName(name));
+  }
+
+  /**
+   * Adds a split per row group of the files which overlap no other file, and a merging
+   * split for each run of overlapping files.
+   */
+  private static void addSplits(Configuration conf, FileSystem fs, List<RegionFile> files,
+      List<InputSplit> splits) throws IOException {
+    Collections.sort(files, new Comparator<RegionFile>() {
+      @Override
+      public int compare(RegionFile o1, RegionFile o2) {
+        return Bytes.compareTo(o1.firstRow, o2.firstRow);
+      }
+    });
+    int i = 0;
+    while (i < files.size()) {
+      List<RegionFile> run = new ArrayList<RegionFile>();
+      RegionFile file = files.get(i++);
+      run.add(file);
+      byte[] lastRow = file.lastRow;
+      while (i < files.size()
+          && (lastRow == null || Bytes.compareTo(files.get(i).firstRow, lastRow) <= 0)) {
+        RegionFile next = files.get(i++);
+        run.add(next);
+        if (lastRow != null && (next.lastRow == null || Bytes.compareTo(next.lastRow, lastRow) > 0)) {
+          lastRow = next.lastRow;
+        }
+      }
+      if (run.size() == 1) {
+        addRowGroupSplits(fs, file, splits);
+      } else {
+        addMergedSplit(fs, run, splits);
+      }
+    }
+  }
+
+  private static void addRowGroupSplits(FileSystem fs, RegionFile file, List<InputSplit> splits)
+      throws IOException {
+    List<BlockMetaData> rowGroups = SortedKeyRowGroupFilter.filterRowGroups(
+      file.footer.getBlocks(), HConstants.ROW_KEY, file.startRow, file.stopRow);
+    FileStatus status = fs.getFileStatus(file.path);
+    for (BlockMetaData rowGroup : rowGroups) {
+      List<SplitFile> splitFiles = new ArrayList<SplitFile>(1);
+      splitFiles.add(new SplitFile(file.link, new long[] { rowGroup.getStartingPos() },
+        file.seqId, file.splitRow, file.top));
+      splits.add(new PFileSnapshotSplit(splitFiles, file.startRow, file.stopRow,
+        rowGroup.getCompressedSize(),
+        getHosts(fs, status, rowGroup.getStartingPos(), rowGroup.getCompressedSize())));
+    }
+  }
+
+  private static void addMergedSplit(FileSystem fs, List<RegionFile> run, List<InputSplit> splits)
+      throws IOException {
+    List<SplitFile> splitFiles = new ArrayList<SplitFile>(run.size());
+    Set<String> hosts = new LinkedHashSet<String>();
+    byte[] startRow = null;
+    byte[] stopRow = null;
+    long length = 0;
+    for (RegionFile file : run) {
+      splitFiles.add(new SplitFile(file.link, null, file.seqId, file.splitRow, file.top));
+      startRow = startRow == null ? file.startRow : min(startRow, file.startRow);
+      stopRow = stopRow == null ? file.stopRow : maxStop(stopRow, file.stopRow);
+      FileStatus status = fs.getFileStatus(file.path);
+      length += status.getLen();
+      if (hosts.size() < 3) {
+        for (String host : getHosts(fs, status, 0, status.getLen())) {
+          hosts.add(host);
+        }
+      }
+    }
+    splits.add(new PFileSnapshotSplit(splitFiles, startRow, stopRow, length,
+      hosts.toArray(new String[hosts.size()])));
+  }
+
+  private static String[] getHosts(FileSystem fs, FileStatus status, long start, long length)
+      throws IOException {
+    BlockLocation[] blocks = fs.getFileBlockLocations(status, start, Math.max(1, length));
+    if (blocks == null || blocks.length == 0) {
+      return new String[0];
+    }
+    return blocks[0].getHosts();
+  }
+
+  private static Scan getScan(Configuration conf) throws IOException {
+    if (conf.get(TableInputFormat.SCAN) != null) {
+      return TableMapReduceUtil.convertStringToScan(conf.get(TableInputFormat.SCAN));
+    }
+    return new Scan();
+  }
+
+  private static boolean isEmptyStop(byte[] stopRow) {
+    return stopRow == null || stopRow.length == 0;
+  }
+
+  private static byte[] max(byte[] a, byte[] b) {
+    return Bytes.compareTo(a, b) >= 0 ? a : b;
+  }
+
+  private static byte[] min(byte[] a, byte[] b) {
+    return Bytes.compareTo(a, b) <= 0 ? a : b;
+  }
+
+  /** @return the smaller of two stop rows, an empty stop row has no bound */
+  private static byte[] minStop(byte[] a, byte[] b) {
+    if (isEmptyStop(a)) return b;
+    if (isEmptyStop(b)) return a;
+    return min(a, b);
+  }
+
+  private static byte[] maxStop(byte[] a, byte[] b) {
+    if (isEmptyStop(a) || isEmptyStop(b)) return HConstants.EMPTY_END_ROW;
+    return max(a, b);
+  }
+
+  /**
+   * Reads the row groups of a single file with a {@link ParquetRecordReader}, or merges the
+   * rows of the overlapping files of a region.
+   */
+  static class PFileSnapshotRecordReader extends RecordReader<ImmutableBytesWritable, Result> {
+    private PFileSnapshotSplit split;
+    private Map<byte[], NavigableSet<byte[]>> familyMap;
+    private ParquetRecordReader<Group> groupReader;
+    private PriorityQueue<FileCursor> heap;
+    private ImmutableBytesWritable row = null;
+    private Result result = null;
+    private long rows = 0;
+    private long totalRows = 0;
+
+    @Override
+    public void initialize(InputSplit inputSplit, TaskAttemptContext context)
+        throws IOException, InterruptedException {
+      this.split = (PFileSnapshotSplit) inputSplit;
+      Configuration conf = context.getConfiguration();
+      FileSystem fs = FSUtils.getCurrentFileSystem(conf);
+      this.familyMap = getScan(conf).getFamilyMap();
+
+      if (!split.isMerged()) {
+        SplitFile file = split.files.get(0);
+        Path path = file.getAvailablePath(conf, fs);
+        long start = file.rowGroupOffsets[0];
+        groupReader = new ParquetRecordReader<Group>(new GroupReadSupport());
+        groupReader.initialize(new ParquetInputSplit(path, start, start + split.getLength(),
+          split.getLength(), split.getLocations(), file.rowGroupOffsets), context);
+        return;
+      }
+
+      heap = new PriorityQueue<FileCursor>(split.files.size(), FileCursor.COMPARATOR);
+      for (SplitFile file : split.files) {
+        PFileReader reader = new PFileReader(file.getAvailablePath(conf, fs), conf, null,
+          split.startRow, split.stopRow);
+        InternalRecordScanner scanner = reader.getScanner();
+        if (file.isReference()) {
+          scanner = new HalfPFileScanner(scanner, file.splitRow, file.top, reader.getRowIndex());
+        }
+        if (split.startRow.length > 0) {
+          scanner.seek(split.startRow);
+        }
+        totalRows += scanner.getRecordCount();
+        FileCursor cursor = new FileCursor(reader, scanner, file.seqId);
+        if (cursor.next()) {
+          heap.add(cursor);
+        } else {
+          cursor.close();
+        }
+      }
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException, InterruptedException {
+      while (true) {
+        List<Cell> cells = split.isMerged() ? nextMergedRow() : nextGroupRow();
+        if (cells == null) {
+          result = null;
+          return false;
+        }
+        rows++;
+        byte[] rowKey = CellUtil.cloneRow(cells.get(0));
+        if (Bytes.compareTo(rowKey, split.startRow) < 0) {
+          continue;
+        }
+        if (!isEmptyStop(split.stopRow) && Bytes.compareTo(rowKey, split.stopRow) >= 0) {
+          result = null;
+          return false;
+        }
+        List<Cell> selected = select(cells);
+        if (selected.isEmpty()) {
+          continue;
+        }
+        // the cells of a result are sorted for its lookups
+        Collections.sort(selected, KeyValue.COMPARATOR);
+        result = Result.create(selected);
+        if (row == null) {
+          row = new ImmutableBytesWritable();
+        }
+        row.set(rowKey);
+        return true;
+      }
+    }
+
+    private List<Cell> nextGroupRow() throws IOException, InterruptedException {
+      while (groupReader.nextKeyValue()) {
+        List<Cell> cells = PFileReader.groupToCells(groupReader.getCurrentValue());
+        if (!cells.isEmpty()) {
+          return cells;
+        }
+      }
+      return null;
+    }
+
+    /** @return the next row of the files, the value of the newest file wins for each column */
+    private List<Cell> nextMergedRow() {
+      if (heap.isEmpty()) {
+        return null;
+      }
+      byte[] rowKey = heap.peek().row;
+      List<Cell> cells = new ArrayList<Cell>();
+      Set<String> columns = new HashSet<String>();
+      // the cursors of a row come out of the heap from the newest file to the oldest
+      while (!heap.isEmpty() && Bytes.equals(rowKey, heap.peek().row)) {
+        FileCursor cursor = heap.poll();
+        for (Cell cell : cursor.cells) {
+          String column = Bytes.toString(CellUtil.cloneFamily(cell)) + ":"
+              + Bytes.toString(CellUtil.cloneQualifier(cell));
+          if (columns.add(column)) {
+            cells.add(cell);
+          }
+        }
+        if (cursor.next()) {
+          heap.add(cursor);
+        } else {
+          cursor.close();
+        }
+      }
+      return cells;
+    }
+
+    /** @return the cells of the qualifiers of the scan */
+    private List<Cell> select(List<Cell> cells) {
+      if (familyMap.isEmpty()) {
+        return new ArrayList<Cell>(cells);
+      }
+      List<Cell> selected = new ArrayList<Cell>(cells.size());
+      for (Cell cell : cells) {
+        byte[] family = CellUtil.cloneFamily(cell);
+        if (!familyMap.containsKey(family)) {
+          continue;
+        }
+        NavigableSet<byte[]> qualifiers = familyMap.get(family);
+        if (qualifiers == null || qualifiers.contains(CellUtil.cloneQualifier(cell))) {
+          selected.add(cell);
+        }
+      }
+      return selected;
+    }
+
+    @Override
+    public ImmutableBytesWritable getCurrentKey() {
+      return row;
+    }
+
+    @Override
+    public Result getCurrentValue() {
+      return result;
+    }
+
+    @Override
+    public float getProgress() throws IOException, InterruptedException {
+      if (groupReader != null) {
+        return groupReader.getProgress();
+      }
+      return totalRows == 0 ? 0 : Math.min(1.0f, (float) rows / totalRows);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (groupReader != null) {
+        groupReader.close();
+      }
+      if (heap != null) {
+        FileCursor cursor;
+        while ((cursor = heap.poll()) != null) {
+          cursor.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * the current row of a file being merged
+   */
+  private static class FileCursor {
+    static final Comparator<FileCursor> COMPARATOR = new Comparator<FileCursor>() {
+      @Override
+      public int compare(FileCursor o1, FileCursor o2) {
+        int c = Bytes.compareTo(o1.row, o2.row);
+        if (c != 0) {
+          return c;
+        }
+        // newer file first
+        return Long.compare(o2.seqId, o1.seqId);
+      }
+    };
+
+    private final PFileReader reader;
+    private final InternalRecordScanner scanner;
+    private final long seqId;
+    private byte[] row;
+    private List<Cell> cells;
+
+    FileCursor(PFileReader reader, InternalRecordScanner scanner, long seqId) {
+      this.reader = reader;
+      this.scanner = scanner;
+      this.seqId = seqId;
+    }
+
+    boolean next() {
+      while (scanner.hasNext()) {
+        cells = new ArrayList<Cell>(scanner.next());
+        if (!cells.isEmpty()) {
+          row = CellUtil.cloneRow(cells.get(0));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void close() {
+      reader.close();
+    }
+  }
+
+  @Override
+  public RecordReader<ImmutableBytesWritable, Result> createRecordReader(
+      InputSplit split, TaskAttemptContext context) throws IOException {
+    return new PFileSnapshotRecordReader();
+  }
+
+  /**
+   * Configures the job to use TableSnapshotPFileInputFormat to read the parquet files of a
+   * snapshot. The files are read where they are, the snapshot is not restored.
+   * @param job the job to configure
+   * @param snapshotName the name of the snapshot to read from
+   */
+  public static void setInput(Job job, String snapshotName) {
+    job.getConfiguration().set(SNAPSHOT_NAME_KEY, snapshotName);
+  }
+}
@@ -0,0 +1,21 @@
+package org.apache.hadoop.hbase.regionserver;
+
+import parquet.hadoop.ColumnBatch;
+
+import java.io.IOException;
+
+/**
+ * record scanner which can hand out its rows as columnar batches
+ */
+public interface BatchRecordScanner extends RecordScanner{
+
+    /**
+     * return the next rows of the scanner as a batch, the batch is reused
+     * by the scanner and only valid until the next call on it
+     * @param maxRows max rows to return
+     * @param stopRow exclusive row to stop at, null for no limit
+     * @return the batch, null or empty when no row can be returned as a batch
+     */
+    ColumnBatch nextBatch(int maxRows, byte[] stopRow) throws IOException;
+
+}
@@ -73,6 +73,11 @@ public class CompactSplitThread implements CompactionRequestor, PropagatingConfi
   public final static String MERGE_THREADS = "hbase.regionserver.thread.merge";
   public final static int MERGE_THREADS_DEFAULT = 1;
 
+  // Configuration key for the parquet compaction threads
+  public final static String PARQUET_COMPACTION_THREADS =
+      "hbase.regionserver.thread.compaction.parquet";
+  public final static int PARQUET_COMPACTION_THREADS_DEFAULT = 1;
+
   public static final String REGION_SERVER_REGION_SPLIT_LIMIT =
       "hbase.regionserver.regionSplitLimit";
   public static final int DEFAULT_REGION_SERVER_REGION_SPLIT_LIMIT= 1000;
@@ -84,6 +89,7 @@ public class CompactSplitThread implements CompactionRequestor, PropagatingConfi
   private final ThreadPoolExecutor shortCompactions;
   private final ThreadPoolExecutor splits;
   private final ThreadPoolExecutor mergePool;
+  private final ThreadPoolExecutor parquetCompactions;
 
   /**
    * Splitting should not take place if the total number of regions exceed this.
@@ -155,6 +161,17 @@ public class CompactSplitThread implements CompactionRequestor, PropagatingConfi
             return t;
           }
         });
+    int parquetThreads = Math.max(1, conf.getInt(
+        PARQUET_COMPACTION_THREADS, PARQUET_COMPACTION_THREADS_DEFAULT));
+    this.parquetCompactions = (ThreadPoolExecutor) Executors.newFixedThreadPool(
+        parquetThreads, new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r);
+            t.setName(n + "-parquetCompactions-" + System.currentTimeMillis());
+            return t;
+          }
+        });
   }
 
   @Override
@@ -163,7 +180,8 @@ public class CompactSplitThread implements CompactionRequestor, PropagatingConfi
         + longCompactions.getQueue().size() + ":"
         + shortCompactions.getQueue().size() + ")"
         + ", split_queue=" + splits.getQueue().size()
-        + ", merge_queue=" + mergePool.getQueue().size();
+        + ", merge_queue=" + mergePool.getQueue().size()
+        + ", parquet_compaction_queue=" + parquetCompactions.getQueue().size();
   }
   
   public String dumpQueue() {
@@ -329,6 +347,10 @@ public class CompactSplitThread implements CompactionRequestor, PropagatingConfi
       return null;
     }
 
+    if (s instanceof HStore && ((HStore) s).needsPCompaction()) {
+      requestPCompaction(r, (HStore) s, why);
+    }
+
     CompactionContext compaction = null;
     if (selectNow) {
       compaction = selectCompaction(r, s, priority, request);
@@ -349,6 +371,28 @@ public class CompactSplitThread implements CompactionRequestor, PropagatingConfi
     return selectNow ? compaction.getRequest() : null;
   }
 
+  /**
+   * Selects the parquet files of the store to compact and queues their compaction
+   * on the parquet compaction pool.
+   * @param r region of the store
+   * @param s store to compact
+   * @param why reason of the compaction
+   */
+  public synchronized void requestPCompaction(final HRegion r, final HStore s, final String why) {
+    if (this.server.isStopped()) {
+      return;
+    }
+    List<PStoreFile> filesToCompact = s.selectPCompaction();
+    if (filesToCompact.isEmpty()) {
+      return;
+    }
+    parquetCompactions.execute(new PCompactionRunner(r, s, filesToCompact));
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Parquet compaction requested: " + filesToCompact.size() + " files of " + s
+          + (why != null && !why.isEmpty() ? "; Because: " + why : "") + "; " + this);
+    }
+  }
+
   private CompactionContext selectCompaction(final HRegion r, final Store s,
       int priority, CompactionRequest request) throws IOException {
     CompactionContext compaction = s.requestCompaction(priority, request);
@@ -372,6 +416,7 @@ public class CompactSplitThread implements CompactionRequestor, PropagatingConfi
   void interruptIfNecessary() {
     splits.shutdown();
     mergePool.shutdown();
+    parquetCompactions.shutdown();
     longCompactions.shutdown();
     shortCompactions.shutdown();
   }
@@ -394,6 +439,7 @@ public class CompactSplitThread implements CompactionRequestor, PropagatingConfi
   void join() {
     waitFor(splits, "Split Thread");
     waitFor(mergePool, "Merge Thread");
+    waitFor(parquetCompactions, "Parquet Compaction Thread");
     waitFor(longCompactions, "Large Compaction Thread");
     waitFor(shortCompactions, "Small Compaction Thread");
   }
@@ -557,6 +603,56 @@ public class CompactSplitThread implements CompactionRequestor, PropagatingConfi
     }
   }
 
+  /**
+   * Compacts the parquet files selected for a store.
+   */
+  private class PCompactionRunner implements Runnable {
+    private final HRegion region;
+    private final HStore store;
+    private final List<PStoreFile> filesToCompact;
+
+    public PCompactionRunner(HRegion region, HStore store, List<PStoreFile> filesToCompact) {
+      this.region = region;
+      this.store = store;
+      this.filesToCompact = filesToCompact;
+    }
+
+    @Override
+    public void run() {
+      Preconditions.checkNotNull(server);
+      if (server.isStopped()
+          || (region.getTableDesc() != null && !region.getTableDesc().isCompactionEnabled())) {
+        store.cancelPCompaction(filesToCompact);
+        return;
+      }
+      try {
+        long start = EnvironmentEdgeManager.currentTime();
+        boolean completed = region.compactParquet(store, filesToCompact);
+        long now = EnvironmentEdgeManager.currentTime();
+        LOG.info(((completed) ? "Completed" : "Aborted") + " parquet compaction: " +
+              this + "; duration=" + StringUtils.formatTimeDiff(now, start));
+        if (completed && store.needsPCompaction()) {
+          requestPCompaction(region, store, "Recursive enqueue");
+        }
+      } catch (IOException ex) {
+        IOException remoteEx = RemoteExceptionHandler.checkIOException(ex);
+        LOG.error("Parquet compaction failed " + this, remoteEx);
+        server.checkFileSystem();
+      } catch (Exception ex) {
+        LOG.error("Parquet compaction failed " + this, ex);
+        server.checkFileSystem();
+      } finally {
+        LOG.debug("CompactSplitThread Status: " + CompactSplitThread.this);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Request = " + filesToCompact.size() + " parquet files of "
+          + store + " in " + region.getRegionNameAsString();
+    }
+  }
+
   /**
    * Cleanup class to use when rejecting a compaction request from the queue.
    */
@@ -66,9 +66,9 @@ import org.apache.hadoop.hbase.util.ReflectionUtils;
 @InterfaceAudience.Private
 public class DefaultMemStore implements MemStore {
     private static final Log LOG = LogFactory.getLog(DefaultMemStore.class);
-    static final String USEMSLAB_KEY = "hbase.hregion.memstore.mslab.enabled";
-    private static final boolean USEMSLAB_DEFAULT = true;
-    static final String MSLAB_CLASS_NAME = "hbase.regionserver.mslab.class";
+    public static final String USEMSLAB_KEY = "hbase.hregion.memstore.mslab.enabled";
+    public static final boolean USEMSLAB_DEFAULT = true;
+    public static final String MSLAB_CLASS_NAME = "hbase.regionserver.mslab.class";
 
     private Configuration conf;
 
@@ -88,6 +88,7 @@ import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.RowMutations;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.api.Matcher;
 import org.apache.hadoop.hbase.conf.ConfigurationManager;
 import org.apache.hadoop.hbase.conf.PropagatingConfigurationObserver;
 import org.apache.hadoop.hbase.coprocessor.RegionObserver;
@@ -97,6 +98,7 @@ import org.apache.hadoop.hbase.exceptions.RegionInRecoveryException;
 import org.apache.hadoop.hbase.exceptions.UnknownProtocolException;
 import org.apache.hadoop.hbase.filter.ByteArrayComparable;
 import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterWrapper;
 import org.apache.hadoop.hbase.filter.IncompatibleFilterException;
 import org.apache.hadoop.hbase.io.HeapSize;
@@ -131,6 +133,7 @@ import org.apache.hadoop.hbase.regionserver.wal.WALUtil;
 import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
 import org.apache.hadoop.hbase.snapshot.SnapshotDescriptionUtils;
 import org.apache.hadoop.hbase.snapshot.SnapshotManifest;
+import org.apache.hadoop.hbase.util.ByteRange;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.CancelableProgressable;
 import org.apache.hadoop.hbase.util.ClassSize;
@@ -158,6 +161,7 @@ import com.google.protobuf.Message;
 import com.google.protobuf.RpcCallback;
 import com.google.protobuf.RpcController;
 import com.google.protobuf.Service;
+import parquet.hadoop.ColumnBatch;
 
 /**
  * HRegion stores data for a certain region of a table.  It stores all columns
@@ -1671,6 +1675,74 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
         }
     }
 
+    /**
+     * Compact the selected parquet files of a store, the parquet counterpart of
+     * {@link #compact(CompactionContext, Store)}.
+     *
+     * @param store the store of the files
+     * @param filesToCompact files selected by {@link HStore#selectPCompaction()}
+     * @return whether the compaction completed
+     * @throws IOException e
+     */
+    public boolean compactParquet(HStore store, List<PStoreFile> filesToCompact) throws IOException {
+        if (this.closing.get() || this.closed.get()) {
+            LOG.debug("Skipping parquet compaction on " + this + " because closing/closed");
+            store.cancelPCompaction(filesToCompact);
+            return false;
+        }
+        MonitoredTask status = null;
+        boolean requestNeedsCancellation = true;
+        lock.readLock().lock();
+        try {
+            byte[] cf = Bytes.toBytes(store.getColumnFamilyName());
+            if (stores.get(cf) != store) {
+                LOG.warn("Store " + store.getColumnFamilyName() + " on region " + this
+                        + " has been re-instantiated, cancel this parquet compaction request.");
+                return false;
+            }
+
+            status = TaskMonitor.get().createStatus("Compacting parquet files of " + store + " in " + this);
+            boolean wasStateSet = false;
+            try {
+                synchronized (writestate) {
+                    if (writestate.writesEnabled) {
+                        wasStateSet = true;
+                        ++writestate.compacting;
+                    } else {
+                        String msg = "NOT compacting region " + this + ". Writes disabled.";
+                        LOG.info(msg);
+                        status.abort(msg);
+                        return false;
+                    }
+                }
+                LOG.info("Starting parquet compaction of " + filesToCompact.size() + " files on "
+                        + store + " in region " + this);
+                status.setStatus("Compacting parquet files of store " + store);
+                // the store releases the selection unconditionally from here
+                requestNeedsCancellation = false;
+                store.compactPStoreFiles(filesToCompact);
+            } finally {
+                if (wasStateSet) {
+                    synchronized (writestate) {
+                        --writestate.compacting;
+                        if (writestate.compacting <= 0) {
+                            writestate.notifyAll();
+                        }
+                    }
+                }
+            }
+            status.markComplete("Compaction complete");
+            return true;
+        } finally {
+            try {
+                if (requestNeedsCancellation) store.cancelPCompaction(filesToCompact);
+                if (status != null) status.cleanup();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
     /**
      * Flush the cache.
      * <p/>
@@ -2645,13 +2717,11 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
 
                 Map<byte[], List<Cell>> familyMap = null;
                 String flag = null;
+                boolean isParquetMutation = false;
 
                 if(mutation.getAttribute("type") != null) {
                     flag = Bytes.toString(mutation.getAttribute("type"));
-                    if (flag != null && flag.equals("parquet")) {
-                        mutationsToParquet.add(mutation);
-                        //continue;
-                    }
+                    isParquetMutation = flag != null && flag.equals("parquet");
                     countOfNonParquet ++;
                 }else {
                     familyMap = mutation.getFamilyCellMap();
@@ -2669,7 +2739,10 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
                 }
 
                 try {
-                    if (isPutMutation) {
+                    if (isParquetMutation) {
+                        checkParquetMutation(mutation);
+                        checkTimestamps(mutation.getFamilyCellMap(), now);
+                    } else if (isPutMutation) {
                         // Check the families in the put. If bad, skip this one.
                         if (isInReplay) {
                             removeNonExistentColumnFamilyForReplay(familyMap);
@@ -2715,6 +2788,9 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
 
                 lastIndexExclusive++;
                 numReadyToWrite++;
+                if (isParquetMutation) {
+                    mutationsToParquet.add(mutation);
+                }
 
                 if (isPutMutation) {
                     // If Column Families stay consistent through out all of the
@@ -2804,16 +2880,8 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
 
             //TODO: support the mvcc
             //add to pmemstore
-            Store store = null;
             for(Mutation m : mutationsToParquet){
-                if(store == null) {
-                    Map<byte[], List<KeyValue>> map = m.getFamilyMap();
-                    for (Map.Entry<byte[], List<KeyValue>> en : map.entrySet()) {
-                        store = getStore(en.getKey());
-                        break;
-                    }
-                  addedSize += ((HStore)store).addMutation(m);
-                }
+                addedSize += getParquetStore(m).addMutation(m);
             }
 
             //add to wal
@@ -3443,6 +3511,34 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
         LOG.debug("rollbackMemstore rolled back " + kvsRolledback);
     }
 
+    /**
+     * @return the parquet store a mutation is written to, the store of its first family
+     */
+    private HStore getParquetStore(Mutation mutation) {
+        return (HStore) getStore(mutation.getFamilyCellMap().firstKey());
+    }
+
+    /**
+     * Check a mutation of a parquet table before it is written to the memstore,
+     * a value the flush can not write would block every later flush of the store.
+     *
+     * @throws NoSuchColumnFamilyException if a family does not exist.
+     * @throws FailedSanityCheckException if the mutation is not a put or does not fit the schema.
+     */
+    private void checkParquetMutation(Mutation mutation)
+            throws NoSuchColumnFamilyException, FailedSanityCheckException {
+        if (!(mutation instanceof Put)) {
+            throw new FailedSanityCheckException("Parquet tables only take puts, got a "
+                    + mutation.getClass().getSimpleName());
+        }
+        if (mutation.isEmpty()) {
+            throw new FailedSanityCheckException("Empty put of row "
+                    + Bytes.toStringBinary(mutation.getRow()));
+        }
+        checkFamilies(mutation.getFamilyCellMap().keySet());
+        getParquetStore(mutation).checkParquetPut(mutation);
+    }
+
     /**
      * Check the collection of families for validity.
      *
@@ -5332,13 +5428,17 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
 
         Scan scan = new Scan(get);
 
-        RegionScanner scanner = null;
-        try {
-            scanner = getScanner(scan);
-            scanner.next(results);
-        } finally {
-            if (scanner != null)
-                scanner.close();
+        if (get.getAttribute("type") != null && Bytes.toString(get.getAttribute("type")).equals("parquet")) {
+            results.addAll(getParquet(scan, get.getFilter()));
+        } else {
+            RegionScanner scanner = null;
+            try {
+                scanner = getScanner(scan);
+                scanner.next(results);
+            } finally {
+                if (scanner != null)
+                    scanner.close();
+            }
         }
 
         // post-get CP hook
@@ -6981,8 +7081,19 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
 
         startRegionOperation(Operation.SCAN);
         try {
-            //todo: Verify scan schema
-
+            // Verify families are all valid
+            prepareScanner(scan);
+            for (byte[] family : scan.getFamilyMap().keySet()) {
+                checkFamily(family);
+            }
+            // and the read schema
+            ParquetProjection.fromScan(scan);
+            byte[] parallel = scan.getAttribute(HConstants.SCAN_PARALLEL);
+            ThreadPoolExecutor pool = getParallelPScanPool(scan);
+            if(parallel != null && Bytes.toBoolean(parallel) && pool != null){
+                return new ParallelPRegionScanner(this, scan, getParallelSplitKeys(scan, pool),
+                        true, pool);
+            }
             return new PRegionScannerImpl(scan, this);
 
         } finally {
@@ -6990,6 +7101,117 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
         }
     }
 
+    /**
+     * Return an iterator scanning ranges of the HRegion on the threads of the region server,
+     * the ranges are split at the row group boundaries of the parquet files. The region is
+     * scanned on the calling thread when the region server has no pool for it, or when the
+     * filter keeps state across rows.
+     * <p/>
+     * This Iterator must be closed by the caller.
+     *
+     * @param scan configured {@link Scan}
+     * @param ordered whether the rows have to be returned in order, an aggregation does not need it
+     * @return RegionScanner
+     * @throws IOException read exceptions
+     */
+    public PRegionScanner getParallelPScanner(Scan scan, boolean ordered) throws IOException {
+        startRegionOperation(Operation.SCAN);
+        try {
+            prepareScanner(scan);
+            for (byte[] family : scan.getFamilyMap().keySet()) {
+                checkFamily(family);
+            }
+            ParquetProjection.fromScan(scan);
+            ThreadPoolExecutor pool = getParallelPScanPool(scan);
+            if(pool == null){
+                return new PRegionScannerImpl(scan, this);
+            }
+            return new ParallelPRegionScanner(this, scan, getParallelSplitKeys(scan, pool),
+                    ordered, pool);
+        } finally {
+            closeRegionOperation(Operation.SCAN);
+        }
+    }
+
+    /**
+     * @return the pool of the region server scanning the ranges of the scan, null if the scan
+     * can not be scanned in parallel
+     */
+    private ThreadPoolExecutor getParallelPScanPool(Scan scan) {
+        if (Matcher.isCrossRowFilter(scan.getFilter())) {
+            LOG.warn("scan " + this + " on one thread, the filter " + scan.getFilter()
+                    + " keeps state across rows");
+            return null;
+        }
+        return rsServices == null ? null : rsServices.getParallelPScanPool();
+    }
+
+    /**
+     * @return keys splitting the rows of the scan into ranges of about the same number of row groups
+     */
+    private List<byte[]> getParallelSplitKeys(Scan scan, ThreadPoolExecutor pool) {
+        List<byte[]> boundaries = new ArrayList<byte[]>();
+        for (byte[] family : scan.getFamilyMap().keySet()) {
+            boundaries.addAll(((HStore) stores.get(family)).getRowGroupBoundaries(
+                    scan.getStartRow(), scan.getStopRow()));
+        }
+        int threads = pool.getMaximumPoolSize();
+        return ParallelPRegionScanner.selectSplitKeys(boundaries,
+                threads * ParallelPRegionScanner.RANGES_PER_THREAD);
+    }
+
+
+    /**
+     * read a row from the parquet stores of the families of a get
+     * @param scan scan of the get
+     * @param filter filter of the get, may be null
+     * @return the cells of the row, sorted
+     */
+    private List<Cell> getParquet(Scan scan, Filter filter) throws IOException {
+        List<Cell> results = new ArrayList<Cell>();
+        startRegionOperation(Operation.GET);
+        try {
+            prepareScanner(scan);
+            for (byte[] family : scan.getFamilyMap().keySet()) {
+                checkFamily(family);
+                results.addAll(((HStore) stores.get(family)).getParquetRow(scan));
+            }
+        } finally {
+            closeRegionOperation(Operation.GET);
+        }
+        Collections.sort(results, KeyValue.COMPARATOR);
+        if (filter != null && !results.isEmpty()) {
+            results = filterParquetRow(filter, results);
+        }
+        return results;
+    }
+
+    /**
+     * apply a filter to a parquet row
+     * @param row cells of the row
+     * @return the cells of the row the filter accepts, empty if the row is filtered out
+     */
+    static List<Cell> filterParquetRow(Filter filter, List<Cell> row) throws IOException {
+        filter.reset();
+        Cell first = row.get(0);
+        if(filter.filterRowKey(first.getRowArray(), first.getRowOffset(), first.getRowLength())){
+            return new LinkedList<>();
+        }
+        List<Cell> accepted = new ArrayList<>(row.size());
+        for(Cell cell : row){
+            Filter.ReturnCode code = filter.filterKeyValue(cell);
+            if(code == Filter.ReturnCode.INCLUDE || code == Filter.ReturnCode.INCLUDE_AND_NEXT_COL){
+                accepted.add(filter.transformCell(cell));
+            }else if(code == Filter.ReturnCode.NEXT_ROW){
+                break;
+            }
+        }
+        filter.filterRowCells(accepted);
+        if(accepted.isEmpty() || (filter.hasFilterRow() && filter.filterRow())){
+            return new LinkedList<>();
+        }
+        return accepted;
+    }
 
     class PRegionScannerImpl implements PRegionScanner{
 
@@ -7002,10 +7224,14 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
         private int batch; // num of record to retrive in a time
         private long maxResultSize;
 
+        // filter of the scan, the stores only push down what parquet can evaluate
+        private Filter filter;
+
 
-        public PRegionScannerImpl(Scan scan, HRegion region){
+        public PRegionScannerImpl(Scan scan, HRegion region) throws IOException{
             this.region = region;
             this.scan = scan;
+            this.filter = scan.getFilter();
             this.maxResultSize = scan.getMaxResultSize();
             this.batch = scan.getBatch();
 
@@ -7024,11 +7250,7 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
                 RecordScanner scanner = ((HStore)store).getStoreScanner(scan, System.currentTimeMillis());
                 scanners.add(scanner);
             }
-            try {
-                this.heap = new ScannerHeap(scanners, new RecordScannerComparator());
-            }catch (IOException ioe){
-                LOG.error("scanner heap initialize error! " + ioe.getMessage());
-            }
+            this.heap = new ScannerHeap(scanners, new RecordScannerComparator());
         }
 
         public HRegionInfo getRegionInfo() {
@@ -7069,13 +7291,12 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
          */
         @Override
         public boolean isStopRow(byte[] row) {
-            List<Cell> top = this.heap.peek();
-            if(top.isEmpty()) return true;
+            ByteRange topRow = this.heap.peekRowKey();
+            if(topRow == null) return true;
             else {
                 if(row == null) return true;
                 if(stopRow == null) return false;
-                byte [] topRow = top.get(0).getRow();
-                return Bytes.compareTo(row, topRow) >= 0;
+                return RecordScannerComparator.compareRows(topRow, row) <= 0;
             }
         }
 
@@ -7099,15 +7320,35 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
          */
         @Override
         public boolean seek(byte[] row) throws IOException {
-            return this.heap.seek(row);
+            if (row == null) {
+                throw new IllegalArgumentException("Row cannot be null.");
+            }
+            if (this.heap == null) return false;
+            return this.heap.seek(row) && hasNext();
         }
 
         /**
-         * @return next row
+         * @return next row, empty if the filter of the scan drops it
+         * @throws IOException if the filter fails on the row
          */
         @Override
-        public List<Cell> nextRaw() {
-            return this.heap.next();
+        public List<Cell> nextRaw() throws IOException {
+            List<Cell> row = this.heap.next();
+            if(filter != null && !row.isEmpty()){
+                row = filterParquetRow(filter, row);
+            }
+            return row;
+        }
+
+        /**
+         * @param maxRows max rows to return
+         * @return next rows as a column batch, null when the scan has a filter
+         * as the rows have to go through it one by one
+         */
+        @Override
+        public ColumnBatch nextBatch(int maxRows) throws IOException {
+            if(this.heap == null || filter != null) return null;
+            return this.heap.nextBatch(maxRows, stopRow);
         }
 
         /**
@@ -7118,17 +7359,22 @@ public class HRegion implements HeapSize, PropagatingConfigurationObserver { //
         @Override
         public boolean hasNext() {
             if(this.heap == null )return false;
+            try {
+                if(filter != null && filter.filterAllRemaining()) return false;
+            }catch (IOException ioe){
+                LOG.error("filter error! " + ioe.getMessage());
+                return false;
+            }
             boolean hasMore = this.heap.hasNext();
 
             if(hasMore == false) {
                 return hasMore;
             } else {
                 if (stopRow != null) {
-                    List<Cell> cells = this.heap.peek();
-                    if(!cells.isEmpty()) {
-                        byte[] row = cells.get(0).getRow();
-
-                        if (Bytes.compareTo(row, stopRow) >= 0) {
+                    // the rowkey of the top row, without building its cells
+                    ByteRange row = this.heap.peekRowKey();
+                    if(row != null) {
+                        if (RecordScannerComparator.compareRows(row, stopRow) >= 0) {
                             close();
                             return false;
                         }
@@ -43,6 +43,7 @@ import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hbase.backup.HFileArchiver;
 import org.apache.hadoop.hbase.fs.HFileSystem;
 import org.apache.hadoop.hbase.io.Reference;
+import org.apache.hadoop.hbase.io.pfile.PFileRowIndex;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.FSHDFSUtils;
 import org.apache.hadoop.hbase.util.FSUtils;
@@ -196,19 +197,17 @@ public class HRegionFileSystem {
 
     ArrayList<StoreFileInfo> storeFiles = new ArrayList<StoreFileInfo>(files.length);
     for (FileStatus status: files) {
-        if(!status.getPath().getName().endsWith(".parquet")) {
-            if (validate && !StoreFileInfo.isValid(status)) {
-                LOG.warn("Invalid StoreFile: " + status.getPath());
-                continue;
-            }
-            StoreFileInfo info = ServerRegionReplicaUtil.getStoreFileInfo(conf, fs, regionInfo,
-                    regionInfoForFs, familyName, status);
-            storeFiles.add(info);
-        }else {
-            //@author wangxiaoyi
-            //TODO : restore the parquet files into memory
-        }
-
+      // the parquet files are listed by getPStoreFiles
+      if (PStoreFile.isPStoreFile(status.getPath().getName())) {
+        continue;
+      }
+      if (validate && !StoreFileInfo.isValid(status)) {
+        LOG.warn("Invalid StoreFile: " + status.getPath());
+        continue;
+      }
+      StoreFileInfo info = ServerRegionReplicaUtil.getStoreFileInfo(conf, fs, regionInfo,
+          regionInfoForFs, familyName, status);
+      storeFiles.add(info);
     }
     return storeFiles;
   }
@@ -363,6 +362,22 @@ public class HRegionFileSystem {
    */
   private Path commitStoreFile(final String familyName, final Path buildPath,
       final long seqNum, final boolean generateNewName) throws IOException {
+    return commitStoreFile(familyName, buildPath, seqNum, generateNewName, null);
+  }
+
+  /**
+   * Move the file from a build/temp location to the main family store directory.
+   * @param familyName Family that will gain the file
+   * @param buildPath {@link Path} to the file to commit.
+   * @param seqNum Sequence Number to append to the file name (less then 0 if no sequence number)
+   * @param generateNewName False if you want to keep the buildPath name
+   * @param extension extension of the generated name, null for none
+   * @return The new {@link Path} of the committed file
+   * @throws IOException
+   */
+  private Path commitStoreFile(final String familyName, final Path buildPath,
+      final long seqNum, final boolean generateNewName, final String extension)
+      throws IOException {
     Path storeDir = getStoreDir(familyName);
     if(!fs.exists(storeDir) && !createDir(storeDir))
       throw new IOException("Failed creating " + storeDir);
@@ -370,6 +385,7 @@ public class HRegionFileSystem {
     String name = buildPath.getName();
     if (generateNewName) {
       name = generateUniqueName((seqNum < 0) ? null : "_SeqId_" + seqNum + "_");
+      if (extension != null) name += extension;
     }
     Path dstPath = new Path(storeDir, name);
     if (!fs.exists(buildPath)) {
@@ -435,6 +451,29 @@ public class HRegionFileSystem {
    */
   Path bulkLoadStoreFile(final String familyName, Path srcPath, long seqNum)
       throws IOException {
+    return commitStoreFile(familyName, copyBulkLoadFile(srcPath), seqNum, true);
+  }
+
+  /**
+   * Bulk load: Add a specified parquet file to the specified family.
+   * The file is moved or copied like in {@link #bulkLoadStoreFile(String, Path, long)}
+   * and keeps the <code>.parquet</code> extension the parquet store files are listed by.
+   *
+   * @param familyName Family that will gain the file
+   * @param srcPath {@link Path} to the file to import
+   * @param seqNum Bulk Load sequence number
+   * @return The destination {@link Path} of the bulk loaded file
+   * @throws IOException
+   */
+  Path bulkLoadPStoreFile(final String familyName, Path srcPath, long seqNum)
+      throws IOException {
+    return commitStoreFile(familyName, copyBulkLoadFile(srcPath), seqNum, true, ".parquet");
+  }
+
+  /**
+   * @return the file to commit, a temporary copy if the source file is on another filesystem
+   */
+  private Path copyBulkLoadFile(Path srcPath) throws IOException {
     // Copy the file if it's on another filesystem
     FileSystem srcFs = srcPath.getFileSystem(conf);
     FileSystem desFs = fs instanceof HFileSystem ? ((HFileSystem)fs).getBackingFs() : fs;
@@ -450,8 +489,7 @@ public class HRegionFileSystem {
       LOG.info("Copied " + srcPath + " to temporary path on destination filesystem: " + tmpPath);
       srcPath = tmpPath;
     }
-
-    return commitStoreFile(familyName, srcPath, seqNum, true);
+    return srcPath;
   }
 
   // ===========================================================================
@@ -618,6 +656,41 @@ public class HRegionFileSystem {
     return r.write(fs, p);
   }
 
+  /**
+   * Write out a split reference to a half of a parquet file. Package local so it doesnt
+   * leak out of regionserver.
+   * @param hri {@link HRegionInfo} of the destination
+   * @param familyName Column Family Name
+   * @param f parquet file to split
+   * @param splitRow Split Row
+   * @param top True if we are referring to the top half of the file.
+   * @return Path to created reference, null if the half has no row.
+   * @throws IOException
+   */
+  Path splitPStoreFile(final HRegionInfo hri, final String familyName, final PStoreFile f,
+      final byte[] splitRow, final boolean top) throws IOException {
+    // the first and last rows from the row index are exact, the file keys are the fallback
+    byte[] firstRow = Bytes.toBytes(f.getStartKey());
+    byte[] lastRow = Bytes.toBytes(f.getEndKey());
+    PFileRowIndex rowIndex = f.getRowIndex();
+    if (rowIndex != null && rowIndex.getRowGroupCount() > 0) {
+      firstRow = rowIndex.getRowGroupFirstKey(0);
+      lastRow = rowIndex.getRowGroupLastKey(rowIndex.getRowGroupCount() - 1);
+    }
+    if (top ? Bytes.compareTo(splitRow, lastRow) > 0 : Bytes.compareTo(splitRow, firstRow) <= 0) {
+      return null;
+    }
+
+    Path splitDir = new Path(getSplitsDir(hri), familyName);
+    Reference r =
+      top ? Reference.createTopReference(splitRow): Reference.createBottomReference(splitRow);
+    // same naming as the hfile references, the referred-to regions name is the suffix.
+    // The parent has no reference, a store is not split until its references are compacted.
+    String parentRegionName = regionInfoForFs.getEncodedName();
+    Path p = new Path(splitDir, f.getPath().getName() + "." + parentRegionName);
+    return r.write(fs, p);
+  }
+
   // ===========================================================================
   //  Merge Helpers
   // ===========================================================================
@@ -1100,7 +1173,7 @@ public class HRegionFileSystem {
 
         ArrayList<ParquetFileInfo> storeFiles = new ArrayList<ParquetFileInfo>();
         for (FileStatus status: files) {
-            if(status.getPath().getName().endsWith(".parquet")) {
+            if(PStoreFile.isPStoreFile(status.getPath().getName())) {
                /* if (validate && !StoreFileInfo.isValid(status)) {
                     LOG.warn("Invalid StoreFile: " + status.getPath());
                     continue;
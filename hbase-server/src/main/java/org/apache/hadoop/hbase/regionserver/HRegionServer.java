@@ -44,6 +44,7 @@ import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -363,6 +364,9 @@ public class HRegionServer extends HasThread implements
 
     private final RegionServerAccounting regionServerAccounting;
 
+    // scans the ranges of the parallel parquet scans, null if disabled
+    private final ThreadPoolExecutor parallelPScanPool;
+
     // Cache configuration and block cache reference
     protected CacheConfig cacheConfig;
 
@@ -511,7 +515,8 @@ public class HRegionServer extends HasThread implements
         // login the server principal (if using secure Hadoop)
         login(userProvider, hostName);
 
-        regionServerAccounting = new RegionServerAccounting();
+        regionServerAccounting = new RegionServerAccounting(conf);
+        parallelPScanPool = ParallelPRegionScanner.createPool(conf, hostName);
         //记录region server的实时运行信息，目前阶段仅仅保存记录和全局Memstore的size
         uncaughtExceptionHandler = new UncaughtExceptionHandler() {
             @Override
@@ -1357,6 +1362,11 @@ public class HRegionServer extends HasThread implements
         return regionServerAccounting;
     }
 
+    @Override
+    public ThreadPoolExecutor getParallelPScanPool() {
+        return parallelPScanPool;
+    }
+
     @Override
     public TableLockManager getTableLockManager() {
         return tableLockManager;
@@ -2033,6 +2043,7 @@ public class HRegionServer extends HasThread implements
             this.compactSplitThread.join();
         }
         if (this.service != null) this.service.shutdown();
+        if (this.parallelPScanPool != null) this.parallelPScanPool.shutdownNow();
         if (this.replicationSourceHandler != null &&
                 this.replicationSourceHandler == this.replicationSinkHandler) {
             this.replicationSourceHandler.stopReplicationService();
@@ -43,6 +43,8 @@ import org.apache.hadoop.hbase.classification.InterfaceAudience;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.conf.ConfigurationManager;
+import org.apache.hadoop.hbase.exceptions.FailedSanityCheckException;
+import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.io.crypto.Cipher;
 import org.apache.hadoop.hbase.io.crypto.Encryption;
@@ -54,7 +56,12 @@ import org.apache.hadoop.hbase.io.hfile.HFileDataBlockEncoder;
 import org.apache.hadoop.hbase.io.hfile.HFileDataBlockEncoderImpl;
 import org.apache.hadoop.hbase.io.hfile.HFileScanner;
 import org.apache.hadoop.hbase.io.hfile.InvalidHFileException;
+import org.apache.hadoop.hbase.io.pfile.HalfPFileScanner;
+import org.apache.hadoop.hbase.io.pfile.MutationWriteSupport;
 import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.io.pfile.PFileBlockCache;
+import org.apache.hadoop.hbase.io.pfile.PFileRowIndex;
+import org.apache.hadoop.hbase.io.pfile.PFileWriterSettings;
 import org.apache.hadoop.hbase.migration.NamespaceUpgrade;
 import org.apache.hadoop.hbase.monitoring.MonitoredTask;
 import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
@@ -64,9 +71,12 @@ import org.apache.hadoop.hbase.regionserver.compactions.CompactionProgress;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
 import org.apache.hadoop.hbase.regionserver.compactions.DefaultCompactor;
 import org.apache.hadoop.hbase.regionserver.compactions.OffPeakHours;
+import org.apache.hadoop.hbase.regionserver.compactions.ParquetCompactionPolicy;
+import org.apache.hadoop.hbase.regionserver.compactions.ParquetCompactor;
+import org.apache.hadoop.hbase.regionserver.memstore.OffheapPMemStoreImpl;
 import org.apache.hadoop.hbase.regionserver.memstore.PMemStore;
-import org.apache.hadoop.hbase.regionserver.memstore.PMemStoreImpl;
 import org.apache.hadoop.hbase.regionserver.memstore.PMemStoreSnapshot;
+import org.apache.hadoop.hbase.regionserver.memstore.SlabPMemStoreImpl;
 import org.apache.hadoop.hbase.regionserver.wal.WALUtil;
 import org.apache.hadoop.hbase.security.EncryptionUtil;
 import org.apache.hadoop.hbase.security.User;
@@ -84,7 +94,13 @@ import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import parquet.filter2.predicate.FilterPredicate;
+import parquet.hadoop.FooterCache;
 import parquet.hadoop.ParquetFileInfo;
+import parquet.hadoop.ParquetFileReader;
+import parquet.hadoop.metadata.BlockMetaData;
+import parquet.hadoop.metadata.ColumnChunkMetaData;
+import parquet.hadoop.metadata.ParquetMetadata;
 import parquet.schema.MessageType;
 import parquet.schema.MessageTypeParser;
 
@@ -116,6 +132,7 @@ import javax.ws.rs.GET;
 @InterfaceAudience.Private
 public class HStore implements Store {
     private static final String MEMSTORE_CLASS_NAME = "hbase.regionserver.memstore.class";
+    public static final String PMEMSTORE_CLASS_NAME = "hbase.regionserver.pmemstore.class";
     public static final String COMPACTCHECKER_INTERVAL_MULTIPLIER_KEY =
             "hbase.server.compactchecker.interval.multiplier";
     public static final String BLOCKING_STOREFILES_KEY = "hbase.hstore.blockingStoreFiles";
@@ -129,6 +146,14 @@ public class HStore implements Store {
 
     private List<PStoreFile> pStoreFiles = new LinkedList<>();
 
+    //the parquet schema of the table the puts are checked with, parsed on the first put
+    private volatile MutationWriteSupport putChecker;
+
+    //parquet files being compacted, ordered from the oldest to the newest
+    private final List<PStoreFile> pFilesCompacting = new ArrayList<>();
+
+    private final ParquetCompactionPolicy pCompactionPolicy;
+
 
     // This stores directory in the filesystem.
     private final HRegion region;
@@ -244,7 +269,16 @@ public class HStore implements Store {
         this.memstore = ReflectionUtils.instantiateWithCustomCtor(className, new Class[]{
                 Configuration.class, KeyValue.KVComparator.class}, new Object[]{conf, this.comparator});
 
-        this.pMemStore = new PMemStoreImpl(conf);
+        String pClassName = conf.get(PMEMSTORE_CLASS_NAME, SlabPMemStoreImpl.class.getName());
+        RegionServerAccounting rsAccounting = region.getRegionServerServices() == null ? null
+                : region.getRegionServerServices().getRegionServerAccounting();
+        if(OffheapPMemStoreImpl.class.getName().equals(pClassName) && rsAccounting != null){
+            //the direct chunks are pooled by the region server
+            this.pMemStore = new OffheapPMemStoreImpl(conf, rsAccounting);
+        }else {
+            this.pMemStore = ReflectionUtils.instantiateWithCustomCtor(pClassName, new Class[]{
+                    Configuration.class}, new Object[]{conf});
+        }
         this.offPeakHours = OffPeakHours.getInstance(conf);
 
         // Setting up cache configuration for this family
@@ -272,6 +306,7 @@ public class HStore implements Store {
 
         //@author wangxiaoyi get parquet storefiles
         this.pStoreFiles.addAll(loadPStoreFiles());
+        this.pCompactionPolicy = new ParquetCompactionPolicy(conf, this);
 
         // Initialize checksum type from name. The names are CRC32, CRC32C, etc.
         this.checksumType = getChecksumType(conf);
@@ -693,6 +728,10 @@ public class HStore implements Store {
 
     @Override
     public void assertBulkLoadHFileOk(Path srcPath) throws IOException {
+        if(srcPath.getName().endsWith(".parquet")){
+            assertBulkLoadPFileOk(srcPath);
+            return;
+        }
         HFile.Reader reader = null;
         try {
             LOG.info("Validating hfile at " + srcPath + " for inclusion in "
@@ -765,6 +804,10 @@ public class HStore implements Store {
     @Override
     public void bulkLoadHFile(String srcPathStr, long seqNum) throws IOException {
         Path srcPath = new Path(srcPathStr);
+        if(srcPath.getName().endsWith(".parquet")){
+            bulkLoadPFile(srcPath, seqNum);
+            return;
+        }
         Path dstPath = fs.bulkLoadStoreFile(getColumnFamilyName(), srcPath, seqNum);
 
         StoreFile sf = createStoreFileAndReader(dstPath);
@@ -1422,7 +1465,37 @@ public class HStore implements Store {
 
     @Override
     public boolean hasReferences() {
-        return StoreUtils.hasReferences(this.storeEngine.getStoreFileManager().getStorefiles());
+        return hasPReferences()
+                || StoreUtils.hasReferences(this.storeEngine.getStoreFileManager().getStorefiles());
+    }
+
+    /**
+     * @return whether a parquet file of the store is a split reference to a file of the parent region
+     */
+    public boolean hasPReferences(){
+        lock.readLock().lock();
+        try {
+            for(PStoreFile file : this.pStoreFiles){
+                if(file.isReference()){
+                    return true;
+                }
+            }
+            return false;
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the parquet files of the store, ordered from the oldest to the newest
+     */
+    public List<PStoreFile> getPStoreFiles(){
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(this.pStoreFiles);
+        }finally {
+            lock.readLock().unlock();
+        }
     }
 
     @Override
@@ -2341,15 +2414,32 @@ public class HStore implements Store {
      * add a mutation into {@link PMemStore}
      * @param m
      * @return
+     * @throws IOException if the memstore does not take the mutation
      */
-    public long addMutation(Mutation m){
-        long addSize = 0l;
-        try {
-           addSize = this.pMemStore.add(m);
-        }catch (IOException ioe){
-            LOG.error(ioe);
+    public long addMutation(Mutation m) throws IOException{
+        return this.pMemStore.add(m);
+    }
+
+    /**
+     * check a put against the parquet schema of the table before it is added,
+     * see {@link MutationWriteSupport#check(Mutation)}
+     * @throws FailedSanityCheckException if the table has no valid schema or the put does not fit it
+     */
+    public void checkParquetPut(Mutation m) throws FailedSanityCheckException{
+        MutationWriteSupport checker = putChecker;
+        if(checker == null){
+            String schema = Bytes.toString(getHRegion().getTableDesc().getValue(HConstants.SCHEMA.getBytes()));
+            if(schema == null){
+                throw new FailedSanityCheckException("No schema found for " + this.getTableName());
+            }
+            try {
+                checker = new MutationWriteSupport(MessageTypeParser.parseMessageType(schema), null);
+            }catch (IllegalArgumentException e){
+                throw new FailedSanityCheckException("bad schema of " + this.getTableName() + ": " + e.getMessage());
+            }
+            putChecker = checker;
         }
-        return addSize;
+        checker.check(m);
     }
 
     /**
@@ -2572,6 +2662,26 @@ public class HStore implements Store {
      * @return {@link org.apache.hadoop.hbase.regionserver.PStoreFile.Writer}
      */
     public PStoreFile.Writer createParquetWriter(Map<String, String> meta){
+        return createParquetWriter(meta, createParquetWriterSettings(0));
+    }
+
+    /**
+     * settings of the parquet files of this store, sized for the data to write
+     * @param dataSize estimated size in bytes of the data to write, encoded and not compressed,
+     *                 0 if not known
+     * @return {@link PFileWriterSettings}
+     */
+    public PFileWriterSettings createParquetWriterSettings(long dataSize){
+        long blockSize = getFileSystem().getDefaultBlockSize(fs.getStoreDir(getColumnFamilyName()));
+        return PFileWriterSettings.create(conf, family).adapt(dataSize, blockSize);
+    }
+
+    /**
+     * create writer for parquet in PStoreFile
+     * @param settings sizes and encodings of the file
+     * @return {@link org.apache.hadoop.hbase.regionserver.PStoreFile.Writer}
+     */
+    public PStoreFile.Writer createParquetWriter(Map<String, String> meta, PFileWriterSettings settings){
 
         PStoreFile.Writer writer = null;
 
@@ -2591,6 +2701,7 @@ public class HStore implements Store {
 
             writer = new PStoreFile.WriterBuilder(conf, getFileSystem(), schema, filePath)
                     .addMetaData(meta)
+                    .addSettings(settings)
                     .build();
 
         }catch (IOException ioe){
@@ -2599,6 +2710,86 @@ public class HStore implements Store {
         return writer;
     }
 
+    /**
+     * check a parquet file written by {@link org.apache.hadoop.hbase.mapreduce.PFileOutputFormat}
+     * fits in the region before it is bulk loaded
+     * @throws WrongRegionException if its rows are out of the region
+     */
+    private void assertBulkLoadPFileOk(Path srcPath) throws IOException {
+        LOG.info("Validating parquet file at " + srcPath + " for inclusion in "
+                + "store " + this + " region " + this.getRegionInfo().getRegionNameAsString());
+        ParquetMetadata footer = ParquetFileReader.readFooter(conf, srcPath);
+        MessageType schema = footer.getFileMetaData().getSchema();
+        if(!schema.containsField(HConstants.ROW_KEY)){
+            throw new InvalidHFileException("No " + HConstants.ROW_KEY + " column in " + srcPath);
+        }
+        Map<String, String> meta = footer.getFileMetaData().getKeyValueMetaData();
+        String startKey = meta.get(HConstants.START_KEY);
+        String endKey = meta.get(HConstants.END_KEY);
+        Preconditions.checkState(startKey != null, "Start key can not be null");
+        Preconditions.checkState(endKey != null, "End key can not be null");
+        byte[] firstKey = Bytes.toBytes(startKey);
+        byte[] lastKey = Bytes.toBytes(endKey);
+
+        LOG.debug("parquet file bounds: first=" + Bytes.toStringBinary(firstKey) +
+                " last=" + Bytes.toStringBinary(lastKey));
+        if (!this.getRegionInfo().containsRange(firstKey, lastKey)) {
+            throw new WrongRegionException(
+                    "Bulk load file " + srcPath.toString() + " does not fit inside region "
+                            + this.getRegionInfo().getRegionNameAsString());
+        }
+
+        if (verifyBulkLoads) {
+            long verificationStartTime = EnvironmentEdgeManager.currentTime();
+            LOG.info("Full verification started for bulk load parquet file: " + srcPath.toString());
+            PFileReader reader = new PFileReader(srcPath, conf, schema);
+            try {
+                byte[] prevRow = null;
+                PFileReader.PFileScanner scanner = reader.getScanner();
+                while (scanner.hasNext()){
+                    byte[] row = scanner.nextRow().getBinary(HConstants.ROW_KEY, 0).getBytes();
+                    if(prevRow != null && Bytes.compareTo(prevRow, row) >= 0){
+                        throw new InvalidHFileException("Previous row is not less than"
+                                + " current row: path=" + srcPath + " previous="
+                                + Bytes.toStringBinary(prevRow) + " current=" + Bytes.toStringBinary(row));
+                    }
+                    prevRow = row;
+                }
+            }finally {
+                reader.close();
+            }
+            LOG.info("Full verification complete for bulk load parquet file: " + srcPath.toString()
+                    + " took " + (EnvironmentEdgeManager.currentTime() - verificationStartTime)
+                    + " ms");
+        }
+    }
+
+    /**
+     * move a parquet file into the store and add it to the parquet store files
+     * @param seqNum sequence id of the file, -1 to load it as the oldest file
+     */
+    private void bulkLoadPFile(Path srcPath, long seqNum) throws IOException {
+        Path dstPath = fs.bulkLoadPStoreFile(getColumnFamilyName(), srcPath, seqNum);
+
+        PStoreFile sf = new PStoreFile(getFileSystem(), dstPath, conf);
+        if(!sf.initStoreFile()){
+            throw new IOException("Failed to open bulk loaded parquet file " + dstPath);
+        }
+        LOG.info("Loaded parquet file " + srcPath + " into store '" + getColumnFamilyName() +
+                "' as " + dstPath + " - updating store file list.");
+
+        this.lock.writeLock().lock();
+        try {
+            this.pStoreFiles.add(sf);
+            Collections.sort(this.pStoreFiles, PStoreFile.SEQ_ID_COMPARATOR);
+            MetricsPStore.getInstance().updateStoreFileCount(this.pStoreFiles.size());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        LOG.info("Successfully loaded parquet file " + srcPath
+                + " into store " + this + " (new location: " + dstPath + ")");
+    }
+
     /**
      * load parquetfiles into memory
      * @return
@@ -2638,6 +2829,7 @@ public class HStore implements Store {
             results.add(pStoreFile);
             totalValidStoreFile++;
         }
+        Collections.sort(results, PStoreFile.SEQ_ID_COMPARATOR);
         return results;
     }
 
@@ -2655,6 +2847,7 @@ public class HStore implements Store {
             //this.storeEngine.getStoreFileManager().insertNewFiles(sfs);
             this.pStoreFiles.addAll(sfs);
             this.pMemStore.clearSnapshot(snapshotId);
+            MetricsPStore.getInstance().updateStoreFileCount(this.pStoreFiles.size());
         } finally {
             // We need the lock, as long as we are updating the storeFiles
             // or changing the memstore. Let us release it before calling
@@ -2683,59 +2876,404 @@ public class HStore implements Store {
 
             LOG.trace(traceMessage);
         }
-        //TODO: compaction needed ?
-       // return needsCompaction();
+        return needsPCompaction();
+    }
+
+
+    /**
+     * @return whether enough parquet files are waiting for a compaction
+     */
+    public boolean needsPCompaction(){
+        lock.readLock().lock();
+        try {
+            synchronized (pFilesCompacting) {
+                return pCompactionPolicy.needsCompaction(pStoreFiles, pFilesCompacting);
+            }
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * select the parquet files to compact, the selected files must be passed to
+     * {@link #compactPStoreFiles(List)} or {@link #cancelPCompaction(List)}
+     * @return the files to compact, empty if there is nothing to compact
+     */
+    public List<PStoreFile> selectPCompaction(){
+        lock.readLock().lock();
+        try {
+            synchronized (pFilesCompacting) {
+                List<PStoreFile> candidates = new ArrayList<>(pStoreFiles);
+                Collections.sort(candidates, PStoreFile.SEQ_ID_COMPARATOR);
+                if(!pFilesCompacting.isEmpty()){
+                    // keep the selections contiguous, so the compacted files keep the order of the edits
+                    PStoreFile last = pFilesCompacting.get(pFilesCompacting.size() - 1);
+                    int idx = candidates.indexOf(last);
+                    candidates = candidates.subList(idx + 1, candidates.size());
+                }
+                boolean mayBeStuck = pStoreFiles.size() >= getBlockingFileCount();
+                List<PStoreFile> selected = pCompactionPolicy.selectCompaction(candidates, mayBeStuck);
+                if(!selected.isEmpty()){
+                    pFilesCompacting.addAll(selected);
+                    Collections.sort(pFilesCompacting, PStoreFile.SEQ_ID_COMPARATOR);
+                }
+                return selected;
+            }
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * release the files selected by {@link #selectPCompaction()} without compacting them
+     */
+    public void cancelPCompaction(List<PStoreFile> filesToCompact){
+        synchronized (pFilesCompacting) {
+            pFilesCompacting.removeAll(filesToCompact);
+        }
+    }
+
+    /**
+     * merge the selected parquet files into a new one and replace them in the store,
+     * the replaced files are archived
+     * @param filesToCompact files selected by {@link #selectPCompaction()}
+     * @throws IOException
+     */
+    public void compactPStoreFiles(List<PStoreFile> filesToCompact) throws IOException{
+        try {
+            long start = EnvironmentEdgeManager.currentTime();
+            Path tmpPath = new ParquetCompactor(conf, this).compact(filesToCompact);
+
+            PStoreFile compacted = null;
+            if(tmpPath != null){
+                Path dstPath = fs.commitStoreFile(getColumnFamilyName(), tmpPath);
+                compacted = new PStoreFile(getFileSystem(), dstPath, conf);
+                if(!compacted.initStoreFile()){
+                    throw new IOException("Failed to open compacted parquet file " + dstPath);
+                }
+            }
+
+            this.lock.writeLock().lock();
+            try {
+                this.pStoreFiles.removeAll(filesToCompact);
+                if(compacted != null){
+                    this.pStoreFiles.add(compacted);
+                }
+                Collections.sort(this.pStoreFiles, PStoreFile.SEQ_ID_COMPARATOR);
+                MetricsPStore.getInstance().updateStoreFileCount(this.pStoreFiles.size());
+            }finally {
+                this.lock.writeLock().unlock();
+            }
+
+            FooterCache footerCache = FooterCache.getInstance(conf);
+            PFileBlockCache chunkCache = PFileBlockCache.create(cacheConf);
+            for(PStoreFile file : filesToCompact){
+                fs.removeStoreFile(getColumnFamilyName(), file.getStoreFilePath());
+                if(file.isReference()){
+                    //the file of the parent region may still be read by the other daughter
+                    continue;
+                }
+                if(footerCache != null){
+                    footerCache.evict(file.getPath());
+                }
+                if(chunkCache != null){
+                    chunkCache.evictFile(file.getPath());
+                }
+            }
+            LOG.info("Completed parquet compaction of " + filesToCompact.size() + " file(s) in " + this
+                    + " into " + (compacted == null ? "none" : compacted.getPath().getName())
+                    + ", took " + (EnvironmentEdgeManager.currentTime() - start) + " ms");
+        }finally {
+            cancelPCompaction(filesToCompact);
+        }
+    }
+
+
+    /**
+     * @param startRow inclusive, empty for no lower bound
+     * @param stopRow exclusive, empty for no upper bound
+     * @return the row group boundaries of the parquet files in the range, not sorted
+     */
+    public List<byte[]> getRowGroupBoundaries(byte[] startRow, byte[] stopRow){
+        boolean hasStopRow = stopRow != null && Bytes.compareTo(stopRow, HConstants.EMPTY_END_ROW) != 0;
+        List<byte[]> boundaries = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for(PStoreFile file : this.pStoreFiles){
+                for(byte[] boundary : file.getRowGroupBoundaries()){
+                    if(Bytes.compareTo(boundary, startRow) <= 0) continue;
+                    if(hasStopRow && Bytes.compareTo(boundary, stopRow) >= 0) break;
+                    boundaries.add(boundary);
+                }
+            }
+        }finally {
+            lock.readLock().unlock();
+        }
+        return boundaries;
+    }
+
+    /**
+     * find the row groups whose statistics stand for their rows: the row group is in the range
+     * and no other file, nor the memstore or its snapshot, may hold one of its rows
+     * @param startRow inclusive, empty for no lower bound
+     * @param stopRow exclusive, empty for no upper bound
+     * @param column name of the column in the parquet schema, family:qualifier, may be null
+     * @return the statistics of the row groups, sorted by rowkey and disjoint
+     */
+    public List<RowGroupStatistics> getRowGroupStatistics(byte[] startRow, byte[] stopRow, String column){
+        boolean hasStopRow = stopRow != null && Bytes.compareTo(stopRow, HConstants.EMPTY_END_ROW) != 0;
+        List<RowGroupStatistics> statistics = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<byte[][]> overlays = getPMemStoreRanges();
+            if(overlays == null){
+                return statistics;
+            }
+            for(PStoreFile file : this.pStoreFiles){
+                PFileRowIndex rowIndex = file.getRowIndex();
+                List<BlockMetaData> rowGroups = file.getRowGroups();
+                if(rowIndex == null || rowIndex.getRowGroupCount() != rowGroups.size()){
+                    continue;
+                }
+                for(int i = 0; i < rowGroups.size(); ++i){
+                    byte[] first = rowIndex.getRowGroupFirstKey(i);
+                    byte[] last = rowIndex.getRowGroupLastKey(i);
+                    if(Bytes.compareTo(first, startRow) < 0) continue;
+                    if(hasStopRow && Bytes.compareTo(last, stopRow) >= 0) break;
+                    //a row group across the split row of a reference is read
+                    if(!file.containsRows(first, last)) continue;
+                    if(overlaps(first, last, overlays) || overlapsOtherFile(first, last, file)) continue;
+
+                    ColumnChunkMetaData chunk = null;
+                    for(ColumnChunkMetaData c : rowGroups.get(i).getColumns()){
+                        if(c.getPath().toDotString().equals(column)){
+                            chunk = c;
+                            break;
+                        }
+                    }
+                    statistics.add(new RowGroupStatistics(first, last, rowGroups.get(i).getRowCount(), chunk));
+                }
+            }
+        }finally {
+            lock.readLock().unlock();
+        }
+        Collections.sort(statistics, new Comparator<RowGroupStatistics>() {
+            @Override
+            public int compare(RowGroupStatistics o1, RowGroupStatistics o2) {
+                return Bytes.compareTo(o1.getFirstKey(), o2.getFirstKey());
+            }
+        });
+        return statistics;
+    }
+
+    /**
+     * @param startRow inclusive, empty for no lower bound
+     * @param stopRow exclusive, empty for no upper bound
+     * @return false if the parquet store has no row in the range, true if it may have one
+     */
+    public boolean mayContainRows(byte[] startRow, byte[] stopRow){
+        boolean hasStopRow = stopRow != null && Bytes.compareTo(stopRow, HConstants.EMPTY_END_ROW) != 0;
+        byte[] lastRow = hasStopRow ? stopRow : null;
+        lock.readLock().lock();
+        try {
+            List<byte[][]> overlays = getPMemStoreRanges();
+            if(overlays == null){
+                return true;
+            }
+            for(byte[][] range : overlays){
+                if(inRange(range[0], range[1], startRow, lastRow)) return true;
+            }
+            for(PStoreFile file : this.pStoreFiles){
+                if(!inRange(Bytes.toBytes(file.getStartKey()), Bytes.toBytes(file.getEndKey()), startRow, lastRow)){
+                    continue;
+                }
+                PFileRowIndex rowIndex = file.getRowIndex();
+                if(rowIndex == null || rowIndex.getRowGroupCount() == 0){
+                    return true;
+                }
+                for(int i = 0; i < rowIndex.getRowGroupCount(); ++i){
+                    byte[] first = rowIndex.getRowGroupFirstKey(i);
+                    byte[] last = rowIndex.getRowGroupLastKey(i);
+                    if(!file.containsRow(first) && !file.containsRow(last)){
+                        //the row group is in the other half of the split file
+                        continue;
+                    }
+                    if(inRange(first, last, startRow, lastRow)){
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return whether the keys [first, last] may hold a row of [startRow, stopRow), stopRow null for no bound
+     */
+    private static boolean inRange(byte[] first, byte[] last, byte[] startRow, byte[] stopRow){
+        return Bytes.compareTo(last, startRow) >= 0 && (stopRow == null || Bytes.compareTo(first, stopRow) < 0);
+    }
+
+    /**
+     * @return key ranges of the rows of the memstore and of its snapshot, null if they are not known
+     */
+    private List<byte[][]> getPMemStoreRanges(){
+        List<byte[][]> ranges = new ArrayList<>();
+        if(pMemStore.getRecordCount() > 0){
+            if(pMemStore.getStartKey() == null || pMemStore.getEndKey() == null){
+                return null;
+            }
+            ranges.add(new byte[][]{pMemStore.getStartKey(), pMemStore.getEndKey()});
+        }
+        RecordScanner snapshotScanner = pMemStore.getSnapshotScanner(null);
+        try {
+            if(snapshotScanner.hasNext()){
+                if(!(snapshotScanner instanceof InternalRecordScanner)){
+                    return null;
+                }
+                InternalRecordScanner snapshot = (InternalRecordScanner) snapshotScanner;
+                ranges.add(new byte[][]{snapshot.getStartKey(), snapshot.getEndKey()});
+            }
+        }finally {
+            try {
+                snapshotScanner.close();
+            }catch (IOException ioe){
+                LOG.error(ioe.getMessage());
+            }
+        }
+        return ranges;
+    }
+
+    private static boolean overlaps(byte[] first, byte[] last, List<byte[][]> ranges){
+        for(byte[][] range : ranges){
+            if(Bytes.compareTo(range[0], last) <= 0 && Bytes.compareTo(range[1], first) >= 0){
+                return true;
+            }
+        }
         return false;
     }
 
+    private boolean overlapsOtherFile(byte[] first, byte[] last, PStoreFile file){
+        for(PStoreFile other : this.pStoreFiles){
+            if(other == file) continue;
+            if(Bytes.compareTo(Bytes.toBytes(other.getStartKey()), last) <= 0
+                    && Bytes.compareTo(Bytes.toBytes(other.getEndKey()), first) >= 0){
+                return true;
+            }
+        }
+        return false;
+    }
 
     /**
      * load parquet file scanner
      * @param startRow
-     * @param schema define which column to read from the disk parquet file
+     * @param stopRow
+     * @param projection columns to read from the disk parquet files, null to read all of them
+     * @param filter filter of the scan, pushed down to the parquet readers as far as possible, may be null
      * @return
+     * @throws IOException if a file can not be opened, the scanners already opened are closed
      */
-    public List<RecordScanner> loadPFileScanner(byte[] startRow, MessageType schema){
+    public List<RecordScanner> loadPFileScanner(byte[] startRow, byte[] stopRow, ParquetProjection projection,
+                                                Filter filter) throws IOException{
 
-        List<PStoreFile> storeFiles = this.pStoreFiles;
+        //a compaction may swap the files while they are opened
+        List<PStoreFile> storeFiles = getPStoreFiles();
         List<PStoreFile> filteredStoreFiles = new LinkedList<>();
 
+        boolean hasStartRow = Bytes.compareTo(startRow, HConstants.EMPTY_START_ROW) != 0;
+        boolean hasStopRow = stopRow != null && Bytes.compareTo(stopRow, HConstants.EMPTY_END_ROW) != 0;
+
         for(PStoreFile file : storeFiles){
-            if(Bytes.compareTo(startRow, HConstants.EMPTY_START_ROW) != 0){
-                if(Bytes.compareTo(startRow, file.getEndKey().getBytes()) <= 0)
-                filteredStoreFiles.add(file);
-            }else {
-                filteredStoreFiles.add(file);
+            if(hasStartRow && Bytes.compareTo(startRow, Bytes.toBytes(file.getEndKey())) > 0){
+                continue;
+            }
+            if(hasStopRow && Bytes.compareTo(Bytes.toBytes(file.getStartKey()), stopRow) >= 0){
+                continue;
             }
+            filteredStoreFiles.add(file);
         }
 
         List<RecordScanner> scanners = new LinkedList<>();
 
+        int batchSize = conf.getInt(PFileReader.SCAN_BATCH_SIZE_KEY, PFileReader.DEFAULT_SCAN_BATCH_SIZE);
 
-        for(PStoreFile storeFile: filteredStoreFiles){
-            PFileReader reader;
-            try {
-                reader = new PFileReader(storeFile.getPath(), this.conf, schema);
-            }catch (IOException ioe){
-                LOG.error(ioe.getMessage());
-                continue;
+        boolean opened = false;
+        try {
+            for(PStoreFile storeFile: filteredStoreFiles){
+                loadPFileScanner(scanners, storeFile, startRow, hasStartRow ? startRow : null,
+                        hasStopRow ? stopRow : null, projection, filter, batchSize);
             }
-            InternalRecordScanner scanner = reader.getScanner();
-            scanner.seek(startRow);
-            if(scanner.hasNext()){
-                scanners.add(scanner);
+            opened = true;
+        }finally {
+            if(!opened){
+                //the scan fails rather than miss the rows of the file
+                for(RecordScanner scanner : scanners){
+                    scanner.close();
+                }
             }
-
         }
         return scanners;
     }
 
+    private void loadPFileScanner(List<RecordScanner> scanners, PStoreFile storeFile, byte[] startRow,
+                                  byte[] fileStartRow, byte[] fileStopRow, ParquetProjection projection,
+                                  Filter filter, int batchSize) throws IOException{
+        MessageType schema = null;
+        if(projection != null){
+            schema = projection.project(storeFile.getSchema());
+            if(schema == null){
+                //none of the columns to read is in the file
+                return;
+            }
+        }
+        FilterPredicate predicate = filter == null ? null
+                : ParquetFilterTranslator.toPredicate(filter, schema == null ? storeFile.getSchema() : schema);
+        if(storeFile.isReference()){
+            //only the row groups of the half are read
+            byte[] splitRow = storeFile.getSplitRow();
+            if(storeFile.isTopReference()){
+                if(fileStartRow == null || Bytes.compareTo(fileStartRow, splitRow) < 0) fileStartRow = splitRow;
+            }else if(fileStopRow == null || Bytes.compareTo(fileStopRow, splitRow) > 0){
+                fileStopRow = splitRow;
+            }
+            if(fileStartRow != null && fileStopRow != null && Bytes.compareTo(fileStartRow, fileStopRow) >= 0){
+                return;
+            }
+        }
+        PFileReader reader = storeFile.openReader(schema, fileStartRow, fileStopRow, this.cacheConf, predicate);
+        InternalRecordScanner scanner;
+        if(batchSize > 0){
+            try {
+                scanner = reader.getBatchScanner(batchSize);
+            }catch (IOException ioe){
+                LOG.error("fall back to row scanner for " + storeFile.getPath() + " : " + ioe.getMessage());
+                scanner = reader.getScanner();
+            }
+        }else {
+            scanner = reader.getScanner();
+        }
+        if(storeFile.isReference()){
+            scanner = new HalfPFileScanner(scanner, storeFile.getSplitRow(), storeFile.isTopReference(),
+                    storeFile.getRowIndex());
+        }
+        scanner.seek(startRow);
+        if(scanner.hasNext()){
+            scanners.add(scanner);
+        }else {
+            reader.close();
+        }
+    }
+
 
     /**
      * get the store scanner of parquet type
      * @return
+     * @throws IOException if the read schema of the scan is malformed
      */
-    public RecordScanner getStoreScanner(Scan scan, long readPt){
+    public RecordScanner getStoreScanner(Scan scan, long readPt) throws IOException{
+        ParquetProjection projection = ParquetProjection.fromScan(scan);
         RecordScanner scanner = null;
 
         lock.readLock().lock();
@@ -2761,16 +3299,20 @@ public class HStore implements Store {
                 scanners.add(snapshotScanner);
             }
 
-            MessageType readSchema = null;
-            String sSchema = new String(scan.getAttribute(HConstants.SCAN_TABLE_SCHEMA));
-
-            //TODO: verify the schema
-            if(sSchema != null) {
-                readSchema = MessageTypeParser.parseMessageType(sSchema);
+            //the rows the filter may accept narrow the rows to read from the files
+            byte[][] range = ParquetFilterTranslator.intersect(
+                    new byte[][]{startRow, scan.getStopRow() == null ? HConstants.EMPTY_END_ROW : scan.getStopRow()},
+                    ParquetFilterTranslator.getRowRange(scan.getFilter()));
+            if(!ParquetFilterTranslator.isEmpty(range)){
+                try {
+                    scanners.addAll(loadPFileScanner(range[0], range[1], projection, scan.getFilter()));
+                }catch (IOException ioe){
+                    //the memstore scanners pin the chunks they read
+                    memScanner.close();
+                    snapshotScanner.close();
+                    throw ioe;
+                }
             }
-
-
-            scanners.addAll(loadPFileScanner(startRow, readSchema));
             scanner = new PStoreScanner(this, scan, readPt, scanners);
 
         }finally {
@@ -2781,4 +3323,129 @@ public class HStore implements Store {
     }
 
 
+
+    /**
+     * read a row of the parquet store, merged column by column from the memstore, the
+     * snapshot and the parquet files holding it, the value of the newest one wins as in
+     * a compaction. the files whose key range or rowkey bloom filter exclude the row are
+     * not opened, and the rowkey index of a file skips the rows before it
+     * @param scan the scan of a get, see {@link Scan#Scan(org.apache.hadoop.hbase.client.Get)}
+     * @return cells of the row, empty if the store does not hold it
+     */
+    public List<Cell> getParquetRow(Scan scan) throws IOException {
+        byte[] row = scan.getStartRow();
+        ParquetProjection projection = ParquetProjection.fromScan(scan);
+        List<Cell> cells = new ArrayList<>();
+        Set<String> columns = new HashSet<>();
+
+        List<PStoreFile> storeFiles;
+        lock.readLock().lock();
+        try {
+            Mutation m = pMemStore.get(row);
+            if(m != null){
+                for(List<Cell> family : m.getFamilyCellMap().values()){
+                    for(Cell cell : family){
+                        if(projection == null || projection.matches(cell)){
+                            mergeColumn(cells, columns, cell);
+                        }
+                    }
+                }
+            }
+
+            RecordScanner snapshotScanner = pMemStore.getSnapshotScanner(scan);
+            try {
+                mergeColumns(cells, columns, nextIfRow(snapshotScanner, row));
+            }finally {
+                snapshotScanner.close();
+            }
+
+            //the files flushed from the snapshot read above, the files are read out of the lock
+            storeFiles = new ArrayList<>(pStoreFiles);
+        }finally {
+            lock.readLock().unlock();
+        }
+
+        int batchSize = conf.getInt(PFileReader.SCAN_BATCH_SIZE_KEY, PFileReader.DEFAULT_SCAN_BATCH_SIZE);
+        //the files are ordered from the oldest to the newest
+        for(int i = storeFiles.size() - 1; i >= 0; --i){
+            PStoreFile storeFile = storeFiles.get(i);
+            if(Bytes.compareTo(row, Bytes.toBytes(storeFile.getStartKey())) < 0
+                    || Bytes.compareTo(row, Bytes.toBytes(storeFile.getEndKey())) > 0){
+                continue;
+            }
+            PFileRowIndex rowIndex = storeFile.getRowIndex();
+            if(rowIndex != null && !rowIndex.mightContain(row)){
+                continue;
+            }
+            MessageType schema = null;
+            if(projection != null){
+                schema = projection.project(storeFile.getSchema());
+                if(schema == null){
+                    continue;
+                }
+            }
+            //only the row groups which may hold the row are read
+            PFileReader reader = storeFile.openReader(schema, row, Bytes.add(row, new byte[]{0}), this.cacheConf, null);
+            InternalRecordScanner scanner = null;
+            if(batchSize > 0){
+                try {
+                    scanner = reader.getBatchScanner(batchSize);
+                }catch (IOException ioe){
+                    LOG.error("fall back to row scanner for " + storeFile.getPath() + " : " + ioe.getMessage());
+                }
+            }
+            if(scanner == null){
+                scanner = reader.getScanner();
+            }
+            try {
+                if(rowIndex != null && scanner instanceof PFileReader.PFileBatchScanner){
+                    ((PFileReader.PFileBatchScanner) scanner).skipToOrdinal(rowIndex.getRowOrdinal(row));
+                }
+                mergeColumns(cells, columns, nextIfRow(scanner, row));
+            }finally {
+                scanner.close();
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * add the cells of the columns the row does not have yet, the sources of the row
+     * are merged from the newest to the oldest
+     * @param row cells of the row merged so far
+     * @param columns columns of the row merged so far
+     * @param cells cells of an older source, may be null
+     */
+    private static void mergeColumns(List<Cell> row, Set<String> columns, List<Cell> cells){
+        if(cells == null){
+            return;
+        }
+        for(Cell cell : cells){
+            mergeColumn(row, columns, cell);
+        }
+    }
+
+    private static void mergeColumn(List<Cell> row, Set<String> columns, Cell cell){
+        String column = Bytes.toString(CellUtil.cloneFamily(cell)) + ":"
+                + Bytes.toString(CellUtil.cloneQualifier(cell));
+        if(columns.add(column)){
+            row.add(cell);
+        }
+    }
+
+    /**
+     * @return the cells of the row if the scanner has it, null otherwise
+     */
+    private static List<Cell> nextIfRow(RecordScanner scanner, byte[] row){
+        scanner.seek(row);
+        if(!scanner.hasNext()){
+            return null;
+        }
+        List<Cell> top = scanner.peek();
+        if(top == null || top.isEmpty() || !CellUtil.matchingRow(top.get(0), row)){
+            return null;
+        }
+        return scanner.next();
+    }
+
 }
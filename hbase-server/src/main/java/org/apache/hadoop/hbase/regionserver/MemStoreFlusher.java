@@ -284,7 +284,7 @@ class MemStoreFlusher implements FlushRequester {
    */
   private boolean isAboveHighWaterMark() {
     return server.getRegionServerAccounting().
-      getGlobalMemstoreSize() >= globalMemStoreLimit;
+      getGlobalMemstoreHeapSize() >= globalMemStoreLimit;
   }
 
   /**
@@ -292,7 +292,7 @@ class MemStoreFlusher implements FlushRequester {
    */
   private boolean isAboveLowWaterMark() {
     return server.getRegionServerAccounting().
-      getGlobalMemstoreSize() >= globalMemStoreLimitLowMark;
+      getGlobalMemstoreHeapSize() >= globalMemStoreLimitLowMark;
   }
 
   public void requestFlush(HRegion r) {
@@ -529,8 +529,8 @@ class MemStoreFlusher implements FlushRequester {
             if (!blocked) {
               startTime = EnvironmentEdgeManager.currentTime();
               LOG.info("Blocking updates on " + server.toString() +
-                ": the global memstore size " +
-                StringUtils.humanReadableInt(server.getRegionServerAccounting().getGlobalMemstoreSize()) +
+                ": the global memstore heap size " +
+                StringUtils.humanReadableInt(server.getRegionServerAccounting().getGlobalMemstoreHeapSize()) +
                 " is >= than blocking " +
                 StringUtils.humanReadableInt(globalMemStoreLimit) + " size");
             }
@@ -0,0 +1,107 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+
+import parquet.hadoop.ParquetReadMetrics;
+import parquet.hadoop.metadata.ColumnPath;
+
+/**
+ * Class used to push numbers about the parquet stores into the metrics subsystem: the flushes
+ * of the parquet memstores, the files of the stores, and the row groups, column chunks and
+ * footers read by the parquet readers, which report to it as a {@link ParquetReadMetrics}.
+ */
+@InterfaceAudience.Private
+public class MetricsPStore implements ParquetReadMetrics {
+
+  private static MetricsPStore instance;
+
+  private final MetricsPStoreSource source;
+
+  /**
+   * @return the metrics shared by the parquet stores and readers of the process
+   */
+  public static synchronized MetricsPStore getInstance() {
+    if (instance == null) {
+      instance = new MetricsPStore(
+        CompatibilitySingletonFactory.getInstance(MetricsPStoreSource.class));
+    }
+    return instance;
+  }
+
+  @VisibleForTesting
+  MetricsPStore(MetricsPStoreSource source) {
+    this.source = source;
+  }
+
+  public void updateFlush(long time, long size, long rows) {
+    source.updateFlush(time, size, rows);
+  }
+
+  public void updateStoreFileCount(int count) {
+    source.updateStoreFileCount(count);
+  }
+
+  public void updateMemStoreSnapshot(long size, long rows) {
+    source.updateMemStoreSnapshot(size, rows);
+  }
+
+  public void updateScannedRows(long rows) {
+    if (rows > 0) {
+      source.incrementScannedRows(rows);
+    }
+  }
+
+  @Override
+  public void rowGroupsRead(int count) {
+    source.incrementRowGroupsRead(count);
+  }
+
+  @Override
+  public void rowGroupsSkipped(int count) {
+    source.incrementRowGroupsSkipped(count);
+  }
+
+  /**
+   * The bytes are not counted per column: the columns of the tables of a server are unbounded,
+   * and so would be the counters.
+   */
+  @Override
+  public void columnChunkRead(ColumnPath column, long bytes) {
+    source.incrementBytesRead(bytes);
+  }
+
+  @Override
+  public void decodeTime(long millis) {
+    source.updateDecodeTime(millis);
+  }
+
+  @Override
+  public void footerCache(int hits, int misses) {
+    source.incrementFooterCache(hits, misses);
+  }
+
+  @Override
+  public void prefetch(boolean hit) {
+    source.incrementPrefetch(hit ? 1 : 0, hit ? 0 : 1);
+  }
+}
@@ -2,6 +2,7 @@ package org.apache.hadoop.hbase.regionserver;
 
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.HRegionInfo;
+import parquet.hadoop.ColumnBatch;
 
 import java.io.IOException;
 import java.util.List;
@@ -46,14 +47,24 @@ public interface PRegionScanner{
 
     /**
      * @return next row
+     * @throws IOException if the row could not be read
      */
-    List<Cell> nextRaw();
+    List<Cell> nextRaw() throws IOException;
+
+    /**
+     * @param maxRows max rows to return
+     * @return next rows as a column batch, only valid until the next call on the scanner,
+     * null or empty when the next row has to be read by {@link #nextRaw()}
+     * @throws IOException
+     */
+    ColumnBatch nextBatch(int maxRows) throws IOException;
 
     /**
      * judge whether has more record to iterate
      * @return
+     * @throws IOException if the next row could not be read
      */
-    boolean hasNext();
+    boolean hasNext() throws IOException;
 
 
     /**
@@ -67,7 +78,7 @@ public interface PRegionScanner{
      * return the curr top row of the region
      * @return
      */
-    List<Cell> peek();
+    List<Cell> peek() throws IOException;
 
 
     /**
@@ -75,7 +86,7 @@ public interface PRegionScanner{
      * @param row
      * @return
      */
-    boolean isStopRow(byte[] row);
+    boolean isStopRow(byte[] row) throws IOException;
 
 
 
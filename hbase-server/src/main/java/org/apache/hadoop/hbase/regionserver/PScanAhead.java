@@ -0,0 +1,201 @@
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Threads;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the next batch of the parquet scanners on a bounded pool while the clients
+ * handle the last one.
+ *
+ * Each scanner has at most one batch read ahead, in its {@link Slot}, of the rows of the
+ * caching of its scan. Above the max number of batches waiting to be sent, the scanners
+ * read on the calls.
+ */
+public class PScanAhead {
+
+    // null if the scanners do not read ahead
+    private final ThreadPoolExecutor pool;
+    private final Semaphore batches;
+
+    /**
+     * @param threads reading the batches, 0 to read the batches on the calls only
+     * @param maxBatches read ahead and not sent yet
+     * @param name prefix of the names of the threads
+     */
+    public PScanAhead(int threads, int maxBatches, String name) {
+        if (threads > 0) {
+            maxBatches = Math.max(1, maxBatches);
+            pool = new ThreadPoolExecutor(threads, threads,
+                    60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(maxBatches),
+                    Threads.newDaemonThreadFactory(name + "-PScanAhead"));
+            pool.allowCoreThreadTimeOut(true);
+            batches = new Semaphore(maxBatches);
+        } else {
+            pool = null;
+            batches = null;
+        }
+    }
+
+    /**
+     * reads a batch of a scanner
+     */
+    public interface BatchReader {
+        /**
+         * @param rows max number of rows of the batch
+         * @return the batch, empty if the scan is done
+         */
+        List<Result> read(int rows) throws IOException;
+    }
+
+    /**
+     * the batch read ahead for one scanner
+     */
+    public static class Slot {
+        private final PRegionScanner scanner;
+        private final int aheadRows;
+        // guarded by the slot
+        private Future<List<Result>> ahead = null;
+        private volatile boolean closed = false;
+
+        public Slot(PRegionScanner scanner) {
+            this(scanner, 0);
+        }
+
+        /**
+         * @param aheadRows rows of the batches read ahead, the caching of the scan,
+         *                  0 if the scan has none and the rows of the next call are unknown
+         */
+        public Slot(PRegionScanner scanner, int aheadRows) {
+            this.scanner = scanner;
+            this.aheadRows = Math.max(0, aheadRows);
+        }
+
+        /**
+         * @return true once the scanner is closed, a read in progress should stop
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+
+    /**
+     * the next batch of the scanner, the one read ahead after the last call if any whatever
+     * the rows asked for, else read on the call. Then start reading the batch after it.
+     * @param rows asked for by the call
+     * @param last true if the scanner is closed after the call, nothing is read ahead
+     * @return the batch, empty if the scan is done
+     * @throws IOException the failure of the read
+     */
+    public List<Result> next(final Slot slot, int rows, final BatchReader reader, boolean last)
+            throws IOException {
+        List<Result> results = take(slot);
+        if (results == null) {
+            results = reader.read(rows);
+        }
+        if (!last && !results.isEmpty() && slot.aheadRows > 0) {
+            readAhead(slot, new Callable<List<Result>>() {
+                @Override
+                public List<Result> call() throws IOException {
+                    return reader.read(slot.aheadRows);
+                }
+            });
+        }
+        return results;
+    }
+
+    /**
+     * start reading the next batch of the scanner in the background,
+     * skipped when too many batches are waiting to be sent
+     * @param reader reads the batch, under the lock of the scanner
+     * @return true if the batch is read ahead
+     */
+    public boolean readAhead(Slot slot, Callable<List<Result>> reader) {
+        if (pool == null || !batches.tryAcquire()) {
+            return false;
+        }
+        synchronized (slot) {
+            if (slot.closed || slot.ahead != null) {
+                batches.release();
+                return false;
+            }
+            try {
+                slot.ahead = pool.submit(reader);
+                return true;
+            } catch (RejectedExecutionException ree) {
+                // shutting down
+                batches.release();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * take the batch read ahead for the scanner, waiting for the read in progress
+     * @return the batch, null if none was read ahead
+     * @throws IOException the failure of the read
+     */
+    public List<Result> take(Slot slot) throws IOException {
+        Future<List<Result>> ahead = remove(slot);
+        if (ahead == null) {
+            return null;
+        }
+        try {
+            return ahead.get();
+        } catch (InterruptedException ie) {
+            ahead.cancel(true);
+            throw new InterruptedIOException("interrupted while reading ahead");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private Future<List<Result>> remove(Slot slot) {
+        synchronized (slot) {
+            Future<List<Result>> ahead = slot.ahead;
+            if (ahead != null) {
+                slot.ahead = null;
+                batches.release();
+            }
+            return ahead;
+        }
+    }
+
+    /**
+     * drop the batch read ahead and close the scanner, waits for a read in progress
+     */
+    public void close(Slot slot) throws IOException {
+        slot.closed = true;
+        Future<List<Result>> ahead = remove(slot);
+        if (ahead != null) {
+            ahead.cancel(false);
+        }
+        synchronized (slot.scanner) {
+            slot.scanner.close();
+        }
+    }
+
+    /**
+     * stop the reads in progress
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -6,24 +6,41 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.io.HFileLink;
+import org.apache.hadoop.hbase.io.Reference;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.pfile.MutationWriteSupport;
 import org.apache.hadoop.hbase.io.pfile.PFile;
 import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.io.pfile.PFileRowIndex;
 import org.apache.hadoop.hbase.io.pfile.PFileWriter;
+import org.apache.hadoop.hbase.io.pfile.PFileWriterSettings;
 import org.apache.hadoop.hbase.regionserver.compactions.Compactor;
+import org.apache.hadoop.hbase.util.Bytes;
 import parquet.example.data.Group;
-import parquet.example.data.GroupFactory;
-import parquet.example.data.simple.SimpleGroupFactory;
+import parquet.filter2.compat.SortedKeyRowGroupFilter;
+import parquet.filter2.predicate.FilterPredicate;
 import parquet.hadoop.ParquetFileInfo;
-import parquet.hadoop.example.GroupWriteSupport;
+import parquet.hadoop.metadata.BlockMetaData;
 import parquet.schema.MessageType;
 import parquet.schema.MessageTypeParser;
 
 import java.io.Closeable;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Created by wangxiaoyi on 15/5/26.
@@ -36,21 +53,71 @@ public class PStoreFile {
     private static final Log LOG = LogFactory.getLog(PStoreFile.class);
     private static final String START_KEY = "startkey";
     private static final String END_KEY = "endkey";
+    private static final Pattern BULK_LOAD_SEQ_ID = Pattern.compile(".*_SeqId_(\\d+)_\\.parquet");
+
+    /**
+     * a split reference to a file of the parent region, named
+     * <code>&lt;parquet file&gt;.&lt;encoded name of the parent region&gt;</code>
+     */
+    private static final Pattern REF_NAME_PATTERN = Pattern.compile("^(.+\\.parquet)\\.([0-9a-f]+)$");
 
     private ParquetFileInfo fileInfo;
     private final FileSystem fs;
 
-    private Path filePath;
+    private volatile Path filePath;
+    //the link to the file of a snapshot, the file is looked for in each of its locations on open
+    private HFileLink link = null;
     private Configuration conf;
 
+    //path of the file in the store, a parquet file, a link or a split reference
+    private final Path storeFilePath;
+
+    //path of the split reference in the store, null if the file is not a reference
+    private Path referencePath = null;
+    private Reference reference = null;
+    //the split row of the reference, the first row of a top half or the stop row of a bottom half
+    private byte[] splitRow = null;
+
     private volatile PFileReader reader;
 
+    //length of the file in bytes
+    private long length = 0;
+
+    //max sequence id of the edits in the file
+    private long maxSequenceId = -1;
+
+    //rowkey bloom filter and index of the file, null if it was written without them
+    private PFileRowIndex rowIndex = null;
+
+    //a rowkey of each row group but the first, to split the scans of the file
+    private List<byte[]> rowGroupBoundaries = Collections.emptyList();
 
 
+
+    /**
+     * orders the files from the oldest to the newest
+     */
+    public static final Comparator<PStoreFile> SEQ_ID_COMPARATOR = new Comparator<PStoreFile>() {
+        @Override
+        public int compare(PStoreFile o1, PStoreFile o2) {
+            return Long.compare(o1.getMaxSequenceId(), o2.getMaxSequenceId());
+        }
+    };
+
+    /**
+     * @param filePath a parquet file, a link to one of a snapshot or a split reference
+     *                 to a parquet file of the parent region
+     */
     public PStoreFile(FileSystem fs, Path filePath, Configuration conf){
         this.fs = fs;
-        this.filePath = filePath;
         this.conf = conf;
+        this.storeFilePath = filePath;
+        if(isReference(filePath.getName())){
+            this.referencePath = filePath;
+            this.filePath = getReferredToFile(filePath);
+        }else {
+            this.filePath = filePath;
+        }
     }
 
     /**
@@ -59,10 +126,19 @@ public class PStoreFile {
      * @return whether store file init success
      */
     protected boolean initStoreFile() throws IOException{
+        if(HFileLink.isHFileLink(filePath)){
+            //the file of a table cloned from a snapshot, read where it is now
+            link = new HFileLink(conf, filePath);
+            filePath = link.getAvailablePath(fs);
+        }
         if(! fs.exists(filePath)){
             LOG.error(filePath + "not exists !");
             return false;
         }
+        if(referencePath != null){
+            reference = Reference.read(fs, referencePath);
+            splitRow = getSplitRow(reference);
+        }
         reader = createReader();
         if(reader == null){
             LOG.error("init Store File error!");
@@ -70,10 +146,108 @@ public class PStoreFile {
         }
         fileInfo = reader.getFileInfo();
         reader.close();
+
+        length = fs.getFileStatus(filePath).getLen();
+        String seqId = fileInfo.getMetaData(HConstants.MAX_SEQ_ID);
+        if(seqId != null){
+            try {
+                maxSequenceId = Long.parseLong(seqId);
+            }catch (NumberFormatException nfe){
+                LOG.warn("invalid " + HConstants.MAX_SEQ_ID + " " + seqId + " in " + filePath);
+            }
+        }
+        if(maxSequenceId < 0){
+            //bulk loaded files carry their seq id in the name
+            maxSequenceId = getSequenceIdFromName(filePath.getName());
+        }
+        if(maxSequenceId < 0){
+            //written before the seq id was recorded, sorts as the oldest file
+            maxSequenceId = 0;
+        }
+        try {
+            rowIndex = PFileRowIndex.read(fileInfo.getFileMetaData().getKeyValueMetaData());
+        }catch (IOException ioe){
+            //the rows are still found by a scan of the file
+            LOG.warn("invalid row index in " + filePath + " : " + ioe.getMessage());
+        }
+        List<BlockMetaData> rowGroups = getRowGroups();
+        if(rowIndex != null && rowIndex.getRowGroupCount() == rowGroups.size()){
+            List<byte[]> firstKeys = new ArrayList<>(rowGroups.size());
+            for(int i = 1; i < rowGroups.size(); ++i){
+                firstKeys.add(rowIndex.getRowGroupFirstKey(i));
+            }
+            rowGroupBoundaries = firstKeys;
+        }else {
+            rowGroupBoundaries = SortedKeyRowGroupFilter.getRowGroupBoundaries(rowGroups, HConstants.ROW_KEY);
+        }
+        if(reference != null){
+            //only the boundaries inside the half split the scans
+            List<byte[]> boundaries = new ArrayList<>(rowGroupBoundaries.size());
+            for(byte[] boundary : rowGroupBoundaries){
+                if(containsRow(boundary) && !Bytes.equals(boundary, splitRow)){
+                    boundaries.add(boundary);
+                }
+            }
+            rowGroupBoundaries = boundaries;
+        }
         return true;
     }
 
+    /**
+     * @param name of a file in the directory of a family
+     * @return whether the file is a split reference to a parquet file
+     */
+    public static boolean isReference(String name){
+        return REF_NAME_PATTERN.matcher(name).matches();
+    }
+
+    /**
+     * @param name of a file in the directory of a family
+     * @return whether the file is a parquet file or a split reference to one
+     */
+    public static boolean isPStoreFile(String name){
+        return name.endsWith(".parquet") || isReference(name);
+    }
+
+    /**
+     * @param referencePath path of a split reference, <code>table/region/family/file.parquet.parent</code>
+     * @return path of the parquet file of the parent region, <code>table/parent/family/file.parquet</code>
+     */
+    public static Path getReferredToFile(Path referencePath){
+        Matcher m = REF_NAME_PATTERN.matcher(referencePath.getName());
+        if(!m.matches()){
+            throw new IllegalArgumentException("Failed match of parquet reference name " + referencePath);
+        }
+        Path familyDir = referencePath.getParent();
+        Path tableDir = familyDir.getParent().getParent();
+        return new Path(new Path(new Path(tableDir, m.group(2)), familyDir.getName()), m.group(1));
+    }
+
+    /**
+     * @return the split row of a reference, its split key is the key of the first cell of the row
+     */
+    public static byte[] getSplitRow(Reference reference){
+        byte[] splitKey = reference.getSplitKey();
+        return CellUtil.cloneRow(new KeyValue.KeyOnlyKeyValue(splitKey, 0, splitKey.length));
+    }
+
+    /**
+     * @param name of a bulk loaded file, like <code>uuid_SeqId_12_.parquet</code>
+     * @return the sequence id in the name, -1 if there is none
+     */
+    public static long getSequenceIdFromName(String name){
+        Matcher m = BULK_LOAD_SEQ_ID.matcher(name);
+        if(m.matches()){
+            return Long.parseLong(m.group(1));
+        }
+        return -1;
+    }
+
     public MessageType getSchema(){
+        if(fileInfo.getFileSchema() == null && fileInfo.getFooters() != null && !fileInfo.getFooters().isEmpty()){
+            //the schema is only set once the file is read, take it from the footer
+            fileInfo.setFileSchema(fileInfo.getFooters().get(0).getParquetMetadata().getFileMetaData().getSchema());
+        }
         return fileInfo.getFileSchema();
     }
 
@@ -88,7 +262,7 @@ public class PStoreFile {
 
     public PFileReader createReader(MessageType schema){
         try {
-            return new PFileReader(filePath, conf, schema);
+            return openReader(schema, null, null, null, null);
         }catch (IOException ioe){
             LOG.error(ioe.getMessage());
             return null;
@@ -96,12 +270,36 @@ public class PStoreFile {
     }
 
     public PFileReader createReader(){
-        try {
-            return new PFileReader(filePath, conf, null);
-        }catch (IOException ioe){
-            LOG.error(ioe.getMessage());
-            return null;
+        return createReader((MessageType) null);
+    }
+
+    /**
+     * open a reader of the rows from startRow to stopRow, the file of a link is looked for in
+     * each of its locations as {@link org.apache.hadoop.hbase.io.FileLink} does, since it may
+     * have been archived after the last open. the reads are reported to the metrics of the
+     * region server
+     * @throws FileNotFoundException if the file is in none of the locations
+     */
+    public PFileReader openReader(MessageType schema, byte[] startRow, byte[] stopRow,
+                                  CacheConfig cacheConf, FilterPredicate predicate) throws IOException{
+        if(link == null){
+            return new PFileReader(filePath, conf, schema, startRow, stopRow, cacheConf, predicate,
+                    MetricsPStore.getInstance());
+        }
+        for(Path location : link.getLocations()){
+            if(!fs.exists(location)){
+                continue;
+            }
+            try {
+                PFileReader reader = new PFileReader(location, conf, schema, startRow, stopRow, cacheConf, predicate,
+                        MetricsPStore.getInstance());
+                filePath = location;
+                return reader;
+            }catch (FileNotFoundException fnfe){
+                //moved between the check and the open, try the next location
+            }
         }
+        throw new FileNotFoundException("Unable to open link: " + link);
     }
 
     /**
@@ -120,12 +318,99 @@ public class PStoreFile {
     }
 
 
+    /**
+     * @return length of the file in bytes
+     */
+    public long getLength(){
+        return length;
+    }
+
+    /**
+     * @return max sequence id of the edits in this file, newer files have larger ids
+     */
+    public long getMaxSequenceId(){
+        return maxSequenceId;
+    }
+
+    /**
+     * @return rowkey bloom filter and index of the file, null if it has none
+     */
+    public PFileRowIndex getRowIndex(){
+        return rowIndex;
+    }
+
+    /**
+     * @return the row groups of the file from its footer, in file order
+     */
+    public List<BlockMetaData> getRowGroups(){
+        if(fileInfo == null || fileInfo.getFooters() == null || fileInfo.getFooters().isEmpty()){
+            return Collections.emptyList();
+        }
+        return fileInfo.getFooters().get(0).getParquetMetadata().getBlocks();
+    }
+
+    /**
+     * @return a rowkey of each row group but the first, in order, empty if the file has one row group
+     */
+    public List<byte[]> getRowGroupBoundaries(){
+        return rowGroupBoundaries;
+    }
+
+    /**
+     * @return path of the parquet file to read, the file of the parent region for a reference
+     */
     public Path getPath(){
         if(filePath == null)
             filePath = fileInfo.getFilePath();
         return filePath ;
     }
 
+    /**
+     * @return path of the file in the store, the reference or the link itself
+     */
+    public Path getStoreFilePath(){
+        return storeFilePath != null ? storeFilePath : getPath();
+    }
+
+    /**
+     * @return whether the file is a reference to a half of a file of the parent region
+     */
+    public boolean isReference(){
+        return referencePath != null;
+    }
+
+    /**
+     * @return whether the file is a reference to the top half, the rows from the split row
+     */
+    public boolean isTopReference(){
+        return reference != null && Reference.isTopFileRegion(reference.getFileRegion());
+    }
+
+    /**
+     * @return the split row of a reference, null if the file is not a reference
+     */
+    public byte[] getSplitRow(){
+        return splitRow;
+    }
+
+    /**
+     * @return whether the row is in the file, or in the half of the file for a reference
+     */
+    public boolean containsRow(byte[] row){
+        if(reference == null){
+            return true;
+        }
+        int c = Bytes.compareTo(row, splitRow);
+        return isTopReference() ? c >= 0 : c < 0;
+    }
+
+    /**
+     * @return whether all the rows of [first, last] are in the half of the file, true if it is not a reference
+     */
+    public boolean containsRows(byte[] first, byte[] last){
+        return containsRow(first) && containsRow(last);
+    }
+
 
 
     /**
@@ -192,6 +477,7 @@ public class PStoreFile {
         private Path dir;
         private Path filePath;
         private Map<String, String> meta;
+        private PFileWriterSettings settings;
         private InetSocketAddress[] favoredNodes;
 
 
@@ -235,6 +521,15 @@ public class PStoreFile {
             return this;
         }
 
+        /**
+         * @param settings sizes and encodings of the file, null for the settings of the configuration
+         * @return this (for chained invocation)
+         */
+        public WriterBuilder addSettings(PFileWriterSettings settings){
+            this.settings = settings;
+            return this;
+        }
+
 
         /**
          * Create a store file writer. Client is responsible for closing file when
@@ -255,7 +550,7 @@ public class PStoreFile {
                 fs.mkdirs(dir);
             }
 
-            return new Writer(conf, filePath, schema, meta);
+            return new Writer(conf, filePath, schema, meta, settings);
         }
 
 
@@ -272,30 +567,23 @@ public class PStoreFile {
 
         private MessageType schema ;
 
-        private GroupFactory gf;
-
         private Path filePath;
 
 
 
-        private Writer(Configuration conf, Path file, MessageType schema, Map<String, String> meta){
+        private Writer(Configuration conf, Path file, MessageType schema, Map<String, String> meta,
+                       PFileWriterSettings settings){
             this.filePath = file;
             this.schema = schema;
-            gf = new SimpleGroupFactory(schema);
-            GroupWriteSupport.setSchema(schema, conf);
-            writer = new PFileWriter(conf, schema, new GroupWriteSupport(meta))
+            writer = new PFileWriter(conf, schema, new MutationWriteSupport(schema, meta))
+                    .addSettings(settings)
                     .addPath(file)
                     .build();
         }
 
 
         public void append(Mutation m){
-
-            writer.append(m.asGroup(gf));
-        }
-
-        public void append(Group group){
-            writer.append(group);
+            writer.append(m);
         }
 
 
@@ -313,6 +601,13 @@ public class PStoreFile {
         public Path getFilePath(){
             return  this.filePath;
         }
+
+        /**
+         * @return length of the file once closed
+         */
+        public long getLength() throws IOException{
+            return this.writer.getDataSize();
+        }
     }
 
 
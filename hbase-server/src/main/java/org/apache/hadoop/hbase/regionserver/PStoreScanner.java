@@ -5,7 +5,9 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.ByteRange;
 import org.apache.hadoop.hbase.util.Bytes;
+import parquet.hadoop.ColumnBatch;
 
 import java.io.IOException;
 
@@ -17,7 +19,7 @@ import java.util.concurrent.locks.ReentrantLock;
  * Created by wangxiaoyi on 15/6/16.
  */
 
-public class PStoreScanner implements RecordScanner{
+public class PStoreScanner implements BatchRecordScanner{
 
     private static final Log LOG = LogFactory.getLog(PStoreScanner.class);
     protected Store store;
@@ -33,6 +35,9 @@ public class PStoreScanner implements RecordScanner{
 
     private final long readPt;
 
+    // rows returned since the scanner was opened, published on close
+    private long rows = 0;
+
 
 
     public PStoreScanner(Store store, final Scan scan, final long readPt, List<? extends RecordScanner> scanners){
@@ -67,6 +72,20 @@ public class PStoreScanner implements RecordScanner{
     }
 
 
+    /**
+     * @return the rowkey of the first record of the store, see {@link RecordScanner#peekRowKey()}
+     */
+    @Override
+    public ByteRange peekRowKey() {
+        lock.lock();
+        try{
+            return this.heap == null ? null : this.heap.peekRowKey();
+        }finally {
+            lock.unlock();
+        }
+    }
+
+
     /**
      * @return weather there has more record
      */
@@ -81,9 +100,8 @@ public class PStoreScanner implements RecordScanner{
         try {
 
             if(! Bytes.equals(scan.getStopRow(), HConstants.EMPTY_END_ROW)) {
-                List<Cell> peek = this.heap.peek();
-                byte[] peekRow = peek.get(0).getRow();
-                if(Bytes.compareTo(peekRow, scan.getStopRow()) >= 0){
+                ByteRange peekRow = this.heap.peekRowKey();
+                if(peekRow == null || RecordScannerComparator.compareRows(peekRow, scan.getStopRow()) >= 0){
                     this.close();
                     return false;
                 }
@@ -114,6 +132,7 @@ public class PStoreScanner implements RecordScanner{
                 return result;
             }
             result = heap.next();
+            if(!result.isEmpty()) rows++;
         }finally {
             lock.unlock();
         }
@@ -121,6 +140,32 @@ public class PStoreScanner implements RecordScanner{
     }
 
 
+    /**
+     * return the next rows of the store as a column batch
+     *
+     * @param maxRows max rows to return
+     * @param stopRow exclusive row to stop at, null for no limit
+     * @return the batch, null or empty when the next row can not be returned in a batch
+     */
+    @Override
+    public ColumnBatch nextBatch(int maxRows, byte[] stopRow) throws IOException {
+        lock.lock();
+        try{
+            if(heap == null) return null;
+            byte[] limit = stopRow;
+            if(! Bytes.equals(scan.getStopRow(), HConstants.EMPTY_END_ROW)
+                    && (limit == null || Bytes.compareTo(scan.getStopRow(), limit) < 0)){
+                limit = scan.getStopRow();
+            }
+            ColumnBatch batch = heap.nextBatch(maxRows, limit);
+            if(batch != null) rows += batch.size();
+            return batch;
+        }finally {
+            lock.unlock();
+        }
+    }
+
+
     /**
      * Closes this stream and releases any system resources associated
      * with it. If the stream is already closed then invoking this
@@ -140,6 +185,8 @@ public class PStoreScanner implements RecordScanner{
                 LOG.error(ioe.getMessage());
             }
             this.heap = null;
+            MetricsPStore.getInstance().updateScannedRows(rows);
+            rows = 0;
             //this.lastTop = null; // If both are null, we are closed.
         }finally {
             lock.unlock();
@@ -147,12 +194,20 @@ public class PStoreScanner implements RecordScanner{
     }
 
     /**
-     * TODO: seek the record by rowkey
+     * seek the scanners of the store to the first row not smaller than rowkey,
+     * rows before the current position are not read again
      *
      * @param rowkey
      */
     @Override
     public void seek(byte[] rowkey) {
-
+        lock.lock();
+        try {
+            if(this.heap != null){
+                this.heap.seek(rowkey);
+            }
+        }finally {
+            lock.unlock();
+        }
     }
 }
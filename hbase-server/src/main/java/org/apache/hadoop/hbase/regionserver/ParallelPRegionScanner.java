@@ -0,0 +1,347 @@
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Threads;
+import parquet.hadoop.ColumnBatch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PRegionScanner} splitting the rows of a region into ranges at the row group
+ * boundaries of its parquet files and scanning the ranges on a pool of the region server.
+ *
+ * Each range is read by a scanner of its own, with its own projection and copy of the
+ * filter, so the rows of a range are merged from the memstore and the files as usual.
+ * The rows come out in order, range after range, or as soon as they are read when the
+ * order does not matter, e.g. for an aggregation.
+ *
+ * Each range has its own filter, so the region does not scan a filter keeping state
+ * across rows, like a page filter, in parallel.
+ *
+ * A range failing to scan fails the whole scan, its error is thrown by the next call.
+ */
+public class ParallelPRegionScanner implements PRegionScanner {
+
+    private static final Log LOG = LogFactory.getLog(ParallelPRegionScanner.class);
+
+    /** threads of the region server scanning ranges of regions, 0 to scan them on the handlers */
+    public static final String THREADS_KEY = "hbase.regionserver.parquet.parallel.scan.threads";
+
+    /** rows read ahead by range before its worker waits for them to be consumed */
+    public static final String QUEUE_SIZE_KEY = "hbase.regionserver.parquet.parallel.scan.queue.size";
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    /** ranges per thread, more ranges than threads balance uneven row groups */
+    public static final int RANGES_PER_THREAD = 4;
+
+    // ends the rows of a range
+    private static final List<Cell> END = Collections.emptyList();
+
+    private final HRegion region;
+    private final ThreadPoolExecutor pool;
+    private final Scan scan;
+    private final boolean ordered;
+    private final byte[][] ranges;
+    private final int parallelism;
+    // rows of each range, the ranges share one queue when the order does not matter
+    private final BlockingQueue<List<Cell>>[] queues;
+    private final List<Future<?>> workers = new ArrayList<>();
+
+    private int nextRange = 0;
+    private int running = 0;
+    private int current = 0;
+    private int ended = 0;
+    private List<Cell> top = null;
+    private volatile boolean closed = false;
+    private volatile Throwable error = null;
+
+    /**
+     * @param region the region to scan
+     * @param scan the scan of the region
+     * @param splitKeys keys splitting the rows of the scan, sorted
+     * @param ordered whether the rows have to come out in order
+     * @param pool the pool of the region server scanning the ranges
+     */
+    @SuppressWarnings("unchecked")
+    public ParallelPRegionScanner(HRegion region, Scan scan, List<byte[]> splitKeys, boolean ordered,
+                                  ThreadPoolExecutor pool){
+        this.region = region;
+        this.scan = scan;
+        this.ordered = ordered;
+        this.pool = pool;
+        Configuration conf = region.getBaseConf();
+        this.parallelism = pool.getMaximumPoolSize();
+        int queueSize = Math.max(1, conf.getInt(QUEUE_SIZE_KEY, DEFAULT_QUEUE_SIZE));
+
+        this.ranges = new byte[splitKeys.size() + 2][];
+        this.ranges[0] = scan.getStartRow();
+        for(int i = 0; i < splitKeys.size(); ++i){
+            this.ranges[i + 1] = splitKeys.get(i);
+        }
+        this.ranges[ranges.length - 1] = scan.getStopRow();
+
+        int rangeCount = ranges.length - 1;
+        this.queues = new BlockingQueue[rangeCount];
+        BlockingQueue<List<Cell>> shared = ordered ? null : new ArrayBlockingQueue<List<Cell>>(queueSize);
+        for(int i = 0; i < rangeCount; ++i){
+            queues[i] = ordered ? new ArrayBlockingQueue<List<Cell>>(queueSize) : shared;
+        }
+        synchronized (this){
+            while (running < parallelism && nextRange < rangeCount){
+                startNextRange();
+            }
+        }
+    }
+
+    /**
+     * @param conf
+     * @param name prefix of the names of the threads
+     * @return a pool scanning the ranges of the regions of a region server, null if disabled
+     */
+    public static ThreadPoolExecutor createPool(Configuration conf, String name){
+        int threads = conf.getInt(THREADS_KEY, Runtime.getRuntime().availableProcessors());
+        if(threads <= 0){
+            return null;
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), Threads.newDaemonThreadFactory(name + "-PScanParallel"));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * pick split keys among the row group boundaries of the files of a region,
+     * so that each range holds about the same number of row groups
+     * @param boundaries row group boundaries in the range of the scan, in any order
+     * @param maxRanges max number of ranges
+     * @return sorted distinct split keys, at most maxRanges - 1
+     */
+    public static List<byte[]> selectSplitKeys(List<byte[]> boundaries, int maxRanges){
+        List<byte[]> sorted = new ArrayList<>(boundaries);
+        Collections.sort(sorted, Bytes.BYTES_COMPARATOR);
+        List<byte[]> distinct = new ArrayList<>(sorted.size());
+        for(byte[] key : sorted){
+            if(distinct.isEmpty() || !Bytes.equals(distinct.get(distinct.size() - 1), key)){
+                distinct.add(key);
+            }
+        }
+        if(distinct.size() < maxRanges){
+            return distinct;
+        }
+        List<byte[]> splitKeys = new ArrayList<>(maxRanges - 1);
+        for(int i = 1; i < maxRanges; ++i){
+            splitKeys.add(distinct.get((int) ((long) i * distinct.size() / maxRanges)));
+        }
+        return splitKeys;
+    }
+
+    /**
+     * start the scan of the next range, the ranges are started in order
+     */
+    private void startNextRange(){
+        final int range = nextRange++;
+        running++;
+        try {
+            workers.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    scanRange(range);
+                }
+            }));
+        }catch (RuntimeException re){
+            error = re;
+            running--;
+            queues[range].offer(END);
+        }
+    }
+
+    private void scanRange(int range){
+        BlockingQueue<List<Cell>> queue = queues[range];
+        PRegionScanner scanner = null;
+        try {
+            if(closed) return;
+            scanner = region.getPScanner(rangeScan(range));
+            while (!closed && scanner.hasNext()){
+                List<Cell> row = scanner.nextRaw();
+                if(!row.isEmpty()){
+                    while (!closed && !queue.offer(row, 100, TimeUnit.MILLISECONDS)){
+                        //wait for the rows to be consumed
+                    }
+                }
+            }
+        }catch (InterruptedException ie){
+            Thread.currentThread().interrupt();
+            if(!closed){
+                error = new InterruptedIOException("interrupted while scanning "
+                        + Bytes.toStringBinary(ranges[range]) + " of " + region);
+            }
+        }catch (Throwable t){
+            LOG.error("failed to scan " + Bytes.toStringBinary(ranges[range]) + " to "
+                    + Bytes.toStringBinary(ranges[range + 1]) + " of " + region, t);
+            error = t;
+        }finally {
+            if(scanner != null){
+                try {
+                    scanner.close();
+                }catch (IOException ioe){
+                    LOG.error(ioe.getMessage());
+                }
+            }
+            try {
+                while (!closed && !queue.offer(END, 100, TimeUnit.MILLISECONDS)){
+                    //the end of the range waits for its rows
+                }
+            }catch (InterruptedException ie){
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this){
+                running--;
+                if(!closed && nextRange < queues.length){
+                    startNextRange();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the scan of a range, with its own filter
+     */
+    private Scan rangeScan(int range) throws IOException {
+        Scan rangeScan = new Scan(scan);
+        rangeScan.setStartRow(ranges[range]);
+        rangeScan.setStopRow(ranges[range + 1]);
+        rangeScan.setAttribute(HConstants.SCAN_PARALLEL, null);
+        Filter filter = scan.getFilter();
+        if(filter != null){
+            rangeScan.setFilter(ProtobufUtil.toFilter(ProtobufUtil.toFilter(filter)));
+        }
+        return rangeScan;
+    }
+
+    /**
+     * @return the next row without consuming it, null at the end of the scan
+     * @throws IOException the failure of a range, the scan is closed
+     */
+    private List<Cell> fetch() throws IOException {
+        while (top == null && !closed && ended < queues.length){
+            checkError();
+            try {
+                List<Cell> row = queues[current].poll(100, TimeUnit.MILLISECONDS);
+                if(row == null) continue;
+                if(row == END){
+                    ended++;
+                    if(ordered) current++;
+                }else {
+                    top = row;
+                }
+            }catch (InterruptedException ie){
+                close();
+                throw new InterruptedIOException("interrupted while waiting for the rows of " + region);
+            }
+        }
+        if(top == null){
+            //the failed range may have ended the scan
+            checkError();
+        }
+        return top;
+    }
+
+    private void checkError() throws IOException {
+        if(error != null && !closed){
+            close();
+            throw new IOException("failed to scan " + region, error);
+        }
+    }
+
+    @Override
+    public HRegionInfo getRegionInfo() {
+        return region.getRegionInfo();
+    }
+
+    /**
+     * skip the rows before row, only once the scan is ordered
+     */
+    @Override
+    public boolean seek(byte[] row) throws IOException {
+        if (row == null) {
+            throw new IllegalArgumentException("Row cannot be null.");
+        }
+        if(!ordered){
+            throw new IOException("can not seek an unordered scan");
+        }
+        while (fetch() != null && Bytes.compareTo(top.get(0).getRow(), row) < 0){
+            top = null;
+        }
+        return hasNext();
+    }
+
+    @Override
+    public long getMaxResultSize() {
+        return scan.getMaxResultSize();
+    }
+
+    @Override
+    public List<Cell> nextRaw() throws IOException {
+        List<Cell> row = fetch();
+        top = null;
+        return row == null ? new LinkedList<Cell>() : row;
+    }
+
+    /**
+     * the rows are filtered by the scanners of the ranges, they are returned one by one
+     */
+    @Override
+    public ColumnBatch nextBatch(int maxRows) throws IOException {
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        return fetch() != null;
+    }
+
+    @Override
+    public void close() {
+        if(closed) return;
+        closed = true;
+        synchronized (this){
+            for(Future<?> worker : workers){
+                worker.cancel(false);
+            }
+        }
+        top = null;
+    }
+
+    @Override
+    public List<Cell> peek() throws IOException {
+        List<Cell> row = fetch();
+        return row == null ? new LinkedList<Cell>() : row;
+    }
+
+    @Override
+    public boolean isStopRow(byte[] row) throws IOException {
+        List<Cell> next = peek();
+        if(next.isEmpty() || row == null) return true;
+        return Bytes.compareTo(row, next.get(0).getRow()) >= 0;
+    }
+}
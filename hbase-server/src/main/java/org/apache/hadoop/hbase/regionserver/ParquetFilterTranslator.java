@@ -0,0 +1,224 @@
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.ByteArrayComparable;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.filter.RowFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.filter.ValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import parquet.filter2.predicate.FilterApi;
+import parquet.filter2.predicate.FilterPredicate;
+import parquet.filter2.predicate.Operators.BinaryColumn;
+import parquet.io.api.Binary;
+import parquet.schema.MessageType;
+import parquet.schema.PrimitiveType.PrimitiveTypeName;
+import parquet.schema.Type;
+
+import java.util.Arrays;
+
+/**
+ * translate the filter of a scan into what the parquet readers can evaluate
+ *
+ * the translations are necessary conditions: every row the filter accepts passes them,
+ * rows passing them must still go through the filter. Rowkey filters become a row range,
+ * which prunes the files and row groups in unsigned key order. Value filters become
+ * parquet predicates, which prune row groups by their statistics and skip records
+ * while reading. Parquet orders binary statistics with a signed comparison, so only
+ * the equality comparisons are pushed down.
+ */
+public class ParquetFilterTranslator {
+
+    /**
+     * @param filter filter of the scan, may be null
+     * @return inclusive start and exclusive stop row of the rows the filter may accept,
+     *         empty for no bound, start >= stop when no row can be accepted
+     */
+    public static byte[][] getRowRange(Filter filter){
+        byte[][] all = new byte[][]{HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW};
+        if(filter instanceof PrefixFilter){
+            byte[] prefix = ((PrefixFilter) filter).getPrefix();
+            if(prefix == null || prefix.length == 0) return all;
+            return new byte[][]{prefix, prefixStop(prefix)};
+        }
+        if(filter instanceof RowFilter){
+            byte[] value = binaryValue(((RowFilter) filter).getComparator());
+            if(value == null) return all;
+            switch (((RowFilter) filter).getOperator()){
+                case EQUAL:
+                    return new byte[][]{value, successor(value)};
+                case GREATER_OR_EQUAL:
+                    return new byte[][]{value, HConstants.EMPTY_END_ROW};
+                case GREATER:
+                    return new byte[][]{successor(value), HConstants.EMPTY_END_ROW};
+                case LESS:
+                    return value.length == 0 ? all : new byte[][]{HConstants.EMPTY_START_ROW, value};
+                case LESS_OR_EQUAL:
+                    return new byte[][]{HConstants.EMPTY_START_ROW, successor(value)};
+                default:
+                    return all;
+            }
+        }
+        if(filter instanceof FilterList){
+            FilterList list = (FilterList) filter;
+            if(list.getFilters().isEmpty()) return all;
+            boolean and = list.getOperator() == FilterList.Operator.MUST_PASS_ALL;
+            byte[][] range = null;
+            for(Filter child : list.getFilters()){
+                byte[][] childRange = getRowRange(child);
+                if(range == null){
+                    range = childRange;
+                }else if(and){
+                    range = intersect(range, childRange);
+                }else {
+                    range = new byte[][]{
+                            minStart(range[0], childRange[0]), maxStop(range[1], childRange[1])};
+                }
+            }
+            return range;
+        }
+        return all;
+    }
+
+    /**
+     * @return the rows in both ranges, start >= stop when there is none
+     */
+    public static byte[][] intersect(byte[][] range, byte[][] other){
+        return new byte[][]{maxStart(range[0], other[0]), minStop(range[1], other[1])};
+    }
+
+    /**
+     * @return whether the range holds no row
+     */
+    public static boolean isEmpty(byte[][] range){
+        return range[1].length > 0 && Bytes.compareTo(range[0], range[1]) >= 0;
+    }
+
+    /**
+     * @param filter filter of the scan, may be null
+     * @param readSchema columns read from the file, the predicate only uses them
+     * @return predicate every row the filter accepts matches, null if there is none
+     */
+    public static FilterPredicate toPredicate(Filter filter, MessageType readSchema){
+        if(filter instanceof SingleColumnValueFilter){
+            SingleColumnValueFilter scvf = (SingleColumnValueFilter) filter;
+            String columnName = Bytes.toString(scvf.getFamily()) + ":" + Bytes.toString(scvf.getQualifier());
+            BinaryColumn column = binaryColumn(readSchema, columnName);
+            if(column == null) return null;
+            FilterPredicate predicate = compare(column, scvf.getOperator(), scvf.getComparator());
+            if(predicate != null && !scvf.getFilterIfMissing()){
+                //rows without the column are accepted
+                predicate = FilterApi.or(predicate, FilterApi.eq(column, (Binary) null));
+            }
+            return predicate;
+        }
+        if(filter instanceof ValueFilter){
+            //a row is accepted when one of its cells is
+            ValueFilter valueFilter = (ValueFilter) filter;
+            FilterPredicate predicate = null;
+            for(Type type : readSchema.getFields()){
+                String name = type.getName();
+                if(name.equals(HConstants.ROW_KEY) || name.equals(HConstants.TIME_STAMP)) continue;
+                BinaryColumn column = binaryColumn(readSchema, name);
+                if(column == null) return null;
+                FilterPredicate columnPredicate = compare(column, valueFilter.getOperator(), valueFilter.getComparator());
+                if(columnPredicate == null) return null;
+                predicate = predicate == null ? columnPredicate : FilterApi.or(predicate, columnPredicate);
+            }
+            return predicate;
+        }
+        if(filter instanceof FilterList){
+            FilterList list = (FilterList) filter;
+            boolean and = list.getOperator() == FilterList.Operator.MUST_PASS_ALL;
+            FilterPredicate predicate = null;
+            for(Filter child : list.getFilters()){
+                FilterPredicate childPredicate = toPredicate(child, readSchema);
+                if(childPredicate == null){
+                    if(and) continue;//the other conditions still hold
+                    return null;
+                }
+                if(predicate == null){
+                    predicate = childPredicate;
+                }else {
+                    predicate = and ? FilterApi.and(predicate, childPredicate) : FilterApi.or(predicate, childPredicate);
+                }
+            }
+            return predicate;
+        }
+        return null;
+    }
+
+    private static FilterPredicate compare(BinaryColumn column, CompareOp op, ByteArrayComparable comparator){
+        byte[] value = binaryValue(comparator);
+        if(value == null) return null;
+        switch (op){
+            case EQUAL:
+                return FilterApi.eq(column, Binary.fromByteArray(value));
+            case NOT_EQUAL:
+                return FilterApi.notEq(column, Binary.fromByteArray(value));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the column if it is a binary column of the schema
+     */
+    private static BinaryColumn binaryColumn(MessageType schema, String name){
+        //filter2 columns are dot separated paths
+        if(name.indexOf('.') >= 0 || !schema.containsField(name)) return null;
+        Type type = schema.getType(name);
+        if(!type.isPrimitive() || type.asPrimitiveType().getPrimitiveTypeName() != PrimitiveTypeName.BINARY){
+            return null;
+        }
+        return FilterApi.binaryColumn(name);
+    }
+
+    private static byte[] binaryValue(ByteArrayComparable comparator){
+        return comparator instanceof BinaryComparator ? comparator.getValue() : null;
+    }
+
+    /**
+     * @return the first row after all the rows starting with prefix, empty if there is none
+     */
+    static byte[] prefixStop(byte[] prefix){
+        for(int i = prefix.length - 1; i >= 0; --i){
+            if(prefix[i] != (byte) 0xff){
+                byte[] stop = Arrays.copyOf(prefix, i + 1);
+                stop[i]++;
+                return stop;
+            }
+        }
+        return HConstants.EMPTY_END_ROW;
+    }
+
+    /**
+     * @return the first row after row
+     */
+    private static byte[] successor(byte[] row){
+        return Arrays.copyOf(row, row.length + 1);
+    }
+
+    private static byte[] maxStart(byte[] a, byte[] b){
+        return Bytes.compareTo(a, b) >= 0 ? a : b;
+    }
+
+    private static byte[] minStart(byte[] a, byte[] b){
+        return Bytes.compareTo(a, b) <= 0 ? a : b;
+    }
+
+    private static byte[] minStop(byte[] a, byte[] b){
+        if(a.length == 0) return b;
+        if(b.length == 0) return a;
+        return Bytes.compareTo(a, b) <= 0 ? a : b;
+    }
+
+    private static byte[] maxStop(byte[] a, byte[] b){
+        if(a.length == 0 || b.length == 0) return HConstants.EMPTY_END_ROW;
+        return Bytes.compareTo(a, b) >= 0 ? a : b;
+    }
+}
@@ -0,0 +1,209 @@
+package org.apache.hadoop.hbase.regionserver;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import parquet.schema.MessageType;
+import parquet.schema.MessageTypeParser;
+import parquet.schema.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * the columns of a parquet store read by a scan
+ *
+ * taken from the {@link HConstants#SCAN_TABLE_SCHEMA} attribute when the scan has one,
+ * from the family map of the scan otherwise. parquet columns are named "family:qualifier",
+ * the rowkey and timestamp columns are always read
+ */
+public class ParquetProjection {
+
+    /**
+     * read schemas derived from the file schemas, shared by the scans with the same projection
+     */
+    private static final Cache<ProjectionKey, Optional<MessageType>> READ_SCHEMAS =
+            CacheBuilder.newBuilder().maximumSize(1024).build();
+
+    // family -> qualifiers, an empty set to read the whole family
+    private final TreeMap<byte[], NavigableSet<byte[]>> families = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    // qualifiers given without a family, read from any family
+    private final NavigableSet<byte[]> qualifiers = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+
+    // identifies the projection in the read schema cache
+    private String id;
+
+    /**
+     * @param scan
+     * @return the columns the scan reads, null if it reads all of them
+     * @throws DoNotRetryIOException if the schema attribute of the scan can not be parsed
+     */
+    public static ParquetProjection fromScan(Scan scan) throws DoNotRetryIOException{
+        if(scan == null) return null;
+        byte[] attr = scan.getAttribute(HConstants.SCAN_TABLE_SCHEMA);
+        if(attr != null && attr.length > 0){
+            try {
+                return fromSchema(MessageTypeParser.parseMessageType(Bytes.toString(attr)));
+            }catch (IllegalArgumentException e){
+                throw new DoNotRetryIOException("malformed read schema "
+                        + Bytes.toStringBinary(attr) + " in the scan: " + e.getMessage(), e);
+            }
+        }
+        if(!scan.hasFamilies()) return null;
+
+        StringBuilder id = new StringBuilder();
+        ParquetProjection projection = new ParquetProjection();
+        for(Map.Entry<byte[], NavigableSet<byte[]>> entry : scan.getFamilyMap().entrySet()){
+            NavigableSet<byte[]> columns = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+            id.append(Bytes.toStringBinary(entry.getKey())).append('{');
+            if(entry.getValue() != null){
+                for(byte[] qualifier : entry.getValue()){
+                    columns.add(qualifier);
+                }
+                for(byte[] qualifier : columns){
+                    id.append(Bytes.toStringBinary(qualifier)).append(',');
+                }
+            }
+            id.append('}');
+            projection.families.put(entry.getKey(), columns);
+        }
+        projection.id = id.toString();
+        return projection;
+    }
+
+    /**
+     * the projection of a scan the region already checked with {@link #fromScan(Scan)},
+     * for the scanners which can not throw
+     * @throws IllegalArgumentException if the schema attribute of the scan can not be parsed
+     */
+    public static ParquetProjection fromCheckedScan(Scan scan){
+        try {
+            return fromScan(scan);
+        }catch (DoNotRetryIOException e){
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param readSchema schema with the columns to read
+     * @return the projection of the columns of readSchema
+     */
+    public static ParquetProjection fromSchema(MessageType readSchema){
+        ParquetProjection projection = new ParquetProjection();
+        for(Type type : readSchema.getFields()){
+            String columnName = type.getName();
+            if(columnName.equals(HConstants.ROW_KEY) || columnName.equals(HConstants.TIME_STAMP))
+                continue;
+            int sep = columnName.indexOf(':');
+            if(sep < 0){
+                projection.qualifiers.add(Bytes.toBytes(columnName));
+            }else {
+                byte[] family = Bytes.toBytes(columnName.substring(0, sep));
+                NavigableSet<byte[]> columns = projection.families.get(family);
+                if(columns == null){
+                    columns = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+                    projection.families.put(family, columns);
+                }
+                columns.add(Bytes.toBytes(columnName.substring(sep + 1)));
+            }
+        }
+        projection.id = readSchema.toString();
+        return projection;
+    }
+
+    /**
+     * @return whether the cell belongs to a column of the projection
+     */
+    public boolean matches(Cell cell){
+        for(byte[] qualifier : qualifiers){
+            if(CellUtil.matchingQualifier(cell, qualifier)) return true;
+        }
+        for(Map.Entry<byte[], NavigableSet<byte[]>> entry : families.entrySet()){
+            if(CellUtil.matchingFamily(cell, entry.getKey())){
+                if(entry.getValue().isEmpty()) return true;
+                for(byte[] qualifier : entry.getValue()){
+                    if(CellUtil.matchingQualifier(cell, qualifier)) return true;
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the parquet column is in the projection
+     */
+    public boolean matches(String columnName){
+        if(columnName.equals(HConstants.ROW_KEY) || columnName.equals(HConstants.TIME_STAMP)){
+            return true;
+        }
+        int sep = columnName.indexOf(':');
+        if(sep < 0){
+            return qualifiers.contains(Bytes.toBytes(columnName));
+        }
+        byte[] qualifier = Bytes.toBytes(columnName.substring(sep + 1));
+        if(qualifiers.contains(qualifier)){
+            return true;
+        }
+        NavigableSet<byte[]> columns = families.get(Bytes.toBytes(columnName.substring(0, sep)));
+        return columns != null && (columns.isEmpty() || columns.contains(qualifier));
+    }
+
+    /**
+     * the schema to read a parquet file with, only the column chunks of its columns are read
+     * @param fileSchema schema of the file
+     * @return the columns of the file in the projection, null if the file holds none of them
+     */
+    public MessageType project(MessageType fileSchema){
+        ProjectionKey key = new ProjectionKey(fileSchema, id);
+        Optional<MessageType> readSchema = READ_SCHEMAS.getIfPresent(key);
+        if(readSchema == null){
+            List<Type> fields = new ArrayList<>();
+            boolean hasColumn = false;
+            for(Type type : fileSchema.getFields()){
+                if(matches(type.getName())){
+                    fields.add(type);
+                    hasColumn |= !type.getName().equals(HConstants.ROW_KEY)
+                            && !type.getName().equals(HConstants.TIME_STAMP);
+                }
+            }
+            readSchema = hasColumn
+                    ? Optional.of(new MessageType(fileSchema.getName(), fields))
+                    : Optional.<MessageType>absent();
+            READ_SCHEMAS.put(key, readSchema);
+        }
+        return readSchema.orNull();
+    }
+
+    private static class ProjectionKey {
+        private final MessageType fileSchema;
+        private final String projection;
+
+        private ProjectionKey(MessageType fileSchema, String projection){
+            this.fileSchema = fileSchema;
+            this.projection = projection;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof ProjectionKey)) return false;
+            ProjectionKey other = (ProjectionKey) o;
+            return fileSchema.equals(other.fileSchema) && projection.equals(other.projection);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * fileSchema.hashCode() + projection.hashCode();
+        }
+    }
+}
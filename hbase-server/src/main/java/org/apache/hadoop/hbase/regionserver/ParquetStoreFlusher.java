@@ -6,10 +6,12 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.io.pfile.PFileWriterSettings;
 import org.apache.hadoop.hbase.monitoring.MonitoredTask;
 import org.apache.hadoop.hbase.regionserver.compactions.Compactor;
 import org.apache.hadoop.hbase.regionserver.memstore.PMemStoreSnapshot;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
 
 import javax.print.DocFlavor;
 import java.io.IOException;
@@ -46,22 +48,46 @@ public class ParquetStoreFlusher extends StoreFlusher {
     public List<Path> flushSnapshot(PMemStoreSnapshot snapshot, long cacheFlushSeqNum, MonitoredTask status)
             throws IOException {
         if(snapshot.getMutationCount() == 0) return new ArrayList<>();
+        long start = EnvironmentEdgeManager.currentTime();
         ArrayList<Path> result = new ArrayList<Path>();
 
         Map<String, String> meta = new HashMap<>();
         meta.put(HConstants.START_KEY, Bytes.toString(snapshot.getStartKey()));
         meta.put(HConstants.END_KEY, Bytes.toString(snapshot.getEndKey()));
+        meta.put(HConstants.MAX_SEQ_ID, String.valueOf(cacheFlushSeqNum));
 
-        PStoreFile.Writer writer = ((HStore)(store)).createParquetWriter(meta);
-        if(writer == null) return result;
+        HStore hstore = (HStore) store;
 
+        // the first rows choose the columns encoded with a dictionary, and give the size of
+        // the rows once encoded, the heap size of the snapshot is far larger
         RowScanner scanner = snapshot.getScanner();
+        List<Mutation> sample = new ArrayList<>();
+        int sampleRows = PFileWriterSettings.create(conf, store.getFamily()).getSampleRows();
+        while (sample.size() < sampleRows && scanner.hasNext()){
+            sample.add(scanner.nextRow());
+        }
+        PFileWriterSettings settings = hstore.createParquetWriterSettings(
+                PFileWriterSettings.estimateEncodedSize(sample, snapshot.getMutationCount()));
+        settings.sampleDictionaryColumns(sample);
+
+        PStoreFile.Writer writer = hstore.createParquetWriter(meta, settings);
+        if(writer == null) return result;
+        if(LOG.isDebugEnabled()){
+            LOG.debug("Flushing " + snapshot.getMutationCount() + " rows of " + store + " with " + settings);
+        }
+
+        for(Mutation m : sample){
+            writer.append(m);
+        }
         while (scanner.hasNext()){
             Mutation m = scanner.nextRow();
             writer.append(m);
         }
         writer.close();
         result.add(writer.getFilePath());
+        MetricsPStore.getInstance().updateFlush(EnvironmentEdgeManager.currentTime() - start,
+                writer.getLength(),
+                snapshot.getMutationCount());
         return result;
     }
 
@@ -42,6 +42,7 @@ import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.RegionReplicaUtil;
 import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.api.ColumnarBlock;
 import org.apache.hadoop.hbase.client.RowMutations;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.coordination.CloseRegionCoordination;
@@ -147,10 +148,13 @@ import com.google.protobuf.Message;
 import com.google.protobuf.RpcController;
 import com.google.protobuf.ServiceException;
 import com.google.protobuf.TextFormat;
+import org.apache.hadoop.hbase.io.pfile.BatchRowMapper;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
 import parquet.example.data.Group;
 import parquet.example.data.GroupFactory;
 import parquet.example.data.simple.SimpleGroup;
 import parquet.example.data.simple.SimpleGroupFactory;
+import parquet.hadoop.ColumnBatch;
 import parquet.schema.GroupType;
 import parquet.schema.MessageTypeParser;
 import parquet.schema.Type;
@@ -170,6 +174,23 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     public static final String REGION_SERVER_RPC_SCHEDULER_FACTORY_CLASS =
             "hbase.region.server.rpc.scheduler.factory.class";
 
+    /**
+     * Threads reading the next batch of the parquet scanners while the client handles
+     * the last one, 0 to read the batches on the calls only. Only the scans setting
+     * their caching read ahead, a batch of that many rows.
+     */
+    public static final String PSCAN_AHEAD_THREADS_KEY =
+            "hbase.regionserver.parquet.scan.ahead.threads";
+    public static final int DEFAULT_PSCAN_AHEAD_THREADS = 0;
+
+    /**
+     * Batches read ahead and not sent yet, over it the scanners read on the calls.
+     * Each batch is bounded by the max result size of its scan.
+     */
+    public static final String PSCAN_AHEAD_MAX_BATCHES_KEY =
+            "hbase.regionserver.parquet.scan.ahead.max.batches";
+    public static final int DEFAULT_PSCAN_AHEAD_MAX_BATCHES = 64;
+
     // Request counter. (Includes requests that are not serviced by regions.)
     final Counter requestCount = new Counter();
     // Server to handle client requests.
@@ -189,6 +210,9 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
     private final ConcurrentHashMap<String, PRegionScannerHolder> pscanners =
             new ConcurrentHashMap<>();
 
+    // reads the next batch of the parquet scanners, null if they do not scan ahead
+    private final PScanAhead pscanAhead;
+
     /**
      * The lease timeout period for client scanners (milliseconds).
      */
@@ -248,6 +272,36 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
         }
     }
 
+    /**
+     * Lease of a parquet scanner. If the lease times out, the batch read ahead
+     * is dropped and the scanner is closed
+     */
+    private class PScannerListener implements LeaseListener {
+        private final String scannerName;
+
+        PScannerListener(final String n) {
+            this.scannerName = n;
+        }
+
+        @Override
+        public void leaseExpired() {
+            PRegionScannerHolder rsh = pscanners.remove(this.scannerName);
+            if (rsh != null) {
+                LOG.info("Scanner " + this.scannerName + " lease expired on region "
+                        + rsh.s.getRegionInfo().getRegionNameAsString());
+                try {
+                    closePScanner(rsh);
+                } catch (IOException e) {
+                    LOG.error("Closing scanner for "
+                            + rsh.s.getRegionInfo().getRegionNameAsString(), e);
+                }
+            } else {
+                LOG.warn("Scanner " + this.scannerName + " lease expired, but no related" +
+                        " scanner found, hence no chance to close that related scanner!");
+            }
+        }
+    }
+
     private static ResultOrException getResultOrException(
             final ClientProtos.Result r, final int index, final ClientProtos.RegionLoadStats stats) {
         return getResultOrException(ResponseConverter.buildActionResult(r, stats), index);
@@ -740,6 +794,13 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
                 LOG.warn("Closing scanner " + e.getKey(), ioe);
             }
         }
+        for (Map.Entry<String, PRegionScannerHolder> e : pscanners.entrySet()) {
+            try {
+                closePScanner(e.getValue());
+            } catch (IOException ioe) {
+                LOG.warn("Closing scanner " + e.getKey(), ioe);
+            }
+        }
     }
 
     public RSRpcServices(HRegionServer rs) throws IOException {
@@ -793,6 +854,9 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
         maxScannerResultSize = rs.conf.getLong(
                 HConstants.HBASE_CLIENT_SCANNER_MAX_RESULT_SIZE_KEY,
                 HConstants.DEFAULT_HBASE_CLIENT_SCANNER_MAX_RESULT_SIZE);
+        pscanAhead = new PScanAhead(
+                rs.conf.getInt(PSCAN_AHEAD_THREADS_KEY, DEFAULT_PSCAN_AHEAD_THREADS),
+                rs.conf.getInt(PSCAN_AHEAD_MAX_BATCHES_KEY, DEFAULT_PSCAN_AHEAD_MAX_BATCHES), name);
 
         // Set our address, however we need the final port that was given to rpcServer
         isa = new InetSocketAddress(initialIsa.getHostName(), rpcServer.getListenerAddress().getPort());
@@ -869,6 +933,7 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
 
     void stop() {
         closeAllScanners();
+        pscanAhead.shutdown();
         rpcServer.stop();
     }
 
@@ -2340,6 +2405,8 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
 
             boolean moreResults = true;
             boolean closeScanner = false;
+            // send the rows as a columnar block, see ColumnarBlock
+            boolean columnar = false;
             ScanResponse.Builder builder = ScanResponse.newBuilder();
 
             if (request.hasCloseScanner()) {
@@ -2362,10 +2429,11 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
                 rsh = pscanners.get(scannerName);
                 if (rsh == null) {
                     LOG.info("Client tried to access missing scanner " + scannerName);
-                    //throw new UnknownScannerException(
-                      //      "Name: " + scannerName + ", already closed?");
+                    throw new UnknownScannerException(
+                            "Name: " + scannerName + ", already closed?");
                 }
                 scanner = rsh.s;
+                columnar = rsh.columnar;
                 HRegionInfo hri = scanner.getRegionInfo();
                 region = regionServer.getRegion(hri.getRegionName());
                 if (region != rsh.r) { // Yes, should be the same instance
@@ -2399,7 +2467,9 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
                 if (region.getCoprocessorHost() != null) {
                     //scanner = region.getCoprocessorHost().postScannerOpen(scan, scanner);
                 }
-                scannerId = addPScanner(scanner, region);
+                byte[] columnarAttribute = scan.getAttribute(HConstants.SCAN_COLUMNAR);
+                columnar = columnarAttribute != null && Bytes.toBoolean(columnarAttribute);
+                scannerId = addPScanner(scanner, region, columnar, scan.getCaching());
                 scannerName = String.valueOf(scannerId);
                 ttl = this.scannerLeaseTimeoutPeriod;
             }
@@ -2429,79 +2499,21 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
                 try {
                     // Remove lease while its being processed in server; protects against case
                     // where processing of request takes > lease expiration time.
-                    //todo :
-                    //lease = regionServer.leases.removeLease(scannerName);
+                    lease = regionServer.leases.removeLease(scannerName);
+                    if (rsh == null) {
+                        rsh = pscanners.get(scannerName);
+                    }
 
-                    List<Result> results = new ArrayList<Result>(rows);
-                    long currentScanResultSize = 0;
-                    long totalCellSize = 0;
+                    // the batch read ahead after the last call if any, the rows asked
+                    // for are a hint, the client takes the whole batch
+                    List<Result> results = pscanAhead.next(rsh.slot, rows, batchReader(rsh), closeScanner);
 
-                    boolean done = false;
-                    // Call coprocessor. Get region info from scanner.
-      /*              if (region != null && region.getCoprocessorHost() != null) {
-                        Boolean bypass = region.getCoprocessorHost().preScannerNext(
-                                scanner, results, rows);
-                        if (!results.isEmpty()) {
-                            for (Result r : results) {
-                                for (Cell cell : r.rawCells()) {
-                                    currentScanResultSize += CellUtil.estimatedHeapSizeOf(cell);
-                                    totalCellSize += CellUtil.estimatedSerializedSizeOf(cell);
-                                }
-                            }
-                        }
-                        if (bypass != null && bypass.booleanValue()) {
-                            done = true;
-                        }
+                    //todo : coprocessor postNext hook
+                    /*
+                    if (region != null && region.getCoprocessorHost() != null) {
+                        region.getCoprocessorHost().postScannerNext(scanner, results, rows, true);
                     }*/
 
-                    if (!done) {
-                        long maxResultSize = scanner.getMaxResultSize();
-                        if (maxResultSize <= 0) {
-                            maxResultSize = maxScannerResultSize;
-                        }
-                        List<Cell> values = new ArrayList<Cell>();
-                        region.startRegionOperation(Operation.SCAN);
-                        try {
-                            int i = 0;
-                            synchronized (scanner) {
-                                boolean stale = (region.getRegionInfo().getReplicaId() != 0);
-                                while (i < rows) {//retrive one row per time
-                                    // Stop collecting results if maxScannerResultSize is set and we have exceeded it
-                                    if ((maxScannerResultSize < Long.MAX_VALUE) &&
-                                            (currentScanResultSize >= maxResultSize)) {
-                                        break;
-                                    }
-                                    // Collect values to be returned here
-                                    //boolean moreRows = scanner.nextRaw(values);
-
-                                    boolean moreRows = scanner.hasNext();
-                                    if(! moreRows) break;
-                                    values = scanner.nextRaw();
-
-                                    if (values != null && !values.isEmpty()) {
-                                        for (Cell cell : values) {
-                                            currentScanResultSize += CellUtil.estimatedHeapSizeOf(cell);
-                                            totalCellSize += CellUtil.estimatedSerializedSizeOf(cell);
-                                        }
-                                        results.add(Result.create(values, null, stale));
-                                        i++;
-                                    }
-                                    values.clear();
-                                }//end while(i< rows)
-                            }
-                            region.readRequestsCount.add(i);
-                            // todo region.getMetrics().updateScanNext(totalCellSize);
-                        } finally {
-                            region.closeRegionOperation();
-                        }
-
-                        //todo : coprocessor postNext hook
-                      /*
-                        if (region != null && region.getCoprocessorHost() != null) {
-                            region.getCoprocessorHost().postScannerNext(scanner, results, rows, true);
-                        }*/
-                    }
-
                    TODO :
                   // If the scanner's filter - if any - is done with the scan
                     // and wants to tell the client to stop the scan. This is done by passing
@@ -2518,7 +2530,7 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
                 } finally {
                     // We're done. On way out re-add the above removed lease.
                     // Adding resets expiration time on lease.
-                    if (scanners.containsKey(scannerName)) {
+                    if (pscanners.containsKey(scannerName)) {
                         if (lease != null) regionServer.leases.addLease(lease);
                         ttl = this.scannerLeaseTimeoutPeriod;
                     }
@@ -2537,8 +2549,12 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
                 rsh = pscanners.remove(scannerName);//TODO: 移除存储的scanner
                 if (rsh != null) {
                     scanner = rsh.s;
-                    scanner.close();
-                    //todo regionServer.leases.cancelLease(scannerName);
+                    closePScanner(rsh);
+                    try {
+                        regionServer.leases.cancelLease(scannerName);
+                    } catch (LeaseException le) {
+                        // the lease expired meanwhile, ignore
+                    }
                     if (region != null && region.getCoprocessorHost() != null) {
                         //region.getCoprocessorHost().postScannerClose(scanner);
                     }
@@ -2568,6 +2584,16 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
                         LOG.warn("Getting exception closing " + scannerName, e);
                     }
                 }
+                PRegionScannerHolder prsh = pscanners.remove(scannerName);
+                if (prsh != null) {
+                    try {
+                        LOG.warn(scannerName + " encountered " + ie.getMessage() + ", closing ...");
+                        closePScanner(prsh);
+                        regionServer.leases.cancelLease(scannerName);
+                    } catch (IOException e) {
+                        LOG.warn("Getting exception closing " + scannerName, e);
+                    }
+                }
             }
             throw new ServiceException(ie);
         }
@@ -2582,27 +2608,161 @@ public class RSRpcServices implements HBaseRPCErrorHandler,
         private PRegionScanner s;
         private long nextCallSeq = 0L;
         private HRegion r;
+        private final boolean columnar;
+        // the next batch read in the background
+        private final PScanAhead.Slot slot;
 
-        public PRegionScannerHolder(PRegionScanner s, HRegion r) {
+        public PRegionScannerHolder(PRegionScanner s, HRegion r, boolean columnar, int caching) {
             this.s = s;
             this.r = r;
+            this.columnar = columnar;
+            this.slot = new PScanAhead.Slot(s, caching);
         }
     }
 
     long addPScanner(PRegionScanner s, HRegion r) throws LeaseStillHeldException {
+        return addPScanner(s, r, false, 0);
+    }
+
+    /**
+     * @param columnar whether the rows are sent as columnar blocks
+     * @param caching rows of the batches read ahead, 0 to read on the calls only
+     */
+    long addPScanner(PRegionScanner s, HRegion r, boolean columnar, int caching)
+            throws LeaseStillHeldException {
         long scannerId = this.scannerIdGen.incrementAndGet();
         String scannerName = String.valueOf(scannerId);
 
         PRegionScannerHolder existing =
-                pscanners.putIfAbsent(scannerName, new PRegionScannerHolder(s, r));
+                pscanners.putIfAbsent(scannerName, new PRegionScannerHolder(s, r, columnar, caching));
         assert existing == null : "scannerId must be unique within regionserver's whole lifecycle!";
 
 
-        //todo:
-       /* regionServer.leases.createLease(scannerName, this.scannerLeaseTimeoutPeriod,
-                new ScannerListener(scannerName));*/
+        regionServer.leases.createLease(scannerName, this.scannerLeaseTimeoutPeriod,
+                new PScannerListener(scannerName));
         return scannerId;
     }
 
+    /**
+     * read the rows of the next response of a parquet scanner, up to the max result size
+     * @param rsh the scanner
+     * @param rows max number of rows
+     * @return the rows, or a single columnar block, empty if the scan is done or the scanner closed
+     */
+    private List<Result> nextPRows(PRegionScannerHolder rsh, int rows) throws IOException {
+        PRegionScanner scanner = rsh.s;
+        HRegion region = rsh.r;
+        List<Result> results = new ArrayList<Result>(rows);
+        long currentScanResultSize = 0;
+        long totalCellSize = 0;
+
+        long maxResultSize = scanner.getMaxResultSize();
+        if (maxResultSize <= 0) {
+            maxResultSize = maxScannerResultSize;
+        }
+        List<Cell> values = new ArrayList<Cell>();
+        boolean batchRead = regionServer.getConfiguration().getInt(
+                PFileReader.SCAN_BATCH_SIZE_KEY, PFileReader.DEFAULT_SCAN_BATCH_SIZE) > 0;
+        BatchRowMapper mapper = null;
+        ColumnarBlock.Builder block = rsh.columnar ? new ColumnarBlock.Builder() : null;
+        region.startRegionOperation(Operation.SCAN);
+        try {
+            int i = 0;
+            synchronized (scanner) {
+                boolean stale = (region.getRegionInfo().getReplicaId() != 0);
+                while (i < rows) {//retrive one row per time
+                    // the scanner was closed while reading ahead
+                    if (rsh.slot.isClosed()) {
+                        break;
+                    }
+                    // Stop collecting results if maxScannerResultSize is set and we have exceeded it
+                    if ((maxScannerResultSize < Long.MAX_VALUE) &&
+                            (currentScanResultSize >= maxResultSize)) {
+                        break;
+                    }
+                    // Collect values to be returned here
+                    //boolean moreRows = scanner.nextRaw(values);
+
+                    boolean moreRows = scanner.hasNext();
+                    if(! moreRows) break;
+
+                    if(batchRead){
+                        //take the rows decoded in column batch straight from the vectors
+                        ColumnBatch batch = scanner.nextBatch(rows - i);
+                        if(batch != null && !batch.isEmpty()){
+                            if(mapper == null || !mapper.accept(batch)){
+                                mapper = new BatchRowMapper(batch.getSchema());
+                            }
+                            if(block != null){
+                                for(int r = batch.getFrom(); r < batch.getTo(); ++r){
+                                    mapper.appendRow(block, batch, r);
+                                    i++;
+                                }
+                                currentScanResultSize = block.getSize();
+                                continue;
+                            }
+                            for(int r = batch.getFrom(); r < batch.getTo(); ++r){
+                                List<Cell> row = mapper.toCells(batch, r);
+                                for (Cell cell : row) {
+                                    currentScanResultSize += CellUtil.estimatedHeapSizeOf(cell);
+                                    totalCellSize += CellUtil.estimatedSerializedSizeOf(cell);
+                                }
+                                results.add(Result.create(row, null, stale));
+                                i++;
+                            }
+                            continue;
+                        }
+                    }
+                    values = scanner.nextRaw();
+
+                    if (values != null && !values.isEmpty()) {
+                        if(block != null){
+                            block.add(values);
+                            currentScanResultSize = block.getSize();
+                            i++;
+                            values.clear();
+                            continue;
+                        }
+                        for (Cell cell : values) {
+                            currentScanResultSize += CellUtil.estimatedHeapSizeOf(cell);
+                            totalCellSize += CellUtil.estimatedSerializedSizeOf(cell);
+                        }
+                        results.add(Result.create(values, null, stale));
+                        i++;
+                    }
+                    values.clear();
+                }//end while(i< rows)
+                if(block != null && block.getRowCount() > 0){
+                    //one cell carrying the rows of the response
+                    results.add(Result.create(new Cell[]{block.toCell()}, null, stale));
+                }
+            }
+            region.readRequestsCount.add(i);
+            // todo region.getMetrics().updateScanNext(totalCellSize);
+        } finally {
+            region.closeRegionOperation();
+        }
+        return results;
+    }
+
+    /**
+     * reads the batches of the scanner, on the calls or ahead of them
+     */
+    private PScanAhead.BatchReader batchReader(final PRegionScannerHolder rsh) {
+        return new PScanAhead.BatchReader() {
+            @Override
+            public List<Result> read(int rows) throws IOException {
+                return nextPRows(rsh, rows);
+            }
+        };
+    }
+
+    /**
+     * drop the batch read ahead and close the scanner, waits for a read in progress
+     */
+    private void closePScanner(PRegionScannerHolder rsh) throws IOException {
+        pscanAhead.close(rsh.slot);
+    }
+
 
 }
@@ -1,6 +1,7 @@
 package org.apache.hadoop.hbase.regionserver;
 
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.util.ByteRange;
 
 import java.io.Closeable;
 import java.util.List;
@@ -20,6 +21,13 @@ public interface RecordScanner extends Closeable{
      */
     List<Cell> peek();
 
+    /**
+     * the rowkey of the first record, without building its cells. the range is
+     * owned by the scanner and only valid until the scanner moves on
+     * @return the rowkey, null if there is no record left
+     */
+    ByteRange peekRowKey();
+
     /**
      *
      * @return weather there has more record
@@ -1,13 +1,14 @@
 package org.apache.hadoop.hbase.regionserver;
 
-import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.util.ByteRange;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import java.util.Comparator;
-import java.util.List;
 
 /**
  * Created by wangxiaoyi on 15/6/19.
+ *
+ * order the scanners by the rowkey of their first record
  */
 public class RecordScannerComparator implements Comparator<RecordScanner> {
 
@@ -27,21 +28,29 @@ public class RecordScannerComparator implements Comparator<RecordScanner> {
             return  -1;
         }
 
-        List<Cell> cells1 = o1.peek();
-        List<Cell> cells2 = o2.peek();
+        ByteRange r1 = o1.peekRowKey();
+        ByteRange r2 = o2.peekRowKey();
 
-
-        byte[] r1 = null;
-        byte[] r2 = null;
-
-        if(cells1 != null){
-            r1 = cells1.get(0).getRow();
+        //the scanners without record left go last
+        if(r1 == null || r2 == null){
+            return r1 == null ? (r2 == null ? 0 : 1) : -1;
         }
 
-        if(cells2 != null){
-            r2 = cells2.get(0).getRow();
-        }
+        return compareRows(r1, r2);
+    }
+
+    /**
+     * compare two rowkeys without copying them
+     */
+    public static int compareRows(ByteRange r1, ByteRange r2){
+        return Bytes.compareTo(r1.getBytes(), r1.getOffset(), r1.getLength(),
+                r2.getBytes(), r2.getOffset(), r2.getLength());
+    }
 
-        return Bytes.compareTo(r1, r2);
+    /**
+     * compare a rowkey to a row without copying it
+     */
+    public static int compareRows(ByteRange r1, byte[] r2){
+        return Bytes.compareTo(r1.getBytes(), r1.getOffset(), r1.getLength(), r2, 0, r2.length);
     }
 }
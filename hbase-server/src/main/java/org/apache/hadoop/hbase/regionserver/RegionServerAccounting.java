@@ -22,7 +22,9 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.regionserver.memstore.OffheapChunkPool;
 import org.apache.hadoop.hbase.util.Bytes;
 
 /**
@@ -33,12 +35,31 @@ import org.apache.hadoop.hbase.util.Bytes;
 public class RegionServerAccounting {
 
   private final AtomicLong atomicGlobalMemstoreSize = new AtomicLong(0);
+
+  // The part of the global memstore size which is kept out of the heap.
+  private final AtomicLong atomicGlobalOffheapMemstoreSize = new AtomicLong(0);
   
   // Store the edits size during replaying WAL. Use this to roll back the  
   // global memstore size once a region opening failed.
   private final ConcurrentMap<byte[], AtomicLong> replayEditsPerRegion = 
     new ConcurrentSkipListMap<byte[], AtomicLong>(Bytes.BYTES_COMPARATOR);
 
+  private final Configuration conf;
+
+  // The direct chunks of the off heap parquet memstores, created on first use.
+  private OffheapChunkPool offheapChunkPool;
+
+  public RegionServerAccounting() {
+    this(new Configuration(false));
+  }
+
+  /**
+   * @param conf the configuration of the RegionServer
+   */
+  public RegionServerAccounting(Configuration conf) {
+    this.conf = conf;
+  }
+
   /**
    * @return the global Memstore size in the RegionServer
    */
@@ -54,6 +75,40 @@ public class RegionServerAccounting {
   public long addAndGetGlobalMemstoreSize(long memStoreSize) {
     return atomicGlobalMemstoreSize.addAndGet(memStoreSize);
   }
+
+  /**
+   * @return the part of the global Memstore size kept off heap in the RegionServer
+   */
+  public long getGlobalOffheapMemstoreSize() {
+    return atomicGlobalOffheapMemstoreSize.get();
+  }
+
+  /**
+   * @param offheapSize the off heap Memstore size will be added to
+   *        the global off heap Memstore size, it is also part of the global Memstore size
+   * @return the global off heap Memstore size in the RegionServer
+   */
+  public long addAndGetGlobalOffheapMemstoreSize(long offheapSize) {
+    return atomicGlobalOffheapMemstoreSize.addAndGet(offheapSize);
+  }
+
+  /**
+   * @return the pool of the direct chunks of the off heap parquet Memstores
+   *         in the RegionServer
+   */
+  public synchronized OffheapChunkPool getOffheapChunkPool() {
+    if (offheapChunkPool == null) {
+      offheapChunkPool = OffheapChunkPool.create(conf);
+    }
+    return offheapChunkPool;
+  }
+
+  /**
+   * @return the heap used by the Memstores in the RegionServer
+   */
+  public long getGlobalMemstoreHeapSize() {
+    return atomicGlobalMemstoreSize.get() - atomicGlobalOffheapMemstoreSize.get();
+  }
   
   /***
    * Add memStoreSize to replayEditsPerRegion.
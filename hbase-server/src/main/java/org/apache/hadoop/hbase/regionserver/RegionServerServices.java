@@ -23,6 +23,7 @@ import com.google.protobuf.Service;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.hadoop.hbase.classification.InterfaceAudience;
 import org.apache.hadoop.fs.FileSystem;
@@ -139,4 +140,10 @@ public interface RegionServerServices
    * @return heap memory manager instance
    */
   HeapMemoryManager getHeapMemoryManager();
+
+  /**
+   * @return the pool scanning the ranges of the parallel parquet scans, null to scan
+   * the regions on the handlers
+   */
+  ThreadPoolExecutor getParallelPScanPool();
 }
@@ -0,0 +1,105 @@
+package org.apache.hadoop.hbase.regionserver;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import parquet.column.statistics.Statistics;
+import parquet.hadoop.metadata.ColumnChunkMetaData;
+
+/**
+ * statistics of a row group of a parquet file, read from the footer,
+ * for a column of the table
+ *
+ * min and max are only known for numeric and boolean columns, binary values are
+ * compared as signed bytes by parquet and not in the order of the cells.
+ */
+public class RowGroupStatistics {
+
+    private final byte[] firstKey;
+    private final byte[] lastKey;
+    private final long rowCount;
+    // chunk of the column in the row group, null if the file does not have the column
+    private final ColumnChunkMetaData column;
+
+    public RowGroupStatistics(byte[] firstKey, byte[] lastKey, long rowCount, ColumnChunkMetaData column){
+        this.firstKey = firstKey;
+        this.lastKey = lastKey;
+        this.rowCount = rowCount;
+        this.column = column;
+    }
+
+    public byte[] getFirstKey(){
+        return firstKey;
+    }
+
+    public byte[] getLastKey(){
+        return lastKey;
+    }
+
+    public long getRowCount(){
+        return rowCount;
+    }
+
+    /**
+     * @return number of rows with a value in the column, -1 if not known
+     */
+    public long getValueCount(){
+        if(column == null){
+            return 0;
+        }
+        Statistics stats = column.getStatistics();
+        if(stats == null){
+            return -1;
+        }
+        return column.getValueCount() - stats.getNumNulls();
+    }
+
+    /**
+     * @return whether the min and max of the column are known, they are null when it has no value
+     */
+    public boolean hasMinMax(){
+        if(getValueCount() == 0){
+            return true;
+        }
+        if(getValueCount() < 0 || column.getStatistics().isEmpty()){
+            return false;
+        }
+        switch (column.getType()){
+            case BOOLEAN:
+            case INT32:
+            case INT64:
+            case FLOAT:
+            case DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return min value of the column encoded with {@link Bytes}, like the values of the cells
+     */
+    public byte[] getMin(){
+        return hasMinMax() && getValueCount() > 0 ? toBytes(column.getStatistics().genericGetMin()) : null;
+    }
+
+    /**
+     * @return max value of the column encoded with {@link Bytes}, like the values of the cells
+     */
+    public byte[] getMax(){
+        return hasMinMax() && getValueCount() > 0 ? toBytes(column.getStatistics().genericGetMax()) : null;
+    }
+
+    private static byte[] toBytes(Object value){
+        if(value instanceof Boolean){
+            return Bytes.toBytes((Boolean) value);
+        }else if(value instanceof Integer){
+            return Bytes.toBytes((Integer) value);
+        }else if(value instanceof Long){
+            return Bytes.toBytes((Long) value);
+        }else if(value instanceof Float){
+            return Bytes.toBytes((Float) value);
+        }else if(value instanceof Double){
+            return Bytes.toBytes((Double) value);
+        }
+        return null;
+    }
+}
@@ -3,9 +3,11 @@ package org.apache.hadoop.hbase.regionserver;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hbase.Cell;
-import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ByteRange;
+import parquet.hadoop.ColumnBatch;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.PriorityQueue;
@@ -34,7 +36,7 @@ public class ScannerHeap {
         if( !scanners.isEmpty()){
             this.heap = new PriorityQueue<>(scanners.size(), comparator);
             for(RecordScanner scanner : scanners){
-                if(scanner.peek() != null){
+                if(scanner.peekRowKey() != null){
                     heap.add(scanner);
                 }else {
                     scanner.close();
@@ -51,7 +53,7 @@ public class ScannerHeap {
         if( !scanners.isEmpty()){
             this.heap = new PriorityQueue<>(scanners.size(), comparator);
             for(RecordScanner scanner : scanners){
-                if(!scanner.peek().isEmpty()){
+                if(scanner.peekRowKey() != null){
                     heap.add(scanner);
                 } else {
                     scanner.close();
@@ -88,6 +90,14 @@ public class ScannerHeap {
     }
 
 
+    /**
+     * @return the rowkey of the first record, null if there is none, see {@link RecordScanner#peekRowKey()}
+     */
+    public ByteRange peekRowKey() {
+        return curr == null ? null : curr.peekRowKey();
+    }
+
+
     /**
      * @return weather there has more record
      */
@@ -106,24 +116,58 @@ public class ScannerHeap {
         List<Cell> result = new LinkedList<>();
         if(curr != null){
             result = curr.next();
-            if(! curr.hasNext()){
-                try {
-                    curr.close();
-                }catch (IOException ioe){
-                    LOG.error(ioe.getMessage());
-                }
-                curr = heap.poll();
-            }else {
-                RecordScanner topScanner = heap.peek();
-                List<Cell> nextResult = curr.peek();//下一组数据同 堆顶元素进行比较
+            updateCurrent();
+        }
+        return result;
+    }
 
-                if(topScanner != null && Bytes.compareTo(nextResult.get(0).getRow(), topScanner.peek().get(0).getRow()) >= 0){
-                    heap.add(curr);
-                    curr = heap.poll();
-                }
+
+    /**
+     * return the next rows of the current scanner as a column batch, as long as
+     * they sort before the top of the heap
+     * @param maxRows max rows to return
+     * @param stopRow exclusive row to stop at, null for no limit
+     * @return the batch, null or empty if the current scanner can not return one
+     */
+    public ColumnBatch nextBatch(int maxRows, byte[] stopRow) throws IOException{
+        if(!(curr instanceof BatchRecordScanner)) return null;
+
+        byte[] limit = stopRow;
+        RecordScanner topScanner = heap == null ? null : heap.peek();
+        if(topScanner != null){
+            ByteRange topRow = topScanner.peekRowKey();
+            if(topRow != null && (limit == null || RecordScannerComparator.compareRows(topRow, limit) < 0)){
+                limit = topRow.deepCopyToNewArray();
+            }
+        }
+        ColumnBatch batch = ((BatchRecordScanner) curr).nextBatch(maxRows, limit);
+        if(batch != null && !batch.isEmpty()){
+            updateCurrent();
+        }
+        return batch;
+    }
+
+
+    /**
+     * keep the scanner with the smallest row as the current one
+     * after the current one has moved on
+     */
+    private void updateCurrent(){
+        if(! curr.hasNext()){
+            try {
+                curr.close();
+            }catch (IOException ioe){
+                LOG.error(ioe.getMessage());
+            }
+            curr = heap == null ? null : heap.poll();
+        }else {
+            RecordScanner topScanner = heap == null ? null : heap.peek();
+            //下一组数据同 堆顶元素进行比较
+            if(topScanner != null && comparator.compare(curr, topScanner) >= 0){
+                heap.add(curr);
+                curr = heap.poll();
             }
         }
-        return result;
     }
 
 
@@ -146,9 +190,45 @@ public class ScannerHeap {
         }
     }
 
-    //todo: seek with rowkey
+    /**
+     * seek every scanner to the first row not smaller than row and rebuild the heap,
+     * scanners never move backwards
+     *
+     * @param row
+     * @return whether there is a row left
+     */
     public boolean seek(byte [] row){
-        return false;
+        List<RecordScanner> scanners = new ArrayList<>();
+        if(curr != null){
+            scanners.add(curr);
+        }
+        if(heap != null){
+            scanners.addAll(heap);
+            heap.clear();
+        }
+        curr = null;
+
+        for(RecordScanner scanner : scanners){
+            ByteRange top = scanner.peekRowKey();
+            if(top != null && RecordScannerComparator.compareRows(top, row) < 0){
+                scanner.seek(row);
+                top = scanner.peekRowKey();
+            }
+            if(scanner.hasNext() && top != null){
+                if(heap == null){
+                    heap = new PriorityQueue<>(scanners.size(), comparator);
+                }
+                heap.add(scanner);
+            }else {
+                try {
+                    scanner.close();
+                }catch (IOException ioe){
+                    LOG.error(ioe.getMessage());
+                }
+            }
+        }
+        curr = heap == null ? null : heap.poll();
+        return curr != null;
     }
 
 }
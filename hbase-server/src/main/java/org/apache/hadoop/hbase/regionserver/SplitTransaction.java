@@ -713,6 +713,15 @@ public class SplitTransaction {
         futures.add(threadPool.submit(sfs));
       }
     }
+    // Split each parquet file, the closed stores still list them.
+    for (Store store : this.parent.getStores().values()) {
+      if (store instanceof HStore) {
+        for (PStoreFile psf : ((HStore) store).getPStoreFiles()) {
+          PStoreFileSplitter psfs = new PStoreFileSplitter(store.getFamily().getName(), psf);
+          futures.add(threadPool.submit(psfs));
+        }
+      }
+    }
     // Shutdown the pool
     threadPool.shutdown();
 
@@ -768,6 +777,16 @@ public class SplitTransaction {
     return new Pair<Path,Path>(path_a, path_b);
   }
 
+  private Pair<Path, Path> splitPStoreFile(final byte[] family, final PStoreFile psf)
+      throws IOException {
+    HRegionFileSystem fs = this.parent.getRegionFileSystem();
+    String familyName = Bytes.toString(family);
+
+    Path path_a = fs.splitPStoreFile(this.hri_a, familyName, psf, this.splitrow, false);
+    Path path_b = fs.splitPStoreFile(this.hri_b, familyName, psf, this.splitrow, true);
+    return new Pair<Path,Path>(path_a, path_b);
+  }
+
   /**
    * Utility class used to do the file splitting / reference writing
    * in parallel instead of sequentially.
@@ -791,6 +810,23 @@ public class SplitTransaction {
     }
   }
 
+  /**
+   * Writes the references to the halves of a parquet file, like {@link StoreFileSplitter}.
+   */
+  class PStoreFileSplitter implements Callable<Pair<Path,Path>> {
+    private final byte[] family;
+    private final PStoreFile psf;
+
+    public PStoreFileSplitter(final byte[] family, final PStoreFile psf) {
+      this.psf = psf;
+      this.family = family;
+    }
+
+    public Pair<Path,Path> call() throws IOException {
+      return splitPStoreFile(family, psf);
+    }
+  }
+
   /**
    * @param server Hosting server instance (May be null when testing).
    * @param services
@@ -53,6 +53,7 @@ import org.apache.hadoop.hbase.io.hfile.HFileContext;
 import org.apache.hadoop.hbase.io.hfile.HFileScanner;
 import org.apache.hadoop.hbase.io.hfile.HFileWriterV2;
 import org.apache.hadoop.hbase.io.pfile.PFile;
+import org.apache.hadoop.hbase.io.pfile.MutationWriteSupport;
 import org.apache.hadoop.hbase.io.pfile.PFileWriter;
 import org.apache.hadoop.hbase.regionserver.compactions.Compactor;
 import org.apache.hadoop.hbase.util.BloomFilter;
@@ -66,9 +67,6 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Ordering;
-import parquet.example.data.GroupFactory;
-import parquet.example.data.simple.SimpleGroupFactory;
-import parquet.hadoop.example.GroupWriteSupport;
 import parquet.schema.MessageType;
 
 /**
@@ -1619,25 +1617,20 @@ public class StoreFile {
 
         private MessageType schema ;
 
-        private GroupFactory gf;
-
         private Path filePath;
 
 
         public WriterV2(Configuration conf, FileSystem fs, Path file, MessageType schema){
             this.filePath = file;
             this.schema = schema;
-            gf = new SimpleGroupFactory(schema);
-            GroupWriteSupport.setSchema(schema, conf);
-            writer = new PFileWriter(conf, schema, new GroupWriteSupport(null))
+            writer = new PFileWriter(conf, schema, new MutationWriteSupport(schema, null))
                     .addPath(file)
                     .build();
         }
 
 
         public void append(Mutation m){
-
-            writer.append(m.asGroup(gf));
+            writer.append(m);
         }
 
 
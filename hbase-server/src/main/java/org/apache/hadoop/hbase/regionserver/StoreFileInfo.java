@@ -52,20 +52,31 @@ public class StoreFileInfo implements Comparable<StoreFileInfo> {
    */
   public static final String HFILE_NAME_REGEX = "[0-9a-f]+(?:_SeqId_[0-9]+_)?";
 
+  /**
+   * A non-capture group, for the parquet store files, named like the hfiles
+   * with a .parquet suffix.
+   */
+  public static final String PFILE_NAME_REGEX = HFILE_NAME_REGEX + "\\.parquet";
+
   /** Regex that will work for hfiles */
   private static final Pattern HFILE_NAME_PATTERN =
     Pattern.compile("^(" + HFILE_NAME_REGEX + ")");
 
+  /** Regex that will work for parquet store files */
+  private static final Pattern PFILE_NAME_PATTERN =
+    Pattern.compile("^(" + PFILE_NAME_REGEX + ")$");
+
   /**
    * Regex that will work for straight reference names (<hfile>.<parentEncRegion>)
    * and hfilelink reference names (<table>=<region>-<hfile>.<parentEncRegion>)
    * If reference, then the regex has more than just one group.
    * Group 1, hfile/hfilelink pattern, is this file's id.
    * Group 2 '(.+)' is the reference's parent region name.
+   * The parquet files come first, their names hold a dot.
    */
   private static final Pattern REF_NAME_PATTERN =
-    Pattern.compile(String.format("^(%s|%s)\\.(.+)$",
-      HFILE_NAME_REGEX, HFileLink.LINK_NAME_REGEX));
+    Pattern.compile(String.format("^(%s|%s|%s)\\.(.+)$",
+      PFILE_NAME_REGEX, HFILE_NAME_REGEX, HFileLink.LINK_NAME_REGEX));
 
   // Configuration
   private Configuration conf;
@@ -123,8 +134,8 @@ public class StoreFileInfo implements Comparable<StoreFileInfo> {
       }
       if (LOG.isTraceEnabled()) LOG.trace(p + " is a " + reference.getFileRegion() +
         " reference to " + referencePath);
-    } else if (isHFile(p)) {
-      // HFile
+    } else if (isHFile(p) || isPFile(p.getName())) {
+      // HFile or parquet file
       this.reference = null;
       this.link = null;
     } else {
@@ -344,6 +355,14 @@ public class StoreFileInfo implements Comparable<StoreFileInfo> {
     return m.matches() && m.groupCount() > 0;
   }
 
+  /**
+   * @param fileName file name to check.
+   * @return True if the name is the one of a parquet store file.
+   */
+  public static boolean isPFile(final String fileName) {
+    return PFILE_NAME_PATTERN.matcher(fileName).matches();
+  }
+
   /**
    * @param path Path to check.
    * @return True if the path has format of a HStoreFile reference.
@@ -357,6 +376,10 @@ public class StoreFileInfo implements Comparable<StoreFileInfo> {
    * @return True if the path has format of a HStoreFile reference.
    */
   public static boolean isReference(final String name) {
+    if (name.endsWith(".parquet")) {
+      // a parquet store file, its split references end with the parent region name
+      return false;
+    }
     Matcher m = REF_NAME_PATTERN.matcher(name);
     return m.matches() && m.groupCount() > 1;
   }
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.compactions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.regionserver.PStoreFile;
+import org.apache.hadoop.hbase.regionserver.StoreConfigInformation;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+
+/**
+ * Selects the parquet files of a store to compact. The files are chosen with the
+ * same ratio algorithm as {@link RatioBasedCompactionPolicy}, on the file lengths.
+ * Parquet files hold neither deletes nor old versions, so there is no major compaction.
+ * The split references of a daughter region are always compacted, with all the files.
+ */
+@InterfaceAudience.Private
+public class ParquetCompactionPolicy extends CompactionPolicy {
+  private static final Log LOG = LogFactory.getLog(ParquetCompactionPolicy.class);
+
+  public ParquetCompactionPolicy(Configuration conf, StoreConfigInformation storeConfigInfo) {
+    super(conf, storeConfigInfo);
+  }
+
+  @Override
+  public boolean isMajorCompaction(Collection<StoreFile> filesToCompact) throws IOException {
+    return false;
+  }
+
+  @Override
+  public boolean throttleCompaction(long compactionSize) {
+    return compactionSize > comConf.getThrottlePoint();
+  }
+
+  /**
+   * @param storeFiles the parquet files of the store
+   * @param filesCompacting the files already being compacted
+   * @return whether enough files are waiting for a compaction
+   */
+  public boolean needsCompaction(List<PStoreFile> storeFiles, List<PStoreFile> filesCompacting) {
+    for (PStoreFile file : storeFiles) {
+      if (file.isReference() && !filesCompacting.contains(file)) {
+        return true;
+      }
+    }
+    int numCandidates = storeFiles.size() - filesCompacting.size();
+    return numCandidates >= comConf.getMinFilesToCompact();
+  }
+
+  /**
+   * @param candidateFiles the files of the store which are not being compacted,
+   *   ordered from the oldest to the newest
+   * @param mayBeStuck whether the store has too many files for the flushes to go on
+   * @return the files to compact, empty if no compaction is needed
+   */
+  public List<PStoreFile> selectCompaction(List<PStoreFile> candidateFiles, boolean mayBeStuck) {
+    List<PStoreFile> candidates = new ArrayList<PStoreFile>(candidateFiles);
+
+    for (PStoreFile file : candidates) {
+      if (file.isReference()) {
+        // the references to the files of the parent region are rewritten with all the files,
+        // whatever their size, so the parent can be archived and the region split again
+        LOG.debug("Selected all " + candidates.size() + " parquet files to compact split references");
+        return candidates;
+      }
+    }
+
+    // skip the oldest files above max compact size
+    int pos = 0;
+    while (pos < candidates.size()
+        && candidates.get(pos).getLength() > comConf.getMaxCompactSize()) {
+      ++pos;
+    }
+    if (pos > 0) {
+      LOG.debug("Some parquet files are too large. Excluding " + pos
+          + " files from compaction candidates");
+      candidates.subList(0, pos).clear();
+    }
+    if (candidates.isEmpty()) {
+      return candidates;
+    }
+
+    final int countOfFiles = candidates.size();
+    double ratio = comConf.getCompactionRatio();
+    long[] fileSizes = new long[countOfFiles];
+    long[] sumSize = new long[countOfFiles];
+    for (int i = countOfFiles - 1; i >= 0; --i) {
+      fileSizes[i] = candidates.get(i).getLength();
+      // calculate the sum of fileSizes[i,i+maxFilesToCompact-1) for algo
+      int tooFar = i + comConf.getMaxFilesToCompact() - 1;
+      sumSize[i] = fileSizes[i]
+        + ((i + 1 < countOfFiles) ? sumSize[i + 1] : 0)
+        - ((tooFar < countOfFiles) ? fileSizes[tooFar] : 0);
+    }
+
+    int start = 0;
+    while (countOfFiles - start >= comConf.getMinFilesToCompact() &&
+      fileSizes[start] > Math.max(comConf.getMinCompactSize(),
+          (long) (sumSize[start + 1] * ratio))) {
+      ++start;
+    }
+    if (start == countOfFiles && mayBeStuck) {
+      // We may be stuck. Compact the latest files if we can.
+      int filesToLeave = countOfFiles - comConf.getMinFilesToCompact();
+      if (filesToLeave >= 0) {
+        start = filesToLeave;
+      }
+    }
+    candidates.subList(0, start).clear();
+
+    if (candidates.size() < comConf.getMinFilesToCompact()) {
+      candidates.clear();
+      return candidates;
+    }
+    int excess = candidates.size() - comConf.getMaxFilesToCompact();
+    if (excess > 0) {
+      candidates.subList(comConf.getMaxFilesToCompact(), candidates.size()).clear();
+    }
+    LOG.debug("Selected " + candidates.size() + " parquet files from "
+        + candidateFiles.size() + " candidates");
+    return candidates;
+  }
+}
@@ -0,0 +1,232 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver.compactions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.classification.InterfaceAudience;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.pfile.HalfPFileScanner;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.InternalRecordScanner;
+import org.apache.hadoop.hbase.regionserver.PStoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import parquet.hadoop.Footer;
+import parquet.hadoop.ParquetFileInfo;
+import parquet.hadoop.metadata.BlockMetaData;
+
+/**
+ * Merges parquet files of a store into a single file. The files are sorted by row,
+ * rows found in several files are merged column by column, the value of the newest
+ * file wins. The split references of a daughter region are rewritten with the rows of
+ * their half only.
+ */
+@InterfaceAudience.Private
+public class ParquetCompactor {
+  private static final Log LOG = LogFactory.getLog(ParquetCompactor.class);
+
+  private final Configuration conf;
+  private final HStore store;
+
+  public ParquetCompactor(Configuration conf, HStore store) {
+    this.conf = conf;
+    this.store = store;
+  }
+
+  /**
+   * Writes the rows of the files into a new temporary file.
+   * @param filesToCompact the files to compact
+   * @return path of the compacted file, null if there was nothing to write
+   */
+  public Path compact(List<PStoreFile> filesToCompact) throws IOException {
+    byte[] startKey = null;
+    byte[] endKey = null;
+    long maxSeqId = -1;
+    for (PStoreFile file : filesToCompact) {
+      byte[] fileStart = Bytes.toBytes(file.getStartKey());
+      byte[] fileEnd = Bytes.toBytes(file.getEndKey());
+      if (file.isTopReference() && Bytes.compareTo(fileStart, file.getSplitRow()) < 0) {
+        // the keys are of the whole file of the parent, the last row of a bottom half is
+        // not known before it is read and the end key of the file bounds it
+        fileStart = file.getSplitRow();
+      }
+      if (startKey == null || Bytes.compareTo(fileStart, startKey) < 0) {
+        startKey = fileStart;
+      }
+      if (endKey == null || Bytes.compareTo(fileEnd, endKey) > 0) {
+        endKey = fileEnd;
+      }
+      maxSeqId = Math.max(maxSeqId, file.getMaxSequenceId());
+    }
+
+    PriorityQueue<FileCursor> heap = new PriorityQueue<FileCursor>(
+        Math.max(1, filesToCompact.size()), FileCursor.COMPARATOR);
+    PStoreFile.Writer writer = null;
+    long rows = 0;
+    long dataSize = 0;
+    boolean finished = false;
+    try {
+      for (PStoreFile file : filesToCompact) {
+        PFileReader reader = file.openReader(null, null, null, null, null);
+        InternalRecordScanner scanner = reader.getScanner();
+        if (file.isReference()) {
+          scanner = new HalfPFileScanner(scanner, file.getSplitRow(), file.isTopReference(),
+              file.getRowIndex());
+          dataSize += getUncompressedSize(reader) / 2;
+        } else {
+          dataSize += getUncompressedSize(reader);
+        }
+        FileCursor cursor = new FileCursor(reader, scanner, file.getMaxSequenceId());
+        if (cursor.next()) {
+          heap.add(cursor);
+        } else {
+          reader.close();
+        }
+      }
+      if (heap.isEmpty()) {
+        return null;
+      }
+
+      Map<String, String> meta = new HashMap<String, String>();
+      meta.put(HConstants.START_KEY, Bytes.toString(startKey));
+      meta.put(HConstants.END_KEY, Bytes.toString(endKey));
+      meta.put(HConstants.MAX_SEQ_ID, String.valueOf(maxSeqId));
+      // the compacted file holds about as much data as the files to compact
+      writer = store.createParquetWriter(meta, store.createParquetWriterSettings(dataSize));
+      if (writer == null) {
+        throw new IOException("Failed to create parquet writer for " + store);
+      }
+
+      Set<String> columns = new HashSet<String>();
+      while (!heap.isEmpty()) {
+        byte[] row = heap.peek().row;
+        Put put = new Put(row);
+        columns.clear();
+        // the cursors of a row come out of the heap from the newest file to the oldest
+        while (!heap.isEmpty() && Bytes.equals(row, heap.peek().row)) {
+          FileCursor cursor = heap.poll();
+          for (Cell cell : cursor.cells) {
+            String column = Bytes.toString(CellUtil.cloneFamily(cell)) + ":"
+                + Bytes.toString(CellUtil.cloneQualifier(cell));
+            if (columns.add(column)) {
+              put.add(cell);
+            }
+          }
+          if (cursor.next()) {
+            heap.add(cursor);
+          } else {
+            cursor.close();
+          }
+        }
+        writer.append(put);
+        rows++;
+      }
+      finished = true;
+    } finally {
+      FileCursor cursor;
+      while ((cursor = heap.poll()) != null) {
+        cursor.close();
+      }
+      if (writer != null) {
+        writer.close();
+        if (!finished) {
+          store.getFileSystem().delete(writer.getFilePath(), false);
+        }
+      }
+    }
+    LOG.debug("Compacted " + filesToCompact.size() + " parquet files into " + rows + " rows in "
+        + writer.getFilePath());
+    return writer.getFilePath();
+  }
+
+  /**
+   * @return size of the row groups of a file before compression, the size the writer buffers
+   */
+  private static long getUncompressedSize(PFileReader reader) {
+    long size = 0;
+    ParquetFileInfo fileInfo = reader.getFileInfo();
+    if (fileInfo != null && fileInfo.getFooters() != null) {
+      for (Footer footer : fileInfo.getFooters()) {
+        for (BlockMetaData block : footer.getParquetMetadata().getBlocks()) {
+          size += block.getTotalByteSize();
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * the current row of a file being compacted
+   */
+  private static class FileCursor {
+    static final Comparator<FileCursor> COMPARATOR = new Comparator<FileCursor>() {
+      @Override
+      public int compare(FileCursor o1, FileCursor o2) {
+        int c = Bytes.compareTo(o1.row, o2.row);
+        if (c != 0) {
+          return c;
+        }
+        // newer file first
+        return Long.compare(o2.seqId, o1.seqId);
+      }
+    };
+
+    private final PFileReader reader;
+    private final InternalRecordScanner scanner;
+    private final long seqId;
+    private byte[] row;
+    private List<Cell> cells;
+
+    FileCursor(PFileReader reader, InternalRecordScanner scanner, long seqId) {
+      this.reader = reader;
+      this.scanner = scanner;
+      this.seqId = seqId;
+    }
+
+    boolean next() {
+      while (scanner.hasNext()) {
+        cells = new ArrayList<Cell>(scanner.next());
+        if (!cells.isEmpty()) {
+          row = CellUtil.cloneRow(cells.get(0));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void close() {
+      reader.close();
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package org.apache.hadoop.hbase.regionserver.memstore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * pool of the direct chunks of the {@link OffheapPMemStoreImpl}s of a region server
+ *
+ * chunks are allocated on demand up to the max size of the pool and are kept for
+ * reuse once released, the direct memory is never given back to the jvm.
+ */
+public class OffheapChunkPool {
+
+    private static final Log LOG = LogFactory.getLog(OffheapChunkPool.class);
+
+    /** size of a direct chunk */
+    public static final String CHUNK_SIZE_KEY = "hbase.regionserver.pmemstore.offheap.chunksize";
+    public static final int DEFAULT_CHUNK_SIZE = 2 * 1024 * 1024;
+
+    /** direct memory of all the chunks of the region server */
+    public static final String MAX_SIZE_KEY = "hbase.regionserver.pmemstore.offheap.max.size";
+    public static final long DEFAULT_MAX_SIZE = 512l * 1024 * 1024;
+
+    private final int chunkSize;
+    private final int maxCount;
+    private final AtomicInteger createdCount = new AtomicInteger();
+    private final Queue<ByteBuffer> reclaimedChunks = new ConcurrentLinkedQueue<>();
+
+    OffheapChunkPool(int chunkSize, int maxCount){
+        this.chunkSize = chunkSize;
+        this.maxCount = maxCount;
+    }
+
+    /**
+     * @param conf the configuration of the region server
+     * @return a pool sized by the configuration, see
+     * {@link org.apache.hadoop.hbase.regionserver.RegionServerAccounting#getOffheapChunkPool()}
+     * for the pool of a region server
+     */
+    public static OffheapChunkPool create(Configuration conf){
+        int chunkSize = conf.getInt(CHUNK_SIZE_KEY, DEFAULT_CHUNK_SIZE);
+        long maxSize = conf.getLong(MAX_SIZE_KEY, DEFAULT_MAX_SIZE);
+        int maxCount = (int) Math.min(Integer.MAX_VALUE, maxSize / chunkSize);
+        LOG.info("Allocating off-heap pmemstore chunk pool with chunk size " +
+                StringUtils.byteDesc(chunkSize) + ", max count " + maxCount);
+        return new OffheapChunkPool(chunkSize, maxCount);
+    }
+
+    public int getChunkSize(){
+        return chunkSize;
+    }
+
+    /**
+     * @return a cleared chunk, null if all the chunks of the pool are in use
+     */
+    public ByteBuffer getChunk(){
+        ByteBuffer chunk = reclaimedChunks.poll();
+        if(chunk != null){
+            chunk.clear();
+            return chunk;
+        }
+        while (true){
+            int created = createdCount.get();
+            if(created >= maxCount){
+                return null;
+            }
+            if(createdCount.compareAndSet(created, created + 1)){
+                return ByteBuffer.allocateDirect(chunkSize);
+            }
+        }
+    }
+
+    /**
+     * give a chunk back, it must not be used anymore
+     */
+    public void putbackChunk(ByteBuffer chunk){
+        reclaimedChunks.offer(chunk);
+    }
+
+    /**
+     * @return direct memory in use by the memstores
+     */
+    public long getUsedSize(){
+        return (long) (createdCount.get() - reclaimedChunks.size()) * chunkSize;
+    }
+}
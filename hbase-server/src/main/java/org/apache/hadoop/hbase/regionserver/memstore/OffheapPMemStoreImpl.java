@@ -0,0 +1,774 @@
+package org.apache.hadoop.hbase.regionserver.memstore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.InternalRecordScanner;
+import org.apache.hadoop.hbase.regionserver.MetricsPStore;
+import org.apache.hadoop.hbase.regionserver.ParquetProjection;
+import org.apache.hadoop.hbase.regionserver.RecordScanner;
+import org.apache.hadoop.hbase.regionserver.RegionServerAccounting;
+import org.apache.hadoop.hbase.regionserver.RowScanner;
+import org.apache.hadoop.hbase.regionserver.UnexpectedStateException;
+import org.apache.hadoop.hbase.util.ByteRange;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.SimpleMutableByteRange;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * {@link PMemStore} keeping the cells of the rows in direct chunks of the {@link OffheapChunkPool}
+ * of the region server.
+ *
+ * The heap only holds the index, which maps each rowkey to the slice of a chunk where
+ * the cells of the row are serialized one after the other, ordered by column, as
+ * [int length][long sequence id][key value]. An update writes the merged row to a new slice
+ * and swaps it in with a compare-and-set, the old slice stays in its chunk until the chunk is
+ * released after the flush. Rows are copied back to the heap only when they are read.
+ *
+ * When the pool is exhausted, or a row does not fit in a chunk, the row is written to a
+ * heap buffer instead. The direct memory used is reported apart from the heap to the
+ * {@link RegionServerAccounting}, so it does not count against the global heap limits of
+ * the memstores, while {@link #size()} still covers both for the flushes of the region.
+ */
+public class OffheapPMemStoreImpl implements PMemStore {
+
+    private static final Log LOG = LogFactory.getLog(OffheapPMemStoreImpl.class);
+
+    public final static long FIXED_OVERHEAD = ClassSize.align(
+            ClassSize.OBJECT + (12 * ClassSize.REFERENCE) + (4 * Bytes.SIZEOF_LONG));
+
+    public final static long DEEP_OVERHEAD = ClassSize.align(FIXED_OVERHEAD +
+            (2 * ClassSize.ATOMIC_LONG) + (2 * ClassSize.ATOMIC_INTEGER) +
+            (2 * ClassSize.align(ClassSize.OBJECT + ClassSize.REFERENCE)) + (2 * ClassSize.CONCURRENT_SKIPLISTMAP));
+
+    /** heap used by a row in the index, without its key and its slice */
+    static final long ROW_OVERHEAD = ClassSize.align(ClassSize.OBJECT + 2 * ClassSize.REFERENCE)
+            + ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY;
+
+    /** heap used by a slice, without its buffer */
+    static final long SLICE_OVERHEAD = ClassSize.align(ClassSize.OBJECT + ClassSize.REFERENCE
+            + 2 * Bytes.SIZEOF_INT);
+
+    /** bytes before the key value of a cell in a slice */
+    private static final int CELL_HEADER = Bytes.SIZEOF_INT + Bytes.SIZEOF_LONG;
+
+    private final OffheapChunkPool pool;
+
+    private volatile ConcurrentNavigableMap<byte[], Row> index;
+    private volatile ConcurrentNavigableMap<byte[], Row> snapshotIndex;
+
+    private volatile Slabs slabs;
+    private volatile Slabs snapshotSlabs;
+
+    private final AtomicReference<byte[]> startkey = new AtomicReference<>();
+    private final AtomicReference<byte[]> endkey = new AtomicReference<>();
+
+    private final AtomicInteger rowCount = new AtomicInteger();
+    private final AtomicInteger snapshotRowCount = new AtomicInteger();
+
+    // heap and direct memory of the memstore
+    private final AtomicLong memstoreSize;
+    // direct memory of the memstore
+    private final AtomicLong offheapSize;
+    private volatile long snapshotSize;
+    private volatile long snapshotOffheapSize;
+
+    private final RegionServerAccounting accounting;
+
+    // Used to track when to flush
+    volatile long timeOfOldestEdit = Long.MAX_VALUE;
+
+    volatile long snapshotId;
+
+    /**
+     * memstore out of a region server, with a pool and an accounting of its own
+     */
+    public OffheapPMemStoreImpl(Configuration conf){
+        this(conf, new RegionServerAccounting(conf));
+    }
+
+    /**
+     * @param accounting of the region server, holds the pool of the chunks and the
+     *                   direct memory of the memstores
+     */
+    public OffheapPMemStoreImpl(Configuration conf, RegionServerAccounting accounting){
+        this.accounting = accounting;
+        this.pool = accounting.getOffheapChunkPool();
+        this.index = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+        this.snapshotIndex = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+        this.slabs = new Slabs(pool);
+        this.memstoreSize = new AtomicLong(DEEP_OVERHEAD);
+        this.offheapSize = new AtomicLong(0);
+        this.snapshotSize = 0;
+        this.snapshotOffheapSize = 0;
+    }
+
+    private void addOffheapSize(long delta){
+        if(delta == 0) return;
+        offheapSize.addAndGet(delta);
+        accounting.addAndGetGlobalOffheapMemstoreSize(delta);
+    }
+
+    /**
+     * insert mutation into memstore, merging it into the row if it is already there
+     * @param m
+     * @return the heap and direct memory added to the memstore
+     */
+    @Override
+    public long add(Mutation m) throws IOException{
+        SlabPMemStoreImpl.checkPut(m);
+        byte[] rowkey = m.getRow();
+        Cell[] cells = SlabPMemStoreImpl.sortedCells(m);
+        if(cells.length == 0) return 0;
+
+        Slabs slabs = this.slabs;
+        long heapDelta;
+        long offheapDelta;
+        Row row = index.get(rowkey);
+        if(row == null){
+            Slice slice = write(slabs, cells);
+            Row newRow = new Row(rowkey, slice);
+            row = index.putIfAbsent(rowkey, newRow);
+            if(row == null){
+                heapDelta = newRow.heapSize();
+                offheapDelta = slice.offheapSize();
+                rowCount.incrementAndGet();
+                updateStartKey(rowkey);
+                updateEndKey(rowkey);
+            }else {
+                //the slice written for the new row was never seen, it goes back to the chunk
+                offheapDelta = slabs.free(slice) ? 0 : slice.offheapSize();
+                heapDelta = 0;
+                long[] delta = merge(slabs, row, cells);
+                heapDelta += delta[0];
+                offheapDelta += delta[1];
+            }
+        }else {
+            long[] delta = merge(slabs, row, cells);
+            heapDelta = delta[0];
+            offheapDelta = delta[1];
+        }
+        memstoreSize.addAndGet(heapDelta + offheapDelta);
+        addOffheapSize(offheapDelta);
+        setOldestEditTimeToNow();
+        return heapDelta + offheapDelta;
+    }
+
+    /**
+     * merge the cells into the row, the cells replace the ones of the same column
+     * @return the change of the heap and of the direct memory
+     */
+    private static long[] merge(Slabs slabs, Row row, Cell[] updates){
+        long offheapDelta = 0;
+        while (true){
+            Slice curr = row.slice;
+            Cell[] cells = curr.decode();
+            List<Cell> merged = new ArrayList<>(cells.length + updates.length);
+            int i = 0, j = 0;
+            while (i < cells.length || j < updates.length){
+                int c;
+                if(i == cells.length) c = 1;
+                else if(j == updates.length) c = -1;
+                else c = SlabPMemStoreImpl.Row.compareColumn(cells[i], updates[j]);
+
+                if(c < 0){
+                    merged.add(cells[i++]);
+                }else if(c > 0){
+                    merged.add(updates[j++]);
+                }else {
+                    merged.add(updates[j++]);
+                    i++;
+                }
+            }
+            Slice next = write(slabs, merged.toArray(new Cell[merged.size()]));
+            if(row.compareAndSetSlice(curr, next)){
+                offheapDelta += next.offheapSize();
+                return new long[]{next.heapSize() - curr.heapSize(), offheapDelta};
+            }
+            //lost the race to another update of the row, the slice was never seen
+            if(!slabs.free(next)){
+                offheapDelta += next.offheapSize();
+            }
+        }
+    }
+
+    /**
+     * serialize the cells to a slice of a chunk, to the heap if there is no room
+     * @param slabs null to write to the heap
+     */
+    private static Slice write(Slabs slabs, Cell[] cells){
+        KeyValue[] kvs = new KeyValue[cells.length];
+        int length = 0;
+        for(int i = 0; i < cells.length; ++i){
+            kvs[i] = KeyValueUtil.ensureKeyValue(cells[i]);
+            length += CELL_HEADER + kvs[i].getLength();
+        }
+        Slice slice = slabs == null ? null : slabs.allocate(length);
+        if(slice == null){
+            slice = new Slice(ByteBuffer.allocate(length), 0, length);
+        }
+        ByteBuffer out = slice.buffer.duplicate();
+        out.position(slice.offset);
+        for(KeyValue kv : kvs){
+            out.putInt(kv.getLength());
+            out.putLong(kv.getSequenceId());
+            out.put(kv.getBuffer(), kv.getOffset(), kv.getLength());
+        }
+        return slice;
+    }
+
+    private void updateStartKey(byte[] rowkey){
+        while (true){
+            byte[] curr = startkey.get();
+            if(curr != null && Bytes.compareTo(curr, rowkey) <= 0) return;
+            if(startkey.compareAndSet(curr, rowkey)) return;
+        }
+    }
+
+    private void updateEndKey(byte[] rowkey){
+        while (true){
+            byte[] curr = endkey.get();
+            if(curr != null && Bytes.compareTo(curr, rowkey) >= 0) return;
+            if(endkey.compareAndSet(curr, rowkey)) return;
+        }
+    }
+
+    /**
+     * get row from the memstore
+     *
+     * @param row
+     */
+    @Override
+    public Mutation get(byte[] row) {
+        Slabs slabs = this.slabs;
+        slabs.incScannerCount();
+        try {
+            Row r = index.get(row);
+            return r == null ? null : toMutation(r.key, r.slice.decode());
+        }finally {
+            slabs.decScannerCount();
+        }
+    }
+
+    private static Mutation toMutation(byte[] key, Cell[] cells){
+        Put put = new Put(key);
+        for(Cell cell : cells){
+            try {
+                put.add(cell);
+            }catch (IOException ioe){
+                LOG.error(ioe);
+            }
+        }
+        return put;
+    }
+
+    /**
+     * @return num in memory
+     */
+    @Override
+    public int getRecordCount(){
+        return rowCount.get();
+    }
+
+    /**
+     * remove the row of the mutation. its slice stays in its chunk until the flush, as
+     * scanners may still read it, but is no longer counted in the memstore
+     *
+     * @param m
+     * @return heap and direct memory released
+     */
+    @Override
+    public long delete(Mutation m) {
+        if(m == null) return 0;
+        Row row = index.remove(m.getRow());
+        if(row == null) return 0;
+        rowCount.decrementAndGet();
+        long offheapReleased = row.slice.offheapSize();
+        long released = row.heapSize() + offheapReleased;
+        memstoreSize.addAndGet(-released);
+        addOffheapSize(-offheapReleased);
+        setOldestEditTimeToNow();
+        return released;
+    }
+
+    /**
+     * Creates a snapshot of the current memstore. Snapshot must be cleared by call to
+     * {@link #clearSnapshot(long)}.
+     *
+     * @return {@link PMemStoreSnapshot}
+     */
+    @Override
+    public PMemStoreSnapshot snapshot() {
+        if (!this.snapshotIndex.isEmpty()) {
+            LOG.warn("Snapshot called again without clearing previous. " +
+                    "Doing nothing. Another ongoing flush or did we fail last attempt?");
+            return null;
+        }
+        snapshotId = EnvironmentEdgeManager.currentTime();
+        this.snapshotSize = dataSize();
+        if(! index.isEmpty()){
+            this.snapshotIndex = this.index;
+            this.snapshotSlabs = this.slabs;
+            this.snapshotRowCount.set(rowCount.get());
+            this.index = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+            this.slabs = new Slabs(pool);
+            this.rowCount.set(0);
+            this.memstoreSize.set(DEEP_OVERHEAD);
+            this.snapshotOffheapSize = this.offheapSize.getAndSet(0);
+            timeOfOldestEdit = Long.MAX_VALUE;
+        }
+
+        PMemStoreSnapshot snapshot = new PMemStoreSnapshot(snapshotId,
+                snapshotRowCount.get(),
+                snapshotSize,
+                new OffheapPMemStoreScanner(snapshotIndex, snapshotRowCount.get(), null, null),
+                startkey.getAndSet(null), endkey.getAndSet(null));
+        if(!snapshotIndex.isEmpty()){
+            MetricsPStore.getInstance().updateMemStoreSnapshot(snapshotSize, snapshotRowCount.get());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Clears the current snapshot of the Memstore.
+     *
+     * @param id
+     * @throws UnexpectedStateException
+     * @see #snapshot()
+     */
+    @Override
+    public void clearSnapshot(long id) throws UnexpectedStateException {
+        if (this.snapshotId != id) {
+            throw new UnexpectedStateException("Current snapshot id is " + this.snapshotId + ",passed "
+                    + id);
+        }
+        Slabs tmpSlabs = null;
+        if (!this.snapshotIndex.isEmpty()) {
+            this.snapshotIndex = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+            this.snapshotRowCount.set(0);
+            tmpSlabs = this.snapshotSlabs;
+            this.snapshotSlabs = null;
+        }
+        if(snapshotOffheapSize != 0){
+            accounting.addAndGetGlobalOffheapMemstoreSize(-snapshotOffheapSize);
+        }
+        this.snapshotOffheapSize = 0l;
+        this.snapshotSize = 0l;
+        this.snapshotId = -1l;
+        if (tmpSlabs != null) {
+            // the chunks go back to the pool once the last scanner on them is closed
+            tmpSlabs.close();
+        }
+    }
+
+    @Override
+    public long getCurrSnapshotId(){
+        return snapshotId;
+    }
+
+    /**
+     * @return heap used by the memstore, without the direct memory
+     */
+    @Override
+    public long heapSize() {
+        return this.memstoreSize.get() - this.offheapSize.get();
+    }
+
+    /**
+     * @return direct memory used by the memstore
+     */
+    public long offheapSize(){
+        return this.offheapSize.get();
+    }
+
+    @Override
+    public long getFlushableSize() {
+        return this.snapshotSize > 0 ? snapshotSize : dataSize();
+    }
+
+    /**
+     * @return Oldest timestamp of all the Mutations in the MemStore
+     */
+    @Override
+    public long timeOfOldestEdit() {
+        return this.timeOfOldestEdit;
+    }
+
+    @Override
+    public byte[] getStartKey() {
+        return this.startkey.get();
+    }
+
+    @Override
+    public byte[] getEndKey() {
+        return this.endkey.get();
+    }
+
+    /**
+     * @return Total memory occupied by this MemStore, heap and direct.
+     */
+    @Override
+    public long size() {
+        return this.memstoreSize.get();
+    }
+
+    public long dataSize(){
+        return size() - DEEP_OVERHEAD;
+    }
+
+    void setOldestEditTimeToNow() {
+        if (timeOfOldestEdit == Long.MAX_VALUE) {
+            timeOfOldestEdit = EnvironmentEdgeManager.currentTime();
+        }
+    }
+
+    @Override
+    public RowScanner getScanner(Scan scan) {
+        return new OffheapPMemStoreScanner(this.index, rowCount.get(), this.slabs, scan);
+    }
+
+    @Override
+    public RecordScanner getSnapshotScanner(Scan scan){
+        return new OffheapPMemStoreScanner(this.snapshotIndex, snapshotRowCount.get(), this.snapshotSlabs, scan);
+    }
+
+    /**
+     * scanner over rows which are not kept by this memstore, the rows are written to the heap
+     */
+    @Override
+    public RowScanner getScanner(Map<byte[], Mutation> mutations, Scan scan) {
+        ConcurrentNavigableMap<byte[], Row> rows = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+        for(Map.Entry<byte[], Mutation> entry : mutations.entrySet()){
+            try {
+                Cell[] cells = SlabPMemStoreImpl.sortedCells(entry.getValue());
+                rows.put(entry.getKey(), new Row(entry.getKey(), write(null, cells)));
+            }catch (IOException ioe){
+                LOG.error(ioe);
+            }
+        }
+        return new OffheapPMemStoreScanner(rows, rows.size(), null, scan);
+    }
+
+
+    /**
+     * bytes of a buffer holding the cells of a row
+     */
+    static final class Slice {
+
+        final ByteBuffer buffer;
+        final int offset;
+        final int length;
+
+        Slice(ByteBuffer buffer, int offset, int length){
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        long heapSize(){
+            return buffer.isDirect() ? SLICE_OVERHEAD
+                    : SLICE_OVERHEAD + ClassSize.BYTE_BUFFER + ClassSize.align(ClassSize.ARRAY + length);
+        }
+
+        long offheapSize(){
+            return buffer.isDirect() ? length : 0;
+        }
+
+        /**
+         * @return the cells of the row, backed by one heap array
+         */
+        Cell[] decode(){
+            byte[] bytes;
+            int pos;
+            if(buffer.hasArray()){
+                bytes = buffer.array();
+                pos = buffer.arrayOffset() + offset;
+            }else {
+                bytes = new byte[length];
+                ByteBuffer in = buffer.duplicate();
+                in.position(offset);
+                in.get(bytes);
+                pos = 0;
+            }
+            int end = pos + length;
+            List<Cell> cells = new ArrayList<>();
+            while (pos < end){
+                int len = Bytes.toInt(bytes, pos);
+                long seqId = Bytes.toLong(bytes, pos + Bytes.SIZEOF_INT);
+                KeyValue kv = new KeyValue(bytes, pos + CELL_HEADER, len);
+                kv.setSequenceId(seqId);
+                cells.add(kv);
+                pos += CELL_HEADER + len;
+            }
+            return cells.toArray(new Cell[cells.size()]);
+        }
+    }
+
+
+    /**
+     * a row of the memstore, the slice holds one cell per column ordered by family and qualifier
+     */
+    static final class Row {
+
+        private static final AtomicReferenceFieldUpdater<Row, Slice> SLICE_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Row.class, Slice.class, "slice");
+
+        final byte[] key;
+        volatile Slice slice;
+
+        Row(byte[] key, Slice slice){
+            this.key = key;
+            this.slice = slice;
+        }
+
+        boolean compareAndSetSlice(Slice expect, Slice update){
+            return SLICE_UPDATER.compareAndSet(this, expect, update);
+        }
+
+        long heapSize(){
+            return ROW_OVERHEAD + ClassSize.align(ClassSize.ARRAY + key.length) + slice.heapSize();
+        }
+    }
+
+
+    /**
+     * the chunks taken from the pool by a memstore, handed out as slices one after the other.
+     * The chunks go back to the pool once the memstore is done with them and no scanner
+     * reads them anymore.
+     */
+    static final class Slabs {
+
+        private final OffheapChunkPool pool;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private ByteBuffer curr = null;
+
+        private volatile boolean closed = false;
+        private final AtomicInteger openScannerCount = new AtomicInteger();
+        private final AtomicBoolean reclaimed = new AtomicBoolean(false);
+
+        Slabs(OffheapChunkPool pool){
+            this.pool = pool;
+        }
+
+        /**
+         * @return a slice of length bytes, null if it does not fit in a chunk or the pool is exhausted
+         */
+        synchronized Slice allocate(int length){
+            if(closed || length > pool.getChunkSize()){
+                return null;
+            }
+            if(curr == null || curr.remaining() < length){
+                ByteBuffer chunk = pool.getChunk();
+                if(chunk == null){
+                    return null;
+                }
+                chunks.add(chunk);
+                curr = chunk;
+            }
+            Slice slice = new Slice(curr, curr.position(), length);
+            curr.position(curr.position() + length);
+            return slice;
+        }
+
+        /**
+         * give back a slice nobody else has seen, it is reused only if it is the last one
+         * handed out
+         * @return true if the slice is back in the chunk
+         */
+        synchronized boolean free(Slice slice){
+            if(closed || slice.buffer != curr || slice.offset + slice.length != curr.position()){
+                return false;
+            }
+            curr.position(slice.offset);
+            return true;
+        }
+
+        void incScannerCount(){
+            openScannerCount.incrementAndGet();
+        }
+
+        void decScannerCount(){
+            int count = openScannerCount.decrementAndGet();
+            if(closed && count == 0){
+                recycleChunks();
+            }
+        }
+
+        void close(){
+            closed = true;
+            if(openScannerCount.get() == 0){
+                recycleChunks();
+            }
+        }
+
+        private void recycleChunks(){
+            if(reclaimed.compareAndSet(false, true)){
+                synchronized (this){
+                    for(ByteBuffer chunk : chunks){
+                        pool.putbackChunk(chunk);
+                    }
+                    chunks.clear();
+                    curr = null;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * row scanner for {@link OffheapPMemStoreImpl}, the cells of the current row are
+     * copied to the heap once
+     */
+    class OffheapPMemStoreScanner implements RowScanner, InternalRecordScanner {
+
+        private final NavigableMap<byte[], Row> rows;
+        private final Slabs slabsAtCreation;
+        private Iterator<Row> it = null;
+        private Row curr = null;
+        private Cell[] currCells = null;
+        private final ByteRange rowKey = new SimpleMutableByteRange();
+        private int countLeft = 0;
+        private final int rowCount;
+        private boolean closed = false;
+        private ParquetProjection projection = null;
+
+        /**
+         * @param rows rows to scan
+         * @param rowCount number of rows
+         * @param slabs chunks holding the cells of the rows, null if they may be released
+         *              without waiting for this scanner
+         * @param scan the scan, null to return all the columns
+         */
+        OffheapPMemStoreScanner(NavigableMap<byte[], Row> rows, int rowCount, Slabs slabs, Scan scan){
+            this.rows = rows;
+            this.slabsAtCreation = slabs;
+            if(slabs != null){
+                slabs.incScannerCount();
+            }
+            if(scan != null){
+                projection = ParquetProjection.fromCheckedScan(scan);
+            }
+            this.countLeft = rowCount;
+            this.rowCount = rowCount;
+            this.it = rows.values().iterator();
+            advance();
+        }
+
+        private void advance(){
+            curr = it.hasNext() ? it.next() : null;
+            currCells = null;
+        }
+
+        private Cell[] currCells(){
+            if(currCells == null){
+                currCells = curr.slice.decode();
+            }
+            return currCells;
+        }
+
+        @Override
+        public void seek(byte[] rowkey){
+            if(rowkey == null || Bytes.compareTo(rowkey, HConstants.EMPTY_START_ROW) == 0)
+                return;
+            if(curr != null && Bytes.compareTo(curr.key, rowkey) >= 0)
+                return;
+            it = rows.tailMap(rowkey, true).values().iterator();
+            advance();
+        }
+
+        @Override
+        public boolean hasNext(){
+            return curr != null;
+        }
+
+        @Override
+        public Mutation nextRow(){
+            if(curr == null) return null;
+            Mutation m = toMutation(curr.key, currCells());
+            advance();
+            countLeft --;
+            return m;
+        }
+
+        @Override
+        public ByteRange peekRowKey() {
+            return curr == null ? null : rowKey.set(curr.key);
+        }
+
+        @Override
+        public List<Cell> peek() {
+            if(curr == null) return new LinkedList<>();
+            return Arrays.asList(currCells());
+        }
+
+        @Override
+        public List<Cell> next() {
+            List<Cell> cells = new LinkedList<>();
+            if(curr == null) return cells;
+            for(Cell cell : currCells()){
+                if(projection == null || projection.matches(cell))
+                    cells.add(cell);
+            }
+            advance();
+            countLeft --;
+            return cells;
+        }
+
+        @Override
+        public long getMaxResultsCount() {
+            return countLeft;
+        }
+
+        @Override
+        public long getRecordCount() {
+            return rowCount;
+        }
+
+        @Override
+        public byte[] getStartKey() {
+            return rows.isEmpty() ? null : rows.firstKey();
+        }
+
+        @Override
+        public byte[] getEndKey() {
+            return rows.isEmpty() ? null : rows.lastKey();
+        }
+
+        @Override
+        public void close() throws IOException {
+            curr = null;
+            currCells = null;
+            if(!closed){
+                closed = true;
+                if(slabsAtCreation != null){
+                    slabsAtCreation.decScannerCount();
+                }
+            }
+        }
+    }
+}
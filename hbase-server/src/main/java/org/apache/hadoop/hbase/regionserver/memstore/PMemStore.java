@@ -18,6 +18,10 @@ import java.util.Map;
 public  interface PMemStore extends HeapSize{
 
 
+    /**
+     * @return size of the rows of the snapshot, or of the memstore if there is no snapshot,
+     * without the fixed overhead of the memstore: 0 when empty, as a closing region checks
+     */
     long getFlushableSize();
 
 
@@ -11,15 +11,16 @@ import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.regionserver.*;
+import org.apache.hadoop.hbase.util.ByteRange;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.ClassSize;
 import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.SimpleMutableByteRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import parquet.column.ColumnDescriptor;
 import parquet.schema.MessageType;
 import parquet.schema.MessageTypeParser;
-import parquet.schema.Type;
 
 import java.io.IOException;
 import java.util.*;
@@ -73,19 +74,17 @@ public class PMemStoreImpl implements PMemStore{
 
     /**
      * insert mutation into memstore
-     * @param m
+     * @param m a {@link Put}
      * @return
+     * @throws org.apache.hadoop.hbase.DoNotRetryIOException if the mutation is not a {@link Put}
      */
 
     @Override
     public long add(Mutation m) throws IOException{
+        SlabPMemStoreImpl.checkPut(m);
         Mutation mutation = rowInMem.get(m.getRow());
         if(mutation != null){
-            if(m instanceof Put)
-                ((Put)mutation).mergePut((Put) m);
-            else {
-                //TODO: other mutation different merge function
-            }
+            ((Put)mutation).mergePut((Put) m);
         }else {
 
             //TODO : make a efficient implementation
@@ -177,6 +176,9 @@ public class PMemStoreImpl implements PMemStore{
                     snapshotSize,
                     getScanner(this.snapshotRowInMem, null),
                     startkey, endkey);
+            if(!snapshotRowInMem.isEmpty()){
+                MetricsPStore.getInstance().updateMemStoreSnapshot(snapshotSize, snapshotRowInMem.size());
+            }
 
             this.startkey = null;
             this.endkey = null;
@@ -223,7 +225,7 @@ public class PMemStoreImpl implements PMemStore{
 
     @Override
     public long getFlushableSize() {
-        return this.snapshotSize > 0 ? snapshotSize : size();
+        return this.snapshotSize > 0 ? snapshotSize : dataSize();
     }
 
 
@@ -336,7 +338,8 @@ public class PMemStoreImpl implements PMemStore{
         private byte[] next = null;
         private Iterator<byte []> it =null;
         private int countLeft = 0;
-        private List<byte[]> filterColumns = new LinkedList<>();
+        private ParquetProjection projection = null;
+        private final ByteRange rowKey = new SimpleMutableByteRange();
 
 
         private Map<byte[], Mutation> rowInMem;
@@ -353,24 +356,7 @@ public class PMemStoreImpl implements PMemStore{
          * @param scan
          */
         public void initScanFilter(Scan scan){
-            String schema = new String(scan.getAttribute(HConstants.SCAN_TABLE_SCHEMA));
-            try {
-                if (scan != null && schema != null && !schema.isEmpty()) {
-                    MessageType readSchema = MessageTypeParser.parseMessageType(schema);
-                    //readSchema.getFields();
-                    List<Type>  types = readSchema.getFields();
-                    for(Type type : types){
-                        String  columnName = type.getName();
-                        if(columnName.startsWith("cf"))// fetch the real column name
-                            columnName = columnName.substring(3);
-                        filterColumns.add(columnName.getBytes());
-                    }
-
-                }
-            }catch (Exception e){
-                //TODO: send the exception back to the client
-                LOG.error("parse the message schema error" + e);
-            }
+            projection = ParquetProjection.fromCheckedScan(scan);
         }
 
         /**
@@ -385,7 +371,9 @@ public class PMemStoreImpl implements PMemStore{
                     || rowInMem.size() == 0)
                 return;
 
-            Set<byte []> rows = rowInMem.keySet();
+            Set<byte []> rows = rowInMem instanceof NavigableMap
+                    ? ((NavigableMap<byte[], Mutation>) rowInMem).tailMap(row, true).keySet()
+                    : rowInMem.keySet();
             it = rows.iterator();
             boolean seekEd = false;
             while (it.hasNext()){
@@ -506,17 +494,7 @@ public class PMemStoreImpl implements PMemStore{
          * @return
          */
         private boolean match(Cell cell){
-            if(filterColumns.isEmpty()) return true;
-            else {
-                boolean isMatched = false;
-                for(byte[] column : filterColumns){
-                    if(CellUtil.matchingQualifier(cell, column)) {
-                        isMatched = true;
-                        return isMatched;
-                    }
-                }
-                return isMatched;
-            }
+            return projection == null || projection.matches(cell);
         }
 
         /**
@@ -528,6 +506,11 @@ public class PMemStoreImpl implements PMemStore{
         }
 
 
+        @Override
+        public ByteRange peekRowKey() {
+            return curr == null ? null : rowKey.set(curr);
+        }
+
         /**
          * don't iterate just
          *
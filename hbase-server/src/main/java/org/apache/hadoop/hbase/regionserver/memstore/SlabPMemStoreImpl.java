@@ -0,0 +1,673 @@
+package org.apache.hadoop.hbase.regionserver.memstore;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellScanner;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.DefaultMemStore;
+import org.apache.hadoop.hbase.regionserver.HeapMemStoreLAB;
+import org.apache.hadoop.hbase.regionserver.InternalRecordScanner;
+import org.apache.hadoop.hbase.regionserver.MemStoreLAB;
+import org.apache.hadoop.hbase.regionserver.MetricsPStore;
+import org.apache.hadoop.hbase.regionserver.ParquetProjection;
+import org.apache.hadoop.hbase.regionserver.RecordScanner;
+import org.apache.hadoop.hbase.regionserver.RowScanner;
+import org.apache.hadoop.hbase.regionserver.UnexpectedStateException;
+import org.apache.hadoop.hbase.util.ByteRange;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.ClassSize;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+import org.apache.hadoop.hbase.util.ReflectionUtils;
+import org.apache.hadoop.hbase.util.SimpleMutableByteRange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * {@link PMemStore} keeping the cells of the rows in the chunks of a {@link MemStoreLAB}.
+ *
+ * A concurrent index maps each rowkey to the array of its cells, ordered by column.
+ * An update of an existing row copies the new cells into the chunks and swaps the
+ * array of the row with a compare-and-set, no lock is taken and no {@link Mutation}
+ * is kept around. The size is charged with what the update really adds to the heap.
+ * {@link Mutation}s are only built when the rows are read.
+ */
+public class SlabPMemStoreImpl implements PMemStore {
+
+    private static final Log LOG = LogFactory.getLog(SlabPMemStoreImpl.class);
+
+    public final static long FIXED_OVERHEAD = ClassSize.align(
+            ClassSize.OBJECT + (10 * ClassSize.REFERENCE) + (3 * Bytes.SIZEOF_LONG));
+
+    public final static long DEEP_OVERHEAD = ClassSize.align(FIXED_OVERHEAD +
+            ClassSize.ATOMIC_LONG + (2 * ClassSize.ATOMIC_INTEGER) +
+            (2 * ClassSize.align(ClassSize.OBJECT + ClassSize.REFERENCE)) + (2 * ClassSize.CONCURRENT_SKIPLISTMAP));
+
+    /** heap used by a row in the index, without its key and its cells */
+    static final long ROW_OVERHEAD = ClassSize.align(ClassSize.OBJECT + 2 * ClassSize.REFERENCE)
+            + ClassSize.CONCURRENT_SKIPLISTMAP_ENTRY;
+
+    private final Configuration conf;
+
+    private volatile ConcurrentNavigableMap<byte[], Row> index;
+    private volatile ConcurrentNavigableMap<byte[], Row> snapshotIndex;
+
+    private volatile MemStoreLAB allocator;
+    private volatile MemStoreLAB snapshotAllocator;
+
+    private final AtomicReference<byte[]> startkey = new AtomicReference<>();
+    private final AtomicReference<byte[]> endkey = new AtomicReference<>();
+
+    private final AtomicInteger rowCount = new AtomicInteger();
+    private final AtomicInteger snapshotRowCount = new AtomicInteger();
+
+    // Used to track own heapSize
+    private final AtomicLong memstoreSize;
+    private volatile long snapshotSize;
+
+    // Used to track when to flush
+    volatile long timeOfOldestEdit = Long.MAX_VALUE;
+
+    volatile long snapshotId;
+
+    public SlabPMemStoreImpl(Configuration conf){
+        this.conf = conf;
+        this.index = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+        this.snapshotIndex = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+        this.allocator = createAllocator();
+        this.memstoreSize = new AtomicLong(DEEP_OVERHEAD);
+        this.snapshotSize = 0;
+    }
+
+    private MemStoreLAB createAllocator(){
+        if(conf == null){
+            return new HeapMemStoreLAB();
+        }
+        if(! conf.getBoolean(DefaultMemStore.USEMSLAB_KEY, DefaultMemStore.USEMSLAB_DEFAULT)){
+            return null;
+        }
+        String className = conf.get(DefaultMemStore.MSLAB_CLASS_NAME, HeapMemStoreLAB.class.getName());
+        return ReflectionUtils.instantiateWithCustomCtor(className,
+                new Class[]{Configuration.class}, new Object[]{conf});
+    }
+
+    /**
+     * insert mutation into memstore, merging it into the row if it is already there
+     * @param m a {@link Put}
+     * @return the heap added to the memstore
+     * @throws DoNotRetryIOException if the mutation is not a {@link Put}
+     */
+    @Override
+    public long add(Mutation m) throws IOException{
+        checkPut(m);
+        byte[] rowkey = m.getRow();
+        Cell[] cells = copyCells(m);
+        if(cells.length == 0) return 0;
+
+        long delta;
+        Row row = index.get(rowkey);
+        if(row == null){
+            Row newRow = new Row(rowkey, cells);
+            row = index.putIfAbsent(rowkey, newRow);
+            if(row == null){
+                delta = newRow.heapSize();
+                rowCount.incrementAndGet();
+                updateStartKey(rowkey);
+                updateEndKey(rowkey);
+            }else {
+                delta = row.merge(cells);
+            }
+        }else {
+            delta = row.merge(cells);
+        }
+        memstoreSize.addAndGet(delta);
+        setOldestEditTimeToNow();
+        return delta;
+    }
+
+    /**
+     * parquet stores keep one value per column and no delete markers, so only puts are taken
+     * @throws DoNotRetryIOException if the mutation is not a {@link Put}
+     */
+    static void checkPut(Mutation m) throws DoNotRetryIOException{
+        if(!(m instanceof Put)){
+            throw new DoNotRetryIOException("Parquet stores only take puts, got a "
+                    + m.getClass().getSimpleName() + " of row " + Bytes.toStringBinary(m.getRow()));
+        }
+    }
+
+    /**
+     * copy the cells of the mutation into the allocator, sorted by column
+     * with the last cell of a column only
+     */
+    private Cell[] copyCells(Mutation m) throws IOException{
+        List<Cell> copies = new ArrayList<>();
+        CellScanner scanner = m.cellScanner();
+        while (scanner.advance()){
+            Cell cell = maybeCloneWithAllocator(scanner.current());
+            int pos = Row.search(copies, cell);
+            if(pos >= 0){
+                copies.set(pos, cell);
+            }else {
+                copies.add(-(pos + 1), cell);
+            }
+        }
+        return copies.toArray(new Cell[copies.size()]);
+    }
+
+    private Cell maybeCloneWithAllocator(Cell cell) {
+        MemStoreLAB lab = this.allocator;
+        if (lab == null) {
+            return cell;
+        }
+
+        int len = KeyValueUtil.length(cell);
+        ByteRange alloc = lab.allocateBytes(len);
+        if (alloc == null) {
+            // The allocation was too large, allocator decided
+            // not to do anything with it.
+            return cell;
+        }
+        KeyValueUtil.appendToByteArray(cell, alloc.getBytes(), alloc.getOffset());
+        KeyValue newKv = new KeyValue(alloc.getBytes(), alloc.getOffset(), len);
+        newKv.setSequenceId(cell.getSequenceId());
+        return newKv;
+    }
+
+    private void updateStartKey(byte[] rowkey){
+        while (true){
+            byte[] curr = startkey.get();
+            if(curr != null && Bytes.compareTo(curr, rowkey) <= 0) return;
+            if(startkey.compareAndSet(curr, rowkey)) return;
+        }
+    }
+
+    private void updateEndKey(byte[] rowkey){
+        while (true){
+            byte[] curr = endkey.get();
+            if(curr != null && Bytes.compareTo(curr, rowkey) >= 0) return;
+            if(endkey.compareAndSet(curr, rowkey)) return;
+        }
+    }
+
+    /**
+     * get row from the memstore
+     *
+     * @param row
+     */
+    @Override
+    public Mutation get(byte[] row) {
+        Row r = index.get(row);
+        return r == null ? null : r.toMutation();
+    }
+
+    /**
+     * @return num in memory
+     */
+    @Override
+    public int getRecordCount(){
+        return rowCount.get();
+    }
+
+    /**
+     * remove the row of the mutation
+     *
+     * @param m
+     * @return heap released
+     */
+    @Override
+    public long delete(Mutation m) {
+        if(m == null) return 0;
+        Row row = index.remove(m.getRow());
+        if(row == null) return 0;
+        rowCount.decrementAndGet();
+        long released = row.heapSize();
+        memstoreSize.addAndGet(-released);
+        setOldestEditTimeToNow();
+        return released;
+    }
+
+    /**
+     * Creates a snapshot of the current memstore. Snapshot must be cleared by call to
+     * {@link #clearSnapshot(long)}.
+     *
+     * @return {@link PMemStoreSnapshot}
+     */
+    @Override
+    public PMemStoreSnapshot snapshot() {
+        if (!this.snapshotIndex.isEmpty()) {
+            LOG.warn("Snapshot called again without clearing previous. " +
+                    "Doing nothing. Another ongoing flush or did we fail last attempt?");
+            return null;
+        }
+        snapshotId = EnvironmentEdgeManager.currentTime();
+        this.snapshotSize = dataSize();
+        if(! index.isEmpty()){
+            this.snapshotIndex = this.index;
+            this.snapshotAllocator = this.allocator;
+            this.snapshotRowCount.set(rowCount.get());
+            this.index = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+            this.allocator = createAllocator();
+            this.rowCount.set(0);
+            this.memstoreSize.set(DEEP_OVERHEAD);
+            timeOfOldestEdit = Long.MAX_VALUE;
+        }
+
+        PMemStoreSnapshot snapshot = new PMemStoreSnapshot(snapshotId,
+                snapshotRowCount.get(),
+                snapshotSize,
+                new SlabPMemStoreScanner(snapshotIndex, snapshotRowCount.get(), null, null),
+                startkey.getAndSet(null), endkey.getAndSet(null));
+        if(!snapshotIndex.isEmpty()){
+            MetricsPStore.getInstance().updateMemStoreSnapshot(snapshotSize, snapshotRowCount.get());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Clears the current snapshot of the Memstore.
+     *
+     * @param id
+     * @throws UnexpectedStateException
+     * @see #snapshot()
+     */
+    @Override
+    public void clearSnapshot(long id) throws UnexpectedStateException {
+        if (this.snapshotId != id) {
+            throw new UnexpectedStateException("Current snapshot id is " + this.snapshotId + ",passed "
+                    + id);
+        }
+        MemStoreLAB tmpAllocator = null;
+        if (!this.snapshotIndex.isEmpty()) {
+            this.snapshotIndex = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+            this.snapshotRowCount.set(0);
+            tmpAllocator = this.snapshotAllocator;
+            this.snapshotAllocator = null;
+        }
+        this.snapshotSize = 0l;
+        this.snapshotId = -1l;
+        if (tmpAllocator != null) {
+            // the chunks go back to the pool once the last scanner on them is closed
+            tmpAllocator.close();
+        }
+    }
+
+    @Override
+    public long getCurrSnapshotId(){
+        return snapshotId;
+    }
+
+    /**
+     * @return Approximate 'exclusive deep size' of implementing object.  Includes
+     * count of payload and hosting object sizings.
+     */
+    @Override
+    public long heapSize() {
+        return this.memstoreSize.get();
+    }
+
+    @Override
+    public long getFlushableSize() {
+        return this.snapshotSize > 0 ? snapshotSize : dataSize();
+    }
+
+    /**
+     * @return Oldest timestamp of all the Mutations in the MemStore
+     */
+    @Override
+    public long timeOfOldestEdit() {
+        return this.timeOfOldestEdit;
+    }
+
+    @Override
+    public byte[] getStartKey() {
+        return this.startkey.get();
+    }
+
+    @Override
+    public byte[] getEndKey() {
+        return this.endkey.get();
+    }
+
+    /**
+     * @return Total memory occupied by this MemStore.
+     */
+    @Override
+    public long size() {
+        return heapSize();
+    }
+
+    public long dataSize(){
+        return size() - DEEP_OVERHEAD;
+    }
+
+    void setOldestEditTimeToNow() {
+        if (timeOfOldestEdit == Long.MAX_VALUE) {
+            timeOfOldestEdit = EnvironmentEdgeManager.currentTime();
+        }
+    }
+
+    @Override
+    public RowScanner getScanner(Scan scan) {
+        return new SlabPMemStoreScanner(this.index, rowCount.get(), this.allocator, scan);
+    }
+
+    @Override
+    public RecordScanner getSnapshotScanner(Scan scan){
+        return new SlabPMemStoreScanner(this.snapshotIndex, snapshotRowCount.get(), this.snapshotAllocator, scan);
+    }
+
+    /**
+     * scanner over rows which are not kept by this memstore
+     */
+    @Override
+    public RowScanner getScanner(Map<byte[], Mutation> mutations, Scan scan) {
+        ConcurrentNavigableMap<byte[], Row> rows = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+        for(Map.Entry<byte[], Mutation> entry : mutations.entrySet()){
+            try {
+                rows.put(entry.getKey(), new Row(entry.getKey(), sortedCells(entry.getValue())));
+            }catch (IOException ioe){
+                LOG.error(ioe);
+            }
+        }
+        return new SlabPMemStoreScanner(rows, rows.size(), null, scan);
+    }
+
+    static Cell[] sortedCells(Mutation m) throws IOException{
+        List<Cell> cells = new ArrayList<>();
+        CellScanner scanner = m.cellScanner();
+        while (scanner.advance()){
+            Cell cell = scanner.current();
+            int pos = Row.search(cells, cell);
+            if(pos >= 0){
+                cells.set(pos, cell);
+            }else {
+                cells.add(-(pos + 1), cell);
+            }
+        }
+        return cells.toArray(new Cell[cells.size()]);
+    }
+
+
+    /**
+     * a row of the memstore, the cells are ordered by family and qualifier,
+     * one cell per column
+     */
+    static final class Row {
+
+        private static final AtomicReferenceFieldUpdater<Row, Cell[]> CELLS_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Row.class, Cell[].class, "cells");
+
+        final byte[] key;
+        volatile Cell[] cells;
+
+        Row(byte[] key, Cell[] cells){
+            this.key = key;
+            this.cells = cells;
+        }
+
+        /**
+         * merge the cells into the row, the cells replace the ones of the same column
+         * @param updates cells ordered by column
+         * @return the change of the heap size of the row
+         */
+        long merge(Cell[] updates){
+            while (true){
+                Cell[] curr = cells;
+                List<Cell> merged = new ArrayList<>(curr.length + updates.length);
+                long delta = 0;
+                int i = 0, j = 0;
+                while (i < curr.length || j < updates.length){
+                    int c;
+                    if(i == curr.length) c = 1;
+                    else if(j == updates.length) c = -1;
+                    else c = compareColumn(curr[i], updates[j]);
+
+                    if(c < 0){
+                        merged.add(curr[i++]);
+                    }else if(c > 0){
+                        delta += cellHeapSize(updates[j]);
+                        merged.add(updates[j++]);
+                    }else {
+                        delta += cellHeapSize(updates[j]) - releasedHeapSize(curr[i]);
+                        merged.add(updates[j++]);
+                        i++;
+                    }
+                }
+                Cell[] next = merged.toArray(new Cell[merged.size()]);
+                delta += arrayHeapSize(next.length) - arrayHeapSize(curr.length);
+                if(CELLS_UPDATER.compareAndSet(this, curr, next)){
+                    return delta;
+                }
+            }
+        }
+
+        long heapSize(){
+            Cell[] curr = cells;
+            long size = ROW_OVERHEAD + ClassSize.align(ClassSize.ARRAY + key.length)
+                    + arrayHeapSize(curr.length);
+            for(Cell cell : curr){
+                size += cellHeapSize(cell);
+            }
+            return size;
+        }
+
+        Mutation toMutation(){
+            Put put = new Put(key);
+            for(Cell cell : cells){
+                try {
+                    put.add(cell);
+                }catch (IOException ioe){
+                    LOG.error(ioe);
+                }
+            }
+            return put;
+        }
+
+        static int search(List<Cell> cells, Cell cell){
+            int low = 0, high = cells.size() - 1;
+            while (low <= high){
+                int mid = (low + high) >>> 1;
+                int c = compareColumn(cells.get(mid), cell);
+                if(c < 0) low = mid + 1;
+                else if(c > 0) high = mid - 1;
+                else return mid;
+            }
+            return -(low + 1);
+        }
+
+        static int compareColumn(Cell left, Cell right){
+            int c = Bytes.compareTo(left.getFamilyArray(), left.getFamilyOffset(), left.getFamilyLength(),
+                    right.getFamilyArray(), right.getFamilyOffset(), right.getFamilyLength());
+            if(c != 0) return c;
+            return Bytes.compareTo(left.getQualifierArray(), left.getQualifierOffset(), left.getQualifierLength(),
+                    right.getQualifierArray(), right.getQualifierOffset(), right.getQualifierLength());
+        }
+
+        static long arrayHeapSize(int length){
+            return ClassSize.align(ClassSize.ARRAY + length * ClassSize.REFERENCE);
+        }
+
+        static long cellHeapSize(Cell cell){
+            return CellUtil.estimatedHeapSizeOf(cell);
+        }
+
+        /**
+         * heap given back when the cell is replaced, the bytes of a cell copied
+         * into a chunk stay there until the chunk is released
+         */
+        static long releasedHeapSize(Cell cell){
+            if(cell instanceof KeyValue && ((KeyValue) cell).getBuffer().length > ((KeyValue) cell).getLength()){
+                return cellHeapSize(cell) - ClassSize.align(((KeyValue) cell).getLength());
+            }
+            return cellHeapSize(cell);
+        }
+    }
+
+
+    /**
+     * row scanner for {@link SlabPMemStoreImpl}
+     */
+    class SlabPMemStoreScanner implements RowScanner, InternalRecordScanner {
+
+        private final NavigableMap<byte[], Row> rows;
+        private final MemStoreLAB allocatorAtCreation;
+        private Iterator<Row> it = null;
+        private Row curr = null;
+        private List<Cell> currCells = null;
+        private final ByteRange rowKey = new SimpleMutableByteRange();
+        private int countLeft = 0;
+        private final int rowCount;
+        private boolean closed = false;
+        private ParquetProjection projection = null;
+
+        /**
+         * @param rows rows to scan
+         * @param rowCount number of rows
+         * @param allocator allocator holding the cells of the rows, null if it may be released
+         *                  without waiting for this scanner
+         * @param scan the scan, null to return all the columns
+         */
+        SlabPMemStoreScanner(NavigableMap<byte[], Row> rows, int rowCount, MemStoreLAB allocator, Scan scan){
+            this.rows = rows;
+            this.allocatorAtCreation = allocator;
+            if(allocator != null){
+                allocator.incScannerCount();
+            }
+            if(scan != null){
+                initScanFilter(scan);
+            }
+            this.countLeft = rowCount;
+            this.rowCount = rowCount;
+            this.it = rows.values().iterator();
+            advance();
+        }
+
+        /**
+         * init the scan filter with the read schema
+         * @param scan
+         */
+        private void initScanFilter(Scan scan){
+            projection = ParquetProjection.fromCheckedScan(scan);
+        }
+
+        private void advance(){
+            curr = it.hasNext() ? it.next() : null;
+            currCells = null;
+        }
+
+        @Override
+        public void seek(byte[] rowkey){
+            if(rowkey == null || Bytes.compareTo(rowkey, HConstants.EMPTY_START_ROW) == 0)
+                return;
+            if(curr != null && Bytes.compareTo(curr.key, rowkey) >= 0)
+                return;
+            it = rows.tailMap(rowkey, true).values().iterator();
+            advance();
+        }
+
+        @Override
+        public boolean hasNext(){
+            return curr != null;
+        }
+
+        @Override
+        public Mutation nextRow(){
+            if(curr == null) return null;
+            Mutation m = curr.toMutation();
+            advance();
+            countLeft --;
+            return m;
+        }
+
+        @Override
+        public ByteRange peekRowKey() {
+            return curr == null ? null : rowKey.set(curr.key);
+        }
+
+        @Override
+        public List<Cell> peek() {
+            if(curr == null) return new LinkedList<>();
+            if(currCells == null){
+                List<Cell> cells = new ArrayList<>(curr.cells.length);
+                for(Cell cell : curr.cells){
+                    cells.add(cell);
+                }
+                currCells = cells;
+            }
+            return currCells;
+        }
+
+        @Override
+        public List<Cell> next() {
+            List<Cell> cells = new LinkedList<>();
+            if(curr == null) return cells;
+            for(Cell cell : curr.cells){
+                if(match(cell))
+                    cells.add(cell);
+            }
+            advance();
+            countLeft --;
+            return cells;
+        }
+
+        /**
+         * judge whether the cell is accepted by the readSchema
+         */
+        private boolean match(Cell cell){
+            return projection == null || projection.matches(cell);
+        }
+
+        @Override
+        public long getMaxResultsCount() {
+            return countLeft;
+        }
+
+        @Override
+        public long getRecordCount() {
+            return rowCount;
+        }
+
+        @Override
+        public byte[] getStartKey() {
+            return rows.isEmpty() ? null : rows.firstKey();
+        }
+
+        @Override
+        public byte[] getEndKey() {
+            return rows.isEmpty() ? null : rows.lastKey();
+        }
+
+        @Override
+        public void close() throws IOException {
+            curr = null;
+            currCells = null;
+            if(!closed){
+                closed = true;
+                if(allocatorAtCreation != null){
+                    allocatorAtCreation.decScannerCount();
+                }
+            }
+        }
+    }
+}
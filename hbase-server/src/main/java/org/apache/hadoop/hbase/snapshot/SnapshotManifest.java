@@ -45,6 +45,8 @@ import org.apache.hadoop.hbase.protobuf.generated.SnapshotProtos.SnapshotRegionM
 import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.HRegionFileSystem;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.PStoreFile;
 import org.apache.hadoop.hbase.regionserver.Store;
 import org.apache.hadoop.hbase.regionserver.StoreFile;
 import org.apache.hadoop.hbase.regionserver.StoreFileInfo;
@@ -53,6 +55,8 @@ import org.apache.hadoop.hbase.util.FSUtils;
 import org.apache.hadoop.hbase.util.FSTableDescriptors;
 import org.apache.hadoop.hbase.util.Threads;
 
+import parquet.hadoop.ParquetFileInfo;
+
 /**
  * Utility class to help read/write the Snapshot Manifest.
  *
@@ -185,6 +189,20 @@ public class SnapshotManifest {
         LOG.debug("Adding reference for file (" + (i+1) + "/" + sz + "): " + storeFile.getPath());
         visitor.storeFile(regionData, familyData, storeFile.getFileInfo());
       }
+
+      // 2.3. the parquet files of the store are kept aside from its hfiles
+      if (store instanceof HStore) {
+        List<PStoreFile> pStoreFiles = ((HStore) store).getPStoreFiles();
+        for (int i = 0, sz = pStoreFiles.size(); i < sz; i++) {
+          PStoreFile storeFile = pStoreFiles.get(i);
+          monitor.rethrowException();
+
+          LOG.debug("Adding reference for parquet file (" + (i+1) + "/" + sz + "): " +
+            storeFile.getStoreFilePath());
+          visitor.storeFile(regionData, familyData,
+            new StoreFileInfo(conf, fs, storeFile.getStoreFilePath()));
+        }
+      }
       visitor.familyClose(regionData, familyData);
     }
     visitor.regionClose(regionData);
@@ -223,6 +241,18 @@ public class SnapshotManifest {
         monitor.rethrowException();
 
         Collection<StoreFileInfo> storeFiles = regionFs.getStoreFiles(familyName);
+        Collection<ParquetFileInfo> pStoreFiles = regionFs.getPStoreFiles(familyName, false);
+        if (pStoreFiles != null && !pStoreFiles.isEmpty()) {
+          // the parquet files are not listed as the hfiles of the family
+          List<StoreFileInfo> allFiles = new ArrayList<StoreFileInfo>();
+          if (storeFiles != null) {
+            allFiles.addAll(storeFiles);
+          }
+          for (ParquetFileInfo pStoreFile: pStoreFiles) {
+            allFiles.add(new StoreFileInfo(conf, fs, pStoreFile.getFilePath()));
+          }
+          storeFiles = allFiles;
+        }
         if (storeFiles == null) {
           LOG.debug("No files under family: " + familyName);
           continue;
@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.mapreduce;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.pfile.MutationWriteSupport;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.io.pfile.PFileWriter;
+import org.apache.hadoop.hbase.io.pfile.PFileWriterSettings;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+import parquet.schema.MessageType;
+import parquet.schema.MessageTypeParser;
+
+/**
+ * Test the grouping and splitting of parquet files by {@link LoadIncrementalPFiles},
+ * without a cluster: the load into the regions is intercepted.
+ */
+@Category(SmallTests.class)
+public class TestLoadIncrementalPFiles {
+  private static final MessageType SCHEMA = MessageTypeParser.parseMessageType(
+      "message people { required binary rowkey; required int64 timestamp;"
+      + " optional binary cf:name; }");
+  private static final byte[] FAMILY = Bytes.toBytes("cf");
+  private static final byte[] NAME = Bytes.toBytes("name");
+
+  private Configuration conf;
+  private FileSystem fs;
+  private Path dir;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = HBaseConfiguration.create();
+    fs = FileSystem.getLocal(conf);
+    dir = new Path(new File(System.getProperty("test.build.data", "target/test-data"),
+        "TestLoadIncrementalPFiles-" + System.nanoTime()).getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    fs.delete(dir, true);
+  }
+
+  /**
+   * Write the rows <code>first</code> to <code>last</code> into a file of the family.
+   */
+  private Path writeFile(int first, int last) throws IOException {
+    Path path = new Path(new Path(dir, Bytes.toString(FAMILY)), "file" + first + ".parquet");
+    PFileWriter writer = new PFileWriter(conf, SCHEMA, new MutationWriteSupport(SCHEMA, null))
+        .addPath(path)
+        .addSettings(PFileWriterSettings.create(conf, null))
+        .build();
+    for (int i = first; i <= last; i++) {
+      Put put = new Put(Bytes.toBytes("row" + i));
+      put.addColumn(FAMILY, NAME, 1L, Bytes.toBytes("name" + i));
+      writer.append(put);
+    }
+    writer.close();
+    return path;
+  }
+
+  /**
+   * @return a table of two regions split at row5
+   */
+  private static HTable mockTable() throws IOException {
+    HTable table = Mockito.mock(HTable.class);
+    Mockito.when(table.getName()).thenReturn(TableName.valueOf("TestLoadIncrementalPFiles"));
+    Mockito.when(table.getStartEndKeys()).thenReturn(new Pair<byte[][], byte[][]>(
+        new byte[][] { HConstants.EMPTY_START_ROW, Bytes.toBytes("row5") },
+        new byte[][] { Bytes.toBytes("row5"), HConstants.EMPTY_END_ROW }));
+    return table;
+  }
+
+  private List<String> readRows(Path path) throws IOException {
+    List<String> rows = new ArrayList<String>();
+    PFileReader reader = new PFileReader(path, conf, SCHEMA);
+    try {
+      PFileReader.PFileScanner scanner = reader.getScanner();
+      while (scanner.hasNext()) {
+        rows.add(Bytes.toString(CellUtil.cloneRow(scanner.next().get(0))));
+      }
+    } finally {
+      reader.close();
+    }
+    return rows;
+  }
+
+  private static List<String> rows(int first, int last) {
+    List<String> rows = new ArrayList<String>();
+    for (int i = first; i <= last; i++) {
+      rows.add("row" + i);
+    }
+    return rows;
+  }
+
+  /**
+   * Loader keeping the region groups instead of sending them to the region servers.
+   */
+  private class RecordingLoader extends LoadIncrementalPFiles {
+    final List<byte[]> regions = new ArrayList<byte[]>();
+    final List<List<String>> loadedRows = new ArrayList<List<String>>();
+    final List<Path> loadedPaths = new ArrayList<Path>();
+
+    RecordingLoader() {
+      super(conf);
+    }
+
+    @Override
+    protected List<LoadQueueItem> tryAtomicRegionLoad(HConnection conn, TableName tableName,
+        byte[] first, List<LoadQueueItem> lqis) throws IOException {
+      regions.add(first);
+      for (LoadQueueItem item : lqis) {
+        assertArrayEquals(FAMILY, item.family);
+        // the files have to be read now, the split ones are gone after the load
+        loadedRows.add(readRows(item.path));
+        loadedPaths.add(item.path);
+      }
+      return new ArrayList<LoadQueueItem>();
+    }
+  }
+
+  @Test
+  public void testLoadFileInOneRegion() throws IOException {
+    Path file = writeFile(6, 9);
+    RecordingLoader loader = new RecordingLoader();
+    loader.doBulkLoad(dir, mockTable());
+
+    assertEquals(1, loader.regions.size());
+    assertArrayEquals(Bytes.toBytes("row5"), loader.regions.get(0));
+    assertEquals("a file fitting in a region is loaded as is",
+        fs.makeQualified(file), fs.makeQualified(loader.loadedPaths.get(0)));
+    assertFalse(fs.exists(new Path(dir, LoadIncrementalPFiles.TMP_DIR)));
+  }
+
+  @Test
+  public void testSplitFileIsCleanedUp() throws IOException {
+    Path file = writeFile(0, 9);
+    RecordingLoader loader = new RecordingLoader();
+    loader.doBulkLoad(dir, mockTable());
+
+    assertEquals(2, loader.regions.size());
+    assertArrayEquals(HConstants.EMPTY_START_ROW, loader.regions.get(0));
+    assertArrayEquals(Bytes.toBytes("row5"), loader.regions.get(1));
+    assertEquals(rows(0, 4), loader.loadedRows.get(0));
+    assertEquals(rows(5, 9), loader.loadedRows.get(1));
+
+    assertFalse("the split files are deleted after the load",
+        fs.exists(new Path(dir, LoadIncrementalPFiles.TMP_DIR)));
+    assertTrue("the file they were split from is left to the caller", fs.exists(file));
+  }
+
+  @Test
+  public void testSplitFileIsCleanedUpOnFailure() throws IOException {
+    writeFile(0, 9);
+    LoadIncrementalPFiles loader = new LoadIncrementalPFiles(conf) {
+      @Override
+      protected List<LoadQueueItem> tryAtomicRegionLoad(HConnection conn, TableName tableName,
+          byte[] first, List<LoadQueueItem> lqis) throws IOException {
+        throw new IOException("injected");
+      }
+    };
+    try {
+      loader.doBulkLoad(dir, mockTable());
+      fail("the failure of the region load should be thrown");
+    } catch (IOException e) {
+      assertEquals("injected", e.getMessage());
+    }
+    assertFalse(fs.exists(new Path(dir, LoadIncrementalPFiles.TMP_DIR)));
+  }
+}
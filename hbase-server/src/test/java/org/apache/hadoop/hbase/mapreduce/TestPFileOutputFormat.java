@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.mapreduce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import parquet.hadoop.ParquetFileReader;
+import parquet.schema.MessageType;
+import parquet.schema.MessageTypeParser;
+
+/**
+ * Test the parquet files written by {@link PFileOutputFormat}.
+ */
+@Category(SmallTests.class)
+public class TestPFileOutputFormat {
+  private static final MessageType SCHEMA = MessageTypeParser.parseMessageType(
+      "message people { required binary rowkey; required int64 timestamp;"
+      + " optional binary cf1:name; optional binary cf1:city; optional binary cf2:job; }");
+  private static final byte[] CF1 = Bytes.toBytes("cf1");
+  private static final byte[] CF2 = Bytes.toBytes("cf2");
+  private static final byte[] NAME = Bytes.toBytes("name");
+  private static final byte[] CITY = Bytes.toBytes("city");
+  private static final byte[] JOB = Bytes.toBytes("job");
+
+  private Configuration conf;
+  private FileSystem fs;
+  private Path dir;
+
+  @Before
+  public void setUp() throws IOException {
+    conf = HBaseConfiguration.create();
+    fs = FileSystem.getLocal(conf);
+    dir = new Path(new File(System.getProperty("test.build.data", "target/test-data"),
+        "TestPFileOutputFormat-" + System.nanoTime()).getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    fs.delete(dir, true);
+  }
+
+  private static Put put(String row, byte[] family, byte[] qualifier, String value) {
+    Put put = new Put(Bytes.toBytes(row));
+    put.addColumn(family, qualifier, 1L, Bytes.toBytes(value));
+    return put;
+  }
+
+  private void write(PFileOutputFormat.PFileRecordWriter writer, Put put) throws IOException {
+    writer.write(new ImmutableBytesWritable(put.getRow()), put);
+  }
+
+  /**
+   * @return the only file written for the family
+   */
+  private Path familyFile(byte[] family) throws IOException {
+    FileStatus[] files = fs.listStatus(new Path(dir, Bytes.toString(family)));
+    assertEquals(1, files.length);
+    assertTrue(files[0].getPath().getName().endsWith(".parquet"));
+    return files[0].getPath();
+  }
+
+  private List<List<Cell>> read(Path path) throws IOException {
+    List<List<Cell>> rows = new ArrayList<List<Cell>>();
+    PFileReader reader = new PFileReader(path, conf, SCHEMA);
+    try {
+      PFileReader.PFileScanner scanner = reader.getScanner();
+      while (scanner.hasNext()) {
+        rows.add(new ArrayList<Cell>(scanner.next()));
+      }
+    } finally {
+      reader.close();
+    }
+    return rows;
+  }
+
+  private static String value(List<Cell> cells, byte[] family, byte[] qualifier) {
+    for (Cell cell : cells) {
+      if (CellUtil.matchingColumn(cell, family, qualifier)) {
+        return Bytes.toString(CellUtil.cloneValue(cell));
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testOneFilePerFamily() throws IOException {
+    PFileOutputFormat.PFileRecordWriter writer =
+        new PFileOutputFormat.PFileRecordWriter(conf, dir, SCHEMA);
+    // the puts of a row arrive one column at a time
+    write(writer, put("row1", CF1, NAME, "name1"));
+    write(writer, put("row1", CF1, CITY, "city1"));
+    write(writer, put("row1", CF2, JOB, "job1"));
+    write(writer, put("row2", CF1, NAME, "name2"));
+    write(writer, put("row3", CF2, JOB, "job3"));
+    writer.close(null);
+
+    List<List<Cell>> rows = read(familyFile(CF1));
+    assertEquals("the puts of a row are merged", 2, rows.size());
+    assertEquals("row1", Bytes.toString(CellUtil.cloneRow(rows.get(0).get(0))));
+    assertEquals("name1", value(rows.get(0), CF1, NAME));
+    assertEquals("city1", value(rows.get(0), CF1, CITY));
+    assertEquals("name2", value(rows.get(1), CF1, NAME));
+
+    Path cf2 = familyFile(CF2);
+    rows = read(cf2);
+    assertEquals(2, rows.size());
+    assertEquals("job1", value(rows.get(0), CF2, JOB));
+    assertEquals("job3", value(rows.get(1), CF2, JOB));
+
+    Map<String, String> meta =
+        ParquetFileReader.readFooter(conf, cf2).getFileMetaData().getKeyValueMetaData();
+    assertEquals("row1", meta.get(HConstants.START_KEY));
+    assertEquals("row3", meta.get(HConstants.END_KEY));
+  }
+
+  @Test
+  public void testRowsOutOfOrder() throws IOException {
+    PFileOutputFormat.PFileRecordWriter writer =
+        new PFileOutputFormat.PFileRecordWriter(conf, dir, SCHEMA);
+    write(writer, put("row2", CF1, NAME, "name2"));
+    try {
+      write(writer, put("row1", CF1, NAME, "name1"));
+      fail("a row before the previous one should be rejected");
+    } catch (IOException e) {
+      // expected
+    } finally {
+      writer.close(null);
+    }
+  }
+
+  @Test
+  public void testNoSchema() throws Exception {
+    Job job = Job.getInstance(conf);
+    FileOutputFormat.setOutputPath(job, dir);
+    TaskAttemptContext context = new TaskAttemptContextImpl(job.getConfiguration(),
+        TaskAttemptID.forName("attempt_200707121733_0001_m_000000_0"));
+    try {
+      new PFileOutputFormat().getRecordWriter(context);
+      fail("the schema of the table is needed to write the files");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains(PFileOutputFormat.SCHEMA_CONF_KEY));
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.mapreduce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.backup.HFileArchiver;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.errorhandling.ForeignExceptionDispatcher;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.protobuf.generated.HBaseProtos.SnapshotDescription;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.snapshot.SnapshotDescriptionUtils;
+import org.apache.hadoop.hbase.snapshot.SnapshotManifest;
+import org.apache.hadoop.hbase.snapshot.SnapshotManifestV2;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.FSUtils;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Test the splits and the reads of the parquet files of a snapshot by
+ * {@link TableSnapshotPFileInputFormat}, without a cluster: the snapshot is taken of a local
+ * region, whose files are then archived as if its table was dropped.
+ */
+@Category(SmallTests.class)
+public class TestTableSnapshotPFileInputFormat {
+  private static final String SCHEMA = "message people { required binary rowkey;"
+      + " required int64 timestamp; optional binary cf:name; }";
+  private static final String SNAPSHOT = "TestTableSnapshotPFileInputFormat-snapshot";
+  private static final byte[] FAMILY = Bytes.toBytes("cf");
+  private static final byte[] NAME = Bytes.toBytes("name");
+
+  private Configuration conf;
+
+  @Before
+  public void setUp() throws IOException {
+    HBaseTestingUtility util = HBaseTestingUtility.createLocalHTU();
+    conf = util.getConfiguration();
+    Path rootDir = util.getDataTestDir();
+    FSUtils.setRootDir(conf, rootDir);
+    FileSystem fs = FileSystem.get(conf);
+
+    HTableDescriptor htd = new HTableDescriptor(
+        TableName.valueOf("TestTableSnapshotPFileInputFormat"));
+    htd.addFamily(new HColumnDescriptor(FAMILY));
+    htd.setValue(HConstants.SCHEMA, SCHEMA);
+    HRegionInfo hri = new HRegionInfo(htd.getTableName());
+    HRegion region = HRegion.createHRegion(hri, rootDir, conf, htd);
+    try {
+      // overlapping files merged by a split, with newer values of two rows, and a file of its own
+      write(region, 0, 38, 2, "name");
+      write(region, 10, 12, 2, "new");
+      write(region, 1, 39, 2, "name");
+      write(region, 50, 59, 1, "name");
+
+      SnapshotDescription desc = SnapshotDescription.newBuilder().setName(SNAPSHOT)
+          .setTable(htd.getTableName().getNameAsString())
+          .setVersion(SnapshotManifestV2.DESCRIPTOR_VERSION).build();
+      Path workingDir = SnapshotDescriptionUtils.getWorkingSnapshotDir(desc, rootDir);
+      SnapshotDescriptionUtils.writeSnapshotInfo(desc, workingDir, fs);
+      SnapshotManifest manifest = SnapshotManifest.create(conf, fs, workingDir, desc,
+          new ForeignExceptionDispatcher(SNAPSHOT));
+      manifest.addTableDescriptor(htd);
+      manifest.addRegion(region);
+      manifest.consolidate();
+      SnapshotDescriptionUtils.completeSnapshot(desc, rootDir, workingDir, fs);
+    } finally {
+      HRegion.closeHRegion(region);
+    }
+    // the snapshot keeps the files of the dropped table in the archive
+    HFileArchiver.archiveRegion(conf, fs, hri);
+  }
+
+  private static byte[] key(int i) {
+    return Bytes.toBytes(String.format("%03d", i));
+  }
+
+  private static void write(HRegion region, int first, int last, int step, String prefix)
+      throws IOException {
+    List<Put> puts = new ArrayList<Put>();
+    for (int i = first; i <= last; i += step) {
+      Put put = new Put(key(i));
+      put.setAttribute("type", Bytes.toBytes("parquet"));
+      put.addColumn(FAMILY, NAME, Bytes.toBytes(prefix + i));
+      puts.add(put);
+    }
+    region.batchMutate(puts.toArray(new Put[puts.size()]));
+    region.flushcache();
+  }
+
+  /**
+   * @return the name of each row read from the splits, the splits are passed through their
+   *   serialized form as for the tasks of a job
+   */
+  private Map<String, String> read(Scan scan, List<InputSplit> splits) throws Exception {
+    Job job = Job.getInstance(conf);
+    job.getConfiguration().set(TableInputFormat.SCAN, TableMapReduceUtil.convertScanToString(scan));
+    TableSnapshotPFileInputFormat.setInput(job, SNAPSHOT);
+    TableSnapshotPFileInputFormat inputFormat = new TableSnapshotPFileInputFormat();
+    splits.addAll(inputFormat.getSplits(job));
+
+    TaskAttemptContext context = new TaskAttemptContextImpl(job.getConfiguration(),
+        TaskAttemptID.forName("attempt_200707121733_0001_m_000000_0"));
+    Map<String, String> rows = new TreeMap<String, String>();
+    for (InputSplit split : splits) {
+      DataOutputBuffer out = new DataOutputBuffer();
+      ((TableSnapshotPFileInputFormat.PFileSnapshotSplit) split).write(out);
+      DataInputBuffer in = new DataInputBuffer();
+      in.reset(out.getData(), out.getLength());
+      TableSnapshotPFileInputFormat.PFileSnapshotSplit copy =
+          new TableSnapshotPFileInputFormat.PFileSnapshotSplit();
+      copy.readFields(in);
+
+      TableSnapshotPFileInputFormat.PFileSnapshotRecordReader reader =
+          (TableSnapshotPFileInputFormat.PFileSnapshotRecordReader)
+              inputFormat.createRecordReader(copy, context);
+      reader.initialize(copy, context);
+      try {
+        while (reader.nextKeyValue()) {
+          ImmutableBytesWritable row = reader.getCurrentKey();
+          Result result = reader.getCurrentValue();
+          assertTrue(Bytes.equals(row.copyBytes(), result.getRow()));
+          String previous = rows.put(Bytes.toString(result.getRow()),
+            Bytes.toString(result.getValue(FAMILY, NAME)));
+          assertEquals("a row is read by one split only", null, previous);
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    return rows;
+  }
+
+  private static void assertRows(Map<String, String> rows, int first, int last) {
+    for (int i = first; i <= last; i++) {
+      String name = rows.remove(Bytes.toString(key(i)));
+      assertEquals((i == 10 || i == 12 ? "new" : "name") + i, name);
+    }
+  }
+
+  @Test
+  public void testReadArchivedSnapshot() throws Exception {
+    List<InputSplit> splits = new ArrayList<InputSplit>();
+    Map<String, String> rows = read(new Scan(), splits);
+    assertRows(rows, 0, 39);
+    assertRows(rows, 50, 59);
+    assertTrue("no other row " + rows, rows.isEmpty());
+
+    boolean merged = false;
+    boolean rowGroups = false;
+    for (InputSplit split : splits) {
+      if (((TableSnapshotPFileInputFormat.PFileSnapshotSplit) split).isMerged()) {
+        merged = true;
+      } else {
+        rowGroups = true;
+      }
+    }
+    assertTrue("the overlapping files are merged", merged);
+    assertTrue("the file of its own is read by row group", rowGroups);
+  }
+
+  @Test
+  public void testReadRange() throws Exception {
+    Scan scan = new Scan(key(5), key(55));
+    Map<String, String> rows = read(scan, new ArrayList<InputSplit>());
+    assertRows(rows, 5, 39);
+    assertRows(rows, 50, 54);
+    assertTrue("no other row " + rows, rows.isEmpty());
+
+    scan = new Scan(key(40), key(50));
+    List<InputSplit> splits = new ArrayList<InputSplit>();
+    assertTrue(read(scan, splits).isEmpty());
+    assertEquals("no split of the rows between the files", 0, splits.size());
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hbase.regionserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hbase.CompatibilityFactory;
+import org.apache.hadoop.hbase.CompatibilitySingletonFactory;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.regionserver.memstore.OffheapPMemStoreImpl;
+import org.apache.hadoop.hbase.regionserver.memstore.PMemStore;
+import org.apache.hadoop.hbase.regionserver.memstore.PMemStoreSnapshot;
+import org.apache.hadoop.hbase.regionserver.memstore.SlabPMemStoreImpl;
+import org.apache.hadoop.hbase.test.MetricsAssertHelper;
+import org.apache.hadoop.hbase.testclassification.SmallTests;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Test the numbers pushed to {@link MetricsPStoreSource} by the parquet memstores, flushes and
+ * readers of a region server.
+ */
+@Category(SmallTests.class)
+public class TestMetricsPStore {
+  private static final MetricsAssertHelper HELPER =
+      CompatibilityFactory.getInstance(MetricsAssertHelper.class);
+  private static final String SCHEMA = "message people { required binary rowkey;"
+      + " required int64 timestamp; optional binary cf:name; }";
+  private static final byte[] FAMILY = Bytes.toBytes("cf");
+  private static final byte[] NAME = Bytes.toBytes("name");
+
+  private MetricsPStoreSource source;
+  private Configuration conf;
+  private HRegion region;
+
+  @Before
+  public void setUp() throws IOException {
+    HELPER.init();
+    source = CompatibilitySingletonFactory.getInstance(MetricsPStoreSource.class);
+    HBaseTestingUtility util = HBaseTestingUtility.createLocalHTU();
+    conf = util.getConfiguration();
+    HTableDescriptor htd = new HTableDescriptor(TableName.valueOf("TestMetricsPStore"));
+    htd.addFamily(new HColumnDescriptor(FAMILY));
+    htd.setValue(HConstants.SCHEMA, SCHEMA);
+    region = util.createLocalHRegion(new HRegionInfo(htd.getTableName()), htd);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    HRegion.closeHRegion(region);
+  }
+
+  private static Put put(int i) {
+    Put put = new Put(Bytes.toBytes(String.format("%03d", i)));
+    put.setAttribute("type", Bytes.toBytes("parquet"));
+    put.addColumn(FAMILY, NAME, Bytes.toBytes("name" + i));
+    return put;
+  }
+
+  private long count(String name) {
+    return HELPER.getCounter(name, source);
+  }
+
+  @Test
+  public void testMemStoreSnapshots() throws IOException {
+    for (PMemStore memStore : new PMemStore[] {
+        new SlabPMemStoreImpl(conf), new OffheapPMemStoreImpl(conf) }) {
+      String ops = MetricsPStoreSource.MEMSTORE_SNAPSHOT_ROWS + "_num_ops";
+      long snapshots = count(ops);
+      PMemStoreSnapshot empty = memStore.snapshot();
+      memStore.clearSnapshot(empty.getId());
+      assertEquals("an empty snapshot is not counted", snapshots, count(ops));
+
+      for (int i = 0; i < 10; i++) {
+        memStore.add(put(i));
+      }
+      PMemStoreSnapshot snapshot = memStore.snapshot();
+      assertEquals(memStore.getClass().getSimpleName(), snapshots + 1, count(ops));
+      memStore.clearSnapshot(snapshot.getId());
+    }
+  }
+
+  @Test
+  public void testWriterLength() throws IOException {
+    Map<String, String> meta = new HashMap<String, String>();
+    meta.put(HConstants.START_KEY, "000");
+    meta.put(HConstants.END_KEY, "019");
+    meta.put(HConstants.MAX_SEQ_ID, "1");
+    PStoreFile.Writer writer = ((HStore) region.getStore(FAMILY)).createParquetWriter(meta);
+    for (int i = 0; i < 20; i++) {
+      writer.append(put(i));
+    }
+    writer.close();
+    FileSystem fs = region.getRegionFileSystem().getFileSystem();
+    assertEquals("the flushes need not look the file up for its size",
+      fs.getFileStatus(writer.getFilePath()).getLen(), writer.getLength());
+  }
+
+  @Test
+  public void testReadsOfServerOnly() throws IOException {
+    for (int i = 0; i < 20; i++) {
+      region.put(put(i));
+    }
+    region.flushcache();
+    PStoreFile file = ((HStore) region.getStore(FAMILY)).getPStoreFiles().get(0);
+
+    long read = count(MetricsPStoreSource.ROW_GROUPS_READ);
+    PFileReader reader = new PFileReader(file.getPath(), conf, null, null, null, null, null);
+    assertEquals(20, scan(reader));
+    assertEquals("a reader out of the server reports nothing", read,
+      count(MetricsPStoreSource.ROW_GROUPS_READ));
+
+    reader = file.openReader(null, null, null, null, null);
+    assertEquals(20, scan(reader));
+    assertTrue(count(MetricsPStoreSource.ROW_GROUPS_READ) > read);
+  }
+
+  private static int scan(PFileReader reader) {
+    int rows = 0;
+    try {
+      PFileReader.PFileScanner scanner = reader.getScanner();
+      while (scanner.hasNext()) {
+        scanner.next();
+        rows++;
+      }
+    } finally {
+      reader.close();
+    }
+    return rows;
+  }
+}
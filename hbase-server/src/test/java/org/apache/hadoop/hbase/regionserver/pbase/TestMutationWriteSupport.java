@@ -0,0 +1,151 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.exceptions.FailedSanityCheckException;
+import org.apache.hadoop.hbase.io.pfile.MutationWriteSupport;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.io.pfile.PFileWriter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+import parquet.schema.MessageType;
+import parquet.schema.MessageTypeParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * test writing mutations to a parquet file with {@link MutationWriteSupport}
+ */
+public class TestMutationWriteSupport {
+
+    private static final MessageType SCHEMA = MessageTypeParser.parseMessageType(
+            "message people { required binary rowkey; required int64 timestamp; "
+                    + "optional binary cf:name; optional int32 cf:age; optional double cf:score; }");
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+
+    private static byte[] row(int i){
+        return String.format("%10d", i).getBytes();
+    }
+
+    private Path write(Configuration conf, Put... puts) throws IOException{
+        File dir = new File(System.getProperty("test.build.data", "target/test-data"));
+        Path path = new Path(new File(dir, "TestMutationWriteSupport-" + System.nanoTime()
+                + ".parquet").getAbsolutePath());
+        Map<String, String> meta = new HashMap<>();
+        meta.put(HConstants.START_KEY, Bytes.toString(puts[0].getRow()));
+        meta.put(HConstants.END_KEY, Bytes.toString(puts[puts.length - 1].getRow()));
+        PFileWriter writer = new PFileWriter(conf, SCHEMA, new MutationWriteSupport(SCHEMA, meta))
+                .addPath(path)
+                .build();
+        for(Put put : puts){
+            writer.append(put);
+        }
+        writer.close();
+        return path;
+    }
+
+    @Test
+    public void testTypedValues() throws IOException{
+        Configuration conf = HBaseConfiguration.create();
+        Put put1 = new Put(row(1));
+        put1.addColumn(FAMILY, Bytes.toBytes("name"), 10l, Bytes.toBytes("name1"));
+        put1.addColumn(FAMILY, Bytes.toBytes("age"), 10l, Bytes.toBytes(21));
+        put1.addColumn(FAMILY, Bytes.toBytes("score"), 12l, Bytes.toBytes(1.5d));
+        Put put2 = new Put(row(2));
+        put2.addColumn(FAMILY, Bytes.toBytes("age"), 20l, Bytes.toBytes(22));
+        put2.addColumn(FAMILY, Bytes.toBytes("other"), 30l, Bytes.toBytes("not in schema"));
+        Path path = write(conf, put1, put2);
+
+        PFileReader reader = new PFileReader(path, conf, SCHEMA);
+        try {
+            PFileReader.PFileScanner scanner = reader.getScanner();
+            List<Cell> cells = scanner.next();
+            Assert.assertEquals(3, cells.size());
+            for(Cell cell : cells){
+                Assert.assertArrayEquals(row(1), CellUtil.cloneRow(cell));
+                Assert.assertEquals("the newest cell timestamp should be kept", 12l, cell.getTimestamp());
+                String qualifier = Bytes.toString(CellUtil.cloneQualifier(cell));
+                if(qualifier.equals("name")){
+                    Assert.assertEquals("name1", Bytes.toString(CellUtil.cloneValue(cell)));
+                }else if(qualifier.equals("age")){
+                    Assert.assertEquals(21, Bytes.toInt(CellUtil.cloneValue(cell)));
+                }else {
+                    Assert.assertEquals(1.5d, Bytes.toDouble(CellUtil.cloneValue(cell)), 0d);
+                }
+            }
+
+            cells = scanner.next();
+            Assert.assertEquals(1, cells.size());
+            Assert.assertEquals(20l, cells.get(0).getTimestamp());
+            Assert.assertEquals(22, Bytes.toInt(CellUtil.cloneValue(cells.get(0))));
+            Assert.assertFalse(scanner.hasNext());
+        }finally {
+            reader.close();
+            FileSystem.getLocal(conf).delete(path, false);
+        }
+    }
+
+    @Test
+    public void testNewestValueWins() throws IOException{
+        Configuration conf = HBaseConfiguration.create();
+        Put put = new Put(row(1));
+        put.addColumn(FAMILY, Bytes.toBytes("name"), 2l, Bytes.toBytes("new"));
+        put.addColumn(FAMILY, Bytes.toBytes("name"), 1l, Bytes.toBytes("old"));
+        Path path = write(conf, put);
+
+        PFileReader reader = new PFileReader(path, conf, SCHEMA);
+        try {
+            List<Cell> cells = reader.getScanner().next();
+            Assert.assertEquals(1, cells.size());
+            Assert.assertEquals("new", Bytes.toString(CellUtil.cloneValue(cells.get(0))));
+        }finally {
+            reader.close();
+            FileSystem.getLocal(conf).delete(path, false);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadNumericValue(){
+        MutationWriteSupport support = new MutationWriteSupport(SCHEMA, null);
+        Put put = new Put(row(1));
+        put.addColumn(FAMILY, Bytes.toBytes("age"), Bytes.toBytes("21"));
+        // the value is rejected before the record consumer is touched
+        support.write(put);
+    }
+
+    @Test
+    public void testCheck() throws IOException{
+        MutationWriteSupport support = new MutationWriteSupport(SCHEMA, null);
+        Put put = new Put(row(1));
+        put.addColumn(FAMILY, Bytes.toBytes("name"), Bytes.toBytes("jack"));
+        put.addColumn(FAMILY, Bytes.toBytes("age"), Bytes.toBytes(21));
+        support.check(put);
+
+        Put badSize = new Put(row(2));
+        badSize.addColumn(FAMILY, Bytes.toBytes("score"), Bytes.toBytes(21));
+        Put unknownColumn = new Put(row(3));
+        unknownColumn.addColumn(FAMILY, Bytes.toBytes("city"), Bytes.toBytes("nowhere"));
+        Put unknownFamily = new Put(row(4));
+        unknownFamily.addColumn(Bytes.toBytes("other"), Bytes.toBytes("name"), Bytes.toBytes("jack"));
+        for(Put bad : new Put[]{badSize, unknownColumn, unknownFamily}){
+            try {
+                support.check(bad);
+                Assert.fail(bad + " does not fit the schema");
+            }catch (FailedSanityCheckException e){
+                //expected
+            }
+        }
+    }
+}
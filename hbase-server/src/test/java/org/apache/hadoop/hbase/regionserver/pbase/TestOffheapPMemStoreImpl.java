@@ -0,0 +1,154 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.regionserver.RegionServerAccounting;
+import org.apache.hadoop.hbase.regionserver.RowScanner;
+import org.apache.hadoop.hbase.regionserver.memstore.OffheapPMemStoreImpl;
+import org.apache.hadoop.hbase.regionserver.memstore.PMemStoreSnapshot;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * test the {@link org.apache.hadoop.hbase.regionserver.memstore.PMemStore} keeping the rows off heap
+ */
+public class TestOffheapPMemStoreImpl {
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+
+    private static byte[] row(int i){
+        return String.format("%10d", i).getBytes();
+    }
+
+    private static Put put(int i, String name, String age){
+        Put put = new Put(row(i));
+        if(name != null)
+            put.addColumn(FAMILY, Bytes.toBytes("name"), Bytes.toBytes(name));
+        if(age != null)
+            put.addColumn(FAMILY, Bytes.toBytes("age"), Bytes.toBytes(age));
+        return put;
+    }
+
+    @Test
+    public void testMergeRow() throws IOException{
+        OffheapPMemStoreImpl memStore = new OffheapPMemStoreImpl(HBaseConfiguration.create());
+        memStore.add(put(1, "name1", "age1"));
+        memStore.add(put(1, "name2", null));
+
+        Assert.assertEquals(1, memStore.getRecordCount());
+        Mutation m = memStore.get(row(1));
+        List<Cell> cells = m.getFamilyCellMap().get(FAMILY);
+        Assert.assertEquals(2, cells.size());
+        for(Cell cell : cells){
+            if(CellUtil.matchingQualifier(cell, Bytes.toBytes("name")))
+                Assert.assertArrayEquals(Bytes.toBytes("name2"), CellUtil.cloneValue(cell));
+            else
+                Assert.assertArrayEquals(Bytes.toBytes("age1"), CellUtil.cloneValue(cell));
+        }
+    }
+
+    @Test
+    public void testOffheapAccounting() throws IOException{
+        RegionServerAccounting accounting = new RegionServerAccounting();
+        OffheapPMemStoreImpl memStore = new OffheapPMemStoreImpl(HBaseConfiguration.create(), accounting);
+        long initialHeap = memStore.heapSize();
+        long added = 0;
+        for(int i = 1; i <= 100; ++i){
+            added += memStore.add(put(i, "name" + i, "age" + i));
+        }
+        Assert.assertTrue(memStore.offheapSize() > 0);
+        Assert.assertEquals(memStore.offheapSize(), accounting.getGlobalOffheapMemstoreSize());
+        Assert.assertEquals(initialHeap + added, memStore.size());
+        Assert.assertEquals(memStore.size() - memStore.offheapSize(), memStore.heapSize());
+        Assert.assertEquals("the fixed overhead is not flushed", added, memStore.getFlushableSize());
+
+        PMemStoreSnapshot snapshot = memStore.snapshot();
+        Assert.assertEquals(0, memStore.offheapSize());
+        Assert.assertEquals(added, memStore.getFlushableSize());
+        RowScanner scanner = snapshot.getScanner();
+        int count = 0;
+        while (scanner.hasNext()){
+            List<Cell> cells = scanner.next();
+            Assert.assertEquals(2, cells.size());
+            Assert.assertArrayEquals(row(++count), CellUtil.cloneRow(cells.get(0)));
+        }
+        Assert.assertEquals(100, count);
+        scanner.close();
+
+        memStore.clearSnapshot(snapshot.getId());
+        Assert.assertEquals(0, accounting.getGlobalOffheapMemstoreSize());
+        Assert.assertEquals(-1l, memStore.getCurrSnapshotId());
+        Assert.assertEquals(0, memStore.getFlushableSize());
+    }
+
+    @Test
+    public void testDeleteReleasesOffheap() throws IOException{
+        RegionServerAccounting accounting = new RegionServerAccounting();
+        OffheapPMemStoreImpl memStore = new OffheapPMemStoreImpl(HBaseConfiguration.create(), accounting);
+        memStore.add(put(1, "name1", "age1"));
+        long size = memStore.size();
+        long offheap = memStore.offheapSize();
+        long added = memStore.add(put(2, "name2", "age2"));
+        long rowOffheap = memStore.offheapSize() - offheap;
+        Assert.assertTrue(rowOffheap > 0);
+
+        Assert.assertEquals(added, memStore.delete(new Put(row(2))));
+        Assert.assertEquals(size, memStore.size());
+        Assert.assertEquals(offheap, memStore.offheapSize());
+        Assert.assertEquals(offheap, accounting.getGlobalOffheapMemstoreSize());
+        Assert.assertNull(memStore.get(row(2)));
+        Assert.assertEquals(1, memStore.getRecordCount());
+    }
+
+    @Test
+    public void testRejectNonPut() throws IOException{
+        OffheapPMemStoreImpl memStore = new OffheapPMemStoreImpl(HBaseConfiguration.create());
+        try {
+            memStore.add(new Delete(row(1)));
+            Assert.fail("a delete should not be added as a row");
+        }catch (DoNotRetryIOException e){
+            //expected
+        }
+        Assert.assertEquals(0, memStore.getRecordCount());
+    }
+
+    @Test
+    public void testScannerKeepsChunks() throws IOException{
+        //the memstores of a region server share its pool
+        RegionServerAccounting accounting = new RegionServerAccounting();
+        OffheapPMemStoreImpl memStore = new OffheapPMemStoreImpl(HBaseConfiguration.create(), accounting);
+        for(int i = 1; i <= 10; ++i){
+            memStore.add(put(i, "name" + i, "age" + i));
+        }
+        RowScanner scanner = memStore.getScanner(null);
+        PMemStoreSnapshot snapshot = memStore.snapshot();
+        memStore.clearSnapshot(snapshot.getId());
+
+        //the chunks are not reused while the scanner is open
+        OffheapPMemStoreImpl other = new OffheapPMemStoreImpl(HBaseConfiguration.create(), accounting);
+        for(int i = 1; i <= 10; ++i){
+            other.add(put(i, "other" + i, "other" + i));
+        }
+        int count = 0;
+        while (scanner.hasNext()){
+            Mutation m = scanner.nextRow();
+            ++count;
+            List<Cell> cells = m.getFamilyCellMap().get(FAMILY);
+            for(Cell cell : cells){
+                Assert.assertTrue(Bytes.toString(CellUtil.cloneValue(cell)).endsWith(String.valueOf(count)));
+                Assert.assertFalse(Bytes.toString(CellUtil.cloneValue(cell)).startsWith("other"));
+            }
+        }
+        Assert.assertEquals(10, count);
+        scanner.close();
+    }
+}
@@ -0,0 +1,65 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.pfile.MutationWriteSupport;
+import org.apache.hadoop.hbase.io.pfile.PFileWriter;
+import org.apache.hadoop.hbase.regionserver.PStoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+import parquet.hadoop.ParquetFileReader;
+import parquet.schema.MessageType;
+import parquet.schema.MessageTypeParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * test the parquet files written for a bulk load
+ */
+public class TestPFileBulkLoad {
+
+    private static final MessageType SCHEMA = MessageTypeParser.parseMessageType(
+            "message people { required binary rowkey; required int64 timestamp; optional binary cf:name; }");
+
+    @Test
+    public void testKeysFromWrittenRows() throws IOException{
+        Configuration conf = HBaseConfiguration.create();
+        File dir = new File(System.getProperty("test.build.data", "target/test-data"));
+        Path path = new Path(new File(dir, "TestPFileBulkLoad-" + System.nanoTime()
+                + ".parquet").getAbsolutePath());
+
+        // no start and end key given, as in PFileOutputFormat
+        PFileWriter writer = new PFileWriter(conf, SCHEMA, new MutationWriteSupport(SCHEMA, null))
+                .addPath(path)
+                .build();
+        for(int i = 1; i <= 3; ++i){
+            Put put = new Put(Bytes.toBytes("row" + i));
+            put.addColumn(Bytes.toBytes("cf"), Bytes.toBytes("name"), Bytes.toBytes("name" + i));
+            writer.append(put);
+        }
+        writer.close();
+
+        try {
+            Map<String, String> meta = ParquetFileReader.readFooter(conf, path)
+                    .getFileMetaData().getKeyValueMetaData();
+            Assert.assertEquals("row1", meta.get(HConstants.START_KEY));
+            Assert.assertEquals("row3", meta.get(HConstants.END_KEY));
+        }finally {
+            FileSystem.getLocal(conf).delete(path, false);
+        }
+    }
+
+    @Test
+    public void testSequenceIdFromName(){
+        Assert.assertEquals(12l, PStoreFile.getSequenceIdFromName("0a1b2c_SeqId_12_.parquet"));
+        Assert.assertEquals(-1l, PStoreFile.getSequenceIdFromName("0a1b2c.parquet"));
+        Assert.assertEquals(-1l, PStoreFile.getSequenceIdFromName("0a1b2c_SeqId_12_"));
+    }
+}
@@ -0,0 +1,145 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.pfile.MutationWriteSupport;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.io.pfile.PFileRowIndex;
+import org.apache.hadoop.hbase.io.pfile.PFileWriter;
+import org.apache.hadoop.hbase.util.BloomFilterFactory;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+import parquet.hadoop.metadata.BlockMetaData;
+import parquet.schema.MessageType;
+import parquet.schema.MessageTypeParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * test the rowkey bloom filter and index written in the footer of the parquet files
+ */
+public class TestPFileRowIndex {
+
+    private static final MessageType SCHEMA = MessageTypeParser.parseMessageType(
+            "message people { required binary rowkey; required int64 timestamp; optional binary cf:name; }");
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+    private static final int ROWS = 1000;
+
+    private static byte[] row(int i){
+        return String.format("%07d", i).getBytes();
+    }
+
+    private Path write(Configuration conf) throws IOException{
+        File dir = new File(System.getProperty("test.build.data", "target/test-data"));
+        Path path = new Path(new File(dir, "TestPFileRowIndex-" + System.nanoTime()
+                + ".parquet").getAbsolutePath());
+        PFileWriter writer = new PFileWriter(conf, SCHEMA, new MutationWriteSupport(SCHEMA, null))
+                .addPath(path)
+                .build();
+        //even rows only, the odd ones are missing
+        for(int i = 0; i < ROWS; i += 2){
+            Put put = new Put(row(i));
+            put.addColumn(FAMILY, Bytes.toBytes("name"), 1l, Bytes.toBytes("name" + i));
+            writer.append(put);
+        }
+        writer.close();
+        return path;
+    }
+
+    private static Configuration createConf(){
+        Configuration conf = HBaseConfiguration.create();
+        conf.setInt(PFileRowIndex.INDEX_INTERVAL_KEY, 16);
+        //several bloom chunks
+        conf.setInt(BloomFilterFactory.IO_STOREFILE_BLOOM_BLOCK_SIZE, 64);
+        return conf;
+    }
+
+    @Test
+    public void testBloomFilterAndIndex() throws IOException{
+        Configuration conf = createConf();
+        Path path = write(conf);
+        PFileReader reader = new PFileReader(path, conf, null);
+        try {
+            PFileRowIndex index = PFileRowIndex.read(
+                    reader.getFileInfo().getFileMetaData().getKeyValueMetaData());
+            Assert.assertNotNull(index);
+            Assert.assertTrue(index.hasBloomFilter());
+
+            int falsePositives = 0;
+            for(int i = 0; i < ROWS; ++i){
+                if(i % 2 == 0){
+                    Assert.assertTrue(index.mightContain(row(i)));
+                    Assert.assertEquals("rows are indexed every 16 rows", (i / 2) / 16 * 16,
+                            index.getRowOrdinal(row(i)));
+                }else if(index.mightContain(row(i))){
+                    falsePositives++;
+                }
+            }
+            Assert.assertTrue(falsePositives + " false positives", falsePositives < ROWS / 20);
+            Assert.assertEquals(-1, index.getRowOrdinal(Bytes.toBytes("")));
+        }finally {
+            reader.close();
+            FileSystem.getLocal(conf).delete(path, false);
+        }
+    }
+
+    @Test
+    public void testRowGroupKeys() throws IOException{
+        Configuration conf = createConf();
+        Path path = write(conf);
+        PFileReader reader = new PFileReader(path, conf, null);
+        try {
+            PFileRowIndex index = PFileRowIndex.read(
+                    reader.getFileInfo().getFileMetaData().getKeyValueMetaData());
+            List<BlockMetaData> blocks = reader.getFileInfo().getFooters().get(0).getParquetMetadata().getBlocks();
+            Assert.assertEquals(blocks.size(), index.getRowGroupCount());
+            Assert.assertArrayEquals(row(0), index.getRowGroupFirstKey(0));
+            Assert.assertArrayEquals(row(ROWS - 2), index.getRowGroupLastKey(blocks.size() - 1));
+            for(int i = 0; i < blocks.size(); ++i){
+                Assert.assertTrue(Bytes.compareTo(index.getRowGroupFirstKey(i), index.getRowGroupLastKey(i)) <= 0);
+                if(i > 0){
+                    Assert.assertTrue(Bytes.compareTo(index.getRowGroupLastKey(i - 1), index.getRowGroupFirstKey(i)) < 0);
+                }
+            }
+        }finally {
+            reader.close();
+            FileSystem.getLocal(conf).delete(path, false);
+        }
+    }
+
+    @Test
+    public void testSkipToOrdinal() throws IOException{
+        Configuration conf = createConf();
+        Path path = write(conf);
+        try {
+            for(int i = 0; i < ROWS; i += 50){
+                byte[] row = row(i);
+                PFileReader reader = new PFileReader(path, conf, null, row, Bytes.add(row, new byte[]{0}));
+                PFileRowIndex index = PFileRowIndex.read(
+                        reader.getFileInfo().getFileMetaData().getKeyValueMetaData());
+                PFileReader.PFileBatchScanner scanner = reader.getBatchScanner(8);
+                try {
+                    scanner.skipToOrdinal(index.getRowOrdinal(row));
+                    scanner.seek(row);
+                    Assert.assertTrue(scanner.hasNext());
+                    List<Cell> cells = scanner.next();
+                    Assert.assertArrayEquals(row, CellUtil.cloneRow(cells.get(0)));
+                    Assert.assertEquals("name" + i, Bytes.toString(CellUtil.cloneValue(cells.get(0))));
+                }finally {
+                    scanner.close();
+                }
+            }
+        }finally {
+            FileSystem.getLocal(conf).delete(path, false);
+        }
+    }
+}
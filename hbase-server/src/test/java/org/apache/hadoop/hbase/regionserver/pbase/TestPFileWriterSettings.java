@@ -0,0 +1,137 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.pfile.MutationWriteSupport;
+import org.apache.hadoop.hbase.io.pfile.PFileWriter;
+import org.apache.hadoop.hbase.io.pfile.PFileWriterSettings;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+import parquet.hadoop.ParquetFileReader;
+import parquet.hadoop.metadata.BlockMetaData;
+import parquet.hadoop.metadata.ColumnPath;
+import parquet.schema.MessageType;
+import parquet.schema.MessageTypeParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * test the sizes and encodings of the parquet files written by a store
+ */
+public class TestPFileWriterSettings {
+
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    public void testFamilyOverridesConfiguration(){
+        Configuration conf = HBaseConfiguration.create();
+        conf.setInt(PFileWriterSettings.ROW_GROUP_SIZE_KEY, 64 * MB);
+        conf.setInt(PFileWriterSettings.PAGE_SIZE_KEY, 2 * MB);
+        HColumnDescriptor family = new HColumnDescriptor("cf")
+                .setParquetPageSize(MB / 2)
+                .setParquetDictionary(false)
+                .setParquetAdaptiveSizing(false);
+
+        PFileWriterSettings settings = PFileWriterSettings.create(conf, family).adapt(MB, 128 * MB);
+        Assert.assertEquals(64 * MB, settings.getRowGroupSize());
+        Assert.assertEquals(MB / 2, settings.getPageSize());
+        Assert.assertEquals(PFileWriterSettings.DEFAULT_DICTIONARY_PAGE_SIZE, settings.getDictionaryPageSize());
+        Assert.assertFalse(settings.isDictionary());
+        Assert.assertFalse(settings.isAdaptive());
+        Assert.assertEquals(0, settings.getSampleRows());
+
+        settings = PFileWriterSettings.create(conf, new HColumnDescriptor("cf"));
+        Assert.assertEquals(2 * MB, settings.getPageSize());
+        Assert.assertTrue(settings.isDictionary());
+        Assert.assertTrue(settings.isAdaptive());
+    }
+
+    @Test
+    public void testAdaptRowGroupSize(){
+        Configuration conf = HBaseConfiguration.create();
+        conf.setInt(PFileWriterSettings.ROW_GROUP_SIZE_KEY, 128 * MB);
+
+        // a small flush is written in one row group
+        PFileWriterSettings settings = PFileWriterSettings.create(conf, null).adapt(10 * MB, 256 * MB);
+        Assert.assertEquals(10 * MB, settings.getRowGroupSize());
+        Assert.assertEquals(PFileWriterSettings.DEFAULT_PAGE_SIZE, settings.getPageSize());
+
+        // row groups of even size, no larger than a block
+        settings = PFileWriterSettings.create(conf, null).adapt(300 * MB, 64 * MB);
+        Assert.assertEquals(60 * MB, settings.getRowGroupSize());
+
+        // the row group size is an upper bound
+        settings = PFileWriterSettings.create(conf, null).adapt(300 * MB, 0);
+        Assert.assertEquals(100 * MB, settings.getRowGroupSize());
+
+        // pages are not larger than the row group
+        settings = PFileWriterSettings.create(conf, null).adapt(100 * 1024, 0);
+        Assert.assertEquals(100 * 1024, settings.getRowGroupSize());
+        Assert.assertEquals(100 * 1024, settings.getPageSize());
+        Assert.assertEquals(100 * 1024, settings.getDictionaryPageSize());
+    }
+
+    @Test
+    public void testSampleDictionaryColumns(){
+        Configuration conf = HBaseConfiguration.create();
+        List<Put> sample = new ArrayList<>();
+        for(int i = 0; i < 100; ++i){
+            Put put = new Put(Bytes.toBytes(String.format("%10d", i)));
+            put.addColumn(Bytes.toBytes("cf"), Bytes.toBytes("city"), Bytes.toBytes("city" + (i % 5)));
+            put.addColumn(Bytes.toBytes("cf"), Bytes.toBytes("name"), Bytes.toBytes("name" + i));
+            sample.add(put);
+        }
+        PFileWriterSettings settings = PFileWriterSettings.create(conf, null).sampleDictionaryColumns(sample);
+        Assert.assertEquals(1, settings.getDictionaryColumns().size());
+        Assert.assertTrue(settings.getDictionaryColumns().contains(ColumnPath.get("cf:city")));
+
+        conf.setBoolean(PFileWriterSettings.DICTIONARY_KEY, false);
+        settings = PFileWriterSettings.create(conf, null).sampleDictionaryColumns(sample);
+        Assert.assertNull(settings.getDictionaryColumns());
+    }
+
+    @Test
+    public void testEstimateEncodedSize() throws IOException{
+        Configuration conf = HBaseConfiguration.create();
+        conf.setBoolean(PFileWriterSettings.DICTIONARY_KEY, false);
+        MessageType schema = MessageTypeParser.parseMessageType(
+                "message people { required binary rowkey; required int64 timestamp; optional binary cf:name; }");
+        List<Put> rows = new ArrayList<>();
+        for(int i = 0; i < 10000; ++i){
+            Put put = new Put(Bytes.toBytes(String.format("%10d", i)));
+            put.addColumn(Bytes.toBytes("cf"), Bytes.toBytes("name"), Bytes.toBytes("name-of-the-row-" + i));
+            rows.add(put);
+        }
+        Assert.assertEquals(0, PFileWriterSettings.estimateEncodedSize(new ArrayList<Put>(), 100));
+        long estimate = PFileWriterSettings.estimateEncodedSize(rows.subList(0, 100), rows.size());
+
+        Path path = new Path(new File(System.getProperty("test.build.data", "target/test-data"),
+                "TestPFileWriterSettings-" + System.nanoTime() + ".parquet").getAbsolutePath());
+        PFileWriter writer = new PFileWriter(conf, schema, new MutationWriteSupport(schema, null))
+                .addPath(path)
+                .addSettings(PFileWriterSettings.create(conf, null))
+                .build();
+        for(Put put : rows){
+            writer.append(put);
+        }
+        writer.close();
+        try {
+            // the writer compares the uncompressed size of the row groups to the row group size
+            long written = 0;
+            for(BlockMetaData block : ParquetFileReader.readFooter(conf, path).getBlocks()){
+                written += block.getTotalByteSize();
+            }
+            Assert.assertTrue(estimate + " is far from " + written,
+                    estimate > written * 0.8 && estimate < written * 1.2);
+        }finally {
+            path.getFileSystem(conf).delete(path, false);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.PRegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * test the scanner of a parquet region over the files and the memstore
+ */
+public class TestPRegionScanner {
+
+    private static final String SCHEMA = "message people { required binary rowkey; required int64 timestamp;"
+            + " optional binary cf:name; }";
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+    private static final byte[] NAME = Bytes.toBytes("name");
+
+    private HRegion region;
+
+    @Before
+    public void setUp() throws IOException{
+        HBaseTestingUtility util = HBaseTestingUtility.createLocalHTU();
+        HTableDescriptor htd = new HTableDescriptor(TableName.valueOf("TestPRegionScanner"));
+        htd.addFamily(new HColumnDescriptor(FAMILY));
+        htd.setValue(HConstants.SCHEMA, SCHEMA);
+        region = util.createLocalHRegion(new HRegionInfo(htd.getTableName()), htd);
+
+        //a file of the even rows, the odd rows in the memstore
+        write(0, 2);
+        region.flushcache();
+        write(1, 2);
+    }
+
+    @After
+    public void tearDown() throws IOException{
+        HRegion.closeHRegion(region);
+    }
+
+    private static byte[] key(int i){
+        return Bytes.toBytes(String.format("%03d", i));
+    }
+
+    private void write(int first, int step) throws IOException{
+        List<Put> puts = new ArrayList<>();
+        for(int i = first; i < 40; i += step){
+            Put put = new Put(key(i));
+            put.setAttribute("type", Bytes.toBytes("parquet"));
+            put.addColumn(FAMILY, NAME, Bytes.toBytes("name" + i));
+            puts.add(put);
+        }
+        region.batchMutate(puts.toArray(new Put[puts.size()]));
+    }
+
+    private List<String> scanRows(Scan scan) throws IOException{
+        List<String> rows = new ArrayList<>();
+        PRegionScanner scanner = region.getPScanner(scan);
+        try {
+            while (scanner.hasNext()){
+                List<Cell> row = scanner.nextRaw();
+                if(!row.isEmpty()){
+                    rows.add(Bytes.toString(CellUtil.cloneRow(row.get(0))));
+                }
+            }
+        }finally {
+            scanner.close();
+        }
+        return rows;
+    }
+
+    private static void assertRows(List<String> rows, int first, int last){
+        Assert.assertEquals(last - first + 1, rows.size());
+        for(int i = first; i <= last; ++i){
+            Assert.assertEquals(Bytes.toString(key(i)), rows.get(i - first));
+        }
+    }
+
+    @Test
+    public void testStopRow() throws IOException{
+        assertRows(scanRows(new Scan()), 0, 39);
+        //the stop row is excluded, from the file and from the memstore
+        assertRows(scanRows(new Scan(key(5), key(20))), 5, 19);
+        assertRows(scanRows(new Scan(key(5), key(21))), 5, 20);
+        assertRows(scanRows(new Scan(HConstants.EMPTY_START_ROW, Bytes.toBytes("0105"))), 0, 10);
+        Assert.assertTrue(scanRows(new Scan(key(50), key(60))).isEmpty());
+    }
+
+    /**
+     * a filter failing on one row
+     */
+    private static class FailingFilter extends FilterBase {
+        private final byte[] failingRow;
+
+        FailingFilter(byte[] failingRow){
+            this.failingRow = failingRow;
+        }
+
+        @Override
+        public boolean filterRowKey(byte[] buffer, int offset, int length) throws IOException {
+            if(Bytes.equals(buffer, offset, length, failingRow, 0, failingRow.length)){
+                throw new IOException("injected");
+            }
+            return false;
+        }
+
+        @Override
+        public ReturnCode filterKeyValue(Cell cell) {
+            return ReturnCode.INCLUDE;
+        }
+    }
+
+    @Test
+    public void testFilter() throws IOException{
+        Scan scan = new Scan();
+        scan.setFilter(new PrefixFilter(Bytes.toBytes("01")));
+        assertRows(scanRows(scan), 10, 19);
+
+        for(int failing : new int[]{10, 11}){
+            scan = new Scan();
+            scan.setFilter(new FailingFilter(key(failing)));
+            try {
+                scanRows(scan);
+                Assert.fail("the rows of a failed filter are not dropped as filtered out");
+            }catch (IOException ioe){
+                Assert.assertEquals("injected", ioe.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.LeaseListener;
+import org.apache.hadoop.hbase.regionserver.Leases;
+import org.apache.hadoop.hbase.regionserver.PRegionScanner;
+import org.apache.hadoop.hbase.regionserver.PScanAhead;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * test the batches of the parquet scanners read ahead by the region server
+ */
+public class TestPScanAhead {
+
+    private final List<PScanAhead> scanAheads = new ArrayList<>();
+
+    @After
+    public void tearDown(){
+        for(PScanAhead scanAhead : scanAheads){
+            scanAhead.shutdown();
+        }
+    }
+
+    private PScanAhead create(int threads, int maxBatches){
+        PScanAhead scanAhead = new PScanAhead(threads, maxBatches, "TestPScanAhead");
+        scanAheads.add(scanAhead);
+        return scanAhead;
+    }
+
+    private static List<Result> batch(String row){
+        byte[] r = Bytes.toBytes(row);
+        return Arrays.asList(Result.create(new Cell[]{
+                new KeyValue(r, Bytes.toBytes("cf"), Bytes.toBytes("name"), r)}));
+    }
+
+    private static Callable<List<Result>> reader(final List<Result> batch, final AtomicInteger reads){
+        return new Callable<List<Result>>() {
+            @Override
+            public List<Result> call() {
+                reads.incrementAndGet();
+                return batch;
+            }
+        };
+    }
+
+    /**
+     * reader holding the lock of the scanner until released, like the reads of the region server
+     */
+    private static Callable<List<Result>> blockedReader(final PRegionScanner scanner,
+                                                        final CountDownLatch started,
+                                                        final CountDownLatch release){
+        return new Callable<List<Result>>() {
+            @Override
+            public List<Result> call() throws Exception {
+                synchronized (scanner){
+                    started.countDown();
+                    release.await();
+                    return batch("row");
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testHit() throws IOException{
+        PScanAhead scanAhead = create(2, 4);
+        PScanAhead.Slot slot = new PScanAhead.Slot(Mockito.mock(PRegionScanner.class));
+        AtomicInteger reads = new AtomicInteger();
+        List<Result> batch = batch("row1");
+
+        Assert.assertTrue(scanAhead.readAhead(slot, reader(batch, reads)));
+        Assert.assertFalse("one batch ahead per scanner",
+                scanAhead.readAhead(slot, reader(batch("row2"), reads)));
+        Assert.assertSame(batch, scanAhead.take(slot));
+        Assert.assertEquals(1, reads.get());
+        Assert.assertNull("the batch is taken once", scanAhead.take(slot));
+    }
+
+    @Test
+    public void testMiss() throws IOException{
+        PScanAhead scanAhead = create(2, 1);
+        AtomicInteger reads = new AtomicInteger();
+        PScanAhead.Slot first = new PScanAhead.Slot(Mockito.mock(PRegionScanner.class));
+        PScanAhead.Slot second = new PScanAhead.Slot(Mockito.mock(PRegionScanner.class));
+
+        Assert.assertTrue(scanAhead.readAhead(first, reader(batch("row1"), reads)));
+        Assert.assertFalse("too many batches wait to be sent",
+                scanAhead.readAhead(second, reader(batch("row2"), reads)));
+        Assert.assertNull("the caller reads the batch", scanAhead.take(second));
+
+        scanAhead.take(first);
+        Assert.assertTrue(scanAhead.readAhead(second, reader(batch("row2"), reads)));
+        Assert.assertNotNull(scanAhead.take(second));
+
+        PScanAhead disabled = create(0, 1);
+        Assert.assertFalse(disabled.readAhead(first, reader(batch("row1"), reads)));
+        Assert.assertNull(disabled.take(first));
+    }
+
+    @Test
+    public void testFailedReadIsReported() throws Exception{
+        PScanAhead scanAhead = create(1, 1);
+        PScanAhead.Slot slot = new PScanAhead.Slot(Mockito.mock(PRegionScanner.class));
+        final IOException failure = new IOException("injected");
+
+        scanAhead.readAhead(slot, new Callable<List<Result>>() {
+            @Override
+            public List<Result> call() throws IOException {
+                throw failure;
+            }
+        });
+        try {
+            scanAhead.take(slot);
+            Assert.fail("the failure of the read should be thrown to the client");
+        }catch (IOException e){
+            Assert.assertSame(failure, e);
+        }
+
+        //the failed batch does not hold its place
+        final RuntimeException bug = new IllegalStateException("bug");
+        Assert.assertTrue(scanAhead.readAhead(slot, new Callable<List<Result>>() {
+            @Override
+            public List<Result> call() {
+                throw bug;
+            }
+        }));
+        try {
+            scanAhead.take(slot);
+            Assert.fail("the failure of the read should be thrown to the client");
+        }catch (IOException e){
+            Assert.assertSame(bug, e.getCause());
+        }
+    }
+
+    @Test
+    public void testCloseDuringRead() throws Exception{
+        final PScanAhead scanAhead = create(1, 1);
+        PRegionScanner scanner = Mockito.mock(PRegionScanner.class);
+        final PScanAhead.Slot slot = new PScanAhead.Slot(scanner);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Assert.assertTrue(scanAhead.readAhead(slot, blockedReader(scanner, started, release)));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        Thread closer = new Thread(){
+            @Override
+            public void run() {
+                try {
+                    scanAhead.close(slot);
+                }catch (IOException e){
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        closer.start();
+        closer.join(200);
+        Assert.assertTrue("the close waits for the read in progress", closer.isAlive());
+        Assert.assertTrue("the read sees the scanner closed", slot.isClosed());
+        Mockito.verify(scanner, Mockito.never()).close();
+
+        release.countDown();
+        closer.join(10000);
+        Assert.assertFalse(closer.isAlive());
+        Mockito.verify(scanner).close();
+
+        Assert.assertNull("the batch is dropped", scanAhead.take(slot));
+        Assert.assertFalse(scanAhead.readAhead(slot, reader(batch("row"), new AtomicInteger())));
+        PScanAhead.Slot other = new PScanAhead.Slot(Mockito.mock(PRegionScanner.class));
+        Assert.assertTrue("the dropped batch does not hold its place",
+                scanAhead.readAhead(other, reader(batch("row"), new AtomicInteger())));
+    }
+
+    @Test
+    public void testLeaseExpiresDuringRead() throws Exception{
+        final PScanAhead scanAhead = create(1, 1);
+        PRegionScanner scanner = Mockito.mock(PRegionScanner.class);
+        final PScanAhead.Slot slot = new PScanAhead.Slot(scanner);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Leases leases = new Leases(Leases.MIN_WAIT_TIME);
+        leases.start();
+        try {
+            Assert.assertTrue(scanAhead.readAhead(slot, blockedReader(scanner, started, release)));
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            //the client went away while the batch is read
+            leases.createLease("scanner", 100, new LeaseListener() {
+                @Override
+                public void leaseExpired() {
+                    try {
+                        scanAhead.close(slot);
+                    }catch (IOException e){
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!slot.isClosed() && System.currentTimeMillis() < deadline){
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(slot.isClosed());
+            Mockito.verify(scanner, Mockito.never()).close();
+
+            release.countDown();
+            Mockito.verify(scanner, Mockito.timeout(10000)).close();
+            Assert.assertNull(scanAhead.take(slot));
+        }finally {
+            release.countDown();
+            leases.close();
+        }
+    }
+
+    /**
+     * reads the rows of a scanner one by one under its lock, like the region server
+     */
+    private static PScanAhead.BatchReader scannerReader(final PRegionScanner scanner,
+                                                        final List<Integer> asked){
+        return new PScanAhead.BatchReader() {
+            @Override
+            public List<Result> read(int rows) throws IOException {
+                List<Result> results = new ArrayList<>();
+                synchronized (scanner){
+                    asked.add(rows);
+                    while (results.size() < rows && scanner.hasNext()){
+                        List<Cell> row = scanner.nextRaw();
+                        if(!row.isEmpty()){
+                            results.add(Result.create(row));
+                        }
+                    }
+                }
+                return results;
+            }
+        };
+    }
+
+    @Test
+    public void testRowsChangeBetweenCalls() throws IOException{
+        HBaseTestingUtility util = HBaseTestingUtility.createLocalHTU();
+        HTableDescriptor htd = new HTableDescriptor(TableName.valueOf("TestPScanAhead"));
+        htd.addFamily(new HColumnDescriptor(Bytes.toBytes("cf")));
+        htd.setValue(HConstants.SCHEMA, "message people { required binary rowkey;"
+                + " required int64 timestamp; optional binary cf:name; }");
+        HRegion region = util.createLocalHRegion(new HRegionInfo(htd.getTableName()), htd);
+        try {
+            for(int i = 0; i < 100; ++i){
+                Put put = new Put(Bytes.toBytes(String.format("%03d", i)));
+                put.setAttribute("type", Bytes.toBytes("parquet"));
+                put.addColumn(Bytes.toBytes("cf"), Bytes.toBytes("name"), Bytes.toBytes("name" + i));
+                region.put(put);
+                if(i == 49){
+                    region.flushcache();
+                }
+            }
+
+            PScanAhead scanAhead = create(2, 4);
+            int[] calls = {5, 13, 1, 40, 2};
+            for(int caching : new int[]{0, 7}){
+                PRegionScanner scanner = region.getPScanner(new Scan());
+                PScanAhead.Slot slot = new PScanAhead.Slot(scanner, caching);
+                List<Integer> asked = new ArrayList<>();
+                PScanAhead.BatchReader reader = scannerReader(scanner, asked);
+                List<String> rows = new ArrayList<>();
+                for(int call = 0; ; ++call){
+                    List<Result> batch = scanAhead.next(slot, calls[call % calls.length], reader, false);
+                    if(batch.isEmpty()){
+                        break;
+                    }
+                    for(Result result : batch){
+                        rows.add(Bytes.toString(result.getRow()));
+                    }
+                }
+                scanAhead.close(slot);
+
+                Assert.assertEquals("caching " + caching, 100, rows.size());
+                for(int i = 0; i < 100; ++i){
+                    Assert.assertEquals(String.format("%03d", i), rows.get(i));
+                }
+                if(caching == 0){
+                    Assert.assertEquals("a scan without caching reads on the calls only",
+                            Arrays.asList(5, 13, 1, 40, 2, 5, 13, 1, 40), asked.subList(0, 9));
+                }else {
+                    Assert.assertEquals(5, (int) asked.get(0));
+                    for(int rowsAsked : asked.subList(1, asked.size())){
+                        Assert.assertEquals("the batches ahead are of the caching of the scan", 7, rowsAsked);
+                    }
+                }
+            }
+
+            //the last call of a scanner reads nothing ahead
+            PRegionScanner scanner = region.getPScanner(new Scan());
+            PScanAhead.Slot slot = new PScanAhead.Slot(scanner, 7);
+            List<Integer> asked = new ArrayList<>();
+            Assert.assertEquals(5, scanAhead.next(slot, 5, scannerReader(scanner, asked), true).size());
+            Assert.assertNull(scanAhead.take(slot));
+            Assert.assertEquals(Arrays.asList(5), asked);
+            scanAhead.close(slot);
+        }finally {
+            HRegion.closeHRegion(region);
+        }
+    }
+}
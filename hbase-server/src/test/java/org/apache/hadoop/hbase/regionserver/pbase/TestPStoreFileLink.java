@@ -0,0 +1,146 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.backup.HFileArchiver;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.HFileLink;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.PRegionScanner;
+import org.apache.hadoop.hbase.regionserver.PStoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.FSUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * test the parquet files of a table cloned from a snapshot, read through links to the
+ * files of the source table wherever they are when opened
+ */
+public class TestPStoreFileLink {
+
+    private static final String SCHEMA = "message people { required binary rowkey; required int64 timestamp;"
+            + " optional binary cf:name; }";
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+    private static final byte[] NAME = Bytes.toBytes("name");
+
+    private Configuration conf;
+    private FileSystem fs;
+    private Path rootDir;
+    private HRegion source;
+    private HRegionInfo sourceInfo;
+    private HRegion clone;
+
+    @Before
+    public void setUp() throws IOException{
+        HBaseTestingUtility util = HBaseTestingUtility.createLocalHTU();
+        conf = util.getConfiguration();
+        rootDir = util.getDataTestDir();
+        FSUtils.setRootDir(conf, rootDir);
+        fs = FileSystem.get(conf);
+
+        source = util.createLocalHRegion(new HRegionInfo(TableName.valueOf("TestPStoreFileLink")),
+                descriptor("TestPStoreFileLink"));
+        Put[] puts = new Put[20];
+        for(int i = 0; i < puts.length; ++i){
+            puts[i] = new Put(key(i));
+            puts[i].setAttribute("type", Bytes.toBytes("parquet"));
+            puts[i].addColumn(FAMILY, NAME, Bytes.toBytes("name" + i));
+        }
+        source.batchMutate(puts);
+        source.flushcache();
+
+        //link the file of the source from an empty region, as a clone does
+        HTableDescriptor htd = descriptor("TestPStoreFileLinkClone");
+        HRegionInfo hri = new HRegionInfo(htd.getTableName());
+        HRegion.closeHRegion(HRegion.createHRegion(hri, rootDir, conf, htd));
+        List<PStoreFile> files = ((HStore) source.getStore(FAMILY)).getPStoreFiles();
+        Assert.assertEquals(1, files.size());
+        Path familyDir = new Path(HRegion.getRegionDir(FSUtils.getTableDir(rootDir, htd.getTableName()),
+                hri.getEncodedName()), Bytes.toString(FAMILY));
+        Assert.assertTrue(HFileLink.create(conf, fs, familyDir, source.getRegionInfo(),
+                files.get(0).getPath().getName()));
+        clone = HRegion.openHRegion(conf, fs, rootDir, hri, htd, null);
+        sourceInfo = source.getRegionInfo();
+        HRegion.closeHRegion(source);
+        source = null;
+    }
+
+    @After
+    public void tearDown() throws IOException{
+        if(clone != null){
+            HRegion.closeHRegion(clone);
+        }
+        if(source != null){
+            HRegion.closeHRegion(source);
+        }
+    }
+
+    private static HTableDescriptor descriptor(String table){
+        HTableDescriptor htd = new HTableDescriptor(TableName.valueOf(table));
+        htd.addFamily(new HColumnDescriptor(FAMILY));
+        htd.setValue(HConstants.SCHEMA, SCHEMA);
+        return htd;
+    }
+
+    private static byte[] key(int i){
+        return Bytes.toBytes(String.format("%03d", i));
+    }
+
+    private int scanRows() throws IOException{
+        int rows = 0;
+        PRegionScanner scanner = clone.getPScanner(new Scan());
+        try {
+            while (scanner.hasNext()){
+                List<Cell> row = scanner.nextRaw();
+                Assert.assertArrayEquals(key(rows), CellUtil.cloneRow(row.get(0)));
+                rows++;
+            }
+        }finally {
+            scanner.close();
+        }
+        return rows;
+    }
+
+    @Test
+    public void testReadArchivedFile() throws IOException{
+        List<PStoreFile> files = ((HStore) clone.getStore(FAMILY)).getPStoreFiles();
+        Assert.assertEquals(1, files.size());
+        Assert.assertTrue(HFileLink.isHFileLink(files.get(0).getStoreFilePath()));
+        Assert.assertEquals(20, scanRows());
+
+        //the source table is dropped, its files are kept in the archive for the link
+        HFileArchiver.archiveRegion(conf, fs, sourceInfo);
+        Assert.assertFalse(fs.exists(files.get(0).getPath()));
+        Assert.assertEquals("the link is resolved again on open", 20, scanRows());
+    }
+
+    @Test
+    public void testFailOnMissingFile() throws IOException{
+        Path file = ((HStore) clone.getStore(FAMILY)).getPStoreFiles().get(0).getPath();
+        Assert.assertTrue(fs.delete(file, false));
+        try {
+            scanRows();
+            Assert.fail("the rows of a missing file are not skipped");
+        }catch (IOException ioe){
+            //expected
+        }
+    }
+}
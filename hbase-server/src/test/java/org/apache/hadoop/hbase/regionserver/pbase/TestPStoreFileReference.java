@@ -0,0 +1,171 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.HFileLink;
+import org.apache.hadoop.hbase.io.pfile.HalfPFileScanner;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.io.pfile.PFileRowIndex;
+import org.apache.hadoop.hbase.regionserver.InternalRecordScanner;
+import org.apache.hadoop.hbase.regionserver.PStoreFile;
+import org.apache.hadoop.hbase.regionserver.StoreFileInfo;
+import org.apache.hadoop.hbase.regionserver.memstore.PMemStore;
+import org.apache.hadoop.hbase.regionserver.memstore.PMemStoreImpl;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+import parquet.schema.MessageTypeParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * test the split references to the halves of the parquet files of a parent region
+ */
+public class TestPStoreFileReference {
+
+    private static final String PARENT = "1588230740aaaabbbbccccddddeeeeffff";
+
+    private static byte[] key(int i){
+        return Bytes.toBytes(String.format("%07d", i));
+    }
+
+    @Test
+    public void testReferenceName(){
+        String file = "9f8e7d6c5b4a39281706f5e4d3c2b1a0.parquet";
+        String bulkLoaded = "9f8e7d6c5b4a39281706f5e4d3c2b1a0_SeqId_12_.parquet";
+
+        Assert.assertFalse(PStoreFile.isReference(file));
+        Assert.assertTrue(PStoreFile.isPStoreFile(file));
+        Assert.assertTrue(PStoreFile.isReference(file + "." + PARENT));
+        Assert.assertTrue(PStoreFile.isReference(bulkLoaded + "." + PARENT));
+        Assert.assertTrue(PStoreFile.isPStoreFile(file + "." + PARENT));
+        Assert.assertFalse(PStoreFile.isPStoreFile("9f8e7d6c5b4a39281706f5e4d3c2b1a0"));
+
+        //only the references to the parquet files count as references of the region
+        Assert.assertFalse(StoreFileInfo.isReference(file));
+        Assert.assertFalse(StoreFileInfo.isReference(bulkLoaded));
+        Assert.assertTrue(StoreFileInfo.isReference(file + "." + PARENT));
+
+        Path reference = new Path("/hbase/data/default/t1/daughter/cf/" + file + "." + PARENT);
+        Assert.assertEquals(new Path("/hbase/data/default/t1/" + PARENT + "/cf/" + file),
+                PStoreFile.getReferredToFile(reference));
+    }
+
+    @Test
+    public void testSnapshotLinkName(){
+        String file = "9f8e7d6c5b4a39281706f5e4d3c2b1a0.parquet";
+        String link = HFileLink.createHFileLinkName(TableName.valueOf("t1"), PARENT, file);
+
+        Assert.assertTrue(StoreFileInfo.isPFile(file));
+        Assert.assertFalse(StoreFileInfo.isPFile(file + "." + PARENT));
+        Assert.assertFalse("parquet files are not opened as hfiles", StoreFileInfo.isHFile(file));
+        Assert.assertTrue(HFileLink.isHFileLink(link));
+        Assert.assertEquals(file, HFileLink.getReferencedHFileName(link));
+        Assert.assertEquals(PARENT, HFileLink.getReferencedRegionName(link));
+
+        //a reference to a parquet file of a cloned table
+        Assert.assertTrue(StoreFileInfo.isReference(link + "." + PARENT));
+        Assert.assertTrue(PStoreFile.isReference(link + "." + PARENT));
+        Path reference = new Path("/hbase/data/default/t2/daughter/cf/" + file + "." + PARENT);
+        Assert.assertEquals(PStoreFile.getReferredToFile(reference),
+                StoreFileInfo.getReferredToFile(reference));
+    }
+
+    @Test
+    public void testHalfScanner() throws IOException {
+        PMemStore memStore = new PMemStoreImpl(null);
+        for(int i = 0; i < 100; ++i){
+            Put put = new Put(key(i));
+            put.addColumn(Bytes.toBytes("cf"), Bytes.toBytes("name"), Bytes.toBytes("name" + i));
+            memStore.add(put);
+        }
+        byte[] splitRow = key(40);
+
+        HalfPFileScanner bottom = new HalfPFileScanner(
+                (InternalRecordScanner) memStore.getScanner(null), splitRow, false);
+        int rows = 0;
+        while (bottom.hasNext()){
+            Assert.assertArrayEquals(key(rows), bottom.next().get(0).getRow());
+            rows++;
+        }
+        Assert.assertEquals(40, rows);
+        Assert.assertNull(bottom.peekRowKey());
+        bottom.close();
+
+        HalfPFileScanner top = new HalfPFileScanner(
+                (InternalRecordScanner) memStore.getScanner(null), splitRow, true);
+        Assert.assertArrayEquals(splitRow, top.getStartKey());
+        top.seek(key(10));
+        Assert.assertArrayEquals("a top half starts at the split row", splitRow, top.peek().get(0).getRow());
+        top.seek(key(90));
+        rows = 0;
+        while (top.hasNext()){
+            Assert.assertArrayEquals(key(90 + rows), top.next().get(0).getRow());
+            rows++;
+        }
+        Assert.assertEquals(10, rows);
+        top.close();
+    }
+
+    @Test
+    public void testHalfCounts() throws IOException {
+        Configuration conf = HBaseConfiguration.create();
+        conf.setInt(PFileRowIndex.INDEX_INTERVAL_KEY, 8);
+        FileSystem fs = FileSystem.getLocal(conf);
+        Path path = new Path(new File(System.getProperty("test.build.data", "target/test-data"),
+                "TestPStoreFileReference-" + System.nanoTime() + ".parquet").getAbsolutePath());
+        Map<String, String> meta = new HashMap<>();
+        meta.put(HConstants.START_KEY, Bytes.toString(key(0)));
+        meta.put(HConstants.END_KEY, Bytes.toString(key(99)));
+        PStoreFile.Writer writer = new PStoreFile.WriterBuilder(conf, fs, MessageTypeParser.parseMessageType(
+                "message people { required binary rowkey; required int64 timestamp; optional binary cf:name; }"),
+                path).addMetaData(meta).build();
+        for(int i = 0; i < 100; ++i){
+            Put put = new Put(key(i));
+            put.addColumn(Bytes.toBytes("cf"), Bytes.toBytes("name"), Bytes.toBytes("name" + i));
+            writer.append(put);
+        }
+        writer.close();
+
+        try {
+            byte[] splitRow = key(42);
+            PFileReader reader = new PFileReader(path, conf, null);
+            PFileRowIndex rowIndex = reader.getRowIndex();
+            Assert.assertNotNull(rowIndex);
+            HalfPFileScanner bottom = new HalfPFileScanner(reader.getScanner(), splitRow, false, rowIndex);
+            //the rows before the split row are known up to the interval of the index
+            Assert.assertTrue(bottom.getRecordCount() > 42 - 8 && bottom.getRecordCount() <= 42);
+            Assert.assertTrue(bottom.getMaxResultsCount() >= 42 && bottom.getMaxResultsCount() < 42 + 8);
+            int rows = 0;
+            while (bottom.hasNext()){
+                Assert.assertTrue(bottom.getMaxResultsCount() >= 42 - rows);
+                bottom.next();
+                rows++;
+            }
+            Assert.assertEquals(42, rows);
+            reader.close();
+
+            reader = new PFileReader(path, conf, null);
+            HalfPFileScanner top = new HalfPFileScanner(reader.getScanner(), splitRow, true, reader.getRowIndex());
+            Assert.assertEquals(100, top.getRecordCount() + bottom.getRecordCount());
+            Assert.assertTrue(top.getMaxResultsCount() >= 58 && top.getMaxResultsCount() < 100);
+            reader.close();
+
+            //without an index each half is taken as half of the file
+            reader = new PFileReader(path, conf, null);
+            bottom = new HalfPFileScanner(reader.getScanner(), splitRow, false, null);
+            Assert.assertEquals(50, bottom.getRecordCount());
+            reader.close();
+        }finally {
+            fs.delete(path, false);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.PRegionScanner;
+import org.apache.hadoop.hbase.regionserver.ParallelPRegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import parquet.hadoop.ColumnBatch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * test the split of a region into ranges scanned at the same time
+ */
+public class TestParallelPRegionScanner {
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+    private static final byte[] NAME = Bytes.toBytes("name");
+    private static final int ROWS = 100;
+
+    private ThreadPoolExecutor pool;
+    private HRegion region;
+
+    @After
+    public void tearDown() throws IOException{
+        if(pool != null){
+            pool.shutdownNow();
+        }
+        if(region != null){
+            HRegion.closeHRegion(region);
+        }
+    }
+
+    private static byte[] key(int i){
+        return Bytes.toBytes(String.format("%07d", i));
+    }
+
+    private static Configuration conf(int threads){
+        Configuration conf = new Configuration(false);
+        conf.setInt(ParallelPRegionScanner.THREADS_KEY, threads);
+        //the workers wait for their rows to be consumed
+        conf.setInt(ParallelPRegionScanner.QUEUE_SIZE_KEY, 2);
+        return conf;
+    }
+
+    /**
+     * rows of a range of the region, the scan fails after failAfter rows if it is not negative
+     */
+    private static class RangeScanner implements PRegionScanner {
+        private final int stop;
+        private final long delay;
+        private final int failAfter;
+        private int next;
+        private int returned = 0;
+        volatile boolean closed = false;
+
+        RangeScanner(int start, int stop, long delay, int failAfter){
+            this.next = start;
+            this.stop = stop;
+            this.delay = delay;
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public HRegionInfo getRegionInfo() {
+            return null;
+        }
+
+        @Override
+        public boolean seek(byte[] row) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getMaxResultSize() {
+            return -1;
+        }
+
+        @Override
+        public List<Cell> nextRaw() throws IOException {
+            if(returned++ == failAfter){
+                throw new IOException("injected");
+            }
+            try {
+                Thread.sleep(delay);
+            }catch (InterruptedException ie){
+                Thread.currentThread().interrupt();
+            }
+            byte[] row = key(next++);
+            return Arrays.<Cell>asList(new KeyValue(row, FAMILY, NAME, row));
+        }
+
+        @Override
+        public ColumnBatch nextBatch(int maxRows) {
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < stop;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public List<Cell> peek() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isStopRow(byte[] row) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * a region of the rows 0 to ROWS, the first ranges are the slowest to scan
+     * so that they end last, the range starting at failingRange fails
+     */
+    private static HRegion mockRegion(final Configuration conf, final List<RangeScanner> scanners,
+                                      final int failingRange){
+        return Mockito.mock(HRegion.class, new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                String method = invocation.getMethod().getName();
+                if(method.equals("getBaseConf")){
+                    return conf;
+                }
+                if(method.equals("getPScanner")){
+                    Scan scan = (Scan) invocation.getArguments()[0];
+                    Assert.assertNull(scan.getAttribute(HConstants.SCAN_PARALLEL));
+                    int start = scan.getStartRow().length == 0
+                            ? 0 : Integer.parseInt(Bytes.toString(scan.getStartRow()));
+                    int stop = scan.getStopRow().length == 0
+                            ? ROWS : Integer.parseInt(Bytes.toString(scan.getStopRow()));
+                    RangeScanner scanner = new RangeScanner(start, stop, (ROWS - start) / 25,
+                            start == failingRange ? 5 : -1);
+                    synchronized (scanners){
+                        scanners.add(scanner);
+                    }
+                    return scanner;
+                }
+                return Mockito.RETURNS_DEFAULTS.answer(invocation);
+            }
+        });
+    }
+
+    private static List<byte[]> splitKeys(int... keys){
+        List<byte[]> splitKeys = new ArrayList<>();
+        for(int key : keys){
+            splitKeys.add(key(key));
+        }
+        return splitKeys;
+    }
+
+    private static List<String> scanRows(PRegionScanner scanner) throws IOException{
+        List<String> rows = new ArrayList<>();
+        try {
+            while (scanner.hasNext()){
+                rows.add(Bytes.toString(CellUtil.cloneRow(scanner.nextRaw().get(0))));
+            }
+        }finally {
+            scanner.close();
+        }
+        return rows;
+    }
+
+    private static void assertClosed(List<RangeScanner> scanners) throws InterruptedException{
+        long deadline = System.currentTimeMillis() + 10000;
+        boolean closed = false;
+        while (!closed && System.currentTimeMillis() < deadline){
+            Thread.sleep(10);
+            closed = true;
+            synchronized (scanners){
+                for(RangeScanner scanner : scanners){
+                    closed &= scanner.closed;
+                }
+            }
+        }
+        Assert.assertTrue("the scanners of the ranges are closed", closed);
+    }
+
+    @Test
+    public void testSelectSplitKeys(){
+        List<byte[]> boundaries = new ArrayList<>();
+        //two files with the same boundaries, added out of order
+        for(int i = 99; i >= 0; --i){
+            boundaries.add(key(i * 10));
+            boundaries.add(key(i * 10));
+        }
+
+        List<byte[]> splitKeys = ParallelPRegionScanner.selectSplitKeys(boundaries, 4);
+        Assert.assertEquals(3, splitKeys.size());
+        Assert.assertArrayEquals(key(250), splitKeys.get(0));
+        Assert.assertArrayEquals(key(500), splitKeys.get(1));
+        Assert.assertArrayEquals(key(750), splitKeys.get(2));
+
+        splitKeys = ParallelPRegionScanner.selectSplitKeys(boundaries.subList(0, 6), 16);
+        Assert.assertEquals("all the distinct boundaries when there are few", 3, splitKeys.size());
+        for(int i = 1; i < splitKeys.size(); ++i){
+            Assert.assertTrue(Bytes.compareTo(splitKeys.get(i - 1), splitKeys.get(i)) < 0);
+        }
+
+        Assert.assertTrue(ParallelPRegionScanner.selectSplitKeys(new ArrayList<byte[]>(), 16).isEmpty());
+    }
+
+    @Test
+    public void testOrdered() throws Exception{
+        Configuration conf = conf(3);
+        pool = ParallelPRegionScanner.createPool(conf, "TestParallelPRegionScanner");
+        List<RangeScanner> scanners = new ArrayList<>();
+        HRegion region = mockRegion(conf, scanners, -1);
+
+        List<String> rows = scanRows(new ParallelPRegionScanner(region, new Scan(),
+                splitKeys(25, 50, 75), true, pool));
+        Assert.assertEquals(ROWS, rows.size());
+        for(int i = 0; i < ROWS; ++i){
+            Assert.assertEquals(String.format("%07d", i), rows.get(i));
+        }
+        Assert.assertEquals(4, scanners.size());
+        assertClosed(scanners);
+    }
+
+    @Test
+    public void testUnordered() throws Exception{
+        Configuration conf = conf(4);
+        pool = ParallelPRegionScanner.createPool(conf, "TestParallelPRegionScanner");
+        List<RangeScanner> scanners = new ArrayList<>();
+        HRegion region = mockRegion(conf, scanners, -1);
+
+        List<String> rows = scanRows(new ParallelPRegionScanner(region, new Scan(),
+                splitKeys(25, 50, 75), false, pool));
+        Assert.assertEquals(ROWS, rows.size());
+        List<String> sorted = new ArrayList<>(rows);
+        Collections.sort(sorted);
+        Assert.assertNotEquals("the fastest ranges come first", sorted, rows);
+        for(int i = 0; i < ROWS; ++i){
+            Assert.assertEquals(String.format("%07d", i), sorted.get(i));
+        }
+        assertClosed(scanners);
+    }
+
+    @Test
+    public void testFailedRangeFailsTheScan() throws Exception{
+        for(boolean ordered : new boolean[]{true, false}){
+            Configuration conf = conf(2);
+            pool = ParallelPRegionScanner.createPool(conf, "TestParallelPRegionScanner");
+            List<RangeScanner> scanners = new ArrayList<>();
+            HRegion region = mockRegion(conf, scanners, 50);
+
+            PRegionScanner scanner = new ParallelPRegionScanner(region, new Scan(),
+                    splitKeys(25, 50, 75), ordered, pool);
+            int rows = 0;
+            try {
+                while (scanner.hasNext()){
+                    scanner.nextRaw();
+                    rows++;
+                }
+                Assert.fail("the scan should fail with its range");
+            }catch (IOException e){
+                Assert.assertEquals("injected", e.getCause().getMessage());
+            }
+            Assert.assertTrue("the rows stop at the failure", rows < ROWS);
+            Assert.assertFalse("the scan is closed", scanner.hasNext());
+            assertClosed(scanners);
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseCancelsTheRanges() throws Exception{
+        Configuration conf = conf(2);
+        pool = ParallelPRegionScanner.createPool(conf, "TestParallelPRegionScanner");
+        List<RangeScanner> scanners = new ArrayList<>();
+        HRegion region = mockRegion(conf, scanners, -1);
+
+        PRegionScanner scanner = new ParallelPRegionScanner(region, new Scan(),
+                splitKeys(25, 50, 75), true, pool);
+        Assert.assertTrue(scanner.hasNext());
+        scanner.nextRaw();
+        scanner.close();
+
+        Assert.assertFalse(scanner.hasNext());
+        Assert.assertTrue(scanner.nextRaw().isEmpty());
+        assertClosed(scanners);
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals("the ranges waiting for a thread are not scanned", 2, scanners.size());
+    }
+
+    @Test
+    public void testMatchesFullScan() throws IOException{
+        HBaseTestingUtility util = HBaseTestingUtility.createLocalHTU();
+        HTableDescriptor htd = new HTableDescriptor(TableName.valueOf("TestParallelPRegionScanner"));
+        htd.addFamily(new HColumnDescriptor(FAMILY));
+        htd.setValue(HConstants.SCHEMA, "message people { required binary rowkey; required int64 timestamp;"
+                + " optional binary cf:name; }");
+        region = util.createLocalHRegion(new HRegionInfo(htd.getTableName()), htd);
+        //two files spanning the region, and rows in the memstore
+        for(int part = 0; part < 3; ++part){
+            List<Put> puts = new ArrayList<>();
+            for(int i = part; i < ROWS; i += 3){
+                Put put = new Put(key(i));
+                put.setAttribute("type", Bytes.toBytes("parquet"));
+                put.addColumn(FAMILY, NAME, Bytes.toBytes("name" + i));
+                puts.add(put);
+            }
+            region.batchMutate(puts.toArray(new Put[puts.size()]));
+            if(part < 2){
+                region.flushcache();
+            }
+        }
+
+        pool = ParallelPRegionScanner.createPool(conf(3), "TestParallelPRegionScanner");
+        List<byte[]> splitKeys = ParallelPRegionScanner.selectSplitKeys(
+                ((HStore) region.getStore(FAMILY)).getRowGroupBoundaries(HConstants.EMPTY_START_ROW,
+                        HConstants.EMPTY_END_ROW), 8);
+        splitKeys.addAll(splitKeys(33, 66));
+        Collections.sort(splitKeys, Bytes.BYTES_COMPARATOR);
+
+        Scan scan = new Scan();
+        List<List<Cell>> expected = new ArrayList<>();
+        PRegionScanner full = region.getPScanner(scan);
+        try {
+            while (full.hasNext()){
+                expected.add(full.nextRaw());
+            }
+        }finally {
+            full.close();
+        }
+        Assert.assertEquals(ROWS, expected.size());
+
+        PRegionScanner parallel = new ParallelPRegionScanner(region, scan, splitKeys, true, pool);
+        try {
+            for(List<Cell> row : expected){
+                Assert.assertTrue(parallel.hasNext());
+                List<Cell> actual = parallel.nextRaw();
+                Assert.assertEquals(row.size(), actual.size());
+                for(int i = 0; i < row.size(); ++i){
+                    Assert.assertTrue(CellUtil.matchingRow(row.get(i), actual.get(i)));
+                    Assert.assertTrue(CellUtil.matchingColumn(row.get(i), actual.get(i)));
+                    Assert.assertTrue(CellUtil.matchingValue(row.get(i), actual.get(i)));
+                }
+            }
+            Assert.assertFalse(parallel.hasNext());
+        }finally {
+            parallel.close();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import com.google.protobuf.RpcCallback;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.client.coprocessor.LongColumnInterpreter;
+import org.apache.hadoop.hbase.coprocessor.ParquetAggregateImplementation;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.ipc.ServerRpcController;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.protobuf.generated.AggregateProtos.AggregateRequest;
+import org.apache.hadoop.hbase.protobuf.generated.AggregateProtos.AggregateResponse;
+import org.apache.hadoop.hbase.protobuf.generated.HBaseProtos.EmptyMsg;
+import org.apache.hadoop.hbase.protobuf.generated.HBaseProtos.LongMsg;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.PRegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * test the aggregations of a parquet table answered from the statistics of the row groups
+ */
+public class TestParquetAggregateImplementation {
+
+    private static final String SCHEMA = "message people { required binary rowkey; required int64 timestamp;"
+            + " optional binary cf:name; optional int64 cf:age; }";
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+    private static final byte[] NAME = Bytes.toBytes("name");
+    private static final byte[] AGE = Bytes.toBytes("age");
+
+    private HRegion region;
+    private HRegion spy;
+    private ParquetAggregateImplementation<Long, Long, EmptyMsg, LongMsg, LongMsg> aggregate;
+
+    @Before
+    public void setUp() throws IOException{
+        HBaseTestingUtility util = HBaseTestingUtility.createLocalHTU();
+        HTableDescriptor htd = new HTableDescriptor(TableName.valueOf("TestParquetAggregateImplementation"));
+        htd.addFamily(new HColumnDescriptor(FAMILY));
+        htd.setValue(HConstants.SCHEMA, SCHEMA);
+        region = util.createLocalHRegion(new HRegionInfo(htd.getTableName()), htd);
+
+        //the spy tells whether the rows are read
+        spy = Mockito.spy(region);
+        RegionCoprocessorEnvironment env = Mockito.mock(RegionCoprocessorEnvironment.class);
+        Mockito.when(env.getRegion()).thenReturn(spy);
+        aggregate = new ParquetAggregateImplementation<>();
+        aggregate.start(env);
+    }
+
+    @After
+    public void tearDown() throws IOException{
+        HRegion.closeHRegion(region);
+    }
+
+    private static byte[] key(int i){
+        return Bytes.toBytes(String.format("%03d", i));
+    }
+
+    /**
+     * put the rows from first to last, the odd rows have no age
+     */
+    private void write(int first, int last, long ageOffset) throws IOException{
+        Put[] puts = new Put[last - first + 1];
+        for(int i = first; i <= last; ++i){
+            Put put = new Put(key(i));
+            put.setAttribute("type", Bytes.toBytes("parquet"));
+            put.addColumn(FAMILY, NAME, Bytes.toBytes("name" + i));
+            if(i % 2 == 0){
+                put.addColumn(FAMILY, AGE, Bytes.toBytes(i + ageOffset));
+            }
+            puts[i - first] = put;
+        }
+        region.batchMutate(puts);
+    }
+
+    private static Scan scan(){
+        Scan scan = new Scan();
+        scan.addColumn(FAMILY, AGE);
+        return scan;
+    }
+
+    private static AggregateRequest request(Scan scan) throws IOException{
+        return AggregateRequest.newBuilder()
+                .setInterpreterClassName(LongColumnInterpreter.class.getName())
+                .setScan(ProtobufUtil.toScan(scan))
+                .build();
+    }
+
+    private static class Callback implements RpcCallback<AggregateResponse> {
+        AggregateResponse response;
+
+        @Override
+        public void run(AggregateResponse parameter) {
+            response = parameter;
+        }
+    }
+
+    private long rowNum(Scan scan) throws IOException{
+        ServerRpcController controller = new ServerRpcController();
+        Callback done = new Callback();
+        aggregate.getRowNum(controller, request(scan), done);
+        controller.checkFailed();
+        return Bytes.toLong(done.response.getFirstPart(0).toByteArray());
+    }
+
+    private long minMax(Scan scan, boolean max) throws IOException{
+        ServerRpcController controller = new ServerRpcController();
+        Callback done = new Callback();
+        if(max){
+            aggregate.getMax(controller, request(scan), done);
+        }else {
+            aggregate.getMin(controller, request(scan), done);
+        }
+        controller.checkFailed();
+        return LongMsg.parseFrom(done.response.getFirstPart(0)).getLongMsg();
+    }
+
+    /**
+     * @return the row count, min and max of the ages read by a scan of the region
+     */
+    private long[] fullScan(Scan scan) throws IOException{
+        long[] expected = new long[]{0, Long.MAX_VALUE, Long.MIN_VALUE};
+        PRegionScanner scanner = region.getPScanner(scan);
+        try {
+            while (scanner.hasNext()){
+                List<Cell> row = scanner.nextRaw();
+                boolean hasAge = false;
+                for(Cell cell : row){
+                    if(CellUtil.matchingColumn(cell, FAMILY, AGE)){
+                        long age = Bytes.toLong(CellUtil.cloneValue(cell));
+                        expected[1] = Math.min(expected[1], age);
+                        expected[2] = Math.max(expected[2], age);
+                        hasAge = true;
+                    }
+                }
+                if(hasAge){
+                    expected[0]++;
+                }
+            }
+        }finally {
+            scanner.close();
+        }
+        return expected;
+    }
+
+    private void assertMatchesFullScan(Scan scan) throws IOException{
+        long[] expected = fullScan(scan);
+        Assert.assertEquals(expected[0], rowNum(scan));
+        Assert.assertEquals(expected[1], minMax(scan, false));
+        Assert.assertEquals(expected[2], minMax(scan, true));
+    }
+
+    @Test
+    public void testFromStatistics() throws IOException{
+        write(0, 19, 100);
+        region.flushcache();
+        write(40, 59, 0);
+        region.flushcache();
+
+        Assert.assertEquals(20, rowNum(scan()));
+        Assert.assertEquals(40, minMax(scan(), false));
+        Assert.assertEquals(118, minMax(scan(), true));
+        Mockito.verify(spy, Mockito.never()).getParallelPScanner(Mockito.any(Scan.class), Mockito.anyBoolean());
+        assertMatchesFullScan(scan());
+    }
+
+    @Test
+    public void testMemStoreAndOverlappingFiles() throws IOException{
+        write(0, 19, 100);
+        region.flushcache();
+        write(40, 59, 0);
+        region.flushcache();
+        //rows between the files, and a file overlapping the last one
+        write(30, 30, 1000);
+        write(61, 61, 0);
+        region.flushcache();
+        write(22, 22, -100);
+        write(25, 25, 0);
+
+        assertMatchesFullScan(scan());
+        Mockito.verify(spy, Mockito.atLeastOnce()).getParallelPScanner(Mockito.any(Scan.class),
+                Mockito.anyBoolean());
+
+        Scan range = scan();
+        range.setStartRow(key(10));
+        range.setStopRow(key(50));
+        assertMatchesFullScan(range);
+
+        //the rows of the scans with a filter are read
+        Scan filtered = scan();
+        filtered.setFilter(new PrefixFilter(Bytes.toBytes("0")));
+        assertMatchesFullScan(filtered);
+    }
+}
@@ -0,0 +1,100 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.regionserver.PStoreFile;
+import org.apache.hadoop.hbase.regionserver.StoreConfigInformation;
+import org.apache.hadoop.hbase.regionserver.compactions.CompactionConfiguration;
+import org.apache.hadoop.hbase.regionserver.compactions.ParquetCompactionPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * test the selection of the parquet files to compact
+ */
+public class TestParquetCompactionPolicy {
+
+    private static ParquetCompactionPolicy createPolicy(){
+        Configuration conf = HBaseConfiguration.create();
+        conf.setInt(CompactionConfiguration.HBASE_HSTORE_COMPACTION_MIN_KEY, 3);
+        conf.setInt(CompactionConfiguration.HBASE_HSTORE_COMPACTION_MAX_KEY, 5);
+        conf.setFloat(CompactionConfiguration.HBASE_HSTORE_COMPACTION_RATIO_KEY, 1.0f);
+        conf.setLong(CompactionConfiguration.HBASE_HSTORE_COMPACTION_MIN_SIZE_KEY, 10);
+        conf.setLong(CompactionConfiguration.HBASE_HSTORE_COMPACTION_MAX_SIZE_KEY, 1000);
+        StoreConfigInformation storeConfigInfo = Mockito.mock(StoreConfigInformation.class);
+        Mockito.when(storeConfigInfo.getMemstoreFlushSize()).thenReturn(128L);
+        return new ParquetCompactionPolicy(conf, storeConfigInfo);
+    }
+
+    /**
+     * @param lengths of the files, from the oldest to the newest
+     */
+    private static List<PStoreFile> files(long... lengths){
+        List<PStoreFile> files = new ArrayList<>();
+        for(int i = 0; i < lengths.length; ++i){
+            PStoreFile file = Mockito.mock(PStoreFile.class);
+            Mockito.when(file.getLength()).thenReturn(lengths[i]);
+            Mockito.when(file.getMaxSequenceId()).thenReturn((long) i);
+            files.add(file);
+        }
+        return files;
+    }
+
+    @Test
+    public void testNeedsCompaction(){
+        ParquetCompactionPolicy policy = createPolicy();
+        List<PStoreFile> files = files(100, 50, 20);
+        Assert.assertTrue(policy.needsCompaction(files, new ArrayList<PStoreFile>()));
+        Assert.assertFalse("the files being compacted do not count",
+                policy.needsCompaction(files, files.subList(0, 1)));
+        Assert.assertFalse(policy.needsCompaction(files.subList(0, 2), new ArrayList<PStoreFile>()));
+    }
+
+    @Test
+    public void testSelectByRatio(){
+        ParquetCompactionPolicy policy = createPolicy();
+        List<PStoreFile> files = files(100, 50, 23, 12, 12);
+
+        //100 > 50 + 23 + 12 + 12 and 50 > 23 + 12 + 12, but 23 <= 12 + 12
+        List<PStoreFile> selected = policy.selectCompaction(files, false);
+        Assert.assertEquals(files.subList(2, 5), selected);
+
+        //each file is larger than all the newer ones
+        Assert.assertTrue(policy.selectCompaction(files(400, 200, 100, 50), false).isEmpty());
+    }
+
+    @Test
+    public void testSelectSkipsLargeAndLimitsCount(){
+        ParquetCompactionPolicy policy = createPolicy();
+
+        //the oldest file is above the max compact size
+        List<PStoreFile> files = files(5000, 20, 20, 20);
+        Assert.assertEquals(files.subList(1, 4), policy.selectCompaction(files, false));
+
+        //at most 5 files, the oldest ones
+        files = files(20, 20, 20, 20, 20, 20, 20);
+        Assert.assertEquals(files.subList(0, 5), policy.selectCompaction(files, false));
+
+        //not enough files left
+        Assert.assertTrue(policy.selectCompaction(files(5000, 20, 20), false).isEmpty());
+    }
+
+    @Test
+    public void testSelectReferences(){
+        ParquetCompactionPolicy policy = createPolicy();
+        List<PStoreFile> files = files(5000, 400, 20);
+        PStoreFile reference = files.get(1);
+        Mockito.when(reference.isReference()).thenReturn(true);
+
+        Assert.assertTrue("a reference always needs a compaction",
+                policy.needsCompaction(files.subList(0, 2), new ArrayList<PStoreFile>()));
+        Assert.assertFalse(policy.needsCompaction(files.subList(0, 2), Arrays.asList(reference)));
+        Assert.assertEquals("all the files are rewritten with the references, whatever their size",
+                files, policy.selectCompaction(files, false));
+    }
+}
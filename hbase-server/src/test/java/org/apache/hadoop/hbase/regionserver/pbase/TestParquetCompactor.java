@@ -0,0 +1,203 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.io.pfile.PFileWriterSettings;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.InternalRecordScanner;
+import org.apache.hadoop.hbase.regionserver.PStoreFile;
+import org.apache.hadoop.hbase.regionserver.compactions.ParquetCompactor;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import parquet.hadoop.ParquetFileReader;
+import parquet.schema.MessageType;
+import parquet.schema.MessageTypeParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * test the merge of parquet files by the compactor
+ */
+public class TestParquetCompactor {
+
+    private static final MessageType SCHEMA = MessageTypeParser.parseMessageType(
+            "message people { required binary rowkey; required int64 timestamp;"
+                    + " optional binary cf:name; optional binary cf:city; }");
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+    private static final byte[] NAME = Bytes.toBytes("name");
+    private static final byte[] CITY = Bytes.toBytes("city");
+
+    private Configuration conf;
+    private FileSystem fs;
+    private Path dir;
+    private HStore store;
+
+    private static byte[] row(int i){
+        return Bytes.toBytes(String.format("%07d", i));
+    }
+
+    @Before
+    public void setUp() throws IOException{
+        conf = HBaseConfiguration.create();
+        fs = FileSystem.getLocal(conf);
+        dir = new Path(new File(System.getProperty("test.build.data", "target/test-data"),
+                "TestParquetCompactor-" + System.nanoTime()).getAbsolutePath());
+
+        store = Mockito.mock(HStore.class);
+        Mockito.when(store.getFileSystem()).thenReturn(fs);
+        Mockito.when(store.createParquetWriter(Matchers.<Map<String, String>>any(),
+                Matchers.any(PFileWriterSettings.class))).thenAnswer(new Answer<PStoreFile.Writer>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public PStoreFile.Writer answer(InvocationOnMock invocation) throws Throwable {
+                return new PStoreFile.WriterBuilder(conf, fs, SCHEMA,
+                        new Path(dir, "compacted-" + System.nanoTime() + ".parquet"))
+                        .addMetaData((Map<String, String>) invocation.getArguments()[0])
+                        .addSettings((PFileWriterSettings) invocation.getArguments()[1])
+                        .build();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException{
+        fs.delete(dir, true);
+    }
+
+    /**
+     * write the puts into a parquet file, and mock the store file of it
+     */
+    private PStoreFile write(long seqId, List<Put> puts) throws IOException{
+        final Path path = new Path(dir, "file-" + seqId + ".parquet");
+        Map<String, String> meta = new HashMap<>();
+        meta.put(HConstants.START_KEY, Bytes.toString(puts.get(0).getRow()));
+        meta.put(HConstants.END_KEY, Bytes.toString(puts.get(puts.size() - 1).getRow()));
+        meta.put(HConstants.MAX_SEQ_ID, String.valueOf(seqId));
+        PStoreFile.Writer writer = new PStoreFile.WriterBuilder(conf, fs, SCHEMA, path)
+                .addMetaData(meta)
+                .build();
+        for(Put put : puts){
+            writer.append(put);
+        }
+        writer.close();
+
+        PStoreFile file = Mockito.mock(PStoreFile.class);
+        Mockito.when(file.getPath()).thenReturn(path);
+        Mockito.when(file.getStartKey()).thenReturn(meta.get(HConstants.START_KEY));
+        Mockito.when(file.getEndKey()).thenReturn(meta.get(HConstants.END_KEY));
+        Mockito.when(file.getMaxSequenceId()).thenReturn(seqId);
+        Mockito.when(file.getLength()).thenReturn(fs.getFileStatus(path).getLen());
+        Mockito.when(file.openReader(null, null, null, null, null)).thenAnswer(new Answer<PFileReader>() {
+            @Override
+            public PFileReader answer(InvocationOnMock invocation) throws Throwable {
+                return new PFileReader(path, conf, null);
+            }
+        });
+        return file;
+    }
+
+    private static List<List<Cell>> read(Configuration conf, Path path) throws IOException{
+        List<List<Cell>> rows = new ArrayList<>();
+        PFileReader reader = new PFileReader(path, conf, null);
+        try {
+            InternalRecordScanner scanner = reader.getScanner();
+            while (scanner.hasNext()){
+                rows.add(new ArrayList<>(scanner.next()));
+            }
+        }finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    private static String value(List<Cell> cells, byte[] qualifier){
+        for(Cell cell : cells){
+            if(CellUtil.matchingColumn(cell, FAMILY, qualifier)){
+                return Bytes.toString(CellUtil.cloneValue(cell));
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testMergeNewestColumnWins() throws IOException{
+        //rows 0 to 9 with a name and a city
+        List<Put> older = new ArrayList<>();
+        for(int i = 0; i < 10; ++i){
+            Put put = new Put(row(i));
+            put.addColumn(FAMILY, NAME, 1l, Bytes.toBytes("old" + i));
+            put.addColumn(FAMILY, CITY, 1l, Bytes.toBytes("city" + i));
+            older.add(put);
+        }
+        //rows 5 to 14 with a new version of the name only
+        List<Put> newer = new ArrayList<>();
+        for(int i = 5; i < 15; ++i){
+            Put put = new Put(row(i));
+            put.addColumn(FAMILY, NAME, 2l, Bytes.toBytes("new" + i));
+            newer.add(put);
+        }
+        //the newest file is not the last one given
+        PStoreFile newerFile = write(20, newer);
+        PStoreFile olderFile = write(10, older);
+
+        ParquetCompactor compactor = new ParquetCompactor(conf, store);
+        Path compacted = compactor.compact(Arrays.asList(newerFile, olderFile));
+        Assert.assertNotNull(compacted);
+
+        List<List<Cell>> rows = read(conf, compacted);
+        Assert.assertEquals("rows in both files are written once", 15, rows.size());
+        for(int i = 0; i < 15; ++i){
+            List<Cell> cells = rows.get(i);
+            Assert.assertArrayEquals(row(i), CellUtil.cloneRow(cells.get(0)));
+            Assert.assertEquals(i < 5 ? "old" + i : "new" + i, value(cells, NAME));
+            //there are no tombstones, a column missing in the newer file keeps its older value
+            Assert.assertEquals(i < 10 ? "city" + i : null, value(cells, CITY));
+        }
+
+        Map<String, String> meta = ParquetFileReader.readFooter(conf, compacted)
+                .getFileMetaData().getKeyValueMetaData();
+        Assert.assertEquals(Bytes.toString(row(0)), meta.get(HConstants.START_KEY));
+        Assert.assertEquals(Bytes.toString(row(14)), meta.get(HConstants.END_KEY));
+        Assert.assertEquals("20", meta.get(HConstants.MAX_SEQ_ID));
+    }
+
+    @Test
+    public void testSameRowInManyFiles() throws IOException{
+        List<PStoreFile> files = new ArrayList<>();
+        for(int version = 1; version <= 4; ++version){
+            Put put = new Put(row(7));
+            put.addColumn(FAMILY, NAME, version, Bytes.toBytes("name" + version));
+            if(version % 2 == 1){
+                put.addColumn(FAMILY, CITY, version, Bytes.toBytes("city" + version));
+            }
+            files.add(write(version, Arrays.asList(put)));
+        }
+
+        Path compacted = new ParquetCompactor(conf, store).compact(files);
+        List<List<Cell>> rows = read(conf, compacted);
+        Assert.assertEquals(1, rows.size());
+        Assert.assertEquals("only the newest version is kept", "name4", value(rows.get(0), NAME));
+        Assert.assertEquals("city3", value(rows.get(0), CITY));
+    }
+}
@@ -0,0 +1,102 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.filter.RowFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.filter.ValueFilter;
+import org.apache.hadoop.hbase.regionserver.ParquetFilterTranslator;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+import parquet.filter2.predicate.FilterApi;
+import parquet.filter2.predicate.FilterPredicate;
+import parquet.filter2.predicate.Operators.BinaryColumn;
+import parquet.io.api.Binary;
+import parquet.schema.MessageType;
+import parquet.schema.MessageTypeParser;
+
+/**
+ * test the translation of hbase filters for the parquet readers
+ */
+public class TestParquetFilterTranslator {
+
+    private static final MessageType SCHEMA = MessageTypeParser.parseMessageType(
+            "message people { required binary rowkey; required int64 timestamp; "
+                    + "optional binary cf:name; optional binary cf:age; }");
+
+    private static final BinaryColumn NAME = FilterApi.binaryColumn("cf:name");
+    private static final BinaryColumn AGE = FilterApi.binaryColumn("cf:age");
+
+    private static Binary binary(String value){
+        return Binary.fromByteArray(Bytes.toBytes(value));
+    }
+
+    @Test
+    public void testRowRange(){
+        byte[][] range = ParquetFilterTranslator.getRowRange(new PrefixFilter(Bytes.toBytes("ab")));
+        Assert.assertArrayEquals(Bytes.toBytes("ab"), range[0]);
+        Assert.assertArrayEquals(Bytes.toBytes("ac"), range[1]);
+
+        range = ParquetFilterTranslator.getRowRange(new PrefixFilter(new byte[]{'a', (byte) 0xff}));
+        Assert.assertArrayEquals(Bytes.toBytes("b"), range[1]);
+
+        FilterList and = new FilterList(FilterList.Operator.MUST_PASS_ALL,
+                new RowFilter(CompareOp.GREATER_OR_EQUAL, new BinaryComparator(Bytes.toBytes("b"))),
+                new RowFilter(CompareOp.LESS, new BinaryComparator(Bytes.toBytes("d"))));
+        range = ParquetFilterTranslator.getRowRange(and);
+        Assert.assertArrayEquals(Bytes.toBytes("b"), range[0]);
+        Assert.assertArrayEquals(Bytes.toBytes("d"), range[1]);
+
+        FilterList or = new FilterList(FilterList.Operator.MUST_PASS_ONE,
+                new PrefixFilter(Bytes.toBytes("b")),
+                new RowFilter(CompareOp.NOT_EQUAL, new BinaryComparator(Bytes.toBytes("d"))));
+        range = ParquetFilterTranslator.getRowRange(or);
+        Assert.assertEquals(0, range[0].length);
+        Assert.assertEquals(0, range[1].length);
+
+        range = ParquetFilterTranslator.intersect(new byte[][]{Bytes.toBytes("x"), new byte[0]}, ParquetFilterTranslator
+                .getRowRange(new PrefixFilter(Bytes.toBytes("a"))));
+        Assert.assertTrue(ParquetFilterTranslator.isEmpty(range));
+    }
+
+    @Test
+    public void testSingleColumnValueFilter(){
+        SingleColumnValueFilter filter = new SingleColumnValueFilter(Bytes.toBytes("cf"), Bytes.toBytes("name"),
+                CompareOp.EQUAL, Bytes.toBytes("jack"));
+        filter.setFilterIfMissing(true);
+        Assert.assertEquals(FilterApi.eq(NAME, binary("jack")), ParquetFilterTranslator.toPredicate(filter, SCHEMA));
+
+        filter.setFilterIfMissing(false);
+        Assert.assertEquals(FilterApi.or(FilterApi.eq(NAME, binary("jack")), FilterApi.eq(NAME, (Binary) null)),
+                ParquetFilterTranslator.toPredicate(filter, SCHEMA));
+
+        // signed statistics, ranges are not pushed down
+        Assert.assertNull(ParquetFilterTranslator.toPredicate(new SingleColumnValueFilter(Bytes.toBytes("cf"),
+                Bytes.toBytes("name"), CompareOp.GREATER, Bytes.toBytes("jack")), SCHEMA));
+        // not a column of the file
+        Assert.assertNull(ParquetFilterTranslator.toPredicate(new SingleColumnValueFilter(Bytes.toBytes("cf"),
+                Bytes.toBytes("job"), CompareOp.EQUAL, Bytes.toBytes("jack")), SCHEMA));
+    }
+
+    @Test
+    public void testValueFilterAndList(){
+        ValueFilter valueFilter = new ValueFilter(CompareOp.EQUAL, new BinaryComparator(Bytes.toBytes("10")));
+        FilterPredicate expected = FilterApi.or(FilterApi.eq(NAME, binary("10")), FilterApi.eq(AGE, binary("10")));
+        Assert.assertEquals(expected, ParquetFilterTranslator.toPredicate(valueFilter, SCHEMA));
+
+        SingleColumnValueFilter age = new SingleColumnValueFilter(Bytes.toBytes("cf"), Bytes.toBytes("age"),
+                CompareOp.NOT_EQUAL, Bytes.toBytes("20"));
+        age.setFilterIfMissing(true);
+        FilterList and = new FilterList(FilterList.Operator.MUST_PASS_ALL,
+                new PrefixFilter(Bytes.toBytes("a")), age);
+        // the prefix is left to the row range
+        Assert.assertEquals(FilterApi.notEq(AGE, binary("20")), ParquetFilterTranslator.toPredicate(and, SCHEMA));
+
+        FilterList or = new FilterList(FilterList.Operator.MUST_PASS_ONE,
+                new PrefixFilter(Bytes.toBytes("a")), age);
+        Assert.assertNull(ParquetFilterTranslator.toPredicate(or, SCHEMA));
+    }
+}
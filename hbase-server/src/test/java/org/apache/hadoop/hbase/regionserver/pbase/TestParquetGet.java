@@ -0,0 +1,120 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.pfile.PFileReader;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * test the gets of a parquet table, merged from the memstore and the files
+ */
+public class TestParquetGet {
+
+    private static final String SCHEMA = "message people { required binary rowkey; required int64 timestamp;"
+            + " optional binary cf:name; optional binary cf:city; optional binary cf:job; }";
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+    private static final byte[] NAME = Bytes.toBytes("name");
+    private static final byte[] CITY = Bytes.toBytes("city");
+    private static final byte[] JOB = Bytes.toBytes("job");
+
+    private HRegion region;
+
+    private void createRegion(int batchSize) throws IOException{
+        HBaseTestingUtility util = HBaseTestingUtility.createLocalHTU();
+        util.getConfiguration().setInt(PFileReader.SCAN_BATCH_SIZE_KEY, batchSize);
+        HTableDescriptor htd = new HTableDescriptor(TableName.valueOf("TestParquetGet"));
+        htd.addFamily(new HColumnDescriptor(FAMILY));
+        htd.setValue(HConstants.SCHEMA, SCHEMA);
+        region = util.createLocalHRegion(new HRegionInfo(htd.getTableName()), htd);
+    }
+
+    @After
+    public void tearDown() throws IOException{
+        if(region != null){
+            HRegion.closeHRegion(region);
+        }
+    }
+
+    private static Put put(String row, byte[] qualifier, String value){
+        Put put = new Put(Bytes.toBytes(row));
+        put.setAttribute("type", Bytes.toBytes("parquet"));
+        put.addColumn(FAMILY, qualifier, Bytes.toBytes(value));
+        return put;
+    }
+
+    private void write(Put... puts) throws IOException{
+        region.batchMutate(puts);
+    }
+
+    private List<Cell> get(String row) throws IOException{
+        Get get = new Get(Bytes.toBytes(row));
+        get.setAttribute("type", Bytes.toBytes("parquet"));
+        return region.get(get, false);
+    }
+
+    private static String value(List<Cell> cells, byte[] qualifier){
+        String value = null;
+        for(Cell cell : cells){
+            if(CellUtil.matchingColumn(cell, FAMILY, qualifier)){
+                Assert.assertNull("one cell per column", value);
+                value = Bytes.toString(CellUtil.cloneValue(cell));
+            }
+        }
+        return value;
+    }
+
+    private void testMerge() throws IOException{
+        Put first = put("row1", NAME, "name1");
+        first.addColumn(FAMILY, CITY, Bytes.toBytes("city1"));
+        first.addColumn(FAMILY, JOB, Bytes.toBytes("job1"));
+        write(first, put("row2", NAME, "name2"));
+        region.flushcache();
+
+        write(put("row1", NAME, "name1.2"));
+        region.flushcache();
+
+        write(put("row1", JOB, "job1.3"));
+
+        //each column from the newest of the memstore and the files holding it
+        List<Cell> cells = get("row1");
+        Assert.assertEquals(3, cells.size());
+        Assert.assertEquals("name1.2", value(cells, NAME));
+        Assert.assertEquals("city1", value(cells, CITY));
+        Assert.assertEquals("job1.3", value(cells, JOB));
+
+        cells = get("row2");
+        Assert.assertEquals(1, cells.size());
+        Assert.assertEquals("name2", value(cells, NAME));
+
+        Assert.assertTrue(get("row3").isEmpty());
+    }
+
+    @Test
+    public void testMergeRowScanner() throws IOException{
+        createRegion(0);
+        testMerge();
+    }
+
+    @Test
+    public void testMergeBatchScanner() throws IOException{
+        createRegion(8);
+        testMerge();
+    }
+}
@@ -0,0 +1,104 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.ParquetProjection;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+import parquet.schema.MessageType;
+import parquet.schema.MessageTypeParser;
+
+import java.io.IOException;
+
+/**
+ * test the read schema derived from a {@link Scan}
+ */
+public class TestParquetProjection {
+
+    private static final MessageType FILE_SCHEMA = MessageTypeParser.parseMessageType(
+            "message people { required binary rowkey; required int64 timestamp; "
+                    + "optional binary cf:name; optional binary cf:age; optional binary cf:job; "
+                    + "optional binary other:name; }");
+
+    private static KeyValue cell(String family, String qualifier){
+        return new KeyValue(Bytes.toBytes("row"), Bytes.toBytes(family), Bytes.toBytes(qualifier),
+                Bytes.toBytes("value"));
+    }
+
+    @Test
+    public void testAddColumn() throws IOException{
+        Scan scan = new Scan();
+        scan.addColumn(Bytes.toBytes("cf"), Bytes.toBytes("age"));
+        ParquetProjection projection = ParquetProjection.fromScan(scan);
+
+        MessageType readSchema = projection.project(FILE_SCHEMA);
+        Assert.assertEquals(3, readSchema.getFieldCount());
+        Assert.assertTrue(readSchema.containsField(HConstants.ROW_KEY));
+        Assert.assertTrue(readSchema.containsField(HConstants.TIME_STAMP));
+        Assert.assertTrue(readSchema.containsField("cf:age"));
+        // the derived schema is cached
+        Assert.assertSame(readSchema, ParquetProjection.fromScan(scan).project(FILE_SCHEMA));
+
+        Assert.assertTrue(projection.matches(cell("cf", "age")));
+        Assert.assertFalse(projection.matches(cell("cf", "name")));
+        Assert.assertFalse(projection.matches(cell("other", "age")));
+    }
+
+    @Test
+    public void testAddFamily() throws IOException{
+        Scan scan = new Scan();
+        scan.addFamily(Bytes.toBytes("other"));
+        ParquetProjection projection = ParquetProjection.fromScan(scan);
+
+        MessageType readSchema = projection.project(FILE_SCHEMA);
+        Assert.assertEquals(3, readSchema.getFieldCount());
+        Assert.assertTrue(readSchema.containsField("other:name"));
+        Assert.assertTrue(projection.matches(cell("other", "anything")));
+        Assert.assertFalse(projection.matches(cell("cf", "name")));
+    }
+
+    @Test
+    public void testNoColumnInFile() throws IOException{
+        Scan scan = new Scan();
+        scan.addColumn(Bytes.toBytes("cf"), Bytes.toBytes("missing"));
+        Assert.assertNull(ParquetProjection.fromScan(scan).project(FILE_SCHEMA));
+        Assert.assertNull(ParquetProjection.fromScan(new Scan()));
+    }
+
+    @Test
+    public void testScanTableSchema() throws IOException{
+        Scan scan = new Scan();
+        scan.addFamily(Bytes.toBytes("cf"));
+        scan.setAttribute(HConstants.SCAN_TABLE_SCHEMA,
+                Bytes.toBytes("message people { required binary rowkey; optional binary cf:name; }"));
+        ParquetProjection projection = ParquetProjection.fromScan(scan);
+
+        MessageType readSchema = projection.project(FILE_SCHEMA);
+        Assert.assertEquals(3, readSchema.getFieldCount());
+        Assert.assertTrue(readSchema.containsField("cf:name"));
+        Assert.assertTrue(projection.matches(cell("cf", "name")));
+        Assert.assertFalse(projection.matches(cell("cf", "age")));
+    }
+
+    @Test
+    public void testMalformedScanTableSchema() throws IOException{
+        Scan scan = new Scan();
+        scan.addFamily(Bytes.toBytes("cf"));
+        scan.setAttribute(HConstants.SCAN_TABLE_SCHEMA, Bytes.toBytes("message people { required binary"));
+        try {
+            ParquetProjection.fromScan(scan);
+            Assert.fail("a malformed schema must not read all the columns");
+        }catch (DoNotRetryIOException e){
+            //expected
+        }
+        try {
+            ParquetProjection.fromCheckedScan(scan);
+            Assert.fail();
+        }catch (IllegalArgumentException e){
+            //expected
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HConstants.OperationStatusCode;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.OperationStatus;
+import org.apache.hadoop.hbase.regionserver.PRegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * test the checks of the puts of a parquet table in the region
+ */
+public class TestParquetPut {
+
+    private static final String SCHEMA = "message people { required binary rowkey; required int64 timestamp;"
+            + " optional binary cf:name; optional int32 cf:age; }";
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+    private static final byte[] NAME = Bytes.toBytes("name");
+    private static final byte[] AGE = Bytes.toBytes("age");
+
+    private HRegion region;
+
+    @Before
+    public void setUp() throws IOException{
+        HBaseTestingUtility util = HBaseTestingUtility.createLocalHTU();
+        HTableDescriptor htd = new HTableDescriptor(TableName.valueOf("TestParquetPut"));
+        htd.addFamily(new HColumnDescriptor(FAMILY));
+        htd.setValue(HConstants.SCHEMA, SCHEMA);
+        region = util.createLocalHRegion(new HRegionInfo(htd.getTableName()), htd);
+    }
+
+    @After
+    public void tearDown() throws IOException{
+        HRegion.closeHRegion(region);
+    }
+
+    private static Put put(int i){
+        Put put = new Put(Bytes.toBytes("row" + i));
+        put.setAttribute("type", Bytes.toBytes("parquet"));
+        put.addColumn(FAMILY, NAME, Bytes.toBytes("name" + i));
+        put.addColumn(FAMILY, AGE, Bytes.toBytes(i));
+        return put;
+    }
+
+    private List<String> scanRows() throws IOException{
+        List<String> rows = new ArrayList<>();
+        PRegionScanner scanner = region.getPScanner(new Scan());
+        try {
+            while (scanner.hasNext()){
+                List<Cell> row = scanner.nextRaw();
+                rows.add(Bytes.toString(CellUtil.cloneRow(row.get(0))));
+            }
+        }finally {
+            scanner.close();
+        }
+        return rows;
+    }
+
+    @Test
+    public void testBadPutsAreRejected() throws IOException{
+        Put badSize = put(3);
+        badSize.addColumn(FAMILY, AGE, 2l, new byte[3]);
+        Put unknownColumn = put(4);
+        unknownColumn.addColumn(FAMILY, Bytes.toBytes("city"), Bytes.toBytes("nowhere"));
+        Put unknownFamily = put(5);
+        unknownFamily.addColumn(Bytes.toBytes("nf"), NAME, Bytes.toBytes("name5"));
+        Delete delete = new Delete(Bytes.toBytes("row1"));
+        delete.setAttribute("type", Bytes.toBytes("parquet"));
+
+        OperationStatus[] statuses = region.batchMutate(new Mutation[]{
+                put(1), put(2), badSize, unknownColumn, unknownFamily, delete, put(6)});
+        Assert.assertEquals(OperationStatusCode.SUCCESS, statuses[0].getOperationStatusCode());
+        Assert.assertEquals(OperationStatusCode.SUCCESS, statuses[1].getOperationStatusCode());
+        Assert.assertEquals(OperationStatusCode.SANITY_CHECK_FAILURE, statuses[2].getOperationStatusCode());
+        Assert.assertEquals(OperationStatusCode.SANITY_CHECK_FAILURE, statuses[3].getOperationStatusCode());
+        Assert.assertEquals(OperationStatusCode.BAD_FAMILY, statuses[4].getOperationStatusCode());
+        Assert.assertEquals(OperationStatusCode.SANITY_CHECK_FAILURE, statuses[5].getOperationStatusCode());
+        Assert.assertEquals(OperationStatusCode.SUCCESS, statuses[6].getOperationStatusCode());
+
+        //every accepted put of the batch is in the memstore, not only the first one
+        List<String> expected = new ArrayList<>();
+        expected.add("row1");
+        expected.add("row2");
+        expected.add("row6");
+        Assert.assertEquals(expected, scanRows());
+
+        //the rejected puts do not block the flush
+        region.flushcache();
+        Assert.assertEquals(expected, scanRows());
+    }
+}
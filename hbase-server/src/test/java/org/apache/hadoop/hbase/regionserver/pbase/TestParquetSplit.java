@@ -0,0 +1,179 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.Server;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.PRegionScanner;
+import org.apache.hadoop.hbase.regionserver.PStoreFile;
+import org.apache.hadoop.hbase.regionserver.SplitTransaction;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.PairOfSameType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * test the split of a region of a parquet table into references to the halves of
+ * its files, and the compaction of the references
+ */
+public class TestParquetSplit {
+
+    private static final String SCHEMA = "message people { required binary rowkey; required int64 timestamp;"
+            + " optional binary cf:name; }";
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+    private static final byte[] NAME = Bytes.toBytes("name");
+    private static final byte[] SPLIT_ROW = key(40);
+
+    private HBaseTestingUtility util;
+    private HRegion parent;
+    private final List<HRegion> daughters = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException{
+        util = HBaseTestingUtility.createLocalHTU();
+        util.getConfiguration().setBoolean("hbase.testing.nocluster", true);
+        HTableDescriptor htd = new HTableDescriptor(TableName.valueOf("TestParquetSplit"));
+        htd.addFamily(new HColumnDescriptor(FAMILY));
+        htd.setValue(HConstants.SCHEMA, SCHEMA);
+        parent = util.createLocalHRegion(new HRegionInfo(htd.getTableName()), htd);
+    }
+
+    @After
+    public void tearDown() throws IOException{
+        for(HRegion daughter : daughters){
+            HRegion.closeHRegion(daughter);
+        }
+        HRegion.closeHRegion(parent);
+    }
+
+    private static byte[] key(int i){
+        return Bytes.toBytes(String.format("%03d", i));
+    }
+
+    private void write(int first, int last, int step) throws IOException{
+        List<Put> puts = new ArrayList<>();
+        for(int i = first; i <= last; i += step){
+            Put put = new Put(key(i));
+            put.setAttribute("type", Bytes.toBytes("parquet"));
+            put.addColumn(FAMILY, NAME, Bytes.toBytes("name" + i));
+            puts.add(put);
+        }
+        parent.batchMutate(puts.toArray(new Put[puts.size()]));
+        parent.flushcache();
+    }
+
+    private static List<String> scanRows(HRegion region) throws IOException{
+        List<String> rows = new ArrayList<>();
+        PRegionScanner scanner = region.getPScanner(new Scan());
+        try {
+            while (scanner.hasNext()){
+                List<Cell> row = scanner.nextRaw();
+                Assert.assertEquals("name" + Integer.parseInt(Bytes.toString(CellUtil.cloneRow(row.get(0)))),
+                        Bytes.toString(CellUtil.cloneValue(row.get(0))));
+                rows.add(Bytes.toString(CellUtil.cloneRow(row.get(0))));
+            }
+        }finally {
+            scanner.close();
+        }
+        return rows;
+    }
+
+    private static void assertRows(List<String> rows, int first, int last){
+        Assert.assertEquals(last - first + 1, rows.size());
+        for(int i = first; i <= last; ++i){
+            Assert.assertEquals(Bytes.toString(key(i)), rows.get(i - first));
+        }
+    }
+
+    private static List<PStoreFile> files(HRegion region){
+        return ((HStore) region.getStore(FAMILY)).getPStoreFiles();
+    }
+
+    /**
+     * split the parent at SPLIT_ROW
+     */
+    private PairOfSameType<HRegion> split() throws IOException{
+        SplitTransaction st = new SplitTransaction(parent, SPLIT_ROW);
+        Assert.assertTrue(st.prepare());
+        Server server = Mockito.mock(Server.class);
+        Mockito.when(server.getConfiguration()).thenReturn(util.getConfiguration());
+        PairOfSameType<HRegion> regions = st.execute(server, null);
+        daughters.add(regions.getFirst());
+        daughters.add(regions.getSecond());
+        return regions;
+    }
+
+    @Test
+    public void testSplitPStoreFiles() throws IOException{
+        //two files across the split row, one in the top half only
+        write(0, 99, 2);
+        write(1, 99, 2);
+        write(100, 109, 1);
+
+        PairOfSameType<HRegion> regions = split();
+        Assert.assertTrue(parent.isClosed());
+
+        List<PStoreFile> bottom = files(regions.getFirst());
+        Assert.assertEquals("no reference to a file without a row in the half", 2, bottom.size());
+        for(PStoreFile file : bottom){
+            Assert.assertTrue(file.isReference());
+            Assert.assertFalse(file.isTopReference());
+            Assert.assertArrayEquals(SPLIT_ROW, file.getSplitRow());
+        }
+        List<PStoreFile> top = files(regions.getSecond());
+        Assert.assertEquals(3, top.size());
+        for(PStoreFile file : top){
+            Assert.assertTrue(file.isReference());
+            Assert.assertTrue(file.isTopReference());
+        }
+        Assert.assertTrue(regions.getFirst().hasReferences());
+
+        assertRows(scanRows(regions.getFirst()), 0, 39);
+        assertRows(scanRows(regions.getSecond()), 40, 109);
+    }
+
+    @Test
+    public void testCompactReferences() throws IOException{
+        write(0, 99, 2);
+        write(1, 99, 2);
+
+        PairOfSameType<HRegion> regions = split();
+        FileSystem fs = parent.getRegionFileSystem().getFileSystem();
+        for(HRegion daughter : new HRegion[]{regions.getFirst(), regions.getSecond()}){
+            HStore store = (HStore) daughter.getStore(FAMILY);
+            List<PStoreFile> references = new ArrayList<>(store.getPStoreFiles());
+            Assert.assertEquals(2, references.size());
+            store.compactPStoreFiles(references);
+
+            List<PStoreFile> compacted = store.getPStoreFiles();
+            Assert.assertEquals(1, compacted.size());
+            Assert.assertFalse(compacted.get(0).isReference());
+            Assert.assertFalse(daughter.hasReferences());
+            for(PStoreFile reference : references){
+                Assert.assertFalse(fs.exists(reference.getStoreFilePath()));
+                Assert.assertTrue("the file of the parent is kept for the other daughter",
+                        fs.exists(reference.getPath()));
+            }
+        }
+        assertRows(scanRows(regions.getFirst()), 0, 39);
+        assertRows(scanRows(regions.getSecond()), 40, 99);
+    }
+}
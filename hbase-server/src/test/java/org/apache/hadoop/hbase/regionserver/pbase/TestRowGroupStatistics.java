@@ -0,0 +1,155 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.HStore;
+import org.apache.hadoop.hbase.regionserver.RowGroupStatistics;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * test the row groups of a parquet store whose statistics stand for their rows
+ */
+public class TestRowGroupStatistics {
+
+    private static final String SCHEMA = "message people { required binary rowkey; required int64 timestamp;"
+            + " optional binary cf:name; optional int64 cf:age; }";
+    private static final String AGE_COLUMN = "cf:age";
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+    private static final byte[] NAME = Bytes.toBytes("name");
+    private static final byte[] AGE = Bytes.toBytes("age");
+    private static final byte[] NONE = HConstants.EMPTY_BYTE_ARRAY;
+
+    private HRegion region;
+    private HStore store;
+
+    @Before
+    public void setUp() throws IOException{
+        HBaseTestingUtility util = HBaseTestingUtility.createLocalHTU();
+        HTableDescriptor htd = new HTableDescriptor(TableName.valueOf("TestRowGroupStatistics"));
+        htd.addFamily(new HColumnDescriptor(FAMILY));
+        htd.setValue(HConstants.SCHEMA, SCHEMA);
+        region = util.createLocalHRegion(new HRegionInfo(htd.getTableName()), htd);
+        store = (HStore) region.getStore(FAMILY);
+    }
+
+    @After
+    public void tearDown() throws IOException{
+        HRegion.closeHRegion(region);
+    }
+
+    private static byte[] key(int i){
+        return Bytes.toBytes(String.format("%03d", i));
+    }
+
+    /**
+     * put the rows from first to last, the odd rows have no age
+     */
+    private void write(int first, int last) throws IOException{
+        Put[] puts = new Put[last - first + 1];
+        for(int i = first; i <= last; ++i){
+            Put put = new Put(key(i));
+            put.setAttribute("type", Bytes.toBytes("parquet"));
+            put.addColumn(FAMILY, NAME, Bytes.toBytes("name" + i));
+            if(i % 2 == 0){
+                put.addColumn(FAMILY, AGE, Bytes.toBytes((long) i));
+            }
+            puts[i - first] = put;
+        }
+        region.batchMutate(puts);
+    }
+
+    private static void assertGroup(RowGroupStatistics group, int first, int last){
+        Assert.assertArrayEquals(key(first), group.getFirstKey());
+        Assert.assertArrayEquals(key(last), group.getLastKey());
+        Assert.assertEquals(last - first + 1, group.getRowCount());
+    }
+
+    @Test
+    public void testDisjointFiles() throws IOException{
+        write(40, 59);
+        region.flushcache();
+        write(0, 19);
+        region.flushcache();
+
+        List<RowGroupStatistics> groups = store.getRowGroupStatistics(NONE, NONE, AGE_COLUMN);
+        Assert.assertEquals(2, groups.size());
+        assertGroup(groups.get(0), 0, 19);
+        assertGroup(groups.get(1), 40, 59);
+        RowGroupStatistics group = groups.get(0);
+        Assert.assertEquals("the rows without age are not counted", 10, group.getValueCount());
+        Assert.assertTrue(group.hasMinMax());
+        Assert.assertEquals(0, Bytes.toLong(group.getMin()));
+        Assert.assertEquals(18, Bytes.toLong(group.getMax()));
+        Assert.assertEquals(58, Bytes.toLong(groups.get(1).getMax()));
+
+        group = store.getRowGroupStatistics(NONE, NONE, "cf:name").get(0);
+        Assert.assertEquals(20, group.getValueCount());
+        Assert.assertFalse("binary values do not sort like the cells", group.hasMinMax());
+
+        //only the row groups whole in the range
+        groups = store.getRowGroupStatistics(NONE, key(50), AGE_COLUMN);
+        Assert.assertEquals(1, groups.size());
+        assertGroup(groups.get(0), 0, 19);
+        groups = store.getRowGroupStatistics(key(5), NONE, AGE_COLUMN);
+        Assert.assertEquals(1, groups.size());
+        assertGroup(groups.get(0), 40, 59);
+        Assert.assertEquals(2, store.getRowGroupStatistics(key(0), key(60), AGE_COLUMN).size());
+
+        Assert.assertFalse(store.mayContainRows(key(20), key(40)));
+        Assert.assertFalse(store.mayContainRows(key(60), NONE));
+        Assert.assertTrue(store.mayContainRows(key(15), key(25)));
+        Assert.assertTrue(store.mayContainRows(NONE, key(1)));
+        Assert.assertTrue(store.mayContainRows(key(59), NONE));
+    }
+
+    @Test
+    public void testMemStoreRows() throws IOException{
+        write(0, 19);
+        region.flushcache();
+        write(40, 59);
+        region.flushcache();
+
+        //a newer version of one row in the memstore
+        write(45, 45);
+        List<RowGroupStatistics> groups = store.getRowGroupStatistics(NONE, NONE, AGE_COLUMN);
+        Assert.assertEquals(1, groups.size());
+        assertGroup(groups.get(0), 0, 19);
+        Assert.assertFalse(store.mayContainRows(key(20), key(40)));
+
+        write(30, 30);
+        Assert.assertEquals(1, store.getRowGroupStatistics(NONE, NONE, AGE_COLUMN).size());
+        Assert.assertTrue("the memstore spans the gap", store.mayContainRows(key(20), key(40)));
+    }
+
+    @Test
+    public void testOverlappingFiles() throws IOException{
+        write(0, 19);
+        region.flushcache();
+        write(40, 59);
+        region.flushcache();
+        write(30, 30);
+        write(45, 45);
+        region.flushcache();
+
+        //the file of the rows 30 to 45 overlaps the one of the rows 40 to 59
+        List<RowGroupStatistics> groups = store.getRowGroupStatistics(NONE, NONE, AGE_COLUMN);
+        Assert.assertEquals(1, groups.size());
+        assertGroup(groups.get(0), 0, 19);
+        Assert.assertTrue(store.mayContainRows(key(20), key(40)));
+        Assert.assertFalse(store.mayContainRows(key(20), key(30)));
+    }
+}
@@ -10,6 +10,7 @@ import org.apache.hadoop.hbase.regionserver.ScannerHeap;
 import org.apache.hadoop.hbase.regionserver.memstore.PMemStore;
 import org.apache.hadoop.hbase.regionserver.memstore.PMemStoreImpl;
 import org.apache.hadoop.hbase.regionserver.pbase.util.ParquetReadUtil;
+import org.apache.hadoop.hbase.util.ByteRange;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Assert;
 import org.junit.Test;
@@ -101,4 +102,34 @@ public class TestScannerHeap {
     }
 
 
+    /**
+     * the rowkeys peeked without building the cells follow the rows of the heap
+     */
+    @Test
+    public void testPeekRowKey() throws IOException{
+        final int ROWS_LEN = 100;
+        List<RecordScanner> scanners = new LinkedList<>();
+        for(int s = 0; s < 3; ++s){
+            PMemStore memStore = new PMemStoreImpl(null);
+            for(int i = s; i < ROWS_LEN; i += 3){
+                Put put = new Put(String.format("%10d", i).getBytes());
+                put.addColumn(Bytes.toBytes("cf"), Bytes.toBytes("name"), ("wangxiaoyi" + i).getBytes());
+                memStore.add(put);
+            }
+            scanners.add(memStore.getScanner(null));
+        }
+        ScannerHeap heap = new ScannerHeap(scanners);
+
+        for(int i = 0; i < ROWS_LEN; ++i){
+            ByteRange rowKey = heap.peekRowKey();
+            Assert.assertNotNull(rowKey);
+            Assert.assertEquals(String.format("%10d", i), Bytes.toString(rowKey.deepCopyToNewArray()));
+            List<Cell> cells = heap.next();
+            Assert.assertEquals(String.format("%10d", i), Bytes.toString(cells.get(0).getRow()));
+        }
+        Assert.assertNull(heap.peekRowKey());
+        Assert.assertEquals(false, heap.hasNext());
+    }
+
+
 }
@@ -0,0 +1,159 @@
+package org.apache.hadoop.hbase.regionserver.pbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.regionserver.RowScanner;
+import org.apache.hadoop.hbase.regionserver.memstore.PMemStore;
+import org.apache.hadoop.hbase.regionserver.memstore.PMemStoreSnapshot;
+import org.apache.hadoop.hbase.regionserver.memstore.SlabPMemStoreImpl;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * test the slab backed {@link PMemStore}
+ */
+public class TestSlabPMemStoreImpl {
+
+    private static final byte[] FAMILY = Bytes.toBytes("cf");
+
+    private static byte[] row(int i){
+        return String.format("%10d", i).getBytes();
+    }
+
+    private static Put put(int i, String name, String age){
+        Put put = new Put(row(i));
+        if(name != null)
+            put.addColumn(FAMILY, Bytes.toBytes("name"), Bytes.toBytes(name));
+        if(age != null)
+            put.addColumn(FAMILY, Bytes.toBytes("age"), Bytes.toBytes(age));
+        return put;
+    }
+
+    @Test
+    public void testMergeRow() throws IOException{
+        PMemStore memStore = new SlabPMemStoreImpl(HBaseConfiguration.create());
+        memStore.add(put(1, "name1", "age1"));
+        memStore.add(put(1, "name2", null));
+
+        Assert.assertEquals(1, memStore.getRecordCount());
+        Mutation m = memStore.get(row(1));
+        List<Cell> names = m.getFamilyCellMap().get(FAMILY);
+        Assert.assertEquals(2, names.size());
+        for(Cell cell : names){
+            if(CellUtil.matchingQualifier(cell, Bytes.toBytes("name")))
+                Assert.assertArrayEquals(Bytes.toBytes("name2"), CellUtil.cloneValue(cell));
+            else
+                Assert.assertArrayEquals(Bytes.toBytes("age1"), CellUtil.cloneValue(cell));
+        }
+    }
+
+    @Test
+    public void testSizeDelta() throws IOException{
+        SlabPMemStoreImpl memStore = new SlabPMemStoreImpl(HBaseConfiguration.create());
+        long initial = memStore.heapSize();
+        long added = memStore.add(put(1, "name1", "age1"));
+        Assert.assertEquals(initial + added, memStore.heapSize());
+
+        long updated = memStore.add(put(1, "name2", null));
+        Assert.assertTrue("an update should cost less than a new row", updated < added);
+        Assert.assertEquals(initial + added + updated, memStore.heapSize());
+
+        long released = memStore.delete(put(1, null, null));
+        Assert.assertTrue(released > 0);
+        Assert.assertEquals(initial + added + updated - released, memStore.heapSize());
+        Assert.assertEquals(0, memStore.getRecordCount());
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception{
+        final PMemStore memStore = new SlabPMemStoreImpl(HBaseConfiguration.create());
+        final int rows = 100;
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < 4; ++t){
+            final int thread = t;
+            threads.add(new Thread(){
+                @Override
+                public void run() {
+                    for(int i = 1; i <= rows; ++i){
+                        try {
+                            memStore.add(put(i, "name" + thread, "age" + i));
+                        }catch (IOException ioe){
+                            throw new RuntimeException(ioe);
+                        }
+                    }
+                }
+            });
+        }
+        for(Thread thread : threads) thread.start();
+        for(Thread thread : threads) thread.join();
+
+        Assert.assertEquals(rows, memStore.getRecordCount());
+        Assert.assertArrayEquals(row(1), memStore.getStartKey());
+        Assert.assertArrayEquals(row(rows), memStore.getEndKey());
+
+        RowScanner scanner = memStore.getScanner(null);
+        int count = 0;
+        while (scanner.hasNext()){
+            List<Cell> cells = scanner.next();
+            Assert.assertEquals(2, cells.size());
+            count++;
+        }
+        Assert.assertEquals(rows, count);
+    }
+
+    @Test
+    public void testSnapshot() throws IOException{
+        PMemStore memStore = new SlabPMemStoreImpl(HBaseConfiguration.create());
+        Assert.assertEquals("an empty memstore has nothing to flush", 0, memStore.getFlushableSize());
+        long added = 0;
+        for(int i = 1; i <= 100; ++i){
+            added += memStore.add(put(i, "name" + i, "age" + i));
+        }
+        Assert.assertEquals(added, memStore.getFlushableSize());
+        PMemStoreSnapshot snapshot = memStore.snapshot();
+        Assert.assertEquals(added, snapshot.getSize());
+        Assert.assertEquals(added, memStore.getFlushableSize());
+        Assert.assertEquals(100, snapshot.getMutationCount());
+        Assert.assertArrayEquals(row(1), snapshot.getStartKey());
+        Assert.assertArrayEquals(row(100), snapshot.getEndKey());
+        Assert.assertEquals(0, memStore.getRecordCount());
+        Assert.assertNull(memStore.getStartKey());
+
+        RowScanner scanner = snapshot.getScanner();
+        int count = 0;
+        while (scanner.hasNext()){
+            Mutation m = scanner.nextRow();
+            Assert.assertArrayEquals(row(++count), m.getRow());
+        }
+        Assert.assertEquals(100, count);
+
+        memStore.clearSnapshot(snapshot.getId());
+        Assert.assertEquals(-1l, memStore.getCurrSnapshotId());
+        Assert.assertEquals(0, memStore.getFlushableSize());
+    }
+
+    @Test
+    public void testRejectNonPut() throws IOException{
+        PMemStore memStore = new SlabPMemStoreImpl(HBaseConfiguration.create());
+        memStore.add(put(1, "name1", "age1"));
+        long size = memStore.size();
+        try {
+            memStore.add(new Delete(row(1)));
+            Assert.fail("a delete must not be dropped silently");
+        }catch (DoNotRetryIOException e){
+            //expected
+        }
+        Assert.assertEquals(size, memStore.size());
+        Assert.assertEquals(2, memStore.get(row(1)).getFamilyCellMap().get(FAMILY).size());
+    }
+}